@@ -203,9 +203,9 @@ public class RepositoriesModule
 
     @Singleton
     @Provides
-    IPFSServiceType provideIPFSService(OkHttpClient client)
+    IPFSServiceType provideIPFSService(OkHttpClient client, @ApplicationContext Context ctx)
     {
-        return new IPFSService(client);
+        return new IPFSService(client, ctx.getCacheDir());
     }
 
     @Singleton
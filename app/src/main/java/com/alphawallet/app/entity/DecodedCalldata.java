@@ -0,0 +1,34 @@
+package com.alphawallet.app.entity;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable result of TransactionDecoder.decode(byte[]).
+ *
+ * Holds the same decoded fields as TransactionInput, but can't be changed once built so one result
+ * (and the decoder that produced it) can be shared between threads.
+ */
+public final class DecodedCalldata
+{
+    public final FunctionData functionData;
+    public final String selector; //"0x" + 4 byte function selector, or null if the calldata is shorter than a selector
+    public final List<String> addresses;
+    public final List<BigInteger> arrayValues;
+    public final List<String> sigData;
+    public final List<String> miscData;
+    public final List<String> hexArgs;
+
+    DecodedCalldata(FunctionData functionData, String selector, List<String> addresses, List<BigInteger> arrayValues,
+                    List<String> sigData, List<String> miscData, List<String> hexArgs)
+    {
+        this.functionData = functionData;
+        this.selector = selector;
+        this.addresses = Collections.unmodifiableList(addresses);
+        this.arrayValues = Collections.unmodifiableList(arrayValues);
+        this.sigData = Collections.unmodifiableList(sigData);
+        this.miscData = Collections.unmodifiableList(miscData);
+        this.hexArgs = Collections.unmodifiableList(hexArgs);
+    }
+}
@@ -13,6 +13,7 @@ import org.web3j.abi.datatypes.Event;
 import org.web3j.abi.datatypes.Type;
 import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
 import org.web3j.protocol.core.BatchResponse;
 import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.Response;
@@ -23,6 +24,7 @@ import org.web3j.utils.Numeric;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -43,12 +45,38 @@ public class EventSync
     private static final boolean EVENT_SYNC_DEBUGGING = false;
 
     private final Token token;
+    private final long chainId;
+    private final String syncAddress;
 
     private static final HashSet<Long> batchProcessingError = new HashSet<>();
 
     public EventSync(Token token)
     {
         this.token = token;
+        this.chainId = 0;
+        this.syncAddress = null;
+    }
+
+    /**
+     * Sync state for a scan which isn't tied to one token, eg the wallet-wide transfer scan.
+     * Only the block window methods can be used.
+     * @param syncAddress key the sync state is stored under, alongside the chainId
+     */
+    public EventSync(long chainId, String syncAddress)
+    {
+        this.token = null;
+        this.chainId = chainId;
+        this.syncAddress = syncAddress;
+    }
+
+    private long chainId()
+    {
+        return token != null ? token.tokenInfo.chainId : chainId;
+    }
+
+    private String syncKey()
+    {
+        return TokensRealmSource.databaseKey(chainId(), token != null ? token.getAddress() : syncAddress);
     }
 
     //Log fetch strategy for NFT:
@@ -63,7 +91,7 @@ public class EventSync
 
     public SyncDef getSyncDef(Realm realm)
     {
-        BigInteger currentBlock = TransactionsService.getCurrentBlock(token.tokenInfo.chainId);
+        BigInteger currentBlock = TransactionsService.getCurrentBlock(chainId());
         EventSyncState syncState = getCurrentTokenSyncState(realm);
         BigInteger lastBlockRead = BigInteger.valueOf(getLastEventRead(realm));
         long readBlockSize = getCurrentEventBlockSize(realm);
@@ -80,10 +108,10 @@ public class EventSync
             case DOWNWARD_SYNC_START: //Start event sync, optimistically try the whole current event range from 1 -> LATEST
                 eventReadStartBlock = BigInteger.ONE;
                 eventReadEndBlock = BigInteger.valueOf(-1L);
-                if (EthereumNetworkBase.isEventBlockLimitEnforced(token.tokenInfo.chainId))
+                if (EthereumNetworkBase.isEventBlockLimitEnforced(chainId()))
                 {
                     syncState = EventSyncState.UPWARD_SYNC;
-                    eventReadStartBlock = currentBlock.subtract(EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).multiply(BigInteger.valueOf(3)));
+                    eventReadStartBlock = currentBlock.subtract(EthereumNetworkBase.getMaxEventFetch(chainId()).multiply(BigInteger.valueOf(3)));
                     EVENT_DEBUG("Init Sync for restricted block RPC");
                 }
                 else
@@ -103,7 +131,7 @@ public class EventSync
                 break;
             case UPWARD_SYNC_MAX: //we are syncing from the point we started the downward sync
                 upwardSync = true;
-                if (EthereumNetworkBase.isEventBlockLimitEnforced(token.tokenInfo.chainId) && upwardSyncStateLost(lastBlockRead, currentBlock))
+                if (EthereumNetworkBase.isEventBlockLimitEnforced(chainId()) && upwardSyncStateLost(lastBlockRead, currentBlock))
                 {
                     syncState = EventSyncState.UPWARD_SYNC;
                     EVENT_DEBUG("Switch back to sync scan");
@@ -146,12 +174,12 @@ public class EventSync
 
     private boolean upwardSyncStateLost(BigInteger lastBlockRead, BigInteger currentBlock)
     {
-        return currentBlock.subtract(lastBlockRead).compareTo(EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId)) >= 0;
+        return currentBlock.subtract(lastBlockRead).compareTo(EthereumNetworkBase.getMaxEventFetch(chainId())) >= 0;
     }
 
     private boolean upwardSyncComplete(BigInteger eventReadStartBlock, BigInteger currentBlock)
     {
-        BigInteger maxBlockRead = EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).subtract(BigInteger.ONE);
+        BigInteger maxBlockRead = EthereumNetworkBase.getMaxEventFetch(chainId()).subtract(BigInteger.ONE);
         BigInteger diff = currentBlock.subtract(eventReadStartBlock);
 
         return diff.compareTo(maxBlockRead) < 0;
@@ -159,9 +187,9 @@ public class EventSync
 
     private BigInteger adjustForLimitedBlockSize(BigInteger eventReadStartBlock, BigInteger eventReadEndBlock, BigInteger currentBlock)
     {
-        if (EthereumNetworkBase.isEventBlockLimitEnforced(token.tokenInfo.chainId))
+        if (EthereumNetworkBase.isEventBlockLimitEnforced(chainId()))
         {
-            BigInteger maxBlockRead = EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId);
+            BigInteger maxBlockRead = EthereumNetworkBase.getMaxEventFetch(chainId());
 
             long diff = currentBlock.subtract(eventReadStartBlock).longValue();
 
@@ -188,8 +216,8 @@ public class EventSync
                 if (endBlock.getValue().equalsIgnoreCase("latest"))
                 {
                     newStartBlock = startBlockVal.longValue();
-                    newEndBlock = newStartBlock + EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
-                    blockSize = EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
+                    newEndBlock = newStartBlock + EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
+                    blockSize = EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
                 }
                 else
                 {
@@ -209,8 +237,8 @@ public class EventSync
                 //Measure interval
                 if (endBlock.getValue().equalsIgnoreCase("latest"))
                 {
-                    BigInteger currentBlock = TransactionsService.getCurrentBlock(token.tokenInfo.chainId);
-                    blockSize = EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
+                    BigInteger currentBlock = TransactionsService.getCurrentBlock(chainId());
+                    blockSize = EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
                     newEndBlock = currentBlock.longValue();
                 }
                 else
@@ -242,7 +270,7 @@ public class EventSync
         if (startBlock.compareTo(BigInteger.ONE) == 0)
         {
             //initial search, apply full limit
-            return currentBlock - EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
+            return currentBlock - EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
         }
         else
         {
@@ -254,23 +282,23 @@ public class EventSync
     private long getCurrentEventBlockSize(Realm instance)
     {
         RealmAuxData rd = instance.where(RealmAuxData.class)
-                .equalTo("instanceKey", TokensRealmSource.databaseKey(token.tokenInfo.chainId, token.getAddress()))
+                .equalTo("instanceKey", syncKey())
                 .findFirst();
 
         if (rd == null)
         {
-            return EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
+            return EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
         }
         else
         {
-            return Math.min(rd.getResultReceivedTime(), EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue());
+            return Math.min(rd.getResultReceivedTime(), EthereumNetworkBase.getMaxEventFetch(chainId()).longValue());
         }
     }
 
     protected EventSyncState getCurrentTokenSyncState(Realm instance)
     {
         RealmAuxData rd = instance.where(RealmAuxData.class)
-                .equalTo("instanceKey", TokensRealmSource.databaseKey(token.tokenInfo.chainId, token.getAddress()))
+                .equalTo("instanceKey", syncKey())
                 .findFirst();
 
         if (rd == null)
@@ -298,7 +326,7 @@ public class EventSync
     {
         if (realm == null) return;
         realm.executeTransaction(r -> {
-            String key = TokensRealmSource.databaseKey(token.tokenInfo.chainId, token.getAddress());
+            String key = syncKey();
             RealmAuxData rd = r.where(RealmAuxData.class)
                     .equalTo("instanceKey", key)
                     .findFirst();
@@ -316,7 +344,7 @@ public class EventSync
     protected long getLastEventRead(Realm instance)
     {
         RealmAuxData rd = instance.where(RealmAuxData.class)
-                .equalTo("instanceKey", TokensRealmSource.databaseKey(token.tokenInfo.chainId, token.getAddress()))
+                .equalTo("instanceKey", syncKey())
                 .findFirst();
 
         if (rd == null)
@@ -333,12 +361,12 @@ public class EventSync
     private long getSyncStart(Realm instance)
     {
         RealmAuxData rd = instance.where(RealmAuxData.class)
-                .equalTo("instanceKey", TokensRealmSource.databaseKey(token.tokenInfo.chainId, token.getAddress()))
+                .equalTo("instanceKey", syncKey())
                 .findFirst();
 
         if (rd == null)
         {
-            return TransactionsService.getCurrentBlock(token.tokenInfo.chainId).longValue();
+            return TransactionsService.getCurrentBlock(chainId()).longValue();
         }
         else
         {
@@ -350,7 +378,7 @@ public class EventSync
     {
         if (realm == null) return;
         realm.executeTransaction(r -> {
-            String key = TokensRealmSource.databaseKey(token.tokenInfo.chainId, token.getAddress());
+            String key = syncKey();
             RealmAuxData rd = r.where(RealmAuxData.class)
                     .equalTo("instanceKey", key)
                     .findFirst();
@@ -377,7 +405,7 @@ public class EventSync
                 break;
             case DOWNWARD_SYNC_COMPLETE: //finished the event read
                 //next time, start where we originally synced from
-                updateEventReads(realm, getSyncStart(realm), EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue(), EventSyncState.UPWARD_SYNC_MAX);
+                updateEventReads(realm, getSyncStart(realm), EthereumNetworkBase.getMaxEventFetch(chainId()).longValue(), EventSyncState.UPWARD_SYNC_MAX);
                 return;
             case DOWNWARD_SYNC: //successful intermediate downward sync
             case UPWARD_SYNC: //successful intermediate upward sync
@@ -397,7 +425,7 @@ public class EventSync
     {
         if (realm == null) return;
         realm.executeTransaction(r -> {
-            String key = TokensRealmSource.databaseKey(token.tokenInfo.chainId, token.getAddress());
+            String key = syncKey();
             RealmAuxData rd = r.where(RealmAuxData.class)
                     .equalTo("instanceKey", key)
                     .findFirst();
@@ -420,11 +448,11 @@ public class EventSync
     // If we're syncing downwards, work out what event block size we should read next
     private long calcNewIntervalSize(SyncDef sync, int evReads)
     {
-        if (sync.upwardSync) return EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
-        long endBlock = sync.eventReadEndBlock.longValue() == -1 ? TransactionsService.getCurrentBlock(token.tokenInfo.chainId).longValue()
+        if (sync.upwardSync) return EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
+        long endBlock = sync.eventReadEndBlock.longValue() == -1 ? TransactionsService.getCurrentBlock(chainId()).longValue()
                 : sync.eventReadEndBlock.longValue();
         long currentReadSize = endBlock - sync.eventReadStartBlock.longValue();
-        long maxLogReads = EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
+        long maxLogReads = EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
         // under the log limit?
         if (evReads == 0)
         {
@@ -437,7 +465,7 @@ public class EventSync
         }
         else if ((maxLogReads - evReads) > maxLogReads*0.25)
         {
-            currentReadSize += EthereumNetworkBase.getMaxEventFetch(token.tokenInfo.chainId).longValue();
+            currentReadSize += EthereumNetworkBase.getMaxEventFetch(chainId()).longValue();
         }
 
         return currentReadSize;
@@ -473,7 +501,7 @@ public class EventSync
         //register Transaction fetches
         for (String txHash : txHashes)
         {
-            TransactionsService.addTransactionHashFetch(txHash, token.tokenInfo.chainId, token.getWallet());
+            TransactionsService.addTransactionHashFetch(txHash, chainId(), token.getWallet());
         }
 
         return new Pair<>(eventCount, new Pair<>(rcvTokenIds, sendTokenIds));
@@ -481,65 +509,76 @@ public class EventSync
 
     private Pair<EthLog, EthLog> getTxLogs(Web3j web3j, EthFilter receiveFilter, EthFilter sendFilter) throws LogOverflowException, IOException
     {
-        if (EthereumNetworkBase.getBatchProcessingLimit(token.tokenInfo.chainId) > 0 && !batchProcessingError.contains(token.tokenInfo.chainId))
+        List<EthLog> logs = getLogs(web3j, Arrays.asList(receiveFilter, sendFilter));
+        return new Pair<>(logs.get(0), logs.get(1));
+    }
+
+    /**
+     * Fetch logs for each filter; as one JSON-RPC batch if the chain allows it
+     * @return logs in filter order
+     * @throws LogOverflowException if any of the fetches returned an error, eg too many results
+     */
+    public List<EthLog> getLogs(Web3j web3j, List<EthFilter> filters) throws LogOverflowException, IOException
+    {
+        if (filters.size() > 1 && EthereumNetworkBase.getBatchProcessingLimit(chainId()) > 0 && !batchProcessingError.contains(chainId()))
         {
-            return getBatchTxLogs(web3j, receiveFilter, sendFilter);
+            return getBatchLogs(web3j, filters);
         }
         else
         {
-            EthLog receiveLogs = web3j.ethGetLogs(receiveFilter).send();
-
-            if (receiveLogs.hasError())
+            List<EthLog> results = new ArrayList<>();
+            for (EthFilter filter : filters)
             {
-                throw new LogOverflowException(receiveLogs.getError());
-            }
+                EthLog logs = web3j.ethGetLogs(filter).send();
 
-            EthLog sentLogs = web3j.ethGetLogs(sendFilter).send();
+                if (logs.hasError())
+                {
+                    throw new LogOverflowException(logs.getError());
+                }
 
-            if (sentLogs.hasError())
-            {
-                throw new LogOverflowException(sentLogs.getError());
+                results.add(logs);
             }
 
-            return new Pair<>(receiveLogs, sentLogs);
+            return results;
         }
     }
 
-    private Pair<EthLog, EthLog> getBatchTxLogs(Web3j web3j, EthFilter receiveFilter, EthFilter sendFilter) throws LogOverflowException, IOException
+    private List<EthLog> getBatchLogs(Web3j web3j, List<EthFilter> filters) throws LogOverflowException, IOException
     {
         BatchResponse rsp;
 
         try
         {
-            rsp = web3j.newBatch()
-                    .add(web3j.ethGetLogs(receiveFilter))
-                    .add(web3j.ethGetLogs(sendFilter))
-                    .send();
+            BatchRequest batch = web3j.newBatch();
+            for (EthFilter filter : filters)
+            {
+                batch.add(web3j.ethGetLogs(filter));
+            }
+            rsp = batch.send();
         }
         catch (ClassCastException e)
         {
             rsp = null;
         }
 
-        if (rsp == null || rsp.getResponses().size() != 2)
+        if (rsp == null || rsp.getResponses().size() != filters.size())
         {
-            batchProcessingError.add(token.tokenInfo.chainId);
-            return getTxLogs(web3j, receiveFilter, sendFilter);
+            batchProcessingError.add(chainId());
+            return getLogs(web3j, filters);
         }
 
-        EthLog receiveLogs = (EthLog) rsp.getResponses().get(0);
-        EthLog sendLogs = (EthLog) rsp.getResponses().get(1);
-
-        if (receiveLogs.hasError())
-        {
-            throw new LogOverflowException(receiveLogs.getError());
-        }
-        else if (sendLogs.hasError())
+        List<EthLog> results = new ArrayList<>();
+        for (Response<?> response : rsp.getResponses())
         {
-            throw new LogOverflowException(sendLogs.getError());
+            EthLog logs = (EthLog) response;
+            if (logs.hasError())
+            {
+                throw new LogOverflowException(logs.getError());
+            }
+            results.add(logs);
         }
 
-        return new Pair<>(receiveLogs, sendLogs);
+        return results;
     }
 
     public String getActivityName(String toAddress)
@@ -648,12 +687,12 @@ public class EventSync
         if (activityName.equals("receive"))
         {
             instance.where(RealmTransfer.class)
-                    .like("hash", RealmTransfer.databaseKey(token.tokenInfo.chainId, hash))
+                    .like("hash", RealmTransfer.databaseKey(chainId(), hash))
                     .findAll().deleteAllFromRealm();
         }
 
         RealmTransfer matchingEntry = instance.where(RealmTransfer.class)
-                .equalTo("hash", RealmTransfer.databaseKey(token.tokenInfo.chainId, hash))
+                .equalTo("hash", RealmTransfer.databaseKey(chainId(), hash))
                 .equalTo("tokenAddress", token.tokenInfo.address)
                 .equalTo("eventName", activityName)
                 .equalTo("transferDetail", valueList)
@@ -662,7 +701,7 @@ public class EventSync
         if (matchingEntry == null) //prevent duplicates
         {
             matchingEntry = instance.createObject(RealmTransfer.class);
-            matchingEntry.setHashKey(token.tokenInfo.chainId, hash);
+            matchingEntry.setHashKey(chainId(), hash);
             matchingEntry.setTokenAddress(token.tokenInfo.address);
         }
 
@@ -675,7 +714,7 @@ public class EventSync
     {
         if (EVENT_SYNC_DEBUGGING)
         {
-            Timber.tag(TAG).i(token.tokenInfo.chainId + " " + token.tokenInfo.address + ": " + message);
+            Timber.tag(TAG).i(chainId() + " " + (token != null ? token.tokenInfo.address : syncAddress) + ": " + message);
         }
     }
 }
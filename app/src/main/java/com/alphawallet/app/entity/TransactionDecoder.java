@@ -1,7 +1,6 @@
 package com.alphawallet.app.entity;
 
 import static com.alphawallet.app.entity.TransactionDecoder.ReadState.ARGS;
-import static org.web3j.crypto.Keys.ADDRESS_LENGTH_IN_HEX;
 
 import com.alphawallet.app.web3.entity.Web3Transaction;
 
@@ -11,6 +10,7 @@ import org.web3j.utils.Numeric;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,25 +20,24 @@ import timber.log.Timber;
 /**
  * Created by James on 2/02/2018.
  *
- * TransactionDecoder currently only decode a transaction input in the
- * string format, which is strictly a string starting with "0x" and
- * with an even number of hex digits followed. (Probably should be
- * bytes but we work with string for now.) It is used only for one
- * thing at the moment: decodeInput(), which returns the decoded
- * input.
+ * TransactionDecoder decodes a transaction input. decode() works on the
+ * raw calldata bytes and returns an immutable DecodedCalldata;
+ * decodeInput() takes the "0x" hex string form and wraps the result in
+ * a TransactionInput. A single decoder can be shared between threads.
  */
 
 public class TransactionDecoder
 {
     public static final int FUNCTION_LENGTH = 10;
+    private static final int SELECTOR_BYTES = 4;
+    private static final int WORD_BYTES = 32;
+    private static final int ADDRESS_BYTES = 20;
+    private static final int MAX_STRING_WORD_CHARS = 64;
     private final static List<String> endContractSignatures = new ArrayList<>();
 
-    private int parseIndex;
+    //Only written during construction (and by addScanFunction), so decoding can run on any number of threads
     private Map<String, FunctionData> functionList;
 
-    private ReadState state = ARGS;
-    private int sigCount = 0;
-
     private FunctionData getUnknownFunction()
     {
         return new FunctionData("Contract Call", ContractType.OTHER);
@@ -51,44 +50,17 @@ public class TransactionDecoder
 
     public TransactionInput decodeInput(String input)
     {
-        ParseStage parseState = ParseStage.PARSE_FUNCTION;
-        parseIndex = 0;
-        //1. check function
-        TransactionInput thisData = new TransactionInput();
-        if (input == null || input.length() < 10)
+        TransactionInput thisData;
+        if (input == null || input.length() < FUNCTION_LENGTH)
         {
+            thisData = new TransactionInput();
             thisData.functionData = getUnknownFunction();
             return thisData;
         }
 
-        try
-        {
-            while (parseIndex < input.length() && !(parseState == ParseStage.FINISH))
-            {
-                switch (parseState)
-                {
-                    case PARSE_FUNCTION: //get function
-                        parseState = setFunction(thisData, readBytes(input, FUNCTION_LENGTH), input.length());
-                        break;
-                    case PARSE_ARGS: //now get params
-                        parseState = getParams(thisData, input);
-                        break;
-                    case FINISH:
-                        break;
-                    case ERROR:
-                        //Perform any future error handling here
-                        parseState = ParseStage.FINISH;
-                        break;
-                }
-
-                if (parseIndex < 0) break; //error
-            }
-        }
-        catch (Exception e)
-        {
-            Timber.e(e);
-        }
-
+        String hex = Numeric.cleanHexPrefix(input);
+        if (hex.length() % 2 == 1) hex = hex.substring(0, hex.length() - 1); //ignore a trailing half byte rather than shift every word
+        thisData = new TransactionInput(decode(Numeric.hexStringToByteArray(hex)));
         thisData.setOperationType(null, null); //works for most cases; for magiclink requires tx and wallet data - but we don't see many of these now
         return thisData;
     }
@@ -108,28 +80,40 @@ public class TransactionDecoder
         return thisData;
     }
 
-    private ParseStage setFunction(TransactionInput thisData, String input, int length)
+    /**
+     * Decode raw calldata. Reads the words in place with a cursor rather than cutting the hex input into Strings;
+     * only the values which are kept in the result are converted.
+     *
+     * Stateless and thread-safe: all parse state lives in the cursor, and the shared FunctionData isn't modified.
+     */
+    public DecodedCalldata decode(byte[] calldata)
     {
-        //first get expected arg list:
-        FunctionData data = functionList.get(input);
+        Cursor cursor = new Cursor(calldata);
+        if (calldata == null || calldata.length < SELECTOR_BYTES)
+        {
+            return cursor.build(getUnknownFunction(), null);
+        }
 
-        if (data != null)
+        String selector = Numeric.toHexString(calldata, 0, SELECTOR_BYTES, true);
+        cursor.pos = SELECTOR_BYTES;
+        FunctionData data = functionList.get(selector);
+        if (data == null)
         {
-            thisData.functionData = data;
-            thisData.arrayValues.clear();
-            thisData.addresses.clear();
-            thisData.sigData.clear();
-            thisData.miscData.clear();
-            thisData.functionData.functionRawHex = input;
+            data = getUnknownFunction();
+            data.functionRawHex = selector;
+            return cursor.build(data, selector);
         }
-        else
+
+        try
         {
-            thisData.functionData = getUnknownFunction();
-            thisData.functionData.functionRawHex = input;
-            return ParseStage.ERROR;
+            readParams(cursor, data);
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
         }
 
-        return ParseStage.PARSE_ARGS;
+        return cursor.build(data, selector);
     }
 
     enum ReadState
@@ -138,141 +122,191 @@ public class TransactionDecoder
         SIGNATURE
     }
 
-    private ParseStage getParams(TransactionInput thisData, String input)
+    /**
+     * Parse state for one decode. Positions are byte offsets into the calldata
+     */
+    private static class Cursor
     {
-        state = ARGS;
-        BigInteger count;
-        StringBuilder sb = new StringBuilder();
-        if (thisData.functionData != null && thisData.functionData.args != null)
+        final byte[] data;
+        int pos;
+        ReadState state = ARGS;
+        int sigCount = 0;
+
+        final List<String> addresses = new ArrayList<>();
+        final List<BigInteger> arrayValues = new ArrayList<>();
+        final List<String> sigData = new ArrayList<>();
+        final List<String> miscData = new ArrayList<>();
+        final List<String> hexArgs = new ArrayList<>();
+
+        Cursor(byte[] data)
         {
-            for (String type : thisData.functionData.args)
-            {
-                String argData = read256bits(input);
-                if (argData.equals("0")) break;
-                switch (type)
-                {
-                    case "bytes":
-                        sb.setLength(0);
-                        argData = read256bits(input);
-                        BigInteger dataCount = Numeric.toBigInt(argData);
-                        String hexBytes = readBytes(input, dataCount.intValue());
-                        thisData.miscData.add(hexBytes);
-                        thisData.hexArgs.add(Numeric.prependHexPrefix(hexBytes));
-                        break;
-                    case "string":
-                        count = new BigInteger(argData, 16);
-                        sb.setLength(0);
-                        argData = read256bits(input);
-                        if (count.intValue() > argData.length())
-                            count = BigInteger.valueOf(argData.length());
-                        for (int index = 0; index < (count.intValue() * 2); index += 2)
-                        {
-                            int v = Integer.parseInt(argData.substring(index, index + 2), 16);
-                            char c = (char) v;
-                            sb.append(c);
-                        }
-                        thisData.miscData.add(Numeric.cleanHexPrefix(sb.toString()));
+            this.data = data;
+        }
 
-                        //Should be ASCII, try to convert
-                        thisData.hexArgs.add(new String(Numeric.hexStringToByteArray(sb.toString())));
-                        break;
-                    case "address":
-                        if (argData.length() >= 64 - ADDRESS_LENGTH_IN_HEX)
-                        {
-                            String addr = Numeric.prependHexPrefix(argData.substring(64 - ADDRESS_LENGTH_IN_HEX));
-                            thisData.addresses.add(addr);
-                            thisData.hexArgs.add(addr);
-                        }
-                        break;
-                    case "bytes32":
-                        addArg(thisData, argData);
-                        break;
-                    case "bytes32[]":
-                    case "uint16[]":
-                    case "uint256[]":
-                        count = new BigInteger(argData, 16);
-                        for (int i = 0; i < count.intValue(); i++)
-                        {
-                            String inputData = read256bits(input);
-                            thisData.arrayValues.add(new BigInteger(inputData, 16));
-                            thisData.hexArgs.add(inputData);
-                            if (inputData.equals("0")) break;
-                        }
-                        break;
-                    case "uint256":
-                    case "uint":
-                        addArg(thisData, argData);
-                        break;
-                    case "uint8": //In our standards, we will put uint8 as the signature marker
-                        if (thisData.functionData.hasSig)
-                        {
-                            state = ReadState.SIGNATURE;
-                            sigCount = 0;
-                        }
-                        addArg(thisData, argData);
-                        break;
-                    case "nodata":
-                        //no need to store this data - eg placeholder to indicate presence of a vararg
-                        break;
-                    case "bool":
-                        //zero or one?
-                        BigInteger val = new BigInteger(argData, 16);
-                        thisData.hexArgs.add(val.longValue() == 0 ? "false" : "true");
-                        break;
-                    default:
-                        break;
-                }
-            }
+        /**
+         * @return offset of the next 256 bit word, or -1 if the calldata ends first
+         */
+        int readWord()
+        {
+            if (pos + WORD_BYTES > data.length) return -1;
+            int offset = pos;
+            pos += WORD_BYTES;
+            return offset;
         }
-        else
+
+        String hex(int offset, int length)
         {
-            return ParseStage.FINISH; //skip to end of read if there are no args in the spec
+            return Numeric.toHexString(data, offset, length, false);
         }
 
-        return ParseStage.FINISH;
+        //low 32 bits of the word, same as BigInteger.intValue()
+        int intValue(int offset)
+        {
+            int end = offset + WORD_BYTES;
+            return ((data[end - 4] & 0xFF) << 24) | ((data[end - 3] & 0xFF) << 16) | ((data[end - 2] & 0xFF) << 8) | (data[end - 1] & 0xFF);
+        }
+
+        //low 64 bits of the word are zero, same as BigInteger.longValue() == 0
+        boolean isLowLongZero(int offset)
+        {
+            for (int i = offset + WORD_BYTES - 8; i < offset + WORD_BYTES; i++)
+            {
+                if (data[i] != 0) return false;
+            }
+            return true;
+        }
+
+        DecodedCalldata build(FunctionData functionData, String selector)
+        {
+            return new DecodedCalldata(functionData, selector, addresses, arrayValues, sigData, miscData, hexArgs);
+        }
     }
 
-    private void addArg(TransactionInput thisData, String input)
+    private void readParams(Cursor cursor, FunctionData functionData)
     {
-        switch (state)
+        if (functionData.args == null) return;
+
+        for (String type : functionData.args)
         {
-            case ARGS:
-                thisData.miscData.add(Numeric.cleanHexPrefix(input));
-                break;
-            case SIGNATURE:
-                thisData.sigData.add(input);
-                if (++sigCount == 3) state = ARGS;
-                break;
+            int word = cursor.readWord();
+            if (word < 0) break;
+            switch (type)
+            {
+                case "bytes":
+                    readBytesArg(cursor);
+                    break;
+                case "string":
+                    readStringArg(cursor, cursor.intValue(word));
+                    break;
+                case "address":
+                    String addr = Numeric.toHexString(cursor.data, word + WORD_BYTES - ADDRESS_BYTES, ADDRESS_BYTES, true);
+                    cursor.addresses.add(addr);
+                    cursor.hexArgs.add(addr);
+                    break;
+                case "bytes32":
+                    addArg(cursor, cursor.hex(word, WORD_BYTES));
+                    break;
+                case "bytes32[]":
+                case "uint16[]":
+                case "uint256[]":
+                    int count = cursor.intValue(word);
+                    for (int i = 0; i < count; i++)
+                    {
+                        int element = cursor.readWord();
+                        if (element < 0)
+                        {
+                            cursor.arrayValues.add(BigInteger.ZERO);
+                            cursor.hexArgs.add("0");
+                            break;
+                        }
+                        cursor.arrayValues.add(new BigInteger(1, Arrays.copyOfRange(cursor.data, element, element + WORD_BYTES)));
+                        cursor.hexArgs.add(cursor.hex(element, WORD_BYTES));
+                    }
+                    break;
+                case "uint256":
+                case "uint":
+                    addArg(cursor, cursor.hex(word, WORD_BYTES));
+                    break;
+                case "uint8": //In our standards, we will put uint8 as the signature marker
+                    if (functionData.hasSig)
+                    {
+                        cursor.state = ReadState.SIGNATURE;
+                        cursor.sigCount = 0;
+                    }
+                    addArg(cursor, cursor.hex(word, WORD_BYTES));
+                    break;
+                case "nodata":
+                    //no need to store this data - eg placeholder to indicate presence of a vararg
+                    break;
+                case "bool":
+                    //zero or one?
+                    cursor.hexArgs.add(cursor.isLowLongZero(word) ? "false" : "true");
+                    break;
+                default:
+                    break;
+            }
         }
-        thisData.hexArgs.add(input);
     }
 
-    private String readBytes(String input, int bytes)
+    /**
+     * Note the length word is read as a count of hex digits, as the original hex decoder did, so results match it
+     */
+    private void readBytesArg(Cursor cursor)
     {
-        if ((parseIndex + bytes) <= input.length())
+        int countWord = cursor.readWord();
+        int nibbles = countWord < 0 ? 0 : cursor.intValue(countWord);
+        if (nibbles < 0) throw new IndexOutOfBoundsException("Invalid bytes length: " + nibbles);
+
+        String hexBytes;
+        if ((cursor.pos * 2 + nibbles) <= cursor.data.length * 2)
         {
-            String value = input.substring(parseIndex, parseIndex + bytes);
-            parseIndex += bytes;
-            return value;
+            hexBytes = cursor.hex(cursor.pos, (nibbles + 1) / 2);
+            if (nibbles % 2 == 1) hexBytes = hexBytes.substring(0, nibbles);
+            cursor.pos += (nibbles + 1) / 2;
         }
         else
         {
-            return "0";
+            hexBytes = "0";
         }
+
+        cursor.miscData.add(hexBytes);
+        cursor.hexArgs.add(Numeric.prependHexPrefix(hexBytes));
     }
 
-    private String read256bits(String input)
+    private void readStringArg(Cursor cursor, int count)
     {
-        if ((parseIndex + 64) <= input.length())
+        int word = cursor.readWord();
+        int available = word < 0 ? 1 : MAX_STRING_WORD_CHARS; //the hex decoder read a missing word as "0"
+        if (count > available) count = available;
+        if (count * 2 > (word < 0 ? 1 : MAX_STRING_WORD_CHARS))
         {
-            String value = input.substring(parseIndex, parseIndex + 64);
-            parseIndex += 64;
-            return value;
+            throw new IndexOutOfBoundsException("String longer than one word: " + count);
         }
-        else
+
+        StringBuilder sb = new StringBuilder();
+        for (int index = 0; index < count; index++)
+        {
+            sb.append((char) (cursor.data[word + index] & 0xFF));
+        }
+        cursor.miscData.add(Numeric.cleanHexPrefix(sb.toString()));
+
+        //Should be ASCII, try to convert
+        cursor.hexArgs.add(new String(Numeric.hexStringToByteArray(sb.toString())));
+    }
+
+    private void addArg(Cursor cursor, String input)
+    {
+        switch (cursor.state)
         {
-            return "0";
+            case ARGS:
+                cursor.miscData.add(Numeric.cleanHexPrefix(input));
+                break;
+            case SIGNATURE:
+                cursor.sigData.add(input);
+                if (++cursor.sigCount == 3) cursor.state = ARGS;
+                break;
         }
+        cursor.hexArgs.add(input);
     }
 
     private void addFunction(String method, ContractType type, boolean hasSig)
@@ -440,11 +474,6 @@ public class TransactionDecoder
         return highestType;
     }
 
-    enum ParseStage
-    {
-        PARSE_FUNCTION, PARSE_ARGS, FINISH, ERROR
-    }
-
     public Sign.SignatureData getSignatureData(TransactionInput data)
     {
         Sign.SignatureData sigData = null;
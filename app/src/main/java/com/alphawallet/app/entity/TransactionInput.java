@@ -62,6 +62,19 @@ public class TransactionInput
         hexArgs = new ArrayList<>();
     }
 
+    /**
+     * Wraps a decoded result. The argument lists are shared with the (immutable) decode result, not copied
+     */
+    public TransactionInput(DecodedCalldata decoded)
+    {
+        functionData = decoded.functionData;
+        arrayValues = decoded.arrayValues;
+        addresses = decoded.addresses;
+        sigData = decoded.sigData;
+        miscData = decoded.miscData;
+        hexArgs = decoded.hexArgs;
+    }
+
     //Addresses are in 256bit format
     public boolean containsAddress(String address)
     {
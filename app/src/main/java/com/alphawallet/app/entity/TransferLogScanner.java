@@ -0,0 +1,288 @@
+package com.alphawallet.app.entity;
+
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.service.TransactionsService;
+import com.alphawallet.token.entity.ContractAddress;
+
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.TypeEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import io.realm.Realm;
+
+/**
+ * Scans a chain for NFTs received by the wallet from contracts we don't track yet, so they can be added.
+ *
+ * Two eth_getLogs cover all contracts, sent as one batch where the chain allows:
+ *   1. Transfer with the wallet as receiver (topic2): ERC721 receives
+ *   2. TransferSingle or TransferBatch with the wallet as receiver (topic3): ERC1155 receives
+ *
+ * ERC20 receives also match the first filter; they're told apart by the unindexed value (3 topics rather than 4)
+ * and dropped. Tokens already tracked are left to their own balance updates.
+ *
+ * The block window is chain-wide and uses the same adaptive sizing as the per-token EventSync.
+ */
+public class TransferLogScanner
+{
+    public static final String SYNC_KEY = "wallet-transfers";
+    private static final int MAX_WINDOW_RETRIES = 3;
+
+    public static final Event TRANSFER = new Event("Transfer",
+            Arrays.asList(new TypeReference<Address>(true) { }, new TypeReference<Address>(true) { },
+                    new TypeReference<Uint256>(true) { }));
+    public static final Event TRANSFER_SINGLE = new Event("TransferSingle",
+            Arrays.asList(new TypeReference<Address>(true) { }, new TypeReference<Address>(true) { },
+                    new TypeReference<Address>(true) { }, new TypeReference<Uint256>() { }, new TypeReference<Uint256>() { }));
+    public static final Event TRANSFER_BATCH = new Event("TransferBatch",
+            Arrays.asList(new TypeReference<Address>(true) { }, new TypeReference<Address>(true) { },
+                    new TypeReference<Address>(true) { }, new TypeReference<DynamicArray<Uint256>>() { },
+                    new TypeReference<DynamicArray<Uint256>>() { }));
+
+    private static final String TRANSFER_TOPIC = EventEncoder.encode(TRANSFER);
+    private static final String TRANSFER_SINGLE_TOPIC = EventEncoder.encode(TRANSFER_SINGLE);
+    private static final String TRANSFER_BATCH_TOPIC = EventEncoder.encode(TRANSFER_BATCH);
+
+    public interface TokenLookup
+    {
+        Token getToken(long chainId, String address);
+    }
+
+    public static class ScanResult
+    {
+        public final int eventCount;
+        public final List<ContractAddress> discovered;
+
+        ScanResult(int eventCount, List<ContractAddress> discovered)
+        {
+            this.eventCount = eventCount;
+            this.discovered = discovered;
+        }
+    }
+
+    //logs received from one contract for one event
+    static class ContractLogs
+    {
+        final String address;
+        final Event event;
+        final List<EthLog.LogResult> received = new ArrayList<>();
+
+        ContractLogs(String address, Event event)
+        {
+            this.address = address;
+            this.event = event;
+        }
+
+        boolean isNonFungible()
+        {
+            if (event != TRANSFER) return true;
+            return !received.isEmpty() && ((Log) received.get(0).get()).getTopics().size() == 4; //ERC721 indexes the tokenId
+        }
+    }
+
+    private final long chainId;
+    private final String walletAddress;
+    private final EventSync eventSync;
+
+    public TransferLogScanner(long chainId, String walletAddress)
+    {
+        this.chainId = chainId;
+        this.walletAddress = walletAddress.toLowerCase(Locale.ROOT);
+        this.eventSync = new EventSync(chainId, SYNC_KEY);
+    }
+
+    /**
+     * Scan the next block window and advance it
+     *
+     * @param tokens lookup of the tokens already tracked
+     * @return untracked NFT contracts found; empty if the window couldn't be read, in which case it's adjusted for the next call
+     */
+    public ScanResult scan(Web3j web3j, Realm realm, TokenLookup tokens) throws IOException
+    {
+        for (int attempt = 0; attempt < MAX_WINDOW_RETRIES; attempt++)
+        {
+            SyncDef sync = eventSync.getSyncDef(realm);
+            if (sync == null) return empty();
+
+            DefaultBlockParameter startBlock = DefaultBlockParameter.valueOf(sync.eventReadStartBlock);
+            DefaultBlockParameter endBlock = sync.eventReadEndBlock.compareTo(BigInteger.valueOf(-1L)) == 0
+                    ? DefaultBlockParameterName.LATEST : DefaultBlockParameter.valueOf(sync.eventReadEndBlock);
+
+            List<EthLog> logs;
+            try
+            {
+                logs = eventSync.getLogs(web3j, buildFilters(walletAddress, startBlock, endBlock));
+            }
+            catch (LogOverflowException e)
+            {
+                //window too large for the node; handleEthLogError shrinks it. Otherwise retry next time
+                if (eventSync.handleEthLogError(e.error, startBlock, endBlock, sync, realm)) continue;
+                return empty();
+            }
+
+            int eventCount = 0;
+            for (EthLog log : logs)
+            {
+                eventCount = Math.max(eventCount, log.getLogs().size());
+            }
+
+            ScanResult result = new ScanResult(eventCount, findUntracked(groupLogs(walletAddress, logs), tokens));
+            eventSync.updateEventReads(realm, sync, TransactionsService.getCurrentBlock(chainId), eventCount);
+            return result;
+        }
+
+        return empty();
+    }
+
+    private static ScanResult empty()
+    {
+        return new ScanResult(0, new ArrayList<>());
+    }
+
+    public void reset(Realm realm)
+    {
+        eventSync.resetEventReads(realm);
+    }
+
+    private List<ContractAddress> findUntracked(List<ContractLogs> grouped, TokenLookup tokens)
+    {
+        List<ContractAddress> discovered = new ArrayList<>();
+        Set<String> discoveredAddresses = new HashSet<>();
+
+        for (ContractLogs contractLogs : grouped)
+        {
+            if (contractLogs.isNonFungible() && tokens.getToken(chainId, contractLogs.address) == null
+                    && discoveredAddresses.add(contractLogs.address))
+            {
+                discovered.add(new ContractAddress(chainId, contractLogs.address));
+            }
+        }
+
+        return discovered;
+    }
+
+    static List<EthFilter> buildFilters(String walletAddress, DefaultBlockParameter startBlock, DefaultBlockParameter endBlock)
+    {
+        String walletTopic = Numeric.prependHexPrefix(TypeEncoder.encode(new Address(walletAddress)));
+
+        EthFilter received721 = anyContract(startBlock, endBlock)
+                .addSingleTopic(TRANSFER_TOPIC)
+                .addNullTopic()
+                .addSingleTopic(walletTopic);
+
+        EthFilter received1155 = anyContract(startBlock, endBlock)
+                .addOptionalTopics(TRANSFER_SINGLE_TOPIC, TRANSFER_BATCH_TOPIC)
+                .addNullTopic()
+                .addNullTopic()
+                .addSingleTopic(walletTopic);
+
+        return Arrays.asList(received721, received1155);
+    }
+
+    private static EthFilter anyContract(DefaultBlockParameter startBlock, DefaultBlockParameter endBlock)
+    {
+        //no address field at all; some nodes reject an empty address list
+        return new EthFilter(startBlock, endBlock, (List<String>) null);
+    }
+
+    /**
+     * Merge the filter results, keep the transfers to the wallet, split them by contract and event, and put each list
+     * in chain order.
+     */
+    static List<ContractLogs> groupLogs(String walletAddress, List<EthLog> results)
+    {
+        String walletTopic = Numeric.prependHexPrefix(TypeEncoder.encode(new Address(walletAddress)));
+        Map<String, ContractLogs> grouped = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+
+        for (EthLog result : results)
+        {
+            if (result.getLogs() == null) continue;
+            for (EthLog.LogResult<?> logResult : result.getLogs())
+            {
+                if (!(logResult.get() instanceof Log)) continue;
+                Log log = (Log) logResult.get();
+                List<String> topics = log.getTopics();
+                if (log.getAddress() == null || topics == null || topics.isEmpty()) continue;
+
+                String topic0 = topics.get(0).toLowerCase(Locale.ROOT);
+                Event event;
+                int fromIndex;
+                if (topic0.equals(TRANSFER_TOPIC))
+                {
+                    event = TRANSFER;
+                    fromIndex = 1;
+                }
+                else if (topic0.equals(TRANSFER_SINGLE_TOPIC))
+                {
+                    event = TRANSFER_SINGLE;
+                    fromIndex = 2;
+                }
+                else if (topic0.equals(TRANSFER_BATCH_TOPIC))
+                {
+                    event = TRANSFER_BATCH;
+                    fromIndex = 2;
+                }
+                else
+                {
+                    continue;
+                }
+
+                int toIndex = fromIndex + 1;
+                if (topics.size() <= toIndex || !topics.get(toIndex).equalsIgnoreCase(walletTopic)
+                        || !seen.add(log.getTransactionHash() + "-" + log.getLogIndexRaw()))
+                {
+                    continue;
+                }
+
+                String address = log.getAddress().toLowerCase(Locale.ROOT);
+                ContractLogs contractLogs = grouped.get(address + "-" + topic0);
+                if (contractLogs == null)
+                {
+                    contractLogs = new ContractLogs(address, event);
+                    grouped.put(address + "-" + topic0, contractLogs);
+                }
+
+                contractLogs.received.add(logResult);
+            }
+        }
+
+        Comparator<EthLog.LogResult> chainOrder = Comparator
+                .comparing((EthLog.LogResult l) -> orderValue(((Log) l.get()).getBlockNumberRaw()))
+                .thenComparing(l -> orderValue(((Log) l.get()).getLogIndexRaw()));
+
+        for (ContractLogs contractLogs : grouped.values())
+        {
+            contractLogs.received.sort(chainOrder);
+        }
+
+        return new ArrayList<>(grouped.values());
+    }
+
+    private static BigInteger orderValue(String hexValue)
+    {
+        return hexValue != null ? Numeric.decodeQuantity(hexValue) : BigInteger.ZERO;
+    }
+}
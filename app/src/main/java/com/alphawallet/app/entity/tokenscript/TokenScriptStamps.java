@@ -0,0 +1,148 @@
+package com.alphawallet.app.entity.tokenscript;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Size and modified time of each TokenScript file when it was last hashed.
+ *
+ * At startup a file whose size and time still match reuses its recorded hash instead of being read through MD5.
+ * A file modified within STAMP_GRANULARITY_MS of being hashed isn't recorded: an edit in the same filesystem
+ * time tick wouldn't change the stamp, so it's hashed again next time.
+ */
+public class TokenScriptStamps
+{
+    private static final long STAMP_GRANULARITY_MS = 2000;
+
+    private final File store;
+    private final Map<String, Stamp> stamps = new ConcurrentHashMap<>();
+    private final AtomicInteger hashed = new AtomicInteger();
+    private final AtomicInteger reused = new AtomicInteger();
+    private volatile boolean changed = false;
+
+    private static class Stamp
+    {
+        final long length;
+        final long modified;
+        final String hash;
+
+        Stamp(long length, long modified, String hash)
+        {
+            this.length = length;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    public TokenScriptStamps(File store)
+    {
+        this.store = store;
+        load();
+    }
+
+    /**
+     * @return MD5 hash of the file, from the recorded stamp if the file hasn't changed since
+     */
+    public String hashOf(TokenScriptFile tsf)
+    {
+        String path = tsf.getAbsolutePath();
+        long length = tsf.length();
+        long modified = tsf.lastModified();
+        Stamp stamp = stamps.get(path);
+        if (stamp != null && stamp.length == length && stamp.modified == modified)
+        {
+            reused.incrementAndGet();
+            return stamp.hash;
+        }
+
+        String hash = tsf.calcMD5();
+        hashed.incrementAndGet();
+        if (modified < System.currentTimeMillis() - STAMP_GRANULARITY_MS)
+        {
+            stamps.put(path, new Stamp(length, modified, hash));
+            changed = true;
+        }
+        else if (stamps.remove(path) != null)
+        {
+            changed = true;
+        }
+
+        return hash;
+    }
+
+    public void resetCounts()
+    {
+        hashed.set(0);
+        reused.set(0);
+    }
+
+    public int getHashedCount()
+    {
+        return hashed.get();
+    }
+
+    public int getReusedCount()
+    {
+        return reused.get();
+    }
+
+    /**
+     * Write the stamps if any changed, dropping files which no longer exist
+     */
+    public void save()
+    {
+        if (!changed) return;
+        changed = false;
+
+        File tmp = new File(store.getPath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmp)))
+        {
+            for (Map.Entry<String, Stamp> entry : stamps.entrySet())
+            {
+                if (!new File(entry.getKey()).exists()) continue;
+                Stamp stamp = entry.getValue();
+                writer.write(stamp.hash + "\t" + stamp.length + "\t" + stamp.modified + "\t" + entry.getKey());
+                writer.newLine();
+            }
+        }
+        catch (IOException e)
+        {
+            Timber.w(e);
+            tmp.delete();
+            return;
+        }
+
+        if (!tmp.renameTo(store)) tmp.delete();
+    }
+
+    private void load()
+    {
+        if (!store.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(store)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 4) continue;
+                stamps.put(fields[3], new Stamp(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+            }
+        }
+        catch (Exception e)
+        {
+            //unreadable; everything is hashed again and the store rewritten
+            Timber.w(e);
+            stamps.clear();
+        }
+    }
+}
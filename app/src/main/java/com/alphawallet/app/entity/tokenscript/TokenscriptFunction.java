@@ -6,7 +6,7 @@ import static org.web3j.protocol.core.methods.request.Transaction.createEthCallT
 import android.text.TextUtils;
 
 import com.alphawallet.app.entity.tokens.Token;
-import com.alphawallet.app.repository.TokenRepository;
+import com.alphawallet.app.service.EthCallCache;
 import com.alphawallet.app.util.BalanceUtils;
 import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.As;
@@ -128,7 +128,6 @@ import org.web3j.abi.datatypes.generated.Uint80;
 import org.web3j.abi.datatypes.generated.Uint88;
 import org.web3j.abi.datatypes.generated.Uint96;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.request.EthFilter;
 import org.web3j.protocol.core.methods.response.EthCall;
 import org.web3j.protocol.core.methods.response.EthLog;
@@ -143,11 +142,16 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -157,6 +161,25 @@ import timber.log.Timber;
 public abstract class TokenscriptFunction
 {
     public static final String TOKENSCRIPT_CONVERSION_ERROR = "<error>";
+    private static final int CALL_CONCURRENCY = 8; //attribute calls in flight at once; the node client batches them
+
+    private static class PendingCall
+    {
+        final Attribute attr;
+        final ContractAddress address;
+        final BigInteger tokenId;
+        final Function function;
+        final TransactionResult cachedResult;
+
+        PendingCall(Attribute attr, ContractAddress address, BigInteger tokenId, Function function, TransactionResult cachedResult)
+        {
+            this.attr = attr;
+            this.address = address;
+            this.tokenId = tokenId;
+            this.function = function;
+            this.cachedResult = cachedResult;
+        }
+    }
 
     private final Map<String, Attribute> localAttrs = new ConcurrentHashMap<>();
     private final Map<String, String> refTags = new ConcurrentHashMap<>();
@@ -777,7 +800,7 @@ public abstract class TokenscriptFunction
             else
             {
                 //now push the transaction
-                result = callSmartContractFunction(TokenRepository.getWeb3jService(contractAddress.chainId), transaction, contractAddress.address, token.getWallet());
+                result = callSmartContractFunction(contractAddress.chainId, transaction, contractAddress.address, token.getWallet());
             }
 
             transactionResult.result = handleTransactionResult(transactionResult, transaction, result, attr, System.currentTimeMillis());
@@ -787,10 +810,10 @@ public abstract class TokenscriptFunction
 
     public String callSmartContract(long chainId, String contractAddress, Function function)
     {
-        return callSmartContractFunction(TokenRepository.getWeb3jService(chainId), function, contractAddress, ZERO_ADDRESS);
+        return callSmartContractFunction(chainId, function, contractAddress, ZERO_ADDRESS);
     }
 
-    private String callSmartContractFunction(Web3j web3j,
+    private String callSmartContractFunction(long chainId,
                                              Function function, String contractAddress, String walletAddr)
     {
         String encodedFunction = FunctionEncoder.encode(function);
@@ -799,7 +822,7 @@ public abstract class TokenscriptFunction
         {
             org.web3j.protocol.core.methods.request.Transaction transaction
                     = createEthCallTransaction(walletAddr, contractAddress, encodedFunction);
-            EthCall response = web3j.ethCall(transaction, DefaultBlockParameterName.LATEST).send();
+            EthCall response = EthCallCache.ethCall(chainId, getWeb3j(chainId), transaction);
 
             return response.getValue();
         }
@@ -815,6 +838,11 @@ public abstract class TokenscriptFunction
         }
     }
 
+    protected Web3j getWeb3j(long chainId)
+    {
+        return getWeb3jService(chainId);
+    }
+
     public String resolveReference(Token token, TokenscriptElement element, BigInteger tokenId, TokenDefinition definition, AttributeInterface attrIf)
     {
         TokenScriptResult.Attribute attrRes = token.getAttributeResult(element.ref, tokenId);
@@ -945,12 +973,84 @@ public abstract class TokenscriptFunction
         }
     }
 
+    /**
+     * Resolve function attributes for a set of tokenIds ahead of fetchAttrResult, which then finds the results in the
+     * token's attribute results and the TransactionResult cache.
+     *
+     * Only calls which fetchAttrResult would make are planned, and each distinct one once: tokenId agnostic attributes
+     * are called for tokenId zero only. The calls are made as the wallet, exactly as fetchAttrResult makes them, and run
+     * concurrently so the node client combines them into JSON-RPC batches (see RpcBatcher). They aren't sent through
+     * Multicall, where the contract would see the Multicall contract as msg.sender.
+     */
+    public void prefetchAttrResults(Token token, List<Attribute> attrs, List<BigInteger> tokenIds, TokenDefinition td, AttributeInterface attrIf)
+    {
+        Map<Long, List<PendingCall>> chainCalls = new HashMap<>();
+        Set<String> planned = new HashSet<>();
+
+        for (Attribute attr : attrs)
+        {
+            if (attr == null || attr.function == null || attr.event != null) continue; //static and event attributes don't need a call
+
+            ContractAddress useAddress = new ContractAddress(attr.function);
+            long lastTxUpdate = attrIf.getLastTokenUpdate(useAddress.chainId, useAddress.address);
+            for (BigInteger tokenId : tokenIds)
+            {
+                BigInteger useTokenId = td.useZeroForTokenIdAgnostic(attr.name, tokenId);
+                if (!planned.add(attr.name + "-" + useTokenId) || token.getAttributeResult(attr.name, useTokenId) != null) continue;
+
+                TransactionResult cachedResult = attrIf.getFunctionResult(useAddress, attr, useTokenId);
+                if (!attr.isVolatile() && (attrIf.resolveOptimisedAttr(useAddress, attr, cachedResult) || !cachedResult.needsUpdating(lastTxUpdate)))
+                {
+                    continue; //cached value is still good
+                }
+
+                Function function = generateTransactionFunction(token, useTokenId, td, attr.function, attrIf);
+                if (function.getInputParameters() == null) continue; //couldn't resolve the params; leave it to fetchAttrResult
+
+                chainCalls.computeIfAbsent(useAddress.chainId, k -> new ArrayList<>())
+                        .add(new PendingCall(attr, useAddress, useTokenId, function, cachedResult));
+            }
+        }
+
+        for (Map.Entry<Long, List<PendingCall>> entry : chainCalls.entrySet())
+        {
+            callConcurrently(token, entry.getKey(), entry.getValue(), attrIf);
+        }
+    }
+
+    private void callConcurrently(Token token, long chainId, List<PendingCall> calls, AttributeInterface attrIf)
+    {
+        Observable.fromIterable(calls)
+                .flatMap(call -> Single.fromCallable(() -> {
+                            String response = callSmartContractFunction(chainId, call.function, call.address.address, token.getWallet());
+                            storeCallResult(token, call, response, attrIf);
+                            return call;
+                        })
+                        .subscribeOn(Schedulers.io())
+                        .onErrorReturnItem(call)
+                        .toObservable(), CALL_CONCURRENCY)
+                .ignoreElements()
+                .blockingAwait();
+    }
+
+    /**
+     * Same handling as the result of fetchResultFromEthereum in fetchAttrResult
+     */
+    private void storeCallResult(Token token, PendingCall call, String response, AttributeInterface attrIf)
+    {
+        TransactionResult transactionResult = new TransactionResult(call.address.chainId, call.address.address, call.tokenId, call.attr);
+        transactionResult.result = handleTransactionResult(transactionResult, call.function, response, call.attr, System.currentTimeMillis());
+        addParseResultIfValid(token, call.tokenId, call.attr, transactionResult);
+        restoreFromDBIfRequired(transactionResult, call.cachedResult);
+        attrIf.storeAuxData(attrIf.getWalletAddr(), transactionResult);
+    }
+
     private Single<TokenScriptResult.Attribute> getEventResult(TransactionResult txResult, Attribute attr, BigInteger tokenId, AttributeInterface attrIf)
     {
         //fetch the function
         return Single.fromCallable(() -> {
             String walletAddress = attrIf.getWalletAddr();
-            Web3j web3j = getWeb3jService(attr.event.getEventChainId());
+            Web3j web3j = getWeb3j(attr.event.getEventChainId());
             List<BigInteger> tokenIds = new ArrayList<>(Collections.singletonList(tokenId));
             EthFilter filter = EventUtils.generateLogFilter(attr.event, tokenIds, attrIf);
             EthLog ethLogs = web3j.ethGetLogs(filter).send();
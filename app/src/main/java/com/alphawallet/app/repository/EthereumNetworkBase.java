@@ -76,6 +76,16 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
 
     public static final String CLASSIC_RPC_URL = "https://rpc.ankr.com/xdc";
 
+    //Additional public nodes. AWHttpService routes calls across the whole node set by latency and error rate,
+    //and hedges slow calls to the next node, so adding nodes here improves tail latency.
+    private static final LongSparseArray<String[]> additionalNodes = new LongSparseArray<String[]>()
+    {
+        {
+            put(MAINNET_ID, new String[] { "https://erpc.apothem.network" });
+            put(CLASSIC_ID, new String[] { "https://rpc.xinfin.network", "https://erpc.xinfin.network" });
+        }
+    };
+
     //All chains that have fiat/real value (not testnet) must be put here
     //Note: This list also determines the order of display for main net chains in the wallet.
     //If your wallet prioritises xDai for example, you may want to move the XDAI_ID to the front of this list,
@@ -172,6 +182,11 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
     //These chains don't allow custom gas
     private static final List<Long> hasOpenSeaAPI = Arrays.asList(MAINNET_ID);
 
+    //Chains with the canonical Multicall3 deployment. Balance checks on these chains are batched into a single aggregate3 call.
+    //If you add a chain here, check the contract is present at MULTICALL3_ADDRESS first, otherwise balances will fall back to single calls each cycle
+    public static final String MULTICALL3_ADDRESS = "0xcA11bde05977b3631167028862bE2a173976CA11";
+    private static final List<Long> hasMulticall3 = Arrays.asList(MAINNET_ID, CLASSIC_ID);
+
     private static final LongSparseArray<BigInteger> blockGasLimit = new LongSparseArray<BigInteger>()
     {
         {
@@ -205,6 +220,18 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
         }
     }
 
+    public static String getMulticallAddress(long chainId)
+    {
+        if (hasMulticall3.contains(chainId))
+        {
+            return MULTICALL3_ADDRESS;
+        }
+        else
+        {
+            return "";
+        }
+    }
+
     /**
      * This function determines the order in which chains appear in the main wallet view
      *
@@ -333,6 +360,7 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
                     }
 
                     networkMap.put(info.chainId, info);
+                    Web3jClientRegistry.invalidate(info.chainId);
                     Boolean value = mapToTestNet.get(info.chainId);
                     boolean isTestnet = value != null && value;
                     if (!isTestnet && !hasValue.contains(info.chainId))
@@ -393,6 +421,7 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
             }
             mapToTestNet.put(info.chainId, isTestnet);
             networkMap.put(info.chainId, info);
+            Web3jClientRegistry.invalidate(info.chainId);
         }
 
         private void addNetwork(NetworkInfo info, boolean isTestnet)
@@ -408,6 +437,7 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
             }
             mapToTestNet.put(info.chainId, isTestnet);
             networkMap.put(info.chainId, info);
+            Web3jClientRegistry.invalidate(info.chainId);
         }
 
         public void remove(long chainId)
@@ -431,6 +461,7 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
             hasValue.remove(chainId);
             mapToTestNet.remove(chainId);
             networkMap.remove(chainId);
+            Web3jClientRegistry.invalidate(chainId);
         }
     }
 
@@ -649,6 +680,42 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
         return hasValue;
     }
 
+    /**
+     * Full node set for a chain: primary, secondary, then any additional public nodes.
+     * Custom networks, or built-in networks where the user has changed the RPC, only use the nodes the user configured.
+     */
+    public static List<String> getNodeURLs(long chainId)
+    {
+        return buildNodeList(getNodeURLByNetworkId(chainId), chainId);
+    }
+
+    public static List<String> getNodeURLsForEvents(long chainId)
+    {
+        return buildNodeList(getNodeURLForEvents(chainId), chainId);
+    }
+
+    private static List<String> buildNodeList(String primaryNode, long chainId)
+    {
+        List<String> nodes = new ArrayList<>();
+        nodes.add(primaryNode);
+        String secondaryNode = getSecondaryNodeURL(chainId);
+        if (!TextUtils.isEmpty(secondaryNode) && !nodes.contains(secondaryNode)) nodes.add(secondaryNode);
+        if (!TextUtils.isEmpty(getNodeURLByNetworkId(chainId)) && !nodes.contains(getNodeURLByNetworkId(chainId))) nodes.add(getNodeURLByNetworkId(chainId));
+
+        NetworkInfo info = networkMap.get(chainId);
+        NetworkInfo builtIn = builtinNetworkMap.get(chainId);
+        String[] extraNodes = additionalNodes.get(chainId);
+        if (info != null && builtIn != null && extraNodes != null && info.rpcServerUrl.equals(builtIn.rpcServerUrl))
+        {
+            for (String node : extraNodes)
+            {
+                if (!nodes.contains(node)) nodes.add(node);
+            }
+        }
+
+        return nodes;
+    }
+
     public static String getSecondaryNodeURL(long networkId)
     {
         NetworkInfo info = networkMap.get(networkId);
@@ -0,0 +1,174 @@
+package com.alphawallet.app.repository;
+
+import static org.web3j.protocol.core.methods.request.Transaction.createEthCallTransaction;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encoder/decoder for the Multicall3 aggregate3 call: aggregate3((address,bool,bytes)[]) returns ((bool,bytes)[])
+ * Each call is flagged allowFailure so one reverting contract doesn't fail the whole batch.
+ *
+ * The tuple arrays are encoded by hand; it's a fixed layout and avoids the reflection based struct decoding in web3j.
+ */
+public class Multicall3
+{
+    // keccak256("aggregate3((address,bool,bytes)[])")
+    private static final String AGGREGATE3_SELECTOR = "82ad56cb";
+    private static final int WORD = 32;
+
+    public static class Call
+    {
+        public final String target;
+        public final byte[] callData;
+
+        public Call(String target, String encodedFunction)
+        {
+            this.target = target;
+            this.callData = Numeric.hexStringToByteArray(encodedFunction);
+        }
+
+        public Call(String target, Function function)
+        {
+            this(target, FunctionEncoder.encode(function));
+        }
+    }
+
+    public static class Result
+    {
+        public final boolean success;
+        public final String returnData;
+
+        public Result(boolean success, String returnData)
+        {
+            this.success = success;
+            this.returnData = returnData;
+        }
+    }
+
+    /**
+     * Multicall3 helper which reads the native balance of an address, so chain balance can go into the same batch as the ERC20 balances
+     */
+    public static Function getEthBalance(String address)
+    {
+        return new Function("getEthBalance",
+                Collections.singletonList(new Address(address)),
+                Collections.singletonList(new TypeReference<Uint256>() {}));
+    }
+
+    /**
+     * Execute the calls as one eth_call against the Multicall3 contract
+     *
+     * @return results in call order, or null if the batch itself could not be executed (no contract, node error)
+     */
+    public static List<Result> aggregate(Web3j web3j, String multicallAddress, String fromAddress, List<Call> calls) throws IOException
+    {
+        if (calls.isEmpty()) return new ArrayList<>();
+
+        EthCall response = web3j.ethCall(createEthCallTransaction(fromAddress, multicallAddress, encodeAggregate3(calls)),
+                DefaultBlockParameterName.LATEST).send();
+
+        if (response.hasError() || response.getValue() == null)
+        {
+            return null;
+        }
+
+        List<Result> results = decodeAggregate3(response.getValue());
+        return results.size() == calls.size() ? results : null;
+    }
+
+    public static String encodeAggregate3(List<Call> calls)
+    {
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        long[] offsets = new long[calls.size()];
+        long offset = (long) calls.size() * WORD;
+
+        for (int i = 0; i < calls.size(); i++)
+        {
+            Call call = calls.get(i);
+            offsets[i] = offset;
+            writeWord(tail, Numeric.toBigInt(call.target));
+            writeWord(tail, BigInteger.ONE); //allowFailure
+            writeWord(tail, BigInteger.valueOf(3 * WORD)); //offset to callData within the tuple
+            writeWord(tail, BigInteger.valueOf(call.callData.length));
+            int padded = paddedLength(call.callData.length);
+            tail.write(call.callData, 0, call.callData.length);
+            tail.write(new byte[padded - call.callData.length], 0, padded - call.callData.length);
+            offset += 4 * WORD + padded;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeWord(out, BigInteger.valueOf(WORD)); //offset to array
+        writeWord(out, BigInteger.valueOf(calls.size()));
+        for (long o : offsets)
+        {
+            writeWord(out, BigInteger.valueOf(o));
+        }
+        byte[] tailBytes = tail.toByteArray();
+        out.write(tailBytes, 0, tailBytes.length);
+
+        return "0x" + AGGREGATE3_SELECTOR + Numeric.toHexStringNoPrefix(out.toByteArray());
+    }
+
+    public static List<Result> decodeAggregate3(String hexResult)
+    {
+        List<Result> results = new ArrayList<>();
+        byte[] data = Numeric.hexStringToByteArray(hexResult);
+        if (data.length < 2 * WORD) return results;
+
+        int arrayStart = readInt(data, 0);
+        int count = readInt(data, arrayStart);
+        int base = arrayStart + WORD; //tuple offsets are relative to the word after the length
+
+        for (int i = 0; i < count; i++)
+        {
+            int tupleStart = base + readInt(data, base + i * WORD);
+            boolean success = readInt(data, tupleStart) != 0;
+            int bytesStart = tupleStart + readInt(data, tupleStart + WORD);
+            int length = readInt(data, bytesStart);
+            if (bytesStart + WORD + length > data.length)
+            {
+                throw new IndexOutOfBoundsException("Malformed aggregate3 response");
+            }
+            String returnData = Numeric.toHexString(data, bytesStart + WORD, length, true);
+            results.add(new Result(success, returnData));
+        }
+
+        return results;
+    }
+
+    private static void writeWord(ByteArrayOutputStream out, BigInteger value)
+    {
+        byte[] word = Numeric.toBytesPadded(value, WORD);
+        out.write(word, 0, WORD);
+    }
+
+    private static int readInt(byte[] data, int position)
+    {
+        if (position + WORD > data.length)
+        {
+            throw new IndexOutOfBoundsException("Malformed aggregate3 response");
+        }
+        return new BigInteger(1, Arrays.copyOfRange(data, position, position + WORD)).intValueExact();
+    }
+
+    private static int paddedLength(int length)
+    {
+        return ((length + WORD - 1) / WORD) * WORD;
+    }
+}
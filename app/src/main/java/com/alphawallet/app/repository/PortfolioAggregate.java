@@ -0,0 +1,212 @@
+package com.alphawallet.app.repository;
+
+import com.alphawallet.app.entity.tokendata.TokenGroup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running fiat value of one wallet's tokens, kept per chain and per token group.
+ *
+ * Each holding's contribution (balance x price, and the value 24h ago from the percentage change) is held alongside
+ * the totals. A balance or price change recomputes that one contribution and applies the difference to the totals,
+ * so reading a total doesn't touch the database. Holdings and prices are keyed by TokensRealmSource.databaseKey,
+ * with chain currencies under "eth" as their tickers are.
+ */
+public class PortfolioAggregate
+{
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    private static final int VALUE_SCALE = 18;
+
+    public static class Totals
+    {
+        public BigDecimal value = BigDecimal.ZERO;
+        public BigDecimal historical = BigDecimal.ZERO; //value at the prices of 24h ago
+
+        private void add(BigDecimal dValue, BigDecimal dHistorical)
+        {
+            value = value.add(dValue);
+            historical = historical.add(dHistorical);
+        }
+
+        private void add(Totals other)
+        {
+            add(other.value, other.historical);
+        }
+    }
+
+    private static class Price
+    {
+        final BigDecimal price;
+        final BigDecimal change24h;
+
+        Price(BigDecimal price, BigDecimal change24h)
+        {
+            this.price = price;
+            this.change24h = change24h;
+        }
+    }
+
+    private static class Holding
+    {
+        final long chainId;
+        final TokenGroup group;
+        BigDecimal balance = BigDecimal.ZERO;
+        boolean counted;
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal historical = BigDecimal.ZERO;
+
+        Holding(long chainId, TokenGroup group)
+        {
+            this.chainId = chainId;
+            this.group = group;
+        }
+    }
+
+    private final Map<String, Holding> holdings = new HashMap<>();
+    private final Map<String, Price> prices = new HashMap<>();
+    private final Map<Long, Totals> chainTotals = new HashMap<>();
+    private final Map<TokenGroup, Totals> groupTotals = new EnumMap<>(TokenGroup.class);
+    private final Totals total = new Totals();
+
+    /**
+     * @param balance balance in whole tokens (decimals applied)
+     * @param counted false for tokens which don't count toward the wallet value, eg hidden, NFT or spam
+     */
+    public synchronized void setHolding(String key, long chainId, TokenGroup group, BigDecimal balance, boolean counted)
+    {
+        Holding holding = holdings.get(key);
+        if (holding == null || holding.chainId != chainId || holding.group != group)
+        {
+            if (holding != null) apply(holding, holding.value.negate(), holding.historical.negate());
+            holding = new Holding(chainId, group);
+            holdings.put(key, holding);
+        }
+
+        holding.balance = balance != null ? balance : BigDecimal.ZERO;
+        holding.counted = counted;
+        revalue(holding, prices.get(key));
+    }
+
+    public synchronized void removeHolding(String key)
+    {
+        Holding holding = holdings.remove(key);
+        if (holding != null) apply(holding, holding.value.negate(), holding.historical.negate());
+    }
+
+    /**
+     * @param price fiat price as stored with the ticker; a blank or unreadable price removes it
+     * @param change24h percentage change over 24h
+     */
+    public synchronized void setPrice(String key, String price, String change24h)
+    {
+        Price newPrice = parsePrice(price, change24h);
+        if (newPrice == null) prices.remove(key);
+        else prices.put(key, newPrice);
+
+        Holding holding = holdings.get(key);
+        if (holding != null) revalue(holding, newPrice);
+    }
+
+    public synchronized void clearPrices()
+    {
+        for (String key : new ArrayList<>(prices.keySet()))
+        {
+            setPrice(key, null, null);
+        }
+    }
+
+    public synchronized boolean hasPrice(String key)
+    {
+        return prices.containsKey(key);
+    }
+
+    public synchronized Totals getTotal()
+    {
+        return copy(total);
+    }
+
+    /**
+     * @param chainIds chains to include; all chains if empty
+     */
+    public synchronized Totals getTotal(Collection<Long> chainIds)
+    {
+        if (chainIds == null || chainIds.isEmpty()) return getTotal();
+        Totals sum = new Totals();
+        for (Long chainId : chainIds)
+        {
+            Totals chain = chainTotals.get(chainId);
+            if (chain != null) sum.add(chain);
+        }
+        return sum;
+    }
+
+    public synchronized Totals getChainTotal(long chainId)
+    {
+        return copy(chainTotals.get(chainId));
+    }
+
+    public synchronized Totals getGroupTotal(TokenGroup group)
+    {
+        return copy(groupTotals.get(group));
+    }
+
+    private void revalue(Holding holding, Price price)
+    {
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal historical = BigDecimal.ZERO;
+        if (holding.counted && price != null && holding.balance.signum() > 0)
+        {
+            value = holding.balance.multiply(price.price).setScale(VALUE_SCALE, RoundingMode.DOWN);
+            historical = value.add(value.multiply(price.change24h.divide(HUNDRED)).negate());
+        }
+
+        apply(holding, value.subtract(holding.value), historical.subtract(holding.historical));
+        holding.value = value;
+        holding.historical = historical;
+    }
+
+    private void apply(Holding holding, BigDecimal dValue, BigDecimal dHistorical)
+    {
+        if (dValue.signum() == 0 && dHistorical.signum() == 0) return;
+        total.add(dValue, dHistorical);
+        totalsFor(chainTotals, holding.chainId).add(dValue, dHistorical);
+        totalsFor(groupTotals, holding.group).add(dValue, dHistorical);
+    }
+
+    private static <K> Totals totalsFor(Map<K, Totals> map, K key)
+    {
+        Totals totals = map.get(key);
+        if (totals == null)
+        {
+            totals = new Totals();
+            map.put(key, totals);
+        }
+        return totals;
+    }
+
+    private static Totals copy(Totals totals)
+    {
+        Totals result = new Totals();
+        if (totals != null) result.add(totals);
+        return result;
+    }
+
+    private static Price parsePrice(String price, String change24h)
+    {
+        try
+        {
+            BigDecimal change = (change24h == null || change24h.isEmpty()) ? BigDecimal.ZERO : new BigDecimal(change24h);
+            return new Price(new BigDecimal(price), change);
+        }
+        catch (NumberFormatException | NullPointerException e)
+        {
+            return null;
+        }
+    }
+}
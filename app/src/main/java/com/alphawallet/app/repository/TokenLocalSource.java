@@ -30,6 +30,8 @@ public interface TokenLocalSource
 
     boolean updateTokenBalance(Wallet wallet, Token token, BigDecimal balance, List<BigInteger> balanceArray);
 
+    boolean[] updateTokenBalances(Wallet wallet, Token[] tokens, BigDecimal[] balances);
+
     Token fetchToken(long chainId, Wallet wallet, String address);
 
     void setEnable(Wallet wallet, ContractAddress cAddr, boolean isEnabled);
@@ -74,6 +76,8 @@ public interface TokenLocalSource
 
     Single<Pair<Double, Double>> getTotalValue(String currentAddress, List<Long> networkFilters);
 
+    Single<PortfolioAggregate> getPortfolio(String walletAddress);
+
     Map<String, Long> getTickerTimeMap(long chainId, List<TokenCardMeta> erc20Tokens);
 
     void deleteTickers();
@@ -16,6 +16,7 @@ import com.alphawallet.app.entity.ContractLocator;
 import com.alphawallet.app.entity.ContractType;
 import com.alphawallet.app.entity.NetworkInfo;
 import com.alphawallet.app.entity.TransferFromEventResponse;
+import com.alphawallet.app.entity.TransferLogScanner;
 import com.alphawallet.app.entity.Wallet;
 
 import com.alphawallet.app.entity.tokendata.TokenGroup;
@@ -24,8 +25,8 @@ import com.alphawallet.app.entity.tokens.Ticket;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.entity.tokens.TokenCardMeta;
 import com.alphawallet.app.entity.tokens.TokenInfo;
-import com.alphawallet.app.service.AWHttpService;
 import com.alphawallet.app.service.AssetDefinitionService;
+import com.alphawallet.app.service.EthCallCache;
 import com.alphawallet.app.service.OkLinkService;
 import com.alphawallet.app.service.TickerService;
 import com.alphawallet.app.util.Utils;
@@ -63,8 +64,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
@@ -97,7 +96,6 @@ public class TokenRepository implements TokenRepositoryType {
     private static final int NODE_COMMS_ERROR = -1;
     private static final int CONTRACT_BALANCE_NULL = -2;
 
-    private final Map<Long, Web3j> web3jNodeServers;
     private AWEnsResolver ensResolver;
     private String currentAddress;
 
@@ -108,11 +106,9 @@ public class TokenRepository implements TokenRepositoryType {
             TickerService tickerService) {
         this.ethereumNetworkRepository = ethereumNetworkRepository;
         this.localSource = localSource;
-        this.ethereumNetworkRepository.addOnChangeDefaultNetwork(this::buildWeb3jClient);
         this.context = context;
         this.tickerService = tickerService;
 
-        web3jNodeServers = new ConcurrentHashMap<>();
         currentAddress = ethereumNetworkRepository.getCurrentWalletAddress();
 
         okClient = new OkHttpClient.Builder()
@@ -123,21 +119,9 @@ public class TokenRepository implements TokenRepositoryType {
                 .build();
     }
 
-    private void buildWeb3jClient(NetworkInfo networkInfo)
-    {
-        AWHttpService publicNodeService = new AWHttpService(networkInfo.rpcServerUrl, networkInfo.backupNodeUrl, okClient, false);
-        HttpServiceHelper.addRequiredCredentials(networkInfo.chainId, publicNodeService, KeyProviderFactory.get().getKlaytnKey(),
-                KeyProviderFactory.get().getInfuraSecret(), EthereumNetworkBase.usesProductionKey);
-        web3jNodeServers.put(networkInfo.chainId, Web3j.build(publicNodeService));
-    }
-
     private Web3j getService(long chainId)
     {
-        if (!web3jNodeServers.containsKey(chainId))
-        {
-            buildWeb3jClient(ethereumNetworkRepository.getNetworkByChain(chainId));
-        }
-        return web3jNodeServers.get(chainId);
+        return Web3jClientRegistry.get(chainId);
     }
 
     @Override
@@ -327,6 +311,56 @@ public class TokenRepository implements TokenRepositoryType {
                 .observeOn(Schedulers.io());
     }
 
+    /**
+     * Update balances of a set of tokens on the same chain. On chains with Multicall3 this is a single eth_call,
+     * otherwise each token is checked in turn.
+     *
+     * @param walletAddress
+     * @param tokens ERC20 or chain tokens, all on the same chain
+     * @return new balances in token order
+     */
+    @Override
+    public Single<BigDecimal[]> updateTokenBalances(String walletAddress, List<Token> tokens)
+    {
+        Wallet wallet = new Wallet(walletAddress);
+        return Single.fromCallable(() -> updateBalancesMulticall(wallet, tokens))
+                .subscribeOn(Schedulers.io())
+                .observeOn(Schedulers.io());
+    }
+
+    /**
+     * Write balances read elsewhere (eg by a multi-wallet sweep) to the wallet's database in one transaction.
+     * Null balances are skipped.
+     */
+    @Override
+    public Single<boolean[]> storeTokenBalances(Wallet wallet, Token[] tokens, BigDecimal[] balances)
+    {
+        return Single.fromCallable(() -> localSource.updateTokenBalances(wallet, tokens, balances))
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Scan the next block window on the chain for NFTs received by the wallet, across all contracts.
+     * NFT contracts we don't track yet are returned in the result.
+     */
+    @Override
+    public Single<TransferLogScanner.ScanResult> scanTransferLogs(String walletAddress, long chainId)
+    {
+        Wallet wallet = new Wallet(walletAddress);
+        return Single.fromCallable(() -> scanTransfers(wallet, chainId))
+                .subscribeOn(Schedulers.io())
+                .observeOn(Schedulers.io());
+    }
+
+    private TransferLogScanner.ScanResult scanTransfers(Wallet wallet, long chainId) throws IOException
+    {
+        try (Realm realm = getRealmInstance(wallet))
+        {
+            return new TransferLogScanner(chainId, wallet.address)
+                    .scan(getWeb3jServiceForEvents(chainId), realm, (id, address) -> fetchToken(id, wallet.address, address));
+        }
+    }
+
     @Override
     public Single<Token[]> storeTokens(Wallet wallet, Token[] tokens)
     {
@@ -484,6 +518,98 @@ public class TokenRepository implements TokenRepositoryType {
             });
     }
 
+    private BigDecimal[] updateBalancesMulticall(final Wallet wallet, final List<Token> tokens)
+    {
+        BigDecimal[] balances = new BigDecimal[tokens.size()];
+        if (tokens.isEmpty()) return balances;
+
+        long chainId = tokens.get(0).tokenInfo.chainId;
+        String multicallAddress = EthereumNetworkBase.getMulticallAddress(chainId);
+        List<Multicall3.Result> results = null;
+
+        if (!TextUtils.isEmpty(multicallAddress))
+        {
+            List<Multicall3.Call> calls = new ArrayList<>();
+            for (Token t : tokens)
+            {
+                calls.add(t.isEthereum() ? new Multicall3.Call(multicallAddress, Multicall3.getEthBalance(wallet.address))
+                        : new Multicall3.Call(t.getAddress(), balanceOf(wallet.address)));
+            }
+
+            try
+            {
+                results = Multicall3.aggregate(getService(chainId), multicallAddress, wallet.address, calls);
+            }
+            catch (Exception e)
+            {
+                if (LOG_CONTRACT_EXCEPTION_EVENTS) e.printStackTrace();
+            }
+        }
+
+        if (results == null)
+        {
+            //Chain doesn't have Multicall, or the batch call failed: fall back to individual balance checks
+            for (int i = 0; i < tokens.size(); i++)
+            {
+                balances[i] = updateBalance(wallet, tokens.get(i)).blockingGet();
+            }
+            return balances;
+        }
+
+        Function balanceFunction = balanceOf(wallet.address);
+        Token[] tokenArray = tokens.toArray(new Token[0]);
+        BigDecimal[] writeBalances = new BigDecimal[tokenArray.length];
+        for (int i = 0; i < tokenArray.length; i++)
+        {
+            Token t = tokenArray[i];
+            BigDecimal balance = decodeUint256Balance(results.get(i), balanceFunction);
+
+            if (balance.equals(BigDecimal.valueOf(-2)) && !t.isEthereum())
+            {
+                //token may have been self-destructed. Check name/symbol for 0x
+                checkDestroyedToken(wallet, t);
+                balances[i] = balance;
+            }
+            else if (balance.compareTo(BigDecimal.ZERO) < 0)
+            {
+                //call failed for this token only; keep previous balance
+                balances[i] = t.balance;
+            }
+            else
+            {
+                writeBalances[i] = balance;
+                balances[i] = balance;
+            }
+        }
+
+        localSource.updateTokenBalances(wallet, tokenArray, writeBalances);
+        return balances;
+    }
+
+    private BigDecimal decodeUint256Balance(Multicall3.Result result, Function function)
+    {
+        if (!result.success)
+        {
+            return BigDecimal.valueOf(-1);
+        }
+        else if (result.returnData.equals("0x"))
+        {
+            return BigDecimal.valueOf(-2);
+        }
+
+        try
+        {
+            List<Type> response = FunctionReturnDecoder.decode(result.returnData, function.getOutputParameters());
+            if (response.size() > 0) return new BigDecimal(((Uint256) response.get(0)).getValue());
+        }
+        catch (Exception e)
+        {
+            //
+        }
+
+        return BigDecimal.valueOf(-1);
+    }
+
     private void checkDestroyedToken(Wallet wallet, Token token)
     {
         try
@@ -973,7 +1099,7 @@ public class TokenRepository implements TokenRepositoryType {
 
             org.web3j.protocol.core.methods.request.Transaction transaction
                     = createEthCallTransaction(wallet.address, contractAddress, encodedFunction);
-            EthCall response = getService(network.chainId).ethCall(transaction, DefaultBlockParameterName.LATEST).send();
+            EthCall response = EthCallCache.ethCall(network.chainId, getService(network.chainId), transaction);
 
             if (response.hasError() && response.getError().getMessage().equals("execution reverted"))
             {
@@ -1012,7 +1138,7 @@ public class TokenRepository implements TokenRepositoryType {
         {
             org.web3j.protocol.core.methods.request.Transaction transaction
                     = createEthCallTransaction(wallet.address, contractAddress, encodedFunction);
-            EthCall response = getService(chainId).ethCall(transaction, DefaultBlockParameterName.LATEST).send();
+            EthCall response = EthCallCache.ethCall(chainId, getService(chainId), transaction);
 
             return response.getValue();
         }
@@ -1261,39 +1387,12 @@ public class TokenRepository implements TokenRepositoryType {
 
     public static Web3j getWeb3jServiceForEvents(long chainId)
     {
-        OkHttpClient okClient = new OkHttpClient.Builder()
-                .connectTimeout(C.CONNECT_TIMEOUT * 3, TimeUnit.SECONDS) //events can take longer to render
-                .connectTimeout(C.READ_TIMEOUT * 3, TimeUnit.SECONDS)
-                .writeTimeout(C.LONG_WRITE_TIMEOUT, TimeUnit.SECONDS)
-                .retryOnConnectionFailure(true)
-                .build();
-
-        String nodeUrl = EthereumNetworkBase.getNodeURLForEvents(chainId);
-        String secondaryNode = EthereumNetworkRepository.getSecondaryNodeURL(chainId);
-        if (nodeUrl.equals(secondaryNode)) //ensure backup node is different
-        {
-            secondaryNode = EthereumNetworkRepository.getNodeURLByNetworkId(chainId);
-        }
-
-        AWHttpService publicNodeService = new AWHttpService(nodeUrl, secondaryNode, okClient, false);
-        HttpServiceHelper.addRequiredCredentials(chainId, publicNodeService, KeyProviderFactory.get().getKlaytnKey(),
-                KeyProviderFactory.get().getInfuraSecret(), EthereumNetworkBase.usesProductionKey);
-        return Web3j.build(publicNodeService);
+        return Web3jClientRegistry.getForEvents(chainId);
     }
 
     public static Web3j getWeb3jService(long chainId)
     {
-        OkHttpClient okClient = new OkHttpClient.Builder()
-                .connectTimeout(C.CONNECT_TIMEOUT, TimeUnit.SECONDS)
-                .connectTimeout(C.READ_TIMEOUT * 3, TimeUnit.SECONDS)
-                .writeTimeout(C.LONG_WRITE_TIMEOUT, TimeUnit.SECONDS)
-                .retryOnConnectionFailure(true)
-                .build();
-
-        AWHttpService publicNodeService = new AWHttpService(EthereumNetworkRepository.getNodeURLByNetworkId(chainId), EthereumNetworkRepository.getSecondaryNodeURL(chainId), okClient, false);
-        HttpServiceHelper.addRequiredCredentials(chainId, publicNodeService, KeyProviderFactory.get().getKlaytnKey(),
-                KeyProviderFactory.get().getInfuraSecret(), EthereumNetworkBase.usesProductionKey);
-        return Web3j.build(publicNodeService);
+        return Web3jClientRegistry.get(chainId);
     }
 
     public static String callSmartContractFunction(long chainId,
@@ -1305,7 +1404,7 @@ public class TokenRepository implements TokenRepositoryType {
         {
             org.web3j.protocol.core.methods.request.Transaction transaction
                     = createEthCallTransaction(walletAddr, contractAddress, encodedFunction);
-            EthCall response = getWeb3jService(chainId).ethCall(transaction, DefaultBlockParameterName.LATEST).send();
+            EthCall response = EthCallCache.ethCall(chainId, getWeb3jService(chainId), transaction);
 
             List<Type> responseValues = FunctionReturnDecoder.decode(response.getValue(), function.getOutputParameters());
 
@@ -1331,7 +1430,7 @@ public class TokenRepository implements TokenRepositoryType {
         {
             org.web3j.protocol.core.methods.request.Transaction transaction
                     = createEthCallTransaction(walletAddr, contractAddress, encodedFunction);
-            EthCall response = getWeb3jService(chainId).ethCall(transaction, DefaultBlockParameterName.LATEST).send();
+            EthCall response = EthCallCache.ethCall(chainId, getWeb3jService(chainId), transaction);
 
             List<Type> responseValues = FunctionReturnDecoder.decode(response.getValue(), function.getOutputParameters());
             List<Type> responseValuesArray = Utils.decodeDynamicArray(response.getValue());
@@ -1359,10 +1458,9 @@ public class TokenRepository implements TokenRepositoryType {
         try
         {
             String encodedFunction = FunctionEncoder.encode(function);
-            org.web3j.protocol.core.methods.response.EthCall ethCall = getWeb3jService(chainId).ethCall(
+            org.web3j.protocol.core.methods.response.EthCall ethCall = EthCallCache.ethCall(chainId, getWeb3jService(chainId),
                     org.web3j.protocol.core.methods.request.Transaction
-                            .createEthCallTransaction(walletAddr, contractAddress, encodedFunction),
-                    DefaultBlockParameterName.LATEST).send();
+                            .createEthCallTransaction(walletAddr, contractAddress, encodedFunction));
 
             String value = ethCall.getValue();
             if (value.equals("0x"))
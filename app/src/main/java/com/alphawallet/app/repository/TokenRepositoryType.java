@@ -5,6 +5,7 @@ import android.util.Pair;
 import com.alphawallet.app.entity.ContractLocator;
 import com.alphawallet.app.entity.ContractType;
 import com.alphawallet.app.entity.TransferFromEventResponse;
+import com.alphawallet.app.entity.TransferLogScanner;
 import com.alphawallet.app.entity.Wallet;
 
 import com.alphawallet.app.entity.tokendata.TokenGroup;
@@ -30,6 +31,12 @@ public interface TokenRepositoryType
 
     Single<BigDecimal> updateTokenBalance(String walletAddress, Token token);
 
+    Single<BigDecimal[]> updateTokenBalances(String walletAddress, List<Token> tokens);
+
+    Single<boolean[]> storeTokenBalances(Wallet wallet, Token[] tokens, BigDecimal[] balances);
+
+    Single<TransferLogScanner.ScanResult> scanTransferLogs(String walletAddress, long chainId);
+
     Single<ContractLocator> getTokenResponse(String address, long chainId, String method);
 
     Single<Token> checkInterface(Token tokens, Wallet wallet);
@@ -26,6 +26,7 @@ import com.alphawallet.app.repository.entity.RealmNFTAsset;
 import com.alphawallet.app.repository.entity.RealmToken;
 import com.alphawallet.app.repository.entity.RealmTokenTicker;
 import com.alphawallet.app.service.AssetDefinitionService;
+import com.alphawallet.app.service.PriceAlertEngine;
 import com.alphawallet.app.service.RealmManager;
 import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.ContractAddress;
@@ -34,12 +35,13 @@ import com.google.gson.JsonSyntaxException;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.Single;
 import io.realm.Case;
@@ -62,6 +64,8 @@ public class TokensRealmSource implements TokenLocalSource
     private final RealmManager realmManager;
     private final EthereumNetworkRepositoryType ethereumNetworkRepository;
     private final TokensMappingRepositoryType tokensMappingRepository;
+    private final Map<String, PortfolioAggregate> portfolios = new ConcurrentHashMap<>(); //keyed by lowercase wallet address
+    private final AtomicLong portfolioGeneration = new AtomicLong(); //bumped by every write which updates a portfolio
 
     public TokensRealmSource(RealmManager realmManager, EthereumNetworkRepositoryType ethereumNetworkRepository, TokensMappingRepositoryType tokensMappingRepository)
     {
@@ -170,6 +174,7 @@ public class TokensRealmSource implements TokenLocalSource
                             if (token.tokenInfo != null && token.tokenInfo.name != null && !token.tokenInfo.name.equals(EXPIRED_CONTRACT) && token.tokenInfo.symbol != null)
                             {
                                 saveTokenLocal(r, token);
+                                updatePortfolioHolding(r, wallet, databaseKey(token));
                             }
                         }
                     });
@@ -201,6 +206,9 @@ public class TokensRealmSource implements TokenLocalSource
                 }
             });
         }
+
+        portfolioGeneration.incrementAndGet();
+        portfolios.remove(wallet.address.toLowerCase());
     }
 
     @Override
@@ -225,7 +233,10 @@ public class TokensRealmSource implements TokenLocalSource
         else return Single.fromCallable(() -> {
             try (Realm realm = realmManager.getRealmInstance(wallet))
             {
-                realm.executeTransaction(r -> saveTokenLocal(r, token));
+                realm.executeTransaction(r -> {
+                    saveTokenLocal(r, token);
+                    updatePortfolioHolding(r, wallet, databaseKey(token));
+                });
             }
             return token;
         });
@@ -382,6 +393,11 @@ public class TokensRealmSource implements TokenLocalSource
         return attestations;
     }
 
+    private static boolean isPlaceholderTicker(String price, String percentChange)
+    {
+        return (TextUtils.isEmpty(price) || price.equals("0")) && (TextUtils.isEmpty(percentChange) || percentChange.equals("0"));
+    }
+
     private TokenTicker convertRealmTicker(RealmTokenTicker rawItem)
     {
         TokenTicker tokenTicker = null;
@@ -390,7 +406,7 @@ public class TokensRealmSource implements TokenLocalSource
             String currencySymbol = rawItem.getCurrencySymbol();
             String price = rawItem.getPrice();
             String percentChange = rawItem.getPercentChange24h();
-            if ((price.equals("0") || TextUtils.isEmpty(price)) && (percentChange.equals("0") || TextUtils.isEmpty(percentChange)))
+            if (isPlaceholderTicker(price, percentChange))
                 return null; // blank placeholder ticker to stop spamming the API
 
             if (currencySymbol == null || currencySymbol.length() == 0) currencySymbol = "USD";
@@ -411,6 +427,7 @@ public class TokensRealmSource implements TokenLocalSource
                 if (realmToken != null)
                 {
                     realmToken.setEnabled(isEnabled);
+                    updatePortfolioHolding(r, wallet, cAddr.getAddressKey());
                 }
             });
         }
@@ -487,6 +504,7 @@ public class TokensRealmSource implements TokenLocalSource
                 if (realmToken != null)
                 {
                     realmToken.setVisibilityChanged(true);
+                    updatePortfolioHolding(r, wallet, cAddr.getAddressKey());
                 }
             });
         }
@@ -499,8 +517,7 @@ public class TokensRealmSource implements TokenLocalSource
     @Override
     public boolean updateTokenBalance(Wallet wallet, Token token, BigDecimal balance, List<BigInteger> balanceArray)
     {
-        boolean balanceChanged = false;
-        String key = databaseKey(token);
+        final boolean[] balanceChanged = { false };
         if (token.getWallet() == null)
         {
             token.setTokenWallet(wallet.address);
@@ -508,96 +525,126 @@ public class TokensRealmSource implements TokenLocalSource
 
         try (Realm realm = realmManager.getRealmInstance(wallet))
         {
-            RealmToken realmToken = realm.where(RealmToken.class).equalTo("address", key).findFirst();
+            realm.executeTransaction(r -> {
+                balanceChanged[0] = writeTokenBalance(r, token, balance, balanceArray);
+                if (balanceChanged[0]) updatePortfolioHolding(r, wallet, databaseKey(token));
+            });
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+        }
 
-            if (realmToken != null)
-            {
-                final String currentBalance = realmToken.getBalance();
-                final String newBalance = (balanceArray == null || balanceArray.size() == 0) ? balance.toString() : Utils.bigIntListToString(balanceArray, true);
+        return balanceChanged[0];
+    }
 
-                //does the token need updating?
-                if (token.checkInfoRequiresUpdate(realmToken))
+    /**
+     * Write a set of balances in a single Realm transaction. Used by the batched balance check.
+     * Tokens flagged with a null balance (failed to read) are skipped.
+     *
+     * @return array of flags in token order, true where the stored balance changed
+     */
+    @Override
+    public boolean[] updateTokenBalances(Wallet wallet, Token[] tokens, BigDecimal[] balances)
+    {
+        final boolean[] balanceChanged = new boolean[tokens.length];
+
+        try (Realm realm = realmManager.getRealmInstance(wallet))
+        {
+            realm.executeTransaction(r -> {
+                for (int i = 0; i < tokens.length; i++)
                 {
-                    realm.executeTransaction(r -> {
-                        realmToken.setName(token.tokenInfo.name);
-                        realmToken.setSymbol(token.tokenInfo.symbol);
-                        realmToken.setDecimals(token.tokenInfo.decimals);
-                        realmToken.setInterfaceSpec(token.getInterfaceSpec().ordinal());
-                    });
+                    if (balances[i] == null) continue;
+                    if (tokens[i].getWallet() == null) tokens[i].setTokenWallet(wallet.address);
+                    balanceChanged[i] = writeTokenBalance(r, tokens[i], balances[i], null);
+                    if (balanceChanged[i]) updatePortfolioHolding(r, wallet, databaseKey(tokens[i]));
                 }
+            });
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+        }
 
-                validateTokenName(realm, realmToken, token, balance);
+        return balanceChanged;
+    }
 
-                if ((token.isERC721()) && balance.equals(BigDecimal.ZERO) && !currentBalance.equals("0"))
-                {
-                    //only used for determining if balance is now zero
-                    realm.executeTransaction(r -> {
-                        realmToken.setBalance(newBalance);
-                        deleteAllAssets(r, key);
-                    });
-                    Timber.tag(TAG).d("Zero out ERC721 balance: %s :%s", realmToken.getName(), token.getAddress());
-                    balanceChanged = true;
-                }
-                else if (!TextUtils.isEmpty(newBalance) && (!newBalance.equals(currentBalance) || !checkEthToken(realm, token)))
-                {
-                    realm.executeTransaction(r -> {
-                        realmToken.setBalance(newBalance);
-                        if (token.isEthereum())
-                        {
-                            updateEthToken(r, token, newBalance);
-                        }
-                        if (currentBalance.equals("0") && !realmToken.isVisibilityChanged())
-                        {
-                            realmToken.setEnabled(true);
-                            realmToken.setUpdateTime(System.currentTimeMillis());
-                        }
-                    });
-                    Timber.tag(TAG).d("Update Token Balance: %s :%s", realmToken.getName(), token.getAddress());
-                    balanceChanged = true;
-                }
+    // Must be called from within a Realm transaction
+    private boolean writeTokenBalance(Realm r, Token token, BigDecimal balance, List<BigInteger> balanceArray)
+    {
+        boolean balanceChanged = false;
+        String key = databaseKey(token);
+        RealmToken realmToken = r.where(RealmToken.class).equalTo("address", key).findFirst();
+
+        if (realmToken != null)
+        {
+            final String currentBalance = realmToken.getBalance();
+            final String newBalance = (balanceArray == null || balanceArray.size() == 0) ? balance.toString() : Utils.bigIntListToString(balanceArray, true);
+
+            //does the token need updating?
+            if (token.checkInfoRequiresUpdate(realmToken))
+            {
+                realmToken.setName(token.tokenInfo.name);
+                realmToken.setSymbol(token.tokenInfo.symbol);
+                realmToken.setDecimals(token.tokenInfo.decimals);
+                realmToken.setInterfaceSpec(token.getInterfaceSpec().ordinal());
+            }
+
+            validateTokenName(realmToken, token, balance);
 
-                if (!realmToken.isVisibilityChanged() && realmToken.isEnabled() && newBalance != null && newBalance.equals("0") && !(token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId)))
+            if ((token.isERC721()) && balance.equals(BigDecimal.ZERO) && !currentBalance.equals("0"))
+            {
+                //only used for determining if balance is now zero
+                realmToken.setBalance(newBalance);
+                deleteAllAssets(r, key);
+                Timber.tag(TAG).d("Zero out ERC721 balance: %s :%s", realmToken.getName(), token.getAddress());
+                balanceChanged = true;
+            }
+            else if (!TextUtils.isEmpty(newBalance) && (!newBalance.equals(currentBalance) || !checkEthToken(r, token)))
+            {
+                realmToken.setBalance(newBalance);
+                if (token.isEthereum())
                 {
-                    realm.executeTransaction(r -> {
-                        realmToken.setEnabled(false);
-                        realmToken.setBalance("0");
-                    });
+                    updateEthToken(r, token, newBalance);
                 }
-                else if (token.group != TokenGroup.SPAM && (!realmToken.isVisibilityChanged() && !realmToken.isEnabled()) && (token.balance.compareTo(BigDecimal.ZERO) > 0 || (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId) && !realmToken.isEnabled()))) // enable if base token should be showing
+                if (currentBalance.equals("0") && !realmToken.isVisibilityChanged())
                 {
-                    realm.executeTransaction(r -> {
-                        realmToken.setEnabled(true);
-                        realmToken.setUpdateTime(System.currentTimeMillis());
-                    });
+                    realmToken.setEnabled(true);
+                    realmToken.setUpdateTime(System.currentTimeMillis());
                 }
+                Timber.tag(TAG).d("Update Token Balance: %s :%s", realmToken.getName(), token.getAddress());
+                balanceChanged = true;
             }
-            else
+
+            if (!realmToken.isVisibilityChanged() && realmToken.isEnabled() && newBalance != null && newBalance.equals("0") && !(token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId)))
             {
-                balanceChanged = true;
-                if (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId))
-                    token.tokenInfo.isEnabled = true;
-                //write token
-                realm.executeTransaction(r -> {
-                    token.balance = balance;
-                    saveTokenLocal(r, token);
-                });
+                realmToken.setEnabled(false);
+                realmToken.setBalance("0");
+            }
+            else if (token.group != TokenGroup.SPAM && (!realmToken.isVisibilityChanged() && !realmToken.isEnabled()) && (token.balance.compareTo(BigDecimal.ZERO) > 0 || (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId) && !realmToken.isEnabled()))) // enable if base token should be showing
+            {
+                realmToken.setEnabled(true);
+                realmToken.setUpdateTime(System.currentTimeMillis());
             }
         }
-        catch (Exception e)
+        else
         {
-            Timber.e(e);
+            balanceChanged = true;
+            if (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId))
+                token.tokenInfo.isEnabled = true;
+            //write token
+            token.balance = balance;
+            saveTokenLocal(r, token);
         }
 
         return balanceChanged;
     }
 
-    private void validateTokenName(Realm realm, RealmToken realmToken, Token token, BigDecimal balance)
+    private void validateTokenName(RealmToken realmToken, Token token, BigDecimal balance)
     {
         if (TextUtils.isEmpty(token.tokenInfo.name) && TextUtils.isEmpty(token.tokenInfo.symbol) && balance.compareTo(BigDecimal.ZERO) > 0)
         {
-            realm.executeTransaction(r -> {
-                realmToken.setName(Utils.formatAddress(token.tokenInfo.address));
-            });
+            realmToken.setName(Utils.formatAddress(token.tokenInfo.address));
         }
     }
 
@@ -921,38 +968,123 @@ public class TokensRealmSource implements TokenLocalSource
     @Override
     public Single<Pair<Double, Double>> getTotalValue(String currentAddress, List<Long> networkFilters)
     {
-        final Wallet wallet = new Wallet(currentAddress);
-        return calculateWalletValue(fetchTokenMetasForUpdate(wallet, networkFilters), wallet);
+        return getPortfolio(currentAddress).map(portfolio -> {
+            PortfolioAggregate.Totals totals = portfolio.getTotal(networkFilters);
+            return new Pair<>(totals.value.doubleValue(), totals.historical.doubleValue());
+        });
     }
 
-    private Single<Pair<Double, Double>> calculateWalletValue(TokenCardMeta[] metas, Wallet wallet)
+    /**
+     * Running fiat value of the wallet, per chain and per token group. Built from the database on first use,
+     * then kept current by balance, visibility and ticker writes so totals can be read without a recalculation.
+     */
+    @Override
+    public Single<PortfolioAggregate> getPortfolio(String walletAddress)
     {
         return Single.fromCallable(() -> {
-            //fetch all token tickers
-            Map<Long, Map<String, TokenTicker>> tickerMap = fetchAllTokenTickers();
-            BigDecimal historicalBalance = BigDecimal.ZERO;
-            BigDecimal newBalance = BigDecimal.ZERO;
-            BigDecimal hundred = BigDecimal.valueOf(100);
-            for (TokenCardMeta meta : metas)
+            PortfolioAggregate portfolio = portfolios.get(walletAddress.toLowerCase());
+            if (portfolio == null)
             {
-                long chainId = meta.getChain();
-                String address = meta.isEthereum() ? "eth" : meta.getAddress();
-                Map<String, TokenTicker> localTickers = tickerMap.get(chainId);
-                TokenTicker ticker = localTickers != null ? localTickers.get(address) : null;
-                if (ticker != null && meta.hasPositiveBalance() && !meta.isNFT() && meta.group != TokenGroup.SPAM) //Currently we don't add NFT value. TODO: potentially get value from OpenSea
+                long generation = portfolioGeneration.get();
+                portfolio = buildPortfolio(new Wallet(walletAddress));
+                PortfolioAggregate existing = portfolios.putIfAbsent(walletAddress.toLowerCase(), portfolio);
+                if (existing != null)
+                {
+                    portfolio = existing;
+                }
+                else if (portfolioGeneration.get() != generation)
                 {
-                    Token t = fetchToken(chainId, wallet, meta.getAddress());
-                    BigDecimal correctedBalance = t.getCorrectedBalance(18);
-                    BigDecimal fiatValue = correctedBalance.multiply(new BigDecimal(ticker.price)).setScale(18, RoundingMode.DOWN);
-                    historicalBalance = historicalBalance.add(fiatValue.add(fiatValue.multiply((new BigDecimal(ticker.percentChange24h).divide(hundred)).negate())));
-                    newBalance = newBalance.add(fiatValue);
+                    //a write landed while it was built and may be missing from it; build again on the next read
+                    portfolios.remove(walletAddress.toLowerCase(), portfolio);
                 }
             }
-
-            return new Pair<>(newBalance.doubleValue(), historicalBalance.doubleValue());
+            return portfolio;
         });
     }
 
+    private PortfolioAggregate buildPortfolio(Wallet wallet)
+    {
+        PortfolioAggregate portfolio = new PortfolioAggregate();
+        for (Map.Entry<Long, Map<String, TokenTicker>> chainTickers : fetchAllTokenTickers().entrySet())
+        {
+            for (Map.Entry<String, TokenTicker> ticker : chainTickers.getValue().entrySet())
+            {
+                portfolio.setPrice(databaseKey(chainTickers.getKey(), ticker.getKey()), ticker.getValue().price, ticker.getValue().percentChange24h);
+            }
+        }
+
+        try (Realm realm = realmManager.getRealmInstance(wallet))
+        {
+            TokenFactory tf = new TokenFactory();
+            RealmResults<RealmToken> realmItems = realm.where(RealmToken.class).findAll();
+            for (RealmToken t : realmItems)
+            {
+                setPortfolioHolding(portfolio, t, realm, tf, wallet);
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+        }
+
+        return portfolio;
+    }
+
+    // Must be called from within a Realm transaction, after the token is written
+    private void updatePortfolioHolding(Realm r, Wallet wallet, String dbKey)
+    {
+        portfolioGeneration.incrementAndGet();
+        PortfolioAggregate portfolio = portfolios.get(wallet.address.toLowerCase());
+        if (portfolio == null) return;
+
+        RealmToken realmToken = r.where(RealmToken.class).equalTo("address", dbKey).findFirst();
+        if (realmToken != null)
+        {
+            setPortfolioHolding(portfolio, realmToken, r, null, wallet);
+        }
+    }
+
+    private void setPortfolioHolding(PortfolioAggregate portfolio, RealmToken t, Realm realm, TokenFactory tf, Wallet wallet)
+    {
+        if (ethereumNetworkRepository.isChainContract(t.getChainId(), t.getTokenAddress())) return;
+
+        //Hidden tokens, NFTs and spam don't count toward the value. TODO: potentially get NFT value from OpenSea
+        TokenGroup group = getTokenGroup(t.getChainId(), t.getTokenAddress(), t.getContractType());
+        boolean counted = (t.isEnabled() || !t.isVisibilityChanged()) && group != TokenGroup.NFT && group != TokenGroup.SPAM;
+        BigDecimal balance = BigDecimal.ZERO;
+        if (counted)
+        {
+            try
+            {
+                Token token = convertSingle(t, realm, tf, wallet);
+                if (token != null) balance = token.getCorrectedBalance(18);
+            }
+            catch (Exception e)
+            {
+                Timber.w(e);
+            }
+        }
+
+        portfolio.setHolding(tickerKey(t.getChainId(), t.getContractType() == ContractType.ETHEREUM ? "eth" : t.getTokenAddress()),
+                t.getChainId(), group, balance, counted);
+    }
+
+    private void updatePortfolioPrice(long chainId, String address, TokenTicker ticker)
+    {
+        String key = tickerKey(chainId, address);
+        boolean placeholder = isPlaceholderTicker(ticker.price, ticker.percentChange24h);
+        portfolioGeneration.incrementAndGet();
+        for (PortfolioAggregate portfolio : portfolios.values())
+        {
+            portfolio.setPrice(key, placeholder ? null : ticker.price, ticker.percentChange24h);
+        }
+    }
+
+    private static String tickerKey(long chainId, String address)
+    {
+        return databaseKey(chainId, address.toLowerCase());
+    }
+
     private Map<Long, Map<String, TokenTicker>> fetchAllTokenTickers()
     {
         Map<Long, Map<String, TokenTicker>> tickerMap = new HashMap<>();
@@ -1126,6 +1258,12 @@ public class TokensRealmSource implements TokenLocalSource
                     }
                 }
             });
+
+            for (ContractAddress update : tickerUpdates)
+            {
+                updatePortfolioPrice(update.chainId, update.address, ethTickers.get(update.chainId));
+                PriceAlertEngine.getInstance().onPriceUpdate(update.chainId, update.address, ethTickers.get(update.chainId).price);
+            }
         }
         catch (Exception e)
         {
@@ -1179,6 +1317,17 @@ public class TokensRealmSource implements TokenLocalSource
                     }
                 }
             });
+
+            for (String tokenAddress : erc20Tickers.keySet())
+            {
+                if (erc20Tickers.get(tokenAddress) != null) updatePortfolioPrice(chainId, tokenAddress, erc20Tickers.get(tokenAddress));
+            }
+
+            for (ContractAddress update : tickerUpdates)
+            {
+                TokenTicker ticker = erc20Tickers.get(update.address);
+                if (ticker != null) PriceAlertEngine.getInstance().onPriceUpdate(chainId, update.address, ticker.price);
+            }
         }
         catch (Exception e)
         {
@@ -1196,6 +1345,8 @@ public class TokensRealmSource implements TokenLocalSource
             realm.executeTransaction(r -> {
                 writeTickerToRealm(r, ticker, chainId, address);
             });
+
+            if (ticker != null) updatePortfolioPrice(chainId, address, ticker);
         }
         catch (Exception e)
         {
@@ -1274,6 +1425,12 @@ public class TokensRealmSource implements TokenLocalSource
                     data.deleteFromRealm();
                 }
             });
+
+            portfolioGeneration.incrementAndGet();
+            for (PortfolioAggregate portfolio : portfolios.values())
+            {
+                portfolio.clearPrices();
+            }
         }
         catch (Exception e)
         {
@@ -1303,6 +1460,7 @@ public class TokensRealmSource implements TokenLocalSource
     @Override
     public void removeOutdatedTickers()
     {
+        List<String> removed = new ArrayList<>();
         try (Realm realm = realmManager.getRealmInstance(TICKER_DB))
         {
             realm.executeTransaction(r -> {
@@ -1312,9 +1470,19 @@ public class TokensRealmSource implements TokenLocalSource
 
                 for (RealmTokenTicker data : realmItems)
                 {
+                    removed.add(tickerKey(data.getChain(), data.getContract()));
                     data.deleteFromRealm();
                 }
             });
+
+            portfolioGeneration.incrementAndGet();
+            for (PortfolioAggregate portfolio : portfolios.values())
+            {
+                for (String key : removed)
+                {
+                    portfolio.setPrice(key, null, null);
+                }
+            }
         }
         catch (Exception e)
         {
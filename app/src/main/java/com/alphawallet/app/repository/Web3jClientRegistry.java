@@ -0,0 +1,98 @@
+package com.alphawallet.app.repository;
+
+import com.alphawallet.app.C;
+import com.alphawallet.app.service.AWHttpService;
+
+import org.web3j.protocol.Web3j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Hands out long-lived Web3j node clients, one per chain.
+ *
+ * All clients share one ConnectionPool and Dispatcher, so connections to a node are kept alive and multiplexed over
+ * HTTP/2 where the node supports it.
+ *
+ * Node clients coalesce concurrent calls into JSON-RPC batches up to the chain's batch processing limit.
+ *
+ * Clients for a chain are dropped when the RPC configuration for that chain changes; see EthereumNetworkBase.CustomNetworks
+ */
+public class Web3jClientRegistry
+{
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS_PER_HOST = 16;
+
+    private static final ConnectionPool connectionPool = new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+    private static final Dispatcher dispatcher = buildDispatcher();
+
+    private static final OkHttpClient baseClient = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true)
+            .build();
+
+    //newBuilder() shares the pool and dispatcher of the base client
+    private static final OkHttpClient nodeClient = baseClient.newBuilder()
+            .connectTimeout(C.CONNECT_TIMEOUT, TimeUnit.SECONDS)
+            .readTimeout(C.READ_TIMEOUT * 3, TimeUnit.SECONDS)
+            .writeTimeout(C.LONG_WRITE_TIMEOUT, TimeUnit.SECONDS)
+            .build();
+
+    private static final OkHttpClient eventClient = baseClient.newBuilder()
+            .connectTimeout(C.CONNECT_TIMEOUT * 3, TimeUnit.SECONDS) //events can take longer to render
+            .readTimeout(C.READ_TIMEOUT * 3, TimeUnit.SECONDS)
+            .writeTimeout(C.LONG_WRITE_TIMEOUT, TimeUnit.SECONDS)
+            .build();
+
+    private static final Map<Long, Web3j> nodeServices = new ConcurrentHashMap<>();
+    private static final Map<Long, Web3j> eventServices = new ConcurrentHashMap<>();
+
+    private static Dispatcher buildDispatcher()
+    {
+        Dispatcher d = new Dispatcher();
+        d.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        return d;
+    }
+
+    public static Web3j get(long chainId)
+    {
+        return nodeServices.computeIfAbsent(chainId, id ->
+                buildClient(id, EthereumNetworkBase.getNodeURLs(id), nodeClient, EthereumNetworkBase.getBatchProcessingLimit(id)));
+    }
+
+    public static Web3j getForEvents(long chainId)
+    {
+        //log responses can be large, don't coalesce them
+        return eventServices.computeIfAbsent(chainId, id -> buildClient(id, EthereumNetworkBase.getNodeURLsForEvents(id), eventClient, 0));
+    }
+
+    /**
+     * Call when the RPC settings of a chain change. The next request builds a fresh client for the new URLs.
+     * Note: don't call shutdown() on the dropped Web3j, it would shut down the executor shared by all instances.
+     */
+    public static void invalidate(long chainId)
+    {
+        nodeServices.remove(chainId);
+        eventServices.remove(chainId);
+    }
+
+    private static Web3j buildClient(long chainId, List<String> nodeUrls, OkHttpClient client, int batchLimit)
+    {
+        AWHttpService publicNodeService = new AWHttpService(nodeUrls, client, false);
+        publicNodeService.setBatchLimit(batchLimit);
+        HttpServiceHelper.addRequiredCredentials(chainId, publicNodeService, KeyProviderFactory.get().getKlaytnKey(),
+                KeyProviderFactory.get().getInfuraSecret(), EthereumNetworkBase.usesProductionKey);
+        return Web3j.build(publicNodeService);
+    }
+}
@@ -7,11 +7,19 @@ package com.alphawallet.app.service;
  * The backup connection is used if there's a timeout on the main node.
  * This class provides ALL net access to Ethereum nodes for AlphaWallet
  *
+ * Each service holds a set of nodes for the chain. Calls are routed to the healthiest node (see RpcNodeHealth),
+ * and if that node hasn't answered by its p95 latency a hedged duplicate is sent to the next node; the first
+ * good response wins and the other call is cancelled. Failed or rate limited calls fail over down the list.
+ *
+ * Calls which aren't safe to repeat (broadcasting a transaction, signing) are never hedged. They go to the best
+ * node only, and are only tried on another node if the connection couldn't be made, ie the node never saw them.
+ *
  */
 
 import static okhttp3.ConnectionSpec.CLEARTEXT;
 
-import com.google.gson.JsonParseException;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,13 +29,23 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
 import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.CipherSuite;
 import okhttp3.ConnectionSpec;
 import okhttp3.Headers;
@@ -88,9 +106,6 @@ public class AWHttpService extends HttpService
     public static final MediaType JSON_MEDIA_TYPE =
             MediaType.parse("application/json; charset=utf-8");
 
-    private static final MediaType MEDIA_TYPE_TEXT =
-            MediaType.parse("text/xml; charset=UTF-8");
-
     public static final String DEFAULT_URL = "http://localhost:8545/";
 
     private static final Logger log = LoggerFactory.getLogger(org.web3j.protocol.http.HttpService.class);
@@ -98,115 +113,374 @@ public class AWHttpService extends HttpService
     private final OkHttpClient httpClient;
 
     private final String url;
-    private final String secondaryUrl;
+    private final List<RpcNodeHealth> nodes;
 
     private final boolean includeRawResponse;
 
     private final HashMap<String, String> headers = new HashMap<>();
 
+    private RpcBatcher batcher;
+
+    //sending these twice can broadcast a transaction twice or turn the real result into a nonce error
+    private static final List<String> NON_IDEMPOTENT_METHODS = Arrays.asList(
+            "eth_sendRawTransaction", "eth_sendTransaction", "eth_signTransaction", "eth_sign", "personal_sign",
+            "personal_sendTransaction", "eth_signTypedData", "eth_signTypedData_v3", "eth_signTypedData_v4");
+
     public AWHttpService(String url, String secondaryUrl, OkHttpClient httpClient, boolean includeRawResponses) {
+        this(Arrays.asList(url, secondaryUrl), httpClient, includeRawResponses);
+    }
+
+    /**
+     * @param nodeUrls node set for the chain, in configured order. The first is the primary node; only it receives the service headers (credentials)
+     */
+    public AWHttpService(List<String> nodeUrls, OkHttpClient httpClient, boolean includeRawResponses) {
         super(includeRawResponses);
-        this.url = url;
         this.httpClient = httpClient;
         this.includeRawResponse = includeRawResponses;
-        this.secondaryUrl = secondaryUrl;
+        this.nodes = new ArrayList<>();
+        for (String nodeUrl : nodeUrls)
+        {
+            if (nodeUrl == null || nodeUrl.length() == 0) continue;
+            RpcNodeHealth node = RpcNodeHealth.get(nodeUrl);
+            if (!nodes.contains(node)) nodes.add(node);
+        }
+        this.url = nodes.isEmpty() ? DEFAULT_URL : nodes.get(0).url;
+        if (nodes.isEmpty()) nodes.add(RpcNodeHealth.get(DEFAULT_URL));
+    }
+
+    /**
+     * Coalesce concurrent single requests to this node into JSON-RPC batches of up to batchLimit requests.
+     * Use EthereumNetworkBase.getBatchProcessingLimit for the node's limit; zero leaves batching off.
+     */
+    public void setBatchLimit(int batchLimit)
+    {
+        batcher = batchLimit > 1 ? new RpcBatcher(this::sendToNode, batchLimit, RpcBatcher.DEFAULT_BATCH_WINDOW_MS) : null;
     }
 
     @Override
     protected InputStream performIO(String request) throws IOException
     {
-        RequestBody requestBody;
-        try
+        if (!isIdempotent(request))
         {
-            requestBody = RequestBody.create(request, JSON_MEDIA_TYPE);
+            return sendOnce(request);
         }
-        catch (JsonParseException e)
+        else if (batcher != null && !request.trim().startsWith("[")) //explicit batches from newBatch() go straight through
         {
-            requestBody = RequestBody.create("", MEDIA_TYPE_TEXT);
+            return new ByteArrayInputStream(batcher.call(request).getBytes(StandardCharsets.UTF_8));
         }
-
-        if (url.contains("stormbird"))
+        else
         {
-            System.out.println("YOLESS");
+            return sendRequest(request);
         }
+    }
 
-        okhttp3.Request httpRequest =
-                new okhttp3.Request.Builder()
-                        .url(url)
-                        .headers(buildHeaders())
-                        .post(requestBody).build();
-
-        okhttp3.Response response = null;
-
-        try
+    private String sendToNode(String request) throws IOException
+    {
+        try (InputStream is = sendRequest(request))
         {
-            //try primary node
-            response = httpClient.newCall(httpRequest).execute();
+            Buffer buffer = new Buffer();
+            buffer.readFrom(is);
+            return buffer.readUtf8();
         }
-        catch (SocketTimeoutException e) //seamlessly attempt a call to secondary node if primary timed out
+    }
+
+    /**
+     * @return false if the request (or any request in a batch) must not be sent more than once. Requests which can't be
+     * read are treated as unsafe.
+     */
+    static boolean isIdempotent(String request)
+    {
+        try
         {
-            if (secondaryUrl != null) //only if we have a secondary node
+            JsonElement element = JsonParser.parseString(request);
+            List<JsonElement> calls = new ArrayList<>();
+            if (element.isJsonArray())
             {
-                return trySecondaryNode(request);
+                for (JsonElement e : element.getAsJsonArray()) calls.add(e);
             }
             else
             {
-                throw new SocketTimeoutException();
+                calls.add(element);
             }
+
+            for (JsonElement call : calls)
+            {
+                JsonElement method = call.isJsonObject() ? call.getAsJsonObject().get("method") : null;
+                if (method == null || !method.isJsonPrimitive() || NON_IDEMPOTENT_METHODS.contains(method.getAsString()))
+                {
+                    return false;
+                }
+            }
+            return true;
         }
-        //TODO: Also check java.io.InterruptedIOException
+        catch (Exception e)
+        {
+            return false;
+        }
+    }
 
-        if (response.code() / 100 == 4) //rate limited
+    /**
+     * Send to the best ranked node without hedging. Another node is only tried if the connection to the previous one
+     * failed, so the request body can't have reached a node already.
+     */
+    private InputStream sendOnce(String request) throws IOException
+    {
+        IOException lastError = null;
+        for (RpcNodeHealth node : rankNodes())
         {
-            response.close();
-            return trySecondaryNode(request);
+            final long startTime = System.currentTimeMillis();
+            Response response;
+            try
+            {
+                response = httpClient.newCall(buildRequest(request, node)).execute();
+            }
+            catch (ConnectException | UnknownHostException e)
+            {
+                node.recordError();
+                lastError = e;
+                continue;
+            }
+            catch (IOException e)
+            {
+                //the request may have reached the node, so it isn't resent elsewhere
+                if (e instanceof SocketTimeoutException) node.recordError();
+                throw e;
+            }
+
+            processHeaders(response.headers());
+            node.processHeaders(response.headers());
+            if (!response.isSuccessful())
+            {
+                if (response.code() == 429) node.recordRateLimit(0);
+                else node.recordError();
+                int code = response.code();
+                response.close();
+                throw new IOException("Invalid response received: " + code);
+            }
+
+            node.recordSuccess(System.currentTimeMillis() - startTime);
+            if (response.body() != null)
+            {
+                return buildInputStream(response);
+            }
+            else
+            {
+                response.close();
+                return buildNullInputStream();
+            }
         }
 
-        return processNodeResponse(response, request, false);
+        throw lastError != null ? lastError : new SocketTimeoutException();
     }
 
-    private InputStream trySecondaryNode(String request) throws IOException
+    private InputStream sendRequest(String request) throws IOException
     {
-        Timber.d("trySecondaryNode: ");
-        RequestBody requestBody = RequestBody.create(request, JSON_MEDIA_TYPE);
+        List<RpcNodeHealth> ranked = rankNodes();
+        IOException lastError = null;
 
-        okhttp3.Request httpRequest =
-                new okhttp3.Request.Builder().url(secondaryUrl).post(requestBody).build();
+        //Work down the ranked list in pairs: best node plus a hedge on the next
+        for (int i = 0; i < ranked.size(); i += 2)
+        {
+            RpcNodeHealth first = ranked.get(i);
+            RpcNodeHealth hedge = (i + 1) < ranked.size() ? ranked.get(i + 1) : null;
+            try
+            {
+                Response response = hedgedCall(request, first, hedge);
+                if (response.body() != null)
+                {
+                    return buildInputStream(response);
+                }
+                else
+                {
+                    //build fake response 0x
+                    response.close();
+                    return buildNullInputStream();
+                }
+            }
+            catch (InterruptedIOException e)
+            {
+                throw e; //expected when user switches wallet or network; don't fail over
+            }
+            catch (IOException e)
+            {
+                lastError = e;
+            }
+        }
 
-        okhttp3.Response response;
+        throw lastError != null ? lastError : new SocketTimeoutException();
+    }
 
-        response = httpClient.newCall(httpRequest).execute();
+    /**
+     * Healthiest first; nodes which have asked us to back off go to the end. Stable sort, so ties keep configured order.
+     */
+    private List<RpcNodeHealth> rankNodes()
+    {
+        List<RpcNodeHealth> ranked = new ArrayList<>(nodes);
+        if (ranked.size() < 2) return ranked;
 
-        return processNodeResponse(response, request, true);
+        final Map<RpcNodeHealth, Double> scores = new HashMap<>();
+        for (RpcNodeHealth node : ranked)
+        {
+            scores.put(node, node.isRateLimited() ? Double.MAX_VALUE : node.score());
+        }
+        Collections.sort(ranked, Comparator.comparingDouble(scores::get));
+        return ranked;
     }
 
-    private InputStream processNodeResponse(Response response, String request, boolean useSecondaryNode) throws IOException
+    /**
+     * Send the request to the first node. If it hasn't responded within its p95 latency, or it fails, send the same
+     * request to the hedge node. Return the first successful response and cancel the other call.
+     */
+    private Response hedgedCall(String request, RpcNodeHealth first, RpcNodeHealth hedge) throws IOException
     {
-        processHeaders(response.headers());
-        if (response.isSuccessful())
+        final LinkedBlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        final Object lock = new Object();
+        final boolean[] done = { false };
+        List<Call> calls = new ArrayList<>();
+        IOException lastError = null;
+        Call winner = null;
+
+        calls.add(enqueue(request, first, results, lock, done));
+        int outstanding = 1;
+        boolean hedged = hedge == null;
+
+        try
         {
-            if (response.body() != null)
-            {
-                return buildInputStream(response);
-            }
-            else
+            while (outstanding > 0)
             {
-                //build fake response 0x
-                return buildNullInputStream();
+                Object result = hedged ? results.take() : results.poll(first.hedgeDelayMs(), TimeUnit.MILLISECONDS);
+                if (result == null)
+                {
+                    //primary is slower than its p95, race the next node
+                    Timber.d("Hedging request to: %s", hedge.url);
+                    calls.add(enqueue(request, hedge, results, lock, done));
+                    outstanding++;
+                    hedged = true;
+                    continue;
+                }
+
+                outstanding--;
+                if (result instanceof NodeResponse)
+                {
+                    winner = ((NodeResponse) result).call;
+                    return ((NodeResponse) result).response;
+                }
+
+                lastError = (IOException) result;
+                if (!hedged)
+                {
+                    //primary failed outright; fail over immediately
+                    calls.add(enqueue(request, hedge, results, lock, done));
+                    outstanding++;
+                    hedged = true;
+                }
             }
         }
-        else if (!useSecondaryNode && secondaryUrl != null)
+        catch (InterruptedException e)
         {
-            response.close();
-            return trySecondaryNode(request);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
         }
-        else
+        finally
+        {
+            synchronized (lock)
+            {
+                done[0] = true;
+                for (Call call : calls)
+                {
+                    if (call != winner) call.cancel();
+                }
+                //close any response which arrived after the winner
+                for (Object late : results)
+                {
+                    if (late instanceof NodeResponse) ((NodeResponse) late).response.close();
+                }
+            }
+        }
+
+        throw lastError != null ? lastError : new SocketTimeoutException();
+    }
+
+    private okhttp3.Request buildRequest(String request, RpcNodeHealth node)
+    {
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder()
+                .url(node.url)
+                .post(RequestBody.create(request, JSON_MEDIA_TYPE));
+
+        if (node.url.equals(url)) builder.headers(buildHeaders()); //credentials only go to the node they were issued for
+        return builder.build();
+    }
+
+    private Call enqueue(String request, RpcNodeHealth node, LinkedBlockingQueue<Object> results, Object lock, boolean[] done)
+    {
+        final long startTime = System.currentTimeMillis();
+        Call call = httpClient.newCall(buildRequest(request, node));
+        call.enqueue(new Callback()
         {
-            int code = response.code();
-            String text = response.body() == null ? "N/A" : response.body().string();
-            response.close();
+            @Override
+            public void onFailure(Call c, IOException e)
+            {
+                if (!c.isCanceled()) node.recordError();
+                deliver(e);
+            }
+
+            @Override
+            public void onResponse(Call c, Response response)
+            {
+                processHeaders(response.headers());
+                node.processHeaders(response.headers());
+                if (response.isSuccessful())
+                {
+                    node.recordSuccess(System.currentTimeMillis() - startTime);
+                    deliver(new NodeResponse(c, response));
+                    return;
+                }
+
+                int code = response.code();
+                if (code == 429) node.recordRateLimit(0);
+                else node.recordError();
+
+                String text = "N/A";
+                try
+                {
+                    if (response.body() != null) text = response.body().string();
+                }
+                catch (IOException e)
+                {
+                    //
+                }
+                response.close();
+                deliver(new SocketTimeoutException("Invalid response received: " + code + "; " + text));
+            }
+
+            private void deliver(Object result)
+            {
+                synchronized (lock)
+                {
+                    if (done[0])
+                    {
+                        if (result instanceof NodeResponse) ((NodeResponse) result).response.close();
+                    }
+                    else
+                    {
+                        results.offer(result);
+                    }
+                }
+            }
+        });
+
+        return call;
+    }
 
-            throw new SocketTimeoutException("Invalid response received: " + code + "; " + text);
+    private static class NodeResponse
+    {
+        final Call call;
+        final Response response;
+
+        NodeResponse(Call call, Response response)
+        {
+            this.call = call;
+            this.response = response;
         }
     }
 
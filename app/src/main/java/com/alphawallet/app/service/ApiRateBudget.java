@@ -0,0 +1,57 @@
+package com.alphawallet.app.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Request budget for transaction API providers. Each provider (an API key, or the host for keyless access) has its
+ * own rate, and calls to it are spaced out so that chains sharing a key don't trip its limit between them, while
+ * chains on different providers don't wait on each other.
+ */
+public class ApiRateBudget
+{
+    private final LongSupplier clock;
+    private final Map<String, Long> nextSlot = new HashMap<>();
+
+    public ApiRateBudget()
+    {
+        this(System::currentTimeMillis);
+    }
+
+    ApiRateBudget(LongSupplier clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Wait until the provider has budget for another call
+     */
+    public void acquire(String provider, int callsPerSecond) throws InterruptedException
+    {
+        long wait = reserve(provider, callsPerSecond);
+        if (wait > 0) Thread.sleep(wait);
+    }
+
+    /**
+     * Provider told us we're over its limit; hold off all calls to it for a while
+     */
+    public synchronized void backOff(String provider, long millis)
+    {
+        long resume = clock.getAsLong() + millis;
+        Long slot = nextSlot.get(provider);
+        if (slot == null || slot < resume) nextSlot.put(provider, resume);
+    }
+
+    /**
+     * @return how long the caller must wait before its call
+     */
+    synchronized long reserve(String provider, int callsPerSecond)
+    {
+        long now = clock.getAsLong();
+        Long next = nextSlot.get(provider);
+        long slot = (next == null || next < now) ? now : next;
+        nextSlot.put(provider, slot + 1000 / Math.max(callsPerSecond, 1));
+        return slot - now;
+    }
+}
@@ -34,8 +34,10 @@ import com.alphawallet.app.entity.tokens.Attestation;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.entity.tokenscript.EventUtils;
 import com.alphawallet.app.entity.tokenscript.TokenScriptFile;
+import com.alphawallet.app.entity.tokenscript.TokenScriptStamps;
 import com.alphawallet.app.entity.tokenscript.TokenscriptFunction;
 import com.alphawallet.app.repository.TokenLocalSource;
+import com.alphawallet.app.repository.TokenRepository;
 import com.alphawallet.app.repository.TokensRealmSource;
 import com.alphawallet.app.repository.entity.RealmAttestation;
 import com.alphawallet.app.repository.entity.RealmAuxData;
@@ -104,13 +106,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
@@ -142,6 +147,11 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private static final String EIP5169_CERTIFIER = "Smart Token Labs";
     private static final String EIP5169_KEY_OWNER = "Contract Owner"; //TODO Source this from the contract via owner()
     private static final String TS_EXTENSION = ".tsml";
+    private static final String COMPILED_SCRIPT_DIR = "tokenscript_compiled";
+    private static final long BUNDLED_SCRIPT_WEIGHT = 64 * 1024; //asset streams don't report a size; assume a typical script
+    private static final String SCRIPT_STAMP_FILE = "tokenscript_stamps.txt";
+    private static final int SCRIPT_LOADER_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final Scheduler scriptLoader = Schedulers.from(Executors.newFixedThreadPool(SCRIPT_LOADER_THREADS));
     private final Context context;
     private final IPFSServiceType ipfsService;
     private final Map<String, Long> assetChecked;                //Mapping of contract address to when they were last fetched from server
@@ -150,11 +160,13 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private final TokensService tokensService;
     private final TokenLocalSource tokenLocalSource;
     private final AlphaWalletService alphaWalletService;
-    private TokenDefinition cachedDefinition = null;
+    private final TokenDefinitionCache definitionCache;
+    private final TokenScriptStamps scriptStamps;
+    private final Set<String> scriptsReady = ConcurrentHashMap.newKeySet(); //tsKeys whose script has loaded; these don't wait for the full load
     private final ConcurrentHashMap<String, EventDefinition> eventList = new ConcurrentHashMap<>(); //List of events built during file load
     private final Semaphore assetLoadingLock;  // used to block if someone calls getAssetDefinitionASync() while loading
     private Disposable eventListener;           // timer thread that periodically checks event logs for scripts that require events
-    private final Semaphore eventConnection;
+    private final TokenScriptEventEngine eventEngine;
     private FragmentMessenger homeMessenger;
 
     private final TokenscriptFunction tokenscriptUtility;
@@ -181,8 +193,10 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         {
         }; //no overridden functions
         tokenLocalSource = trs;
+        definitionCache = new TokenDefinitionCache(new File(ctx.getCacheDir(), COMPILED_SCRIPT_DIR));
+        scriptStamps = new TokenScriptStamps(new File(ctx.getFilesDir(), SCRIPT_STAMP_FILE));
         assetLoadingLock = new Semaphore(1);
-        eventConnection = new Semaphore(1);
+        eventEngine = new TokenScriptEventEngine(TokenRepository::getWeb3jServiceForEvents);
         //deleteAllEventData();
         loadAssetScripts();
     }
@@ -198,6 +212,10 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
      * This order has to be observed because it's an expected developer override order. If a script is placed in the /AlphaWallet directory
      * it is expected to override the one fetched from the repo server.
      * If a developer clicks on a script intent this script is expected to override the one fetched from the server.
+     * <p>
+     * Loading runs in the background. Known scripts are checked by size and modified time before hashing, and changed or new
+     * scripts are parsed on a bounded pool. Attribute fetches for a token whose script is known and unchanged, or has
+     * finished loading, don't wait for the rest of the scan; see waitForAssets(String).
      */
     private void loadAssetScripts()
     {
@@ -211,15 +229,64 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             Timber.e(e);
         }
 
-        List<String> handledHashes = checkRealmScriptsForChanges();
-        loadNewFiles(handledHashes);
+        scriptsReady.clear();
+        Completable.fromAction(() -> {
+                    ScriptLoadTimings timings = new ScriptLoadTimings();
+                    Set<String> handledHashes = checkRealmScriptsForChanges(timings);
+                    loadNewFiles(handledHashes, timings);
+
+                    long start = System.currentTimeMillis();
+                    loadInternalAssets();
+                    scriptStamps.save();
+                    timings.finish = System.currentTimeMillis() - start;
+                    timings.log(scriptStamps);
+                })
+                .subscribeOn(Schedulers.io())
+                .doFinally(this::finishLoading)
+                .subscribe(() -> {}, this::onError)
+                .isDisposed();
+    }
+
+    /**
+     * Wall clock time of each startup phase, in ms
+     */
+    private static class ScriptLoadTimings
+    {
+        final long begin = System.currentTimeMillis();
+        long realmCheck;   //stat or hash each known script, find changed ones
+        long realmParse;   //parse changed and event-bearing known scripts
+        long newFileScan;  //list, hash and parse files not yet known
+        long finish;       //bundled scripts, save stamps
+        int realmScripts;
+        int changedScripts;
+        int newScripts;
+
+        void log(TokenScriptStamps stamps)
+        {
+            Timber.d("TokenScript load: %d ms total; realm check %d ms (%d scripts, %d changed), realm parse %d ms, " +
+                            "new files %d ms (%d new), finish %d ms; hashed %d, stamp hits %d",
+                    System.currentTimeMillis() - begin, realmCheck, realmScripts, changedScripts, realmParse,
+                    newFileScan, newScripts, finish, stamps.getHashedCount(), stamps.getReusedCount());
+        }
+    }
+
+    /**
+     * A script file hashed and parsed on the loader pool
+     */
+    private static class ScriptLoad
+    {
+        final TokenScriptFile tsf;
+        String hash;
+        TokenDefinition td;
+        Exception error;
 
-        //executes after observable completes due to blockingForEach
-        loadInternalAssets();
-        finishLoading();
+        ScriptLoad(TokenScriptFile tsf)
+        {
+            this.tsf = tsf;
+        }
     }
 
-    private List<String> checkRealmScriptsForChanges()
+    private Set<String> checkRealmScriptsForChanges(ScriptLoadTimings timings)
     {
         //1. Signed files downloaded from server.
         //2. Files placed in the Android OS external directory (Android/data/<App Package Name>/files)
@@ -228,89 +295,159 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         //overridden by a script for the same token placed in the /AlphaWallet directory.
 
         //First check all the previously parsed scripts to check for any changes
-        List<String> handledHashes = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        scriptStamps.resetCounts();
+        Set<String> handledHashes = ConcurrentHashMap.newKeySet();
+        List<TokenScriptFile> changedScripts = new ArrayList<>();
+        List<TokenScriptFile> eventScripts = new ArrayList<>();
         try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
         {
             RealmResults<RealmTokenScriptData> realmData = realm.where(RealmTokenScriptData.class)
                     .findAll();
 
+            List<String> removedHashes = new ArrayList<>();
             for (RealmTokenScriptData entry : realmData)
             {
+                timings.realmScripts++;
                 if (handledHashes.contains(entry.getFileHash()))
-                    continue; //already checked - note that if a contract has multiple origins it could have more than one entry
+                {
+                    //already checked - note that if a contract has multiple origins it could have more than one entry
+                    if (!removedHashes.contains(entry.getFileHash())) scriptsReady.add(entry.getInstanceKey());
+                    continue;
+                }
                 //get file
                 TokenScriptFile tsf = new TokenScriptFile(context, entry.getFilePath());
                 handledHashes.add(entry.getFileHash());
-                if (!tsf.exists() || tsf.fileChanged(entry.getFileHash()))
+                if (!tsf.exists() || scriptChanged(tsf, entry.getFileHash()))
                 {
-                    deleteTokenScriptFromRealm(realm, entry.getFileHash());
-
+                    removedHashes.add(entry.getFileHash());
                     if (tsf.exists())
                     {
-                        handledHashes.add(tsf.calcMD5()); //add the hash of the new file
-                        //re-parse script, file hash has changed
-                        final TokenDefinition td = parseFile(tsf.getInputStream());
-                        cacheSignature(tsf)
-                                .map(definition -> getOriginContracts(td))
-                                .subscribeOn(Schedulers.io())
-                                .observeOn(Schedulers.io())
-                                .subscribe(success -> fileLoadComplete(success, tsf, td),
-                                        error -> handleFileLoadError(error, tsf))
-                                .isDisposed();
+                        handledHashes.add(scriptStamps.hashOf(tsf)); //add the hash of the new file
+                        changedScripts.add(tsf); //re-parse script, file hash has changed
                     }
                 }
-                else if (entry.hasEvents())
+                else
                 {
-                    //populate events
-                    TokenDefinition td = parseFile(tsf.getInputStream());
-                    addToEventList(td);
+                    scriptsReady.add(entry.getInstanceKey()); //unchanged, attributes for this token needn't wait
+                    if (entry.hasEvents()) eventScripts.add(tsf);
                 }
             }
+
+            //delete after the scan; the results above are live
+            for (String hash : removedHashes)
+            {
+                deleteTokenScriptFromRealm(realm, hash);
+            }
         }
         catch (Exception e)
         {
             Timber.e(e);
         }
 
+        timings.changedScripts = changedScripts.size();
+        timings.realmCheck = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+
+        //populate events; the definition cache makes these cheap after the first run
+        parseScripts(eventScripts)
+                .blockingForEach(load -> {
+                    if (load.td != null) addToEventList(load.td);
+                });
+
+        parseScripts(changedScripts)
+                .blockingForEach(load -> {
+                    if (load.td != null) completeScriptLoad(load);
+                    else if (load.error != null) handleFileLoadError(load.error, load.tsf);
+                });
+
+        timings.realmParse = System.currentTimeMillis() - start;
         return handledHashes;
     }
 
-    private void loadNewFiles(List<String> handledHashes)
+    private void loadNewFiles(Set<String> handledHashes, ScriptLoadTimings timings)
     {
-        //Now parse each file found to check for
-        Observable.fromIterable(buildFileList())
-                .filter(File::isFile)
-                .filter(this::allowableExtension)
-                .filter(File::canRead)
-                .subscribeOn(Schedulers.io())
-                .observeOn(Schedulers.io())
-                .blockingForEach(file -> {  //load sequentially
+        long start = System.currentTimeMillis();
+        List<TokenScriptFile> candidates = new ArrayList<>();
+        for (File file : buildFileList())
+        {
+            if (file.isFile() && allowableExtension(file) && file.canRead())
+            {
+                candidates.add(new TokenScriptFile(context, file.getAbsolutePath()));
+            }
+        }
+
+        //Now parse each file found. Parsing runs on the loader pool, results arrive in file list order so
+        //the first found file for a token is still the one written to the database
+        parseScripts(candidates, handledHashes)
+                .blockingForEach(load -> {
+                    if (load.hash != null && !handledHashes.add(load.hash)) return; //already handled this?
+                    if (load.td != null)
+                    {
+                        timings.newScripts++;
+                        completeScriptLoad(load);
+                    }
+                    else if (load.error != null)
+                    {
+                        handleFileLoadError(load.error, load.tsf);
+                    }
+                });
+
+        timings.newFileScan = System.currentTimeMillis() - start;
+    }
+
+    private boolean scriptChanged(TokenScriptFile tsf, String fileHash)
+    {
+        return fileHash == null || !tsf.isValidTokenScript() || !fileHash.equals(scriptStamps.hashOf(tsf));
+    }
+
+    private Observable<ScriptLoad> parseScripts(List<TokenScriptFile> files)
+    {
+        return parseScripts(files, null);
+    }
+
+    /**
+     * Hash and parse files on the bounded loader pool; emits in input order
+     * @param skipHashes if not null, files with these hashes aren't parsed
+     */
+    private Observable<ScriptLoad> parseScripts(List<TokenScriptFile> files, Set<String> skipHashes)
+    {
+        return Observable.fromIterable(files)
+                .concatMapEager(tsf -> Observable.fromCallable(() -> {
+                    ScriptLoad load = new ScriptLoad(tsf);
                     try
                     {
-                        final TokenScriptFile tsf = new TokenScriptFile(context, file.getAbsolutePath());
-                        final String hash = tsf.calcMD5();
-                        if (handledHashes.contains(hash)) return; //already handled this?
-                        final TokenDefinition td = parseFile(tsf.getInputStream());
-                        cacheSignature(file)
-                                .map(definition -> getOriginContracts(td))
-                                .subscribeOn(Schedulers.io())
-                                .observeOn(Schedulers.io())
-                                .subscribe(success -> fileLoadComplete(success, tsf, td),
-                                        error -> handleFileLoadError(error, file))
-                                .isDisposed();
+                        load.hash = scriptStamps.hashOf(tsf);
+                        if (skipHashes == null || !skipHashes.contains(load.hash))
+                        {
+                            load.td = getCachedDefinition(tsf, load.hash);
+                        }
                     }
                     catch (Exception e)
                     {
-                        handledHashes.add(new TokenScriptFile(context, file.getAbsolutePath()).calcMD5());
-                        handleFileLoadError(e, file);
+                        load.error = e;
                     }
-                });
+                    return load;
+                }).subscribeOn(scriptLoader), SCRIPT_LOADER_THREADS, SCRIPT_LOADER_THREADS)
+                .filter(load -> load.td != null || load.error != null || skipHashes == null);
+    }
+
+    private void completeScriptLoad(ScriptLoad load)
+    {
+        final TokenDefinition td = load.td;
+        cacheSignature(load.tsf)
+                .map(definition -> getOriginContracts(td))
+                .subscribeOn(Schedulers.io())
+                .observeOn(Schedulers.io())
+                .subscribe(success -> fileLoadComplete(success, load.tsf, td),
+                        error -> handleFileLoadError(error, load.tsf))
+                .isDisposed();
     }
 
     private void deleteTokenScriptFromRealm(Realm realm, String fileHash) throws RealmException
     {
         //delete from realm
-        realm.executeTransactionAsync(r -> {
+        realm.executeTransaction(r -> {
             //have to remove all instances of this hash
             RealmResults<RealmTokenScriptData> hashInstances = r.where(RealmTokenScriptData.class)
                     .equalTo("fileHash", fileHash)
@@ -366,7 +503,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     {
         try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
         {
-            realm.executeTransactionAsync(r -> {
+            realm.executeTransaction(r -> {
                 //have to remove all instances of this hash
                 RealmResults<RealmTokenScriptData> hashInstances = r.where(RealmTokenScriptData.class)
                         .equalTo("fileHash", BUNDLED_SCRIPT)
@@ -430,6 +567,11 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                     }
                 }
             });
+
+            for (ContractLocator cl : originContracts)
+            {
+                scriptsReady.add(getTSDataKey(cl.chainId, cl.address));
+            }
         }
         catch (Exception e)
         {
@@ -799,22 +941,6 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             return null;
         }
 
-        String address = elements[0];
-        long chainId = Long.parseLong(elements[1]);
-        //try cache
-        if (cachedDefinition != null)
-        {
-            //only match holding token
-            ContractInfo holdingContracts = cachedDefinition.contracts.get(cachedDefinition.holdingToken);
-            if (holdingContracts != null && holdingContracts.addresses.containsKey(chainId))
-            {
-                for (String addr : holdingContracts.addresses.get(chainId))
-                {
-                    if (addr.equalsIgnoreCase(address.toLowerCase())) return cachedDefinition;
-                }
-            }
-        }
-
         try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
         {
             RealmTokenScriptData tsData = realm.where(RealmTokenScriptData.class)
@@ -825,14 +951,13 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             {
                 if (tsData.getFileHash().equals(BUNDLED_SCRIPT)) //handle bundled scripts
                 {
-                    cachedDefinition = getBundledDefinition(tsData.getFilePath());
+                    result = getBundledDefinition(tsData.getFilePath());
                 }
                 else
                 {
                     TokenScriptFile tf = new TokenScriptFile(context, tsData.getFilePath());
-                    cachedDefinition = parseFile(tf.getInputStream());
+                    result = getCachedDefinition(tf, tsData.getFileHash());
                 }
-                result = cachedDefinition;
             }
         }
         catch (Exception e)
@@ -889,7 +1014,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             TokenScriptFile tsf = locateTokenScriptFile(attn.getTSKey() + TS_EXTENSION); //try easy find
             if (tsf.exists())
             {
-                return parseFile(tsf.getInputStream());
+                return getCachedDefinition(tsf);
             }
 
             //load filenames that are sufficient length to be attestation definitions
@@ -914,7 +1039,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                 if (f.isFile() && f.canRead() && allowableExtension(f))
                 {
                     tsf = new TokenScriptFile(context, f.getAbsolutePath());
-                    TokenDefinition td = parseFile(tsf.getInputStream());
+                    TokenDefinition td = getCachedDefinition(tsf);
                     if (td.getAttestation() != null && td.matchCollection(attn.getAttestationCollectionId(td)))
                     {
                         return td;
@@ -962,7 +1087,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                         continue;
                     }
 
-                    TokenDefinition td = parseFile(tsf.getInputStream());
+                    TokenDefinition td = getCachedDefinition(tsf);
                     if (td.matchCollection(attn.getAttestationCollectionId(td)))
                     {
                         tsfReturn = tsf;
@@ -1031,7 +1156,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         try
         {
             TokenScriptFile tsf = getTokenScriptFile(token);
-            return parseFile(tsf.getInputStream());
+            return tsf.exists() ? getCachedDefinition(tsf) : parseFile(tsf.getInputStream());
         }
         catch (Exception e)
         {
@@ -1075,12 +1200,21 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             contractName = "ethereum";
         }
 
-        // hold until asset definitions have finished loading
-        waitForAssets();
+        // hold until this token's script, or all asset definitions, have finished loading
+        waitForAssets(token.getTSKey());
 
         return getAssetDefinitionASync(getDefinition(token.getTSKey()), contractName);
     }
 
+    private void waitForAssets(String tsKey)
+    {
+        if (!scriptsReady.contains(tsKey))
+        {
+            //a script for this token may be among the files not yet scanned
+            waitForAssets();
+        }
+    }
+
     private void waitForAssets()
     {
         try
@@ -1178,10 +1312,28 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
 
     private TokenDefinition parseFile(InputStream xmlInputStream) throws Exception
     {
-        Locale locale = context.getResources().getConfiguration().getLocales().get(0);
-
         return new TokenDefinition(
-                xmlInputStream, locale, this);
+                xmlInputStream, getLocale(), this);
+    }
+
+    private Locale getLocale()
+    {
+        return context.getResources().getConfiguration().getLocales().get(0);
+    }
+
+    private TokenDefinition getCachedDefinition(TokenScriptFile tsf) throws Exception
+    {
+        return getCachedDefinition(tsf, tsf.calcMD5());
+    }
+
+    /**
+     * Parsed definition for this script file, from the definition cache where possible.
+     * Size and modified time are part of the key so an edited debug script isn't served from a stale Realm hash.
+     */
+    private TokenDefinition getCachedDefinition(TokenScriptFile tsf, String fileHash) throws Exception
+    {
+        String key = fileHash + "-" + tsf.length() + "-" + tsf.lastModified() + "-" + getLocale().toLanguageTag();
+        return definitionCache.get(key, tsf.length(), () -> parseFile(tsf.getInputStream()));
     }
 
     private Single<TokenDefinition> handleNewTSFile(File newFile)
@@ -1214,7 +1366,6 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                 boolean isDebugOverride = tsf.isDebug();
                 //remove all old definitions & certificates
                 updateScriptEntriesInRealm(originContracts, isDebugOverride, tsf.calcMD5(), schemaUID);
-                cachedDefinition = null;
                 return tsf;
         }).flatMap(tt -> cacheSignature(tsf))
           .map(a -> fileLoadComplete(originContracts, tsf, td));
@@ -1573,9 +1724,15 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private TokenDefinition getBundledDefinition(String asset)
     {
         TokenDefinition td = null;
-        try (InputStream input = context.getResources().getAssets().open(asset))
+        String key = BUNDLED_SCRIPT + "-" + asset + "-" + BuildConfig.VERSION_CODE + "-" + getLocale().toLanguageTag();
+        try
         {
-            td = parseFile(input);
+            td = definitionCache.get(key, BUNDLED_SCRIPT_WEIGHT, () -> {
+                try (InputStream input = context.getResources().getAssets().open(asset))
+                {
+                    return parseFile(input);
+                }
+            });
         }
         catch (Exception e)
         {
@@ -1675,74 +1832,22 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         if (eventListener != null && !eventListener.isDisposed()) eventListener.dispose();
         eventListener = Observable.interval(0, CHECK_TX_LOGS_INTERVAL, TimeUnit.SECONDS)
                 .doOnNext(l -> {
-                    checkEvents()
+                    checkEventDisposable = checkEvents()
                             .subscribeOn(Schedulers.io())
                             .observeOn(AndroidSchedulers.mainThread())
-                            .subscribe(() -> {}, t -> {}) //results are handled within logging function
-                            .isDisposed();
+                            .subscribe(() -> {}, Timber::e); //results are handled within logging function
                 }).subscribe();
     }
 
     private Completable checkEvents()
     {
-        //check events for corresponding tokens
+        //check events for corresponding tokens: one log query per chain, routed back to each event
         return Completable.fromAction(() -> {
-            for (EventDefinition ev : eventList.values())
-            {
-                getEvent(ev);
-            }
-        });
-    }
-
-    private void getEvent(EventDefinition ev)
-    {
-        try
-        {
-            EthFilter filter = getEventFilter(ev);
-            if (filter == null) return;
-            if (BuildConfig.DEBUG)
-                eventConnection.acquire(); //prevent overlapping event calls while debugging
             final String walletAddress = tokensService.getCurrentAddress();
-            Web3j web3j = getWeb3jService(ev.getEventChainId());
-
-            checkEventDisposable = handleLogs(ev, filter, web3j, walletAddress)
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(Schedulers.computation())
-                    .subscribe();
-        }
-        catch (Exception e)
-        {
-            Timber.e(e);
-        }
-    }
-
-    private Single<String> handleLogs(EventDefinition ev, EthFilter filter, Web3j web3j, final String walletAddress)
-    {
-        return Single.fromCallable(() -> {
-            String txHash = "";
-            try
-            {
-                EthLog ethLogs = web3j.ethGetLogs(filter).send();
-                txHash = processLogs(ev, ethLogs.getLogs(), walletAddress);
-            }
-            catch (Exception e)
-            {
-                Timber.e(e);
-            }
-            finally
-            {
-                if (BuildConfig.DEBUG) eventConnection.release();
-            }
-            return txHash;
+            if (TextUtils.isEmpty(walletAddress) || eventList.isEmpty()) return;
+            eventEngine.poll(walletAddress, eventList.values(), this::getEventFilter,
+                    (ev, logs) -> processLogs(ev, logs, walletAddress));
         });
-        //More elegant, but requires a private node
-//        return web3j.ethLogFlowable(filter)
-//                .subscribeOn(Schedulers.io())
-//                .observeOn(AndroidSchedulers.mainThread())
-//                .subscribe(log -> {
-//            Timber.d("log.toString(): " +  log.toString());
-//            //TODO here: callback to event service listener
-//        }, this::onLogError);
     }
 
     private EthFilter getEventFilter(EventDefinition ev) throws Exception
@@ -2397,6 +2502,15 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private Map<BigInteger, Map<String, TokenScriptResult.Attribute>> getRequiredAttributeResults(List<String> requiredAttrNames, List<BigInteger> tokenIds, TokenDefinition td, Token token)
     {
         Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resultSet = new HashMap<>();
+        List<Attribute> requiredAttrs = new ArrayList<>();
+        for (String attrName : requiredAttrNames)
+        {
+            if (td.attributes.get(attrName) != null) requiredAttrs.add(td.attributes.get(attrName));
+        }
+
+        //make all the contract calls up front in batches, rather than one call per attribute and tokenId
+        tokenscriptUtility.prefetchAttrResults(token, requiredAttrs, tokenIds, td, this);
+
         for (BigInteger tokenId : tokenIds)
         {
             for (String attrName : requiredAttrNames)
@@ -2404,6 +2518,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                 Attribute attr = td.attributes.get(attrName);
                 if (attr == null) continue;
                 BigInteger useTokenId = td.useZeroForTokenIdAgnostic(attrName, tokenId);
+                if (resultSet.containsKey(useTokenId) && resultSet.get(useTokenId).containsKey(attrName)) continue; //tokenId agnostic, already resolved
                 TokenScriptResult.Attribute attrResult = tokenscriptUtility.fetchAttrResult(token, attr, useTokenId, td, this, ViewType.VIEW).blockingGet();
                 if (attrResult != null)
                 {
@@ -2970,11 +3085,12 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     }
 
     /**
-     * Clear the currently cached definition. This forces the service to reload the definition so it's clean for the next usage.
+     * Clear the in-memory definitions. This forces the service to reload the definition so it's clean for the next usage;
+     * the reload comes from the compiled form, which is never modified after it's written.
      */
     public void clearCache()
     {
-        cachedDefinition = null;
+        definitionCache.clear();
     }
 
     public ContractLocator getHoldingContract(String importFileName)
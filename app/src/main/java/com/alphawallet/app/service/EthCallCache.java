@@ -0,0 +1,220 @@
+package com.alphawallet.app.service;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import timber.log.Timber;
+
+/**
+ * Read-through cache for eth_call results at the latest block.
+ *
+ * 'latest' is resolved to the chain's current block from TransactionsService.getCurrentBlock, and results are kept
+ * per chain until that block moves on, when all the chain's entries are dropped. Calls are keyed on from, to and
+ * calldata, since a view function may depend on msg.sender. Concurrent identical calls share one request. Each chain
+ * holds at most MAX_ENTRIES_PER_CHAIN results, dropping the least recently used. Error responses aren't cached.
+ */
+public class EthCallCache
+{
+    public interface Call
+    {
+        EthCall send() throws IOException;
+    }
+
+    private static final int MAX_ENTRIES_PER_CHAIN = 256;
+
+    private static final EthCallCache instance = new EthCallCache(TransactionsService::getCurrentBlock);
+
+    private static class ChainCache
+    {
+        BigInteger block = BigInteger.ZERO;
+        final Map<String, EthCall> entries = new LinkedHashMap<String, EthCall>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EthCall> eldest)
+            {
+                return size() > MAX_ENTRIES_PER_CHAIN;
+            }
+        };
+    }
+
+    private final LongFunction<BigInteger> currentBlock;
+    private final Map<Long, ChainCache> chains = new HashMap<>();
+    private final Map<String, FutureTask<EthCall>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public static EthCallCache getInstance()
+    {
+        return instance;
+    }
+
+    EthCallCache(LongFunction<BigInteger> currentBlock)
+    {
+        this.currentBlock = currentBlock;
+    }
+
+    /**
+     * eth_call at the latest block, served from the cache if the same call was made at the current block
+     */
+    public static EthCall ethCall(long chainId, Web3j web3j, Transaction transaction) throws IOException
+    {
+        return instance.get(chainId, transaction, () -> web3j.ethCall(transaction, DefaultBlockParameterName.LATEST).send());
+    }
+
+    public EthCall get(long chainId, Transaction transaction, Call call) throws IOException
+    {
+        BigInteger block = resolveLatest(chainId);
+        if (block.signum() <= 0)
+        {
+            misses.incrementAndGet();
+            return call.send(); //block unknown; can't scope the result
+        }
+
+        final String key = callKey(transaction);
+        EthCall cached = getCached(chainId, block, key);
+        if (cached != null)
+        {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        final String flightKey = chainId + "-" + block + "-" + key;
+        FutureTask<EthCall> task = new FutureTask<>(() -> {
+            EthCall response = call.send();
+            if (response != null && !response.hasError()) put(chainId, block, key, response);
+            return response;
+        });
+
+        FutureTask<EthCall> running = inFlight.putIfAbsent(flightKey, task);
+        if (running == null)
+        {
+            misses.incrementAndGet();
+            running = task;
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                inFlight.remove(flightKey, task);
+            }
+        }
+        else
+        {
+            coalesced.incrementAndGet();
+        }
+
+        try
+        {
+            return running.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getCoalesced()
+    {
+        return coalesced.get();
+    }
+
+    /**
+     * @return proportion of calls answered without a request of their own
+     */
+    public double getHitRate()
+    {
+        long saved = hits.get() + coalesced.get();
+        long total = saved + misses.get();
+        return total == 0 ? 0 : (double) saved / total;
+    }
+
+    public synchronized void clear()
+    {
+        chains.clear();
+    }
+
+    private BigInteger resolveLatest(long chainId)
+    {
+        try
+        {
+            return currentBlock.apply(chainId);
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+            return BigInteger.ZERO;
+        }
+    }
+
+    private synchronized EthCall getCached(long chainId, BigInteger block, String key)
+    {
+        ChainCache chain = chains.get(chainId);
+        if (chain == null) return null;
+        if (block.compareTo(chain.block) > 0)
+        {
+            //new block: everything read at the old one is stale
+            chain.entries.clear();
+            chain.block = block;
+            return null;
+        }
+
+        return block.equals(chain.block) ? chain.entries.get(key) : null;
+    }
+
+    private synchronized void put(long chainId, BigInteger block, String key, EthCall response)
+    {
+        ChainCache chain = chains.get(chainId);
+        if (chain == null)
+        {
+            chain = new ChainCache();
+            chains.put(chainId, chain);
+        }
+
+        if (block.compareTo(chain.block) > 0)
+        {
+            chain.entries.clear();
+            chain.block = block;
+        }
+
+        //a result for an older block than the chain has moved on to isn't kept
+        if (block.equals(chain.block)) chain.entries.put(key, response);
+    }
+
+    private static String callKey(Transaction transaction)
+    {
+        return (transaction.getFrom() + "-" + transaction.getTo() + "-" + transaction.getData()).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,118 @@
+package com.alphawallet.app.service;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the result array out of an explorer API response.
+ *
+ * Elements are decoded one at a time straight from the response body and handed on singly or in chunks, so a large
+ * page is never held as a string or JSON tree; only the current element or chunk is in memory.
+ */
+public class ExplorerResponseReader
+{
+    public interface ChunkHandler<T>
+    {
+        void onChunk(List<T> chunk) throws Exception;
+    }
+
+    public interface ElementHandler<T>
+    {
+        void onElement(T element) throws Exception;
+    }
+
+    public static class Result
+    {
+        public boolean found;   //the response held the array; false for an error body such as a rate limit message
+        public int rows;        //elements read from the array
+        public String message;  //explorer's message, eg 'No transactions found', or the result when it isn't an array
+    }
+
+    /**
+     * @param source response body
+     * @param type type of the array elements
+     * @param chunkSize elements per call to the handler
+     * @param handler receives the elements as they are decoded
+     * @param path field names leading to the array, eg "result" for Etherscan or "data", "items" for Covalent
+     */
+    public static <T> Result read(Reader source, Gson gson, Class<T> type, int chunkSize, ChunkHandler<T> handler,
+                                  String... path) throws Exception
+    {
+        List<List<T>> chunk = new ArrayList<>(1);
+        chunk.add(new ArrayList<>(chunkSize));
+        Result result = read(source, gson, type, element -> {
+            chunk.get(0).add(element);
+            if (chunk.get(0).size() >= chunkSize)
+            {
+                handler.onChunk(chunk.get(0));
+                chunk.set(0, new ArrayList<>(chunkSize));
+            }
+        }, path);
+
+        if (chunk.get(0).size() > 0) handler.onChunk(chunk.get(0));
+        return result;
+    }
+
+    /**
+     * @param handler receives each element as it is decoded
+     */
+    public static <T> Result read(Reader source, Gson gson, Class<T> type, ElementHandler<T> handler,
+                                  String... path) throws Exception
+    {
+        Result result = new Result();
+        try (JsonReader reader = new JsonReader(source))
+        {
+            reader.setLenient(true);
+            if (!findArray(reader, path, 0, result)) return result;
+            result.found = true;
+
+            reader.beginArray();
+            while (reader.hasNext())
+            {
+                T element = gson.fromJson(reader, type);
+                result.rows++;
+                if (element != null) handler.onElement(element);
+            }
+            reader.endArray();
+        }
+
+        return result;
+    }
+
+    /**
+     * Position the reader at the start of the array at the end of the path
+     */
+    private static boolean findArray(JsonReader reader, String[] path, int depth, Result result) throws Exception
+    {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) return false;
+
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (name.equals(path[depth]))
+            {
+                if (depth == path.length - 1 && token == JsonToken.BEGIN_ARRAY) return true;
+                if (depth < path.length - 1) return findArray(reader, path, depth + 1, result);
+                if (token == JsonToken.STRING) result.message = reader.nextString();
+                return false;
+            }
+            else if (name.equals("message") && token == JsonToken.STRING)
+            {
+                result.message = reader.nextString();
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,142 @@
+package com.alphawallet.app.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import okio.BufferedSource;
+import okio.Okio;
+import timber.log.Timber;
+
+/**
+ * Disk cache for IPFS content, keyed by CID and path.
+ *
+ * Content under a CID can't change, so an entry is never revalidated. Entries are only removed to keep the
+ * cache under its size limit, least recently used first. Downloads are written to a temp file in the cache
+ * directory and moved into place once complete, so a partial download is never served.
+ */
+public class IPFSCache
+{
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final long maxBytes;
+    private long totalBytes = -1; //counted on first use
+
+    public IPFSCache(File dir, long maxBytes)
+    {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return cached content file, or null if not cached
+     */
+    public synchronized File get(String key)
+    {
+        init();
+        File entry = new File(dir, fileName(key));
+        if (!entry.exists()) return null;
+        entry.setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    public synchronized File newTempFile() throws IOException
+    {
+        init();
+        if (!dir.exists()) dir.mkdirs();
+        return File.createTempFile("ipfs", TEMP_SUFFIX, dir);
+    }
+
+    /**
+     * Move a completed download into the cache. If the key was stored meanwhile (eg by another gateway) the
+     * existing entry is kept.
+     *
+     * @return the cache entry
+     */
+    public synchronized File commit(String key, File temp) throws IOException
+    {
+        init();
+        File entry = new File(dir, fileName(key));
+        if (entry.exists())
+        {
+            temp.delete();
+            return entry;
+        }
+
+        long size = temp.length();
+        if (!temp.renameTo(entry))
+        {
+            temp.delete();
+            throw new IOException("Unable to store IPFS content: " + key);
+        }
+
+        totalBytes += size;
+        if (totalBytes > maxBytes) evict(entry);
+        return entry;
+    }
+
+    public static String read(File entry) throws IOException
+    {
+        try (BufferedSource source = Okio.buffer(Okio.source(entry)))
+        {
+            return source.readUtf8();
+        }
+    }
+
+    public synchronized long size()
+    {
+        init();
+        return totalBytes;
+    }
+
+    private void init()
+    {
+        if (totalBytes >= 0) return;
+        totalBytes = 0;
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files)
+        {
+            //left over from a download that was interrupted by the app closing
+            if (file.getName().endsWith(TEMP_SUFFIX)) file.delete();
+            else totalBytes += file.length();
+        }
+    }
+
+    private void evict(File keep)
+    {
+        File[] files = dir.listFiles(file -> !file.getName().endsWith(TEMP_SUFFIX) && !file.equals(keep));
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files)
+        {
+            if (totalBytes <= maxBytes) break;
+            long size = file.length();
+            if (file.delete()) totalBytes -= size;
+        }
+    }
+
+    private static String fileName(String key)
+    {
+        try
+        {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash)
+            {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            Timber.e(e);
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -6,12 +6,22 @@ import com.alphawallet.app.entity.QueryResponse;
 import com.alphawallet.app.entity.tokenscript.TestScript;
 import com.alphawallet.app.util.Utils;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.SocketTimeoutException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okio.BufferedSink;
+import okio.Okio;
 import timber.log.Timber;
 
 /**
@@ -19,11 +29,28 @@ import timber.log.Timber;
  */
 public class IPFSService implements IPFSServiceType
 {
+    private static final String[] IPFS_GATEWAYS = { Utils.IPFS_IO_RESOLVER, Utils.IPFS_INFURA_RESOLVER };
+    private static final long IPFS_CACHE_SIZE = 50 * 1024 * 1024;
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+
     private final OkHttpClient client;
+    private final IPFSCache ipfsCache;
 
     public IPFSService(OkHttpClient okHttpClient)
     {
         this.client = okHttpClient;
+        this.ipfsCache = null;
+    }
+
+    /**
+     * @param cacheDir IPFS content is cached here by CID, and other metadata according to its HTTP cache headers
+     */
+    public IPFSService(OkHttpClient okHttpClient, File cacheDir)
+    {
+        this.client = okHttpClient.newBuilder()
+                .cache(new Cache(new File(cacheDir, "http-metadata"), HTTP_CACHE_SIZE))
+                .build();
+        this.ipfsCache = new IPFSCache(new File(cacheDir, "ipfs"), IPFS_CACHE_SIZE);
     }
 
     public String getContent(String url)
@@ -82,22 +109,118 @@ public class IPFSService implements IPFSServiceType
     {
         if (isTestCode(url)) return loadTestCode();
 
-        //try Infura first
-        String tryIPFS = Utils.resolveIPFS(url, Utils.IPFS_IO_RESOLVER);
-        //attempt to load content
-        QueryResponse r;
+        String key = contentKey(url);
+        File cached = ipfsCache != null ? ipfsCache.get(key) : null;
+        if (cached != null)
+        {
+            return new QueryResponse(200, IPFSCache.read(cached));
+        }
+
+        return raceGateways(url, key);
+    }
+
+    /**
+     * Request the content from all gateways at once and take the first good response; the other requests are
+     * cancelled. If no gateway succeeds, the last error response is returned, or the first exception thrown.
+     */
+    private QueryResponse raceGateways(String url, String key) throws IOException
+    {
+        BlockingQueue<Object> results = new LinkedBlockingQueue<>(); //QueryResponse or IOException from each gateway
+        List<Call> calls = new ArrayList<>();
+        for (String gateway : IPFS_GATEWAYS)
+        {
+            Call call = client.newCall(new Request.Builder().url(Utils.resolveIPFS(url, gateway)).get().build());
+            calls.add(call);
+            call.enqueue(new Callback()
+            {
+                @Override
+                public void onFailure(Call call, IOException e)
+                {
+                    results.add(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response)
+                {
+                    try (Response r = response)
+                    {
+                        results.add(readGatewayResponse(r, key));
+                    }
+                    catch (IOException e)
+                    {
+                        results.add(e);
+                    }
+                }
+            });
+        }
+
+        QueryResponse failedResponse = null;
+        IOException error = null;
         try
         {
-            r = get(tryIPFS, null);
+            for (int i = 0; i < calls.size(); i++)
+            {
+                Object result = results.take();
+                if (result instanceof QueryResponse)
+                {
+                    QueryResponse response = (QueryResponse) result;
+                    if (response.isSuccessful()) return response;
+                    failedResponse = response;
+                }
+                else if (error == null)
+                {
+                    error = (IOException) result;
+                }
+            }
         }
-        catch (SocketTimeoutException e)
+        catch (InterruptedException e)
         {
-            //timeout, try second node. Any other failure simply throw back to calling function
-            tryIPFS = Utils.resolveIPFS(url, Utils.IPFS_INFURA_RESOLVER);
-            r = get(tryIPFS, null); //if this throws it will be picked up by calling function
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("IPFS fetch interrupted");
+        }
+        finally
+        {
+            for (Call call : calls)
+            {
+                call.cancel();
+            }
+        }
+
+        if (failedResponse != null) return failedResponse;
+        throw error != null ? error : new IOException("No IPFS gateway responded");
+    }
+
+    private QueryResponse readGatewayResponse(Response response, String key) throws IOException
+    {
+        if (!response.isSuccessful() || ipfsCache == null)
+        {
+            return new QueryResponse(response.code(), response.body().string());
         }
 
-        return r;
+        //stream to disk rather than holding the body in memory while it downloads
+        File temp = ipfsCache.newTempFile();
+        try (BufferedSink sink = Okio.buffer(Okio.sink(temp)))
+        {
+            sink.writeAll(response.body().source());
+        }
+        catch (IOException e)
+        {
+            temp.delete(); //includes the losing gateways, cancelled mid-download
+            throw e;
+        }
+
+        return new QueryResponse(response.code(), IPFSCache.read(ipfsCache.commit(key, temp)));
+    }
+
+    // CID and path within it, without the gateway; eg 'QmXXLF.../metadata/1.json'
+    private static String contentKey(String url)
+    {
+        String key = Utils.resolveIPFS(url, "");
+        int ipfsIndex = key.indexOf("/ipfs/");
+        if (ipfsIndex >= 0) key = key.substring(ipfsIndex + "/ipfs/".length());
+        int queryIndex = key.indexOf('?');
+        if (queryIndex >= 0) key = key.substring(0, queryIndex);
+        return key;
     }
 
     private void addHeaders(Request.Builder bld, String[] headers) throws IOException
@@ -0,0 +1,199 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.app.ui.widget.entity.PriceAlert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import timber.log.Timber;
+
+/**
+ * Evaluates price alerts as ticker prices are written, rather than polling each alert.
+ *
+ * Enabled alerts are indexed by (chainId, ticker address) and then by alert currency, with the 'above' and 'below'
+ * thresholds of each kept in sorted maps. A price tick for a token converts the price once per alert currency and
+ * takes the triggered range out of each map, so a tick costs O(log n) plus the alerts it fires, however many alerts
+ * are set. Fired alerts are disabled and removed from the index.
+ *
+ * Ticker prices are in the app currency; conversion rates from the app currency to each alert currency are supplied
+ * by PriceAlertsService once per heartbeat.
+ */
+public class PriceAlertEngine
+{
+    public interface AlertListener
+    {
+        void onAlertsTriggered(List<PriceAlert> alerts);
+    }
+
+    private static final PriceAlertEngine instance = new PriceAlertEngine();
+
+    private static class Thresholds
+    {
+        final TreeMap<Double, List<PriceAlert>> above = new TreeMap<>();
+        final TreeMap<Double, List<PriceAlert>> below = new TreeMap<>();
+
+        boolean isEmpty()
+        {
+            return above.isEmpty() && below.isEmpty();
+        }
+    }
+
+    //(chainId, ticker address) -> alert currency -> thresholds
+    private final Map<String, Map<String, Thresholds>> alerts = new HashMap<>();
+    private final Map<String, Double> rates = new HashMap<>();
+    private volatile boolean hasAlerts = false;
+    private volatile AlertListener listener;
+
+    public static PriceAlertEngine getInstance()
+    {
+        return instance;
+    }
+
+    PriceAlertEngine()
+    {
+    }
+
+    public void setListener(AlertListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Replace the indexed alerts
+     *
+     * @param enabledAlerts alerts to watch
+     * @param tickerAddresses ticker address of each alert's token, in the same order; "eth" for a chain token
+     */
+    public synchronized void setAlerts(List<PriceAlert> enabledAlerts, List<String> tickerAddresses)
+    {
+        alerts.clear();
+        for (int i = 0; i < enabledAlerts.size(); i++)
+        {
+            PriceAlert alert = enabledAlerts.get(i);
+            Double threshold = parseThreshold(alert);
+            if (!alert.isEnabled() || threshold == null) continue;
+
+            Thresholds thresholds = alerts.computeIfAbsent(key(alert.getChainId(), tickerAddresses.get(i)), k -> new HashMap<>())
+                    .computeIfAbsent(alert.getCurrency(), k -> new Thresholds());
+            (alert.getAbove() ? thresholds.above : thresholds.below)
+                    .computeIfAbsent(threshold, k -> new ArrayList<>()).add(alert);
+        }
+
+        hasAlerts = !alerts.isEmpty();
+    }
+
+    public synchronized void clear()
+    {
+        alerts.clear();
+        hasAlerts = false;
+    }
+
+    /**
+     * @return currencies of the indexed alerts, to fetch conversion rates for
+     */
+    public synchronized Set<String> getCurrencies()
+    {
+        Set<String> currencies = new HashSet<>();
+        for (Map<String, Thresholds> byCurrency : alerts.values())
+        {
+            currencies.addAll(byCurrency.keySet());
+        }
+        return currencies;
+    }
+
+    public synchronized void setRate(String currency, double rate)
+    {
+        if (rate > 0) rates.put(currency, rate); //a failed conversion returns zero; keep the last good rate
+    }
+
+    /**
+     * Called when a new price for a token is stored. Fires any alerts the price crosses. With no listener nothing is
+     * evaluated, since fired alerts are taken out of the index and would otherwise be lost.
+     */
+    public void onPriceUpdate(long chainId, String tickerAddress, String price)
+    {
+        AlertListener l = listener;
+        if (!hasAlerts || price == null || l == null) return;
+
+        try
+        {
+            List<PriceAlert> triggered = evaluate(chainId, tickerAddress, Double.parseDouble(price));
+            if (!triggered.isEmpty()) l.onAlertsTriggered(triggered);
+        }
+        catch (NumberFormatException e)
+        {
+            Timber.w(e);
+        }
+    }
+
+    /**
+     * Take out and disable the alerts crossed by the token's price
+     *
+     * @param price token price in the app currency
+     */
+    public synchronized List<PriceAlert> evaluate(long chainId, String tickerAddress, double price)
+    {
+        List<PriceAlert> triggered = new ArrayList<>();
+        String key = key(chainId, tickerAddress);
+        Map<String, Thresholds> byCurrency = alerts.get(key);
+        if (byCurrency == null) return triggered;
+
+        Iterator<Map.Entry<String, Thresholds>> itr = byCurrency.entrySet().iterator();
+        while (itr.hasNext())
+        {
+            Map.Entry<String, Thresholds> entry = itr.next();
+            Double rate = rates.get(entry.getKey());
+            if (rate == null) continue; //no conversion yet for this currency
+
+            double value = price * rate;
+            Thresholds thresholds = entry.getValue();
+            take(thresholds.above.headMap(value, false), triggered); //'above' alerts set below the price
+            take(thresholds.below.tailMap(value, false), triggered); //'below' alerts set above the price
+            if (thresholds.isEmpty()) itr.remove();
+        }
+
+        if (byCurrency.isEmpty()) alerts.remove(key);
+        hasAlerts = !alerts.isEmpty();
+
+        for (PriceAlert alert : triggered)
+        {
+            alert.setEnabled(false); //alerts fire once
+        }
+
+        return triggered;
+    }
+
+    private static void take(NavigableMap<Double, List<PriceAlert>> range, List<PriceAlert> triggered)
+    {
+        for (List<PriceAlert> list : range.values())
+        {
+            triggered.addAll(list);
+        }
+        range.clear();
+    }
+
+    private static Double parseThreshold(PriceAlert alert)
+    {
+        try
+        {
+            return alert.getValue() != null ? Double.parseDouble(alert.getValue()) : null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    private static String key(long chainId, String tickerAddress)
+    {
+        return chainId + "-" + tickerAddress.toLowerCase(Locale.ROOT);
+    }
+}
@@ -23,14 +23,15 @@ import com.google.gson.reflect.TypeToken;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import dagger.hilt.android.AndroidEntryPoint;
 import io.reactivex.Observable;
-import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 
@@ -62,6 +63,11 @@ public class PriceAlertsService extends Service
     @Nullable
     private Disposable heartBeatTimer;
 
+    private final PriceAlertEngine alertEngine = PriceAlertEngine.getInstance();
+    private final Map<String, Token> watchedTokens = new ConcurrentHashMap<>();
+    private volatile List<PriceAlert> priceAlerts = new ArrayList<>();
+    private String alertsJson;
+
     public class LocalBinder extends Binder
     {
         public PriceAlertsService getService()
@@ -82,6 +88,7 @@ public class PriceAlertsService extends Service
     public void onCreate()
     {
         super.onCreate();
+        alertEngine.setListener(this::onAlertsTriggered);
 
         genericWalletInteract
                 .find()
@@ -97,6 +104,15 @@ public class PriceAlertsService extends Service
         defaultWallet = wallet;
     }
 
+    @Override
+    public void onDestroy()
+    {
+        super.onDestroy();
+        alertEngine.setListener(null);
+        alertEngine.clear();
+        if (heartBeatTimer != null && !heartBeatTimer.isDisposed()) heartBeatTimer.dispose();
+    }
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId)
     {
@@ -108,7 +124,7 @@ public class PriceAlertsService extends Service
     {
         if (heartBeatTimer == null || heartBeatTimer.isDisposed())
         {
-            heartBeatTimer = Observable.interval(0, 30, TimeUnit.SECONDS)
+            heartBeatTimer = Observable.interval(0, 30, TimeUnit.SECONDS, Schedulers.io())
                     .doOnNext(l -> heartBeat()).subscribe();
         }
     }
@@ -120,42 +136,78 @@ public class PriceAlertsService extends Service
             return;
         }
 
-        List<PriceAlert> enabledPriceAlerts = getEnabledPriceAlerts();
-        for (PriceAlert priceAlert : enabledPriceAlerts)
+        indexPriceAlerts();
+
+        //one conversion per alert currency, however many alerts use it
+        for (String currency : alertEngine.getCurrencies())
+        {
+            alertEngine.setRate(currency, tickerService.convertPair(TickerService.getCurrencySymbolTxt(), currency)
+                    .onErrorReturnItem(0.0).blockingGet());
+        }
+
+        //check stored prices against alerts; new prices are checked as they're written (see TokensRealmSource)
+        for (Token token : watchedTokens.values())
         {
-            tickerService.convertPair(TickerService.getCurrencySymbolTxt(), priceAlert.getCurrency())
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe((rate) ->
-                    {
-                        Token token = tokensService.getToken(priceAlert.getChainId(), priceAlert.getAddress());
-                        if (token == null)
-                        {
-                            return;
-                        }
-                        TokenTicker tokenTicker = tokensService.getTokenTicker(token);
-                        if (tokenTicker == null)
-                        {
-                            return;
-                        }
-                        double currentTokenPrice = Double.parseDouble(tokenTicker.price);
-
-                        if (priceAlert.match(rate, currentTokenPrice))
-                        {
-                            String content = constructContent(priceAlert, Objects.requireNonNull(CurrencyRepository.getCurrencyByISO(priceAlert.getCurrency())));
-                            notificationService.displayPriceAlertNotification(priceAlert.getToken(), content, 0, constructIntent(token));
-                            // disable notification to avoid run multiple times
-                            priceAlert.setEnabled(false);
-                            updatePriceAlerts(enabledPriceAlerts);
-                        }
-                    }, Throwable::printStackTrace).isDisposed();
+            TokenTicker tokenTicker = tokensService.getTokenTicker(token);
+            if (tokenTicker != null)
+            {
+                alertEngine.onPriceUpdate(token.tokenInfo.chainId, getTickerAddress(token), tokenTicker.price);
+            }
         }
     }
 
+    /**
+     * Rebuild the alert index if the stored alerts have changed
+     */
+    private synchronized void indexPriceAlerts()
+    {
+        String json = preferenceRepository.getPriceAlerts();
+        if (json.equals(alertsJson)) return;
+
+        alertsJson = json;
+        priceAlerts = getPriceAlerts();
+        watchedTokens.clear();
+        List<PriceAlert> enabledPriceAlerts = new ArrayList<>();
+        List<String> tickerAddresses = new ArrayList<>();
+        for (PriceAlert pa : getEnabledPriceAlerts())
+        {
+            Token token = tokensService.getToken(pa.getChainId(), pa.getAddress());
+            if (token == null)
+            {
+                alertsJson = null; //token not loaded yet, index again next heartbeat
+                continue;
+            }
+            enabledPriceAlerts.add(pa);
+            tickerAddresses.add(getTickerAddress(token));
+            watchedTokens.put(pa.getChainId() + "-" + pa.getAddress().toLowerCase(), token);
+        }
+
+        alertEngine.setAlerts(enabledPriceAlerts, tickerAddresses);
+    }
+
+    private String getTickerAddress(Token token)
+    {
+        return token.isEthereum() ? "eth" : token.getAddress();
+    }
+
+    private void onAlertsTriggered(List<PriceAlert> triggered)
+    {
+        for (PriceAlert priceAlert : triggered)
+        {
+            Token token = tokensService.getToken(priceAlert.getChainId(), priceAlert.getAddress());
+            if (token == null) continue;
+            String content = constructContent(priceAlert, Objects.requireNonNull(CurrencyRepository.getCurrencyByISO(priceAlert.getCurrency())));
+            notificationService.displayPriceAlertNotification(priceAlert.getToken(), content, 0, constructIntent(token));
+        }
+
+        // the engine has disabled the fired alerts to avoid running them multiple times
+        savePriceAlerts();
+    }
+
     private List<PriceAlert> getEnabledPriceAlerts()
     {
         List<PriceAlert> enabledPriceAlerts = new ArrayList<>();
-        for (PriceAlert pa : getPriceAlerts())
+        for (PriceAlert pa : priceAlerts)
         {
             if (pa.isEnabled())
             {
@@ -177,11 +229,13 @@ public class PriceAlertsService extends Service
         }.getType());
     }
 
-    private void updatePriceAlerts(List<PriceAlert> priceAlerts)
+    //under the same lock as indexPriceAlerts, so the list saved is the one the index was built from
+    private synchronized void savePriceAlerts()
     {
         String json = new Gson().toJson(priceAlerts, new TypeToken<List<PriceAlert>>()
         {
         }.getType());
+        alertsJson = json; //index already matches
         preferenceRepository.setPriceAlerts(json);
     }
 
@@ -0,0 +1,315 @@
+package com.alphawallet.app.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import timber.log.Timber;
+
+/**
+ * Local price history, one time series per token and currency, kept as primitive arrays and persisted to a small
+ * binary file per series.
+ *
+ * The series is filled once with the full year and afterwards only the points newer than the last stored one are
+ * appended. Older points are thinned as they age: full detail for the last day, hourly to 90 days, daily to a year.
+ * Chart ranges are cut from the one series rather than fetched separately, and decimate() reduces a range to the
+ * number of points that can actually be drawn.
+ */
+public class PriceHistoryStore
+{
+    private static final int FORMAT_VERSION = 1;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long HOURLY_AFTER = DAY;       //points older than this are kept hourly
+    private static final long DAILY_AFTER = 90 * DAY;   //and older than this, daily
+    private static final long MAX_AGE = 366 * DAY;
+    private static final long REFRESH_INTERVAL = 5 * 60 * 1000L;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public static class Series
+    {
+        public final long[] times;
+        public final float[] values;
+
+        public Series(long[] times, float[] values)
+        {
+            this.times = times;
+            this.values = values;
+        }
+
+        public int size()
+        {
+            return times.length;
+        }
+
+        public long lastTime()
+        {
+            return times.length > 0 ? times[times.length - 1] : 0;
+        }
+    }
+
+    private static final Series EMPTY = new Series(new long[0], new float[0]);
+
+    private final File dir;
+    private final Map<String, Series> series = new HashMap<>();
+    private final Map<String, Long> lastAttempt = new HashMap<>();
+    private final Set<String> refreshing = new HashSet<>();
+
+    public PriceHistoryStore(File dir)
+    {
+        this.dir = dir;
+    }
+
+    public synchronized Series get(String key)
+    {
+        Series s = series.get(key);
+        if (s == null)
+        {
+            s = load(key);
+            series.put(key, s);
+        }
+        return s;
+    }
+
+    /**
+     * Claim the refresh of a series if it's out of date and no refresh is running. Call finishRefresh when done.
+     */
+    public synchronized boolean startRefresh(String key, long now)
+    {
+        Long attempt = lastAttempt.get(key);
+        if (refreshing.contains(key) || (attempt != null && now - attempt < REFRESH_INTERVAL)
+                || now - get(key).lastTime() < REFRESH_INTERVAL)
+        {
+            return false;
+        }
+
+        refreshing.add(key);
+        lastAttempt.put(key, now);
+        return true;
+    }
+
+    public synchronized void finishRefresh(String key)
+    {
+        refreshing.remove(key);
+    }
+
+    /**
+     * @return days of history to request to bring the series up to date; 0 if the series is empty and needs the backfill
+     */
+    public int getDaysToFetch(String key, long now)
+    {
+        Series s = get(key);
+        if (s.size() == 0) return 0;
+        return (int) Math.max(1, Math.min(365, (now - s.lastTime() + DAY - 1) / DAY));
+    }
+
+    /**
+     * Add fetched points to the series. A backfill replaces the stored points it overlaps (so finer grained data can be
+     * laid over coarser), otherwise only points after the last stored one are appended.
+     */
+    public synchronized Series add(String key, long[] times, float[] values, boolean backfill, long now)
+    {
+        Series s = get(key);
+        int keep = s.size();
+        int from = 0;
+        if (times.length > 0)
+        {
+            if (backfill)
+            {
+                keep = firstIndexFrom(s, times[0]);
+            }
+            else
+            {
+                while (from < times.length && times[from] <= s.lastTime()) from++;
+            }
+        }
+
+        if (from == times.length && keep == s.size()) return s;
+
+        int size = keep + times.length - from;
+        long[] t = Arrays.copyOf(s.times, size);
+        float[] v = Arrays.copyOf(s.values, size);
+        System.arraycopy(times, from, t, keep, times.length - from);
+        System.arraycopy(values, from, v, keep, times.length - from);
+
+        Series updated = compact(new Series(t, v), now);
+        series.put(key, updated);
+        save(key, updated);
+        return updated;
+    }
+
+    /**
+     * Points from the given time onwards
+     */
+    public static Series slice(Series s, long from)
+    {
+        int start = firstIndexFrom(s, from);
+        return new Series(Arrays.copyOfRange(s.times, start, s.size()), Arrays.copyOfRange(s.values, start, s.size()));
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets downsampling: keeps the first and last points and, from each bucket between, the
+     * point forming the largest triangle with its neighbours, which preserves the visible shape of the line.
+     *
+     * @param threshold number of points wanted, eg the chart's width in pixels
+     */
+    public static Series decimate(Series s, int threshold)
+    {
+        int n = s.size();
+        if (threshold >= n || threshold < 3) return s;
+
+        long[] t = new long[threshold];
+        float[] v = new float[threshold];
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        t[0] = s.times[0];
+        v[0] = s.values[0];
+
+        for (int i = 0; i < threshold - 2; i++)
+        {
+            //average of the next bucket, the third point of the triangle
+            int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, n);
+            double avgT = 0;
+            double avgV = 0;
+            for (int j = nextStart; j < nextEnd; j++)
+            {
+                avgT += s.times[j];
+                avgV += s.values[j];
+            }
+            int count = Math.max(1, nextEnd - nextStart);
+            avgT /= count;
+            avgV /= count;
+
+            int start = (int) Math.floor(i * bucketSize) + 1;
+            int end = (int) Math.floor((i + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int selected = start;
+            for (int j = start; j < end; j++)
+            {
+                double area = Math.abs((s.times[a] - avgT) * (s.values[j] - s.values[a])
+                        - (s.times[a] - s.times[j]) * (avgV - s.values[a]));
+                if (area > maxArea)
+                {
+                    maxArea = area;
+                    selected = j;
+                }
+            }
+
+            t[i + 1] = s.times[selected];
+            v[i + 1] = s.values[selected];
+            a = selected;
+        }
+
+        t[threshold - 1] = s.times[n - 1];
+        v[threshold - 1] = s.values[n - 1];
+        return new Series(t, v);
+    }
+
+    /**
+     * Drop points past MAX_AGE and thin older points to one per hour or day, keeping the last point of each period
+     */
+    static Series compact(Series s, long now)
+    {
+        int n = s.size();
+        long[] t = new long[n];
+        float[] v = new float[n];
+        int out = 0;
+        for (int i = 0; i < n; i++)
+        {
+            long time = s.times[i];
+            long period = period(now - time);
+            if (now - time > MAX_AGE) continue;
+            if (period > 0 && i + 1 < n && s.times[i + 1] / period == time / period) continue; //not the last in its period
+            t[out] = time;
+            v[out] = s.values[i];
+            out++;
+        }
+
+        return out == n ? s : new Series(Arrays.copyOf(t, out), Arrays.copyOf(v, out));
+    }
+
+    private static long period(long age)
+    {
+        if (age > DAILY_AFTER) return DAY;
+        else if (age > HOURLY_AFTER) return HOUR;
+        else return 0;
+    }
+
+    private static int firstIndexFrom(Series s, long from)
+    {
+        int index = Arrays.binarySearch(s.times, from);
+        if (index < 0) return -index - 1;
+        while (index > 0 && s.times[index - 1] == from) index--;
+        return index;
+    }
+
+    private Series load(String key)
+    {
+        File file = new File(dir, fileName(key));
+        if (!file.exists()) return EMPTY;
+
+        try (BufferedSource source = Okio.buffer(Okio.source(file)))
+        {
+            if (source.readInt() != FORMAT_VERSION) return EMPTY;
+            int size = source.readInt();
+            long[] t = new long[size];
+            float[] v = new float[size];
+            for (int i = 0; i < size; i++)
+            {
+                t[i] = source.readLong();
+                v[i] = Float.intBitsToFloat(source.readInt());
+            }
+            return new Series(t, v);
+        }
+        catch (IOException e)
+        {
+            Timber.w(e);
+            file.delete();
+            return EMPTY;
+        }
+    }
+
+    private void save(String key, Series s)
+    {
+        if (!dir.exists()) dir.mkdirs();
+        File file = new File(dir, fileName(key));
+        File temp = new File(dir, fileName(key) + TEMP_SUFFIX);
+
+        try (BufferedSink sink = Okio.buffer(Okio.sink(temp)))
+        {
+            sink.writeInt(FORMAT_VERSION);
+            sink.writeInt(s.size());
+            for (int i = 0; i < s.size(); i++)
+            {
+                sink.writeLong(s.times[i]);
+                sink.writeInt(Float.floatToIntBits(s.values[i]));
+            }
+        }
+        catch (IOException e)
+        {
+            Timber.w(e);
+            temp.delete();
+            return;
+        }
+
+        //replace the stored series only once the new one is completely written
+        if (!temp.renameTo(file))
+        {
+            temp.delete();
+        }
+    }
+
+    private static String fileName(String key)
+    {
+        return key.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9.-]", "_");
+    }
+}
@@ -0,0 +1,265 @@
+package com.alphawallet.app.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Coalesces concurrent JSON-RPC requests to one node into a single JSON-RPC batch (array) POST.
+ *
+ * The first request to arrive opens a batch and waits for the batch window (or until the batch is full).
+ * Requests arriving in that time join the batch. The first caller then sends the batch and hands each
+ * waiting caller its own response, matched on the JSON-RPC id. No extra threads are used.
+ *
+ * If the node returns something other than an array it doesn't support batching; from then on requests
+ * are sent singly.
+ */
+public class RpcBatcher
+{
+    public interface Transport
+    {
+        String send(String payload) throws IOException;
+    }
+
+    public static final long DEFAULT_BATCH_WINDOW_MS = 5;
+
+    private final Transport transport;
+    private final int batchLimit;
+    private final long windowNanos;
+    private final Object lock = new Object();
+    private Batch current = new Batch();
+    private volatile boolean batchUnsupported = false;
+
+    private static class Batch
+    {
+        final List<PendingCall> calls = new ArrayList<>();
+    }
+
+    private static class PendingCall
+    {
+        final String request;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        PendingCall(String request)
+        {
+            this.request = request;
+        }
+    }
+
+    public RpcBatcher(Transport transport, int batchLimit, long windowMs)
+    {
+        this.transport = transport;
+        this.batchLimit = batchLimit;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    }
+
+    public String call(String request) throws IOException
+    {
+        if (batchUnsupported || batchLimit < 2)
+        {
+            return transport.send(request);
+        }
+
+        PendingCall call = new PendingCall(request);
+        Batch batch;
+        boolean leader;
+
+        synchronized (lock)
+        {
+            batch = current;
+            leader = batch.calls.isEmpty();
+            batch.calls.add(call);
+            if (batch.calls.size() >= batchLimit)
+            {
+                //batch is full; close it and wake the leader
+                current = new Batch();
+                lock.notifyAll();
+            }
+        }
+
+        if (leader)
+        {
+            waitForBatch(batch);
+            dispatch(batch.calls);
+        }
+
+        return waitForResult(call);
+    }
+
+    private void waitForBatch(Batch batch)
+    {
+        synchronized (lock)
+        {
+            long deadline = System.nanoTime() + windowNanos;
+            long remaining;
+            try
+            {
+                while (current == batch && (remaining = deadline - System.nanoTime()) > 0)
+                {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt(); //still dispatch: other callers are waiting on this batch
+            }
+
+            if (current == batch)
+            {
+                current = new Batch();
+            }
+        }
+    }
+
+    private String waitForResult(PendingCall call) throws IOException
+    {
+        try
+        {
+            return call.result.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void dispatch(List<PendingCall> calls)
+    {
+        if (calls.size() == 1)
+        {
+            sendSingle(calls.get(0));
+            return;
+        }
+
+        Map<String, PendingCall> idMap = new HashMap<>();
+        List<PendingCall> unbatched = new ArrayList<>();
+        StringBuilder payload = new StringBuilder("[");
+
+        for (PendingCall call : calls)
+        {
+            String id = getId(call.request);
+            if (id == null || idMap.containsKey(id))
+            {
+                unbatched.add(call); //can't be matched up on return, send it on its own
+                continue;
+            }
+            idMap.put(id, call);
+            if (payload.length() > 1) payload.append(',');
+            payload.append(call.request);
+        }
+        payload.append(']');
+
+        if (idMap.size() > 1)
+        {
+            try
+            {
+                String response = transport.send(payload.toString());
+                unbatched.addAll(demultiplex(response, idMap));
+            }
+            catch (Exception e)
+            {
+                for (PendingCall call : idMap.values())
+                {
+                    call.result.completeExceptionally(e);
+                }
+            }
+        }
+        else
+        {
+            unbatched.addAll(idMap.values());
+        }
+
+        for (PendingCall call : unbatched)
+        {
+            sendSingle(call);
+        }
+    }
+
+    /**
+     * Hand each response back to its caller
+     * @return calls which didn't receive a response and need to be sent singly
+     */
+    private List<PendingCall> demultiplex(String response, Map<String, PendingCall> idMap)
+    {
+        JsonElement element;
+        try
+        {
+            element = JsonParser.parseString(response);
+        }
+        catch (Exception e)
+        {
+            element = null;
+        }
+
+        if (element == null || !element.isJsonArray())
+        {
+            Timber.d("Node doesn't support JSON-RPC batch, reverting to single requests");
+            batchUnsupported = true;
+            return new ArrayList<>(idMap.values());
+        }
+
+        JsonArray responses = element.getAsJsonArray();
+        for (JsonElement rsp : responses)
+        {
+            if (!rsp.isJsonObject()) continue;
+            JsonElement id = rsp.getAsJsonObject().get("id");
+            PendingCall call = (id != null && id.isJsonPrimitive()) ? idMap.remove(id.getAsString()) : null;
+            if (call != null)
+            {
+                call.result.complete(rsp.toString());
+            }
+        }
+
+        return new ArrayList<>(idMap.values());
+    }
+
+    private void sendSingle(PendingCall call)
+    {
+        try
+        {
+            call.result.complete(transport.send(call.request));
+        }
+        catch (Exception e)
+        {
+            call.result.completeExceptionally(e);
+        }
+    }
+
+    private static String getId(String request)
+    {
+        try
+        {
+            JsonElement element = JsonParser.parseString(request);
+            if (!element.isJsonObject()) return null;
+            JsonObject obj = element.getAsJsonObject();
+            JsonElement id = obj.get("id");
+            return (id != null && id.isJsonPrimitive()) ? id.getAsString() : null;
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.alphawallet.app.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Headers;
+
+/**
+ * Health record for a single RPC node, shared by every AWHttpService which uses that node URL.
+ *
+ * Tracks an exponentially weighted moving average (EWMA) of response latency and its deviation, an EWMA error
+ * rate and any rate-limit back-off the node has asked for. These give a routing score (lower is better) and an
+ * estimate of the node's 95th percentile latency, used as the deadline before a hedged request is sent to the next node.
+ */
+public class RpcNodeHealth
+{
+    private static final Map<String, RpcNodeHealth> nodes = new ConcurrentHashMap<>();
+
+    private static final double ALPHA = 0.2;               //weight of each new sample
+    private static final double INITIAL_LATENCY_MS = 1000; //pessimistic start so proven nodes are preferred
+    private static final long MIN_HEDGE_DELAY_MS = 250;
+    private static final long MAX_HEDGE_DELAY_MS = 5000;
+    private static final double ERROR_PENALTY = 4.0;       //a node failing every call scores 5x its latency
+    private static final long DEFAULT_RATE_LIMIT_BACKOFF_MS = 10 * 1000;
+    private static final long MAX_RATE_LIMIT_BACKOFF_MS = 60 * 1000; //some providers send an epoch time in the reset header
+
+    public final String url;
+    private double ewmaLatency = INITIAL_LATENCY_MS;
+    private double ewmaDeviation = INITIAL_LATENCY_MS / 2;
+    private double errorRate = 0;
+    private volatile long rateLimitedUntil = 0;
+
+    public static RpcNodeHealth get(String url)
+    {
+        return nodes.computeIfAbsent(url, RpcNodeHealth::new);
+    }
+
+    private RpcNodeHealth(String url)
+    {
+        this.url = url;
+    }
+
+    public synchronized void recordSuccess(long latencyMs)
+    {
+        ewmaDeviation = (1 - ALPHA) * ewmaDeviation + ALPHA * Math.abs(latencyMs - ewmaLatency);
+        ewmaLatency = (1 - ALPHA) * ewmaLatency + ALPHA * latencyMs;
+        errorRate = (1 - ALPHA) * errorRate;
+    }
+
+    public synchronized void recordError()
+    {
+        errorRate = (1 - ALPHA) * errorRate + ALPHA;
+    }
+
+    public void recordRateLimit(long backoffMs)
+    {
+        long backoff = backoffMs > 0 ? Math.min(backoffMs, MAX_RATE_LIMIT_BACKOFF_MS) : DEFAULT_RATE_LIMIT_BACKOFF_MS;
+        rateLimitedUntil = System.currentTimeMillis() + backoff;
+        recordError();
+    }
+
+    public boolean isRateLimited()
+    {
+        return System.currentTimeMillis() < rateLimitedUntil;
+    }
+
+    /**
+     * @return routing score, lower is better
+     */
+    public synchronized double score()
+    {
+        return ewmaLatency * (1 + ERROR_PENALTY * errorRate);
+    }
+
+    /**
+     * Approximate 95th percentile latency (mean + 2 deviations). If there's no response by then, hedge to the next node.
+     */
+    public synchronized long hedgeDelayMs()
+    {
+        long p95 = (long) (ewmaLatency + 2 * ewmaDeviation);
+        return Math.max(MIN_HEDGE_DELAY_MS, Math.min(MAX_HEDGE_DELAY_MS, p95));
+    }
+
+    /**
+     * Pick up rate-limit hints. Retry-After is in seconds; x-ratelimit-reset is seconds until the window resets.
+     */
+    public void processHeaders(Headers headers)
+    {
+        String retryAfter = headers.get("Retry-After");
+        String remaining = headers.get("x-ratelimit-remaining");
+        if (retryAfter != null && !retryAfter.trim().isEmpty())
+        {
+            recordRateLimit(parseSeconds(retryAfter));
+        }
+        else if (remaining != null && remaining.trim().equals("0"))
+        {
+            recordRateLimit(parseSeconds(headers.get("x-ratelimit-reset")));
+        }
+    }
+
+    private static long parseSeconds(String value)
+    {
+        try
+        {
+            return value != null ? (long) (Double.parseDouble(value.trim()) * 1000) : 0;
+        }
+        catch (NumberFormatException e)
+        {
+            return 0; //could be an HTTP date; use the default back-off
+        }
+    }
+}
@@ -1,14 +1,36 @@
 package com.alphawallet.app.service;
 
+import android.content.Context;
+import android.text.TextUtils;
+
 import com.alphawallet.app.C;
 import com.alphawallet.app.entity.Result;
 import com.alphawallet.app.util.JsonUtils;
+import com.alphawallet.app.util.SelectorIndex;
+import com.alphawallet.app.util.Utils;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
 import org.web3j.utils.Numeric;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import io.reactivex.Single;
 import okhttp3.OkHttpClient;
@@ -16,29 +38,80 @@ import okhttp3.Request;
 import okhttp3.ResponseBody;
 import timber.log.Timber;
 
+/**
+ * Resolves a function selector to its text signature. Lookups are local first:
+ *
+ * 1. Recent 4byte.directory answers, held in an LRU which is persisted to disk.
+ * 2. The on-device SelectorIndex, memory-mapped; built from the function_signatures.txt asset and extended with
+ *    remote answers as they accumulate.
+ * 3. 4byte.directory. Concurrent lookups of the same selector share one request.
+ *
+ * State is shared between instances, so an activity page with many transactions calling the same functions costs
+ * at most one network lookup per distinct unknown selector.
+ */
 public class SignatureLookupService
 {
     private static final String BASE_API_URL = "https://www.4byte.directory/api/v1/signatures/?hex_signature=";
-    private final OkHttpClient httpClient;
+    private static final String SIGNATURE_ASSET = "function_signatures.txt";
+    private static final String INDEX_FILE = "selector_index.bin";
+    private static final String REMOTE_CACHE_FILE = "selector_remote_cache.txt";
+    private static final int REMOTE_CACHE_SIZE = 512;
+    private static final int INDEX_MERGE_THRESHOLD = 32; //fold remote answers into the index once this many are missing from it
 
-    public SignatureLookupService()
-    {
-        this.httpClient = new OkHttpClient.Builder()
+    private static final Gson gson = new Gson();
+    private static final OkHttpClient httpClient = new OkHttpClient.Builder()
             .connectTimeout(C.CONNECT_TIMEOUT, TimeUnit.SECONDS)
             .writeTimeout(C.WRITE_TIMEOUT, TimeUnit.SECONDS)
             .retryOnConnectionFailure(true)
             .build();
+
+    private static final Map<Integer, Single<String>> inFlight = new ConcurrentHashMap<>();
+    //access ordered; empty string records a selector 4byte doesn't know, these aren't persisted
+    private static final LinkedHashMap<Integer, String> remoteHits = new LinkedHashMap<Integer, String>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest)
+        {
+            return size() > REMOTE_CACHE_SIZE;
+        }
+    };
+
+    private static final Object remoteCacheLock = new Object();
+    private static volatile SelectorIndex index;
+    private static boolean loaded = false;
+
+    private final Context context;
+
+    public SignatureLookupService(Context ctx)
+    {
+        this.context = ctx.getApplicationContext();
     }
 
     public Single<String> getFunctionName(String payload)
     {
-        return Single.fromCallable(() -> getTextSignature(executeRequest(buildRequest(payload))));
+        String hex = payload != null ? Numeric.cleanHexPrefix(payload) : "";
+        if (hex.length() < 8) return Single.just("");
+
+        final int selector;
+        try
+        {
+            selector = SelectorIndex.parseSelector(hex);
+        }
+        catch (NumberFormatException e)
+        {
+            return Single.just("");
+        }
+
+        return Single.defer(() -> {
+            String local = findLocal(selector);
+            return local != null ? Single.just(local) : inFlight.computeIfAbsent(selector, this::fetchRemote);
+        });
     }
 
     public String getTextSignature(String response)
     {
-        Result result = new Gson().fromJson(response, Result.class);
-        if (result != null)
+        Result result = gson.fromJson(response, Result.class);
+        if (result != null && result.getFirst() != null)
         {
             return result.getFirst().text_signature;
         }
@@ -46,9 +119,189 @@ public class SignatureLookupService
         return "";
     }
 
-    private String getFirstFourBytes(String payload)
+    private String findLocal(int selector)
+    {
+        ensureLoaded();
+        synchronized (remoteHits)
+        {
+            String hit = remoteHits.get(selector);
+            if (hit != null) return hit;
+        }
+
+        SelectorIndex idx = index;
+        return idx != null ? idx.lookup(selector) : null;
+    }
+
+    private Single<String> fetchRemote(int selector)
+    {
+        return Single.fromCallable(() -> lookupRemote(selector))
+                .doFinally(() -> inFlight.remove(selector))
+                .cache();
+    }
+
+    private String lookupRemote(int selector)
+    {
+        Result result;
+        try
+        {
+            result = gson.fromJson(executeRequest(buildRequest(SelectorIndex.toHex(selector))), Result.class);
+        }
+        catch (JsonParseException e)
+        {
+            result = null;
+        }
+
+        //no results list means the lookup failed (eg an error body or a timeout); don't remember it as unknown
+        if (result == null || result.signatures == null) return "";
+
+        String signature = result.getFirst() != null ? result.getFirst().text_signature : "";
+        storeRemoteHit(selector, signature);
+        return signature;
+    }
+
+    private void storeRemoteHit(int selector, String signature)
+    {
+        synchronized (remoteHits)
+        {
+            remoteHits.put(selector, signature != null ? signature : "");
+        }
+        if (TextUtils.isEmpty(signature)) return;
+
+        //appended; the file is cut back to the LRU when it's next loaded
+        File cacheFile = new File(context.getFilesDir(), REMOTE_CACHE_FILE);
+        synchronized (remoteCacheLock)
+        {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(cacheFile, true)))
+            {
+                writer.write(SelectorIndex.toHex(selector) + " " + signature);
+                writer.newLine();
+            }
+            catch (IOException e)
+            {
+                Timber.w(e);
+            }
+        }
+    }
+
+    /**
+     * Map the selector index, rebuilding it if the shipped signature list has changed, and restore the remote LRU
+     */
+    private void ensureLoaded()
+    {
+        synchronized (SignatureLookupService.class)
+        {
+            if (loaded) return;
+            loaded = true;
+
+            File indexFile = new File(context.getFilesDir(), INDEX_FILE);
+            try
+            {
+                String asset = Utils.loadJSONFromAsset(context, SIGNATURE_ASSET);
+                long stamp = crc(asset);
+                SelectorIndex idx = indexFile.exists() ? SelectorIndex.open(indexFile) : null;
+                if (idx == null || idx.getSourceStamp() != stamp)
+                {
+                    SelectorIndex.write(indexFile, parseSignatureList(asset), stamp);
+                    idx = SelectorIndex.open(indexFile);
+                }
+
+                Map<Integer, String> restored = loadRemoteCache();
+                Map<Integer, String> missing = new HashMap<>();
+                for (Map.Entry<Integer, String> entry : restored.entrySet())
+                {
+                    if (!idx.contains(entry.getKey())) missing.put(entry.getKey(), entry.getValue());
+                }
+
+                if (missing.size() >= INDEX_MERGE_THRESHOLD && SelectorIndex.merge(indexFile, idx, missing))
+                {
+                    idx = SelectorIndex.open(indexFile);
+                }
+
+                index = idx;
+            }
+            catch (Exception e)
+            {
+                //corrupt or unreadable index; carry on with remote lookups and rebuild next time
+                Timber.e(e);
+                indexFile.delete();
+            }
+        }
+    }
+
+    private Map<Integer, String> loadRemoteCache()
+    {
+        Map<Integer, String> restored = new LinkedHashMap<>();
+        File cacheFile = new File(context.getFilesDir(), REMOTE_CACHE_FILE);
+        if (!cacheFile.exists()) return restored;
+
+        int lineCount = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(cacheFile)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lineCount++;
+                int split = line.indexOf(' ');
+                if (split < 0) continue;
+                restored.put(SelectorIndex.parseSelector(line.substring(0, split)), line.substring(split + 1));
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+        }
+
+        List<String> lines = new ArrayList<>();
+        synchronized (remoteHits)
+        {
+            remoteHits.putAll(restored);
+            for (Map.Entry<Integer, String> entry : remoteHits.entrySet())
+            {
+                if (!TextUtils.isEmpty(entry.getValue())) lines.add(SelectorIndex.toHex(entry.getKey()) + " " + entry.getValue());
+            }
+        }
+
+        if (lineCount > REMOTE_CACHE_SIZE) compactRemoteCache(cacheFile, lines);
+        return restored;
+    }
+
+    private void compactRemoteCache(File cacheFile, List<String> lines)
+    {
+        synchronized (remoteCacheLock)
+        {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(cacheFile)))
+            {
+                for (String line : lines)
+                {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            catch (IOException e)
+            {
+                Timber.w(e);
+            }
+        }
+    }
+
+    private static SortedMap<Integer, String> parseSignatureList(String asset)
+    {
+        SortedMap<Integer, String> entries = new TreeMap<>();
+        if (asset == null) return entries;
+        for (String line : asset.split("\n"))
+        {
+            String signature = line.trim();
+            if (signature.isEmpty() || signature.startsWith("#")) continue;
+            entries.put(SelectorIndex.selectorOf(signature), signature);
+        }
+        return entries;
+    }
+
+    private static long crc(String text)
     {
-        return (Numeric.prependHexPrefix(payload)).substring(0, 10);
+        CRC32 crc = new CRC32();
+        if (text != null) crc.update(text.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
     }
 
     private String executeRequest(Request request)
@@ -77,10 +330,10 @@ public class SignatureLookupService
         return JsonUtils.EMPTY_RESULT;
     }
 
-    private Request buildRequest(String payload)
+    private Request buildRequest(String selector)
     {
         Request.Builder builder = new Request.Builder()
-            .url(BASE_API_URL + getFirstFourBytes(payload))
+            .url(BASE_API_URL + selector)
             .header("User-Agent", "Chrome/74.0.3729.169")
             .addHeader("Content-Type", "application/json")
             .get();
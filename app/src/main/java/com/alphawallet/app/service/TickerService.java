@@ -36,8 +36,6 @@ import org.web3j.abi.datatypes.DynamicArray;
 import org.web3j.abi.datatypes.Function;
 import org.web3j.abi.datatypes.Type;
 import org.web3j.abi.datatypes.generated.Uint256;
-import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthCall;
 
 import java.io.ByteArrayInputStream;
@@ -528,7 +526,7 @@ public class TickerService
         });
     }
 
-    private String callSmartContractFunction(Web3j web3j, Function function, String contractAddress)
+    private String callSmartContractFunction(long chainId, Function function, String contractAddress)
     {
         String encodedFunction = FunctionEncoder.encode(function);
 
@@ -536,7 +534,7 @@ public class TickerService
         {
             org.web3j.protocol.core.methods.request.Transaction transaction
                     = createEthCallTransaction(ZERO_ADDRESS, contractAddress, encodedFunction);
-            EthCall response = web3j.ethCall(transaction, DefaultBlockParameterName.LATEST).send();
+            EthCall response = EthCallCache.ethCall(chainId, TokenRepository.getWeb3jService(chainId), transaction);
 
             return response.getValue();
         }
@@ -0,0 +1,157 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.token.tools.CompiledTokenDefinition;
+import com.alphawallet.token.tools.TokenDefinition;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import timber.log.Timber;
+
+/**
+ * Parsed TokenDefinitions, keyed by script hash and locale.
+ *
+ * 1. An in-memory LRU bounded by the total size of the source scripts it holds.
+ * 2. A compiled (serialised) copy of each definition in the app cache area, so a warm load after restart
+ *    skips the XML parse.
+ * 3. Otherwise the script is parsed, and the result is stored in both.
+ *
+ * A changed script has a new hash so it never picks up a stale entry; unused compiled files are pruned by age.
+ * Returned definitions are shared between callers.
+ */
+public class TokenDefinitionCache
+{
+    private static final long MAX_SOURCE_BYTES = 4 * 1024 * 1024; //total source size of definitions held in memory
+    private static final int MAX_COMPILED_FILES = 128;
+    private static final String COMPILED_EXTENSION = ".tsc";
+
+    private final File compiledDir;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sourceBytes = 0;
+
+    private static class Entry
+    {
+        final TokenDefinition definition;
+        final long weight;
+
+        Entry(TokenDefinition definition, long weight)
+        {
+            this.definition = definition;
+            this.weight = weight;
+        }
+    }
+
+    public TokenDefinitionCache(File compiledDir)
+    {
+        this.compiledDir = compiledDir;
+    }
+
+    /**
+     * @param key identifies the script content and locale; must change if either does
+     * @param weight approximate size of the script, in bytes
+     * @param parser parses the script; only called if there's no cached or compiled form
+     */
+    public TokenDefinition get(String key, long weight, Callable<TokenDefinition> parser) throws Exception
+    {
+        TokenDefinition td = getLoaded(key);
+        if (td != null) return td;
+
+        File compiled = compiledFile(key);
+        try
+        {
+            td = CompiledTokenDefinition.read(compiled, key);
+            if (td != null) compiled.setLastModified(System.currentTimeMillis()); //keep recently used files from being pruned
+        }
+        catch (Exception e)
+        {
+            //written by an older build or truncated; re-parse below
+            Timber.w(e);
+            compiled.delete();
+        }
+
+        if (td == null)
+        {
+            td = parser.call();
+            if (td == null) return null;
+            storeCompiled(compiled, key, td);
+        }
+
+        put(key, td, weight);
+        return td;
+    }
+
+    public TokenDefinition getLoaded(String key)
+    {
+        synchronized (entries)
+        {
+            Entry entry = entries.get(key);
+            return entry != null ? entry.definition : null;
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+            sourceBytes = 0;
+        }
+    }
+
+    private void put(String key, TokenDefinition td, long weight)
+    {
+        synchronized (entries)
+        {
+            Entry old = entries.put(key, new Entry(td, weight));
+            if (old != null) sourceBytes -= old.weight;
+            sourceBytes += weight;
+
+            //evict least recently used, always keeping the newest entry
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (sourceBytes > MAX_SOURCE_BYTES && entries.size() > 1 && it.hasNext())
+            {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (eldest.getKey().equals(key)) continue;
+                sourceBytes -= eldest.getValue().weight;
+                it.remove();
+            }
+        }
+    }
+
+    private void storeCompiled(File compiled, String key, TokenDefinition td)
+    {
+        try
+        {
+            if (!compiledDir.exists() && !compiledDir.mkdirs()) return;
+            CompiledTokenDefinition.write(compiled, key, td);
+            pruneCompiled();
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+            compiled.delete();
+        }
+    }
+
+    private void pruneCompiled()
+    {
+        File[] files = compiledDir.listFiles((dir, name) -> name.endsWith(COMPILED_EXTENSION));
+        if (files == null || files.length <= MAX_COMPILED_FILES) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - MAX_COMPILED_FILES; i++)
+        {
+            files[i].delete();
+        }
+    }
+
+    private File compiledFile(String key)
+    {
+        return new File(compiledDir, key.replaceAll("[^A-Za-z0-9_-]", "_") + COMPILED_EXTENSION);
+    }
+}
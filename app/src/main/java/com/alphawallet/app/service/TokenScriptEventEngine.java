@@ -0,0 +1,345 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.token.entity.EventDefinition;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.request.Filter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import timber.log.Timber;
+
+/**
+ * Fetches the logs for all TokenScript events with one eth_getLogs per chain.
+ *
+ * Each event still builds its own filter (contract, event signature, topic values). The filters for a chain are
+ * merged into one: the union of the contract addresses, and for each topic position the OR of the allowed values,
+ * or any value if an event doesn't constrain that position. The merged filter can match more than each event asked
+ * for, so every returned log is routed by contract address and topic0, then checked against the filters of the
+ * events it could belong to.
+ *
+ * The block range runs from the chain's high-water mark (the last block scanned for the current wallet) up to the
+ * current block. An event that wasn't part of the last scan starts from its own readBlock instead, so a newly
+ * loaded script still picks up its history. No query is made for a chain with no new blocks.
+ */
+public class TokenScriptEventEngine
+{
+    public interface ChainClients
+    {
+        Web3j getClient(long chainId);
+    }
+
+    public interface FilterSource
+    {
+        /**
+         * @return filter for this event alone, or null if it can't be listened for yet
+         */
+        EthFilter getFilter(EventDefinition ev) throws Exception;
+    }
+
+    public interface LogReceiver
+    {
+        /**
+         * @param logs logs for this event, in the order the node returned them
+         */
+        void onLogs(EventDefinition ev, List<EthLog.LogResult> logs);
+    }
+
+    private final ChainClients clients;
+    private final Map<String, ChainMark> chainMarks = new ConcurrentHashMap<>(); //keyed by wallet and chain
+    private final AtomicBoolean polling = new AtomicBoolean(false);
+
+    static class ChainMark
+    {
+        final BigInteger scannedTo;
+        final Set<String> eventKeys; //events included in the scan which reached scannedTo
+
+        ChainMark(BigInteger scannedTo, Set<String> eventKeys)
+        {
+            this.scannedTo = scannedTo;
+            this.eventKeys = eventKeys;
+        }
+    }
+
+    static class EventQuery
+    {
+        final EventDefinition ev;
+        final String address;
+        final List<Set<String>> topics; //null entry: any value at that position
+        BigInteger fromBlock = BigInteger.ZERO; //logs before this were handled in an earlier scan
+
+        EventQuery(EventDefinition ev, EthFilter filter)
+        {
+            this.ev = ev;
+            this.address = filter.getAddress().get(0).toLowerCase(Locale.ROOT);
+            this.topics = new ArrayList<>();
+            for (Filter.FilterTopic<?> topic : filter.getTopics())
+            {
+                topics.add(topicValues(topic));
+            }
+        }
+
+        String topic0()
+        {
+            return topics.size() > 0 && topics.get(0) != null && topics.get(0).size() == 1 ? topics.get(0).iterator().next() : null;
+        }
+
+        boolean matches(Log log)
+        {
+            if (!address.equalsIgnoreCase(log.getAddress())) return false;
+            List<String> logTopics = log.getTopics();
+            for (int i = 0; i < topics.size(); i++)
+            {
+                Set<String> allowed = topics.get(i);
+                if (allowed == null) continue;
+                if (i >= logTopics.size() || !allowed.contains(logTopics.get(i).toLowerCase(Locale.ROOT))) return false;
+            }
+
+            return log.getBlockNumber() == null || log.getBlockNumber().compareTo(fromBlock) >= 0;
+        }
+    }
+
+    public TokenScriptEventEngine(ChainClients clients)
+    {
+        this.clients = clients;
+    }
+
+    /**
+     * Scan each chain once for the given events. Returns immediately if a previous poll is still running.
+     */
+    public void poll(String walletAddress, Collection<EventDefinition> events, FilterSource filters, LogReceiver receiver)
+    {
+        if (!polling.compareAndSet(false, true)) return;
+        try
+        {
+            for (Map.Entry<Long, List<EventQuery>> chain : groupByChain(events, filters).entrySet())
+            {
+                pollChain(walletAddress, chain.getKey(), chain.getValue(), receiver);
+            }
+        }
+        finally
+        {
+            polling.set(false);
+        }
+    }
+
+    /**
+     * Forget the scanned ranges, eg when scripts are reloaded
+     */
+    public void reset()
+    {
+        chainMarks.clear();
+    }
+
+    private Map<Long, List<EventQuery>> groupByChain(Collection<EventDefinition> events, FilterSource filters)
+    {
+        Map<Long, List<EventQuery>> chains = new LinkedHashMap<>();
+        for (EventDefinition ev : events)
+        {
+            try
+            {
+                EthFilter filter = filters.getFilter(ev);
+                if (filter == null || filter.getAddress() == null || filter.getAddress().isEmpty()) continue;
+                EventQuery query = new EventQuery(ev, filter);
+                if (query.topic0() == null) continue; //every TokenScript event filter starts with its signature
+                List<EventQuery> chain = chains.get(ev.getEventChainId());
+                if (chain == null)
+                {
+                    chain = new ArrayList<>();
+                    chains.put(ev.getEventChainId(), chain);
+                }
+                chain.add(query);
+            }
+            catch (Exception e)
+            {
+                Timber.e(e);
+            }
+        }
+
+        return chains;
+    }
+
+    private void pollChain(String walletAddress, long chainId, List<EventQuery> queries, LogReceiver receiver)
+    {
+        String markKey = walletAddress.toLowerCase(Locale.ROOT) + "-" + chainId;
+        try
+        {
+            Web3j web3j = clients.getClient(chainId);
+            BigInteger currentBlock = web3j.ethBlockNumber().send().getBlockNumber();
+            BigInteger fromBlock = startBlock(chainMarks.get(markKey), queries);
+            if (fromBlock.compareTo(currentBlock) > 0) return; //no new blocks
+
+            EthFilter combined = combineFilters(queries, DefaultBlockParameter.valueOf(fromBlock), DefaultBlockParameter.valueOf(currentBlock));
+            EthLog ethLogs = web3j.ethGetLogs(combined).send();
+            if (ethLogs.hasError())
+            {
+                Timber.w("Event logs on %d: %s", chainId, ethLogs.getError().getMessage());
+                return;
+            }
+
+            for (Map.Entry<EventQuery, List<EthLog.LogResult>> routed : routeLogs(queries, ethLogs.getLogs()).entrySet())
+            {
+                receiver.onLogs(routed.getKey().ev, routed.getValue());
+            }
+
+            Set<String> scanned = new HashSet<>();
+            for (EventQuery query : queries)
+            {
+                scanned.add(query.ev.getEventKey());
+            }
+            chainMarks.put(markKey, new ChainMark(currentBlock, scanned));
+        }
+        catch (Exception e)
+        {
+            //mark is unchanged, so the same range is retried next poll
+            Timber.w(e);
+        }
+    }
+
+    /**
+     * Set the first block each event needs
+     * @return first block to scan: one past the high-water mark, or earlier if an event hasn't been scanned to it yet
+     */
+    static BigInteger startBlock(ChainMark mark, List<EventQuery> queries)
+    {
+        BigInteger start = null;
+        for (EventQuery query : queries)
+        {
+            BigInteger eventStart = query.ev.readBlock;
+            if (mark != null && mark.eventKeys.contains(query.ev.getEventKey()))
+            {
+                eventStart = eventStart.max(mark.scannedTo.add(BigInteger.ONE));
+            }
+            query.fromBlock = eventStart;
+            start = start == null ? eventStart : start.min(eventStart);
+        }
+
+        return start != null ? start : BigInteger.ZERO;
+    }
+
+    static EthFilter combineFilters(List<EventQuery> queries, DefaultBlockParameter from, DefaultBlockParameter to)
+    {
+        Set<String> addresses = new LinkedHashSet<>();
+        int positions = 0;
+        for (EventQuery query : queries)
+        {
+            addresses.add(query.address);
+            positions = Math.max(positions, query.topics.size());
+        }
+
+        EthFilter filter = new EthFilter(from, to, new ArrayList<>(addresses));
+
+        //trailing positions no event constrains are left off
+        List<Set<String>> combined = new ArrayList<>();
+        for (int i = 0; i < positions; i++)
+        {
+            Set<String> values = new LinkedHashSet<>();
+            for (EventQuery query : queries)
+            {
+                Set<String> allowed = i < query.topics.size() ? query.topics.get(i) : null;
+                if (allowed == null)
+                {
+                    values = null;
+                    break;
+                }
+                values.addAll(allowed);
+            }
+            combined.add(values);
+        }
+
+        while (combined.size() > 0 && combined.get(combined.size() - 1) == null)
+        {
+            combined.remove(combined.size() - 1);
+        }
+
+        for (Set<String> values : combined)
+        {
+            if (values == null) filter.addNullTopic();
+            else if (values.size() == 1) filter.addSingleTopic(values.iterator().next());
+            else filter.addOptionalTopics(values.toArray(new String[0]));
+        }
+
+        return filter;
+    }
+
+    static Map<EventQuery, List<EthLog.LogResult>> routeLogs(List<EventQuery> queries, List<EthLog.LogResult> logs)
+    {
+        Map<String, List<EventQuery>> byAddressTopic = new HashMap<>();
+        for (EventQuery query : queries)
+        {
+            String key = query.address + "-" + query.topic0();
+            List<EventQuery> candidates = byAddressTopic.get(key);
+            if (candidates == null)
+            {
+                candidates = new ArrayList<>();
+                byAddressTopic.put(key, candidates);
+            }
+            candidates.add(query);
+        }
+
+        Map<EventQuery, List<EthLog.LogResult>> routed = new LinkedHashMap<>();
+        if (logs == null) return routed;
+
+        for (EthLog.LogResult<?> result : logs)
+        {
+            if (!(result.get() instanceof Log)) continue;
+            Log log = (Log) result.get();
+            if (log.getAddress() == null || log.getTopics() == null || log.getTopics().isEmpty()) continue;
+
+            List<EventQuery> candidates = byAddressTopic.get(log.getAddress().toLowerCase(Locale.ROOT) + "-"
+                    + log.getTopics().get(0).toLowerCase(Locale.ROOT));
+            if (candidates == null) continue;
+
+            for (EventQuery query : candidates)
+            {
+                if (!query.matches(log)) continue;
+                List<EthLog.LogResult> eventLogs = routed.get(query);
+                if (eventLogs == null)
+                {
+                    eventLogs = new ArrayList<>();
+                    routed.put(query, eventLogs);
+                }
+                eventLogs.add(result);
+            }
+        }
+
+        return routed;
+    }
+
+    private static Set<String> topicValues(Filter.FilterTopic<?> topic)
+    {
+        Object value = topic.getValue();
+        if (value == null) return null;
+        Set<String> values = new HashSet<>();
+        if (value instanceof String)
+        {
+            values.add(((String) value).toLowerCase(Locale.ROOT));
+        }
+        else if (value instanceof List)
+        {
+            for (Object entry : (List<?>) value)
+            {
+                Object single = entry instanceof Filter.FilterTopic ? ((Filter.FilterTopic<?>) entry).getValue() : entry;
+                if (single == null) return null;
+                values.add(single.toString().toLowerCase(Locale.ROOT));
+            }
+        }
+        return values;
+    }
+}
@@ -17,6 +17,7 @@ import com.alphawallet.app.entity.ContractType;
 import com.alphawallet.app.entity.CustomViewSettings;
 import com.alphawallet.app.entity.NetworkInfo;
 import com.alphawallet.app.entity.ServiceSyncCallback;
+import com.alphawallet.app.entity.TransferLogScanner;
 import com.alphawallet.app.entity.Wallet;
 
 import com.alphawallet.app.entity.tokendata.TokenGroup;
@@ -65,9 +66,12 @@ public class TokensService
     public static final String EXPIRED_CONTRACT = "[Expired Contract]";
     public static final long PENDING_TIME_LIMIT = 3*DateUtils.MINUTE_IN_MILLIS; //cut off pending chain after 3 minutes
 
+    private static final int BALANCE_BATCH_LIMIT = 100; //max tokens resolved in one Multicall balance check
+    private static final long TRANSFER_SCAN_INTERVAL = 5*DateUtils.MINUTE_IN_MILLIS; //minimum time between wallet transfer scans of a chain
     private static final Map<Long, Long> pendingChainMap = new ConcurrentHashMap<>();
     private final ConcurrentLinkedDeque<Token> tokenStoreList = new ConcurrentLinkedDeque<>(); //used to hold tokens that will be stored
     private final Map<String, Long> pendingTokenMap = new ConcurrentHashMap<>(); //used to determine which token to update next
+    private final Map<Long, Long> transferScanTime = new ConcurrentHashMap<>(); //last wallet transfer scan of each chain
     private String currentAddress = null;
     private final EthereumNetworkRepositoryType ethereumNetworkRepository;
     private final TokenRepositoryType tokenRepository;
@@ -97,6 +101,8 @@ public class TokensService
     @Nullable
     private Disposable balanceCheckDisposable;
     @Nullable
+    private Disposable transferScanDisposable;
+    @Nullable
     private Disposable erc20CheckDisposable;
     @Nullable
     private Disposable tokenStoreDisposable;
@@ -384,6 +390,7 @@ public class TokensService
         }
 
         if (balanceCheckDisposable != null && !balanceCheckDisposable.isDisposed()) { balanceCheckDisposable.dispose(); }
+        if (transferScanDisposable != null && !transferScanDisposable.isDisposed()) { transferScanDisposable.dispose(); }
         if (erc20CheckDisposable != null && !erc20CheckDisposable.isDisposed()) { erc20CheckDisposable.dispose(); }
         if (tokenStoreDisposable != null && !tokenStoreDisposable.isDisposed()) { tokenStoreDisposable.dispose(); }
         if (openSeaQueryDisposable != null && !openSeaQueryDisposable.isDisposed()) { openSeaQueryDisposable.dispose(); }
@@ -396,6 +403,7 @@ public class TokensService
         tokenStoreList.clear();
         baseTokenCheck.clear();
         pendingTokenMap.clear();
+        transferScanTime.clear();
         unknownTokens.clear();
     }
 
@@ -541,20 +549,109 @@ public class TokensService
 
     private void checkTokensBalance()
     {
-        final Token t = getNextInBalanceUpdateQueue();
+        TokenCardMeta[] tokenList = buildUpdateMap();
+        final Token t = getNextInBalanceUpdateQueue(tokenList);
 
         if (t != null)
         {
-            Timber.tag(TAG).d("Updating: " + t.tokenInfo.chainId + (t.isEthereum() ? " (Base Chain) ":"") + " : " + t.getAddress() + " : " + t.getFullName());
-            balanceCheckDisposable = tokenRepository.updateTokenBalance(currentAddress, t)
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe(newBalance -> onBalanceChange(newBalance, t));
+            if (t.isNonFungible()) checkTransferScan(t.tokenInfo.chainId);
+            final List<Token> batch = getBalanceBatch(t, tokenList);
+            if (batch.size() > 1)
+            {
+                Timber.tag(TAG).d("Updating batch: " + t.tokenInfo.chainId + " : " + batch.size() + " tokens");
+                balanceCheckDisposable = tokenRepository.updateTokenBalances(currentAddress, batch)
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(newBalances -> onBalancesChange(newBalances, batch), Timber::e);
+            }
+            else
+            {
+                Timber.tag(TAG).d("Updating: " + t.tokenInfo.chainId + (t.isEthereum() ? " (Base Chain) ":"") + " : " + t.getAddress() + " : " + t.getFullName());
+                balanceCheckDisposable = tokenRepository.updateTokenBalance(currentAddress, t)
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(newBalance -> onBalanceChange(newBalance, t));
+            }
         }
 
         checkPendingChains();
     }
 
+    /**
+     * NFTs received from contracts we don't track yet are found by one wallet-wide log scan per chain.
+     * Runs when an NFT on the chain comes up for update, at most once per TRANSFER_SCAN_INTERVAL.
+     */
+    private void checkTransferScan(long chainId)
+    {
+        if (transferScanDisposable != null && !transferScanDisposable.isDisposed()) return;
+        long currentTime = System.currentTimeMillis();
+        Long lastScan = transferScanTime.get(chainId);
+        if (lastScan != null && currentTime < lastScan + TRANSFER_SCAN_INTERVAL) return;
+
+        transferScanTime.put(chainId, currentTime);
+        transferScanDisposable = tokenRepository.scanTransferLogs(currentAddress, chainId)
+                .subscribeOn(Schedulers.io())
+                .observeOn(Schedulers.io())
+                .subscribe(this::onTransferScan, Timber::e);
+    }
+
+    private void onTransferScan(TransferLogScanner.ScanResult result)
+    {
+        for (ContractAddress cAddr : result.discovered)
+        {
+            addUnknownTokenToCheck(cAddr);
+        }
+    }
+
+    /**
+     * If the chain has Multicall, gather up all the other fungible tokens on the same chain which are due an update
+     * so they can be resolved in the same call as the selected token.
+     * @param t token selected by the update heuristic
+     * @param tokenList current update map
+     * @return list of tokens to update, starting with the selected token
+     */
+    private List<Token> getBalanceBatch(Token t, TokenCardMeta[] tokenList)
+    {
+        List<Token> batch = new ArrayList<>();
+        batch.add(t);
+        long chainId = t.tokenInfo.chainId;
+        if (!canBatchBalance(t.getInterfaceSpec()) || TextUtils.isEmpty(EthereumNetworkBase.getMulticallAddress(chainId)))
+        {
+            return batch;
+        }
+
+        long currentTime = System.currentTimeMillis();
+        for (TokenCardMeta check : tokenList)
+        {
+            if (batch.size() >= BALANCE_BATCH_LIMIT) break;
+            if (check.getChain() != chainId || !canBatchBalance(check.type)
+                    || check.getAddress().equalsIgnoreCase(t.getAddress())) continue;
+            if (getUpdateFactor(check, currentTime) == 0) continue;
+
+            Token batchToken = getToken(check.getChain(), check.getAddress());
+            if (batchToken != null)
+            {
+                pendingTokenMap.put(databaseKey(check.getChain(), check.getAddress()), currentTime);
+                batch.add(batchToken);
+            }
+        }
+
+        return batch;
+    }
+
+    private boolean canBatchBalance(ContractType type)
+    {
+        switch (type)
+        {
+            case ETHEREUM:
+            case ERC20:
+            case DYNAMIC_CONTRACT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     public Single<BigDecimal> getChainBalance(String walletAddress, long chainId)
     {
         return tokenRepository.fetchChainBalance(walletAddress, chainId);
@@ -644,6 +741,14 @@ public class TokensService
 
     }
 
+    private void onBalancesChange(BigDecimal[] newBalances, List<Token> tokens)
+    {
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            if (newBalances[i] != null) onBalanceChange(newBalances[i], tokens.get(i));
+        }
+    }
+
     private void checkChainVisibility(Token t)
     {
         //Switch this token chain on
@@ -791,8 +896,11 @@ public class TokensService
     public Token getNextInBalanceUpdateQueue()
     {
         //pull all tokens from this wallet out of DB
-        TokenCardMeta[] tokenList = buildUpdateMap();
+        return getNextInBalanceUpdateQueue(buildUpdateMap());
+    }
 
+    private Token getNextInBalanceUpdateQueue(TokenCardMeta[] tokenList)
+    {
         //calculate update based on last update time & importance
         float highestWeighting = 0;
         long currentTime = System.currentTimeMillis();
@@ -805,46 +913,9 @@ public class TokensService
         //this list will be in order of update.
         for (TokenCardMeta check : tokenList)
         {
-            long lastCheckDiff = currentTime - check.lastUpdate;
-            long lastUpdateDiff = check.lastTxUpdate > 0 ? currentTime - check.lastTxUpdate : 0;
-
-            float weighting = check.calculateBalanceUpdateWeight();
-
-            if ((!check.isEnabled || check.isNFT()) && !isSynced()) continue; //don't start looking at NFT balances until we sync the chain/ERC20 tokens
-            if (!isSynced() && check.lastUpdate > syncStart) continue; //don't start updating already updated tokens until all ERC20 are checked
-            if (!appHasFocus && (!check.isEthereum() && !isFocusToken(check))) continue; //only check chains when wallet out of focus
-
-            //simply multiply the weighting by the last diff.
-            float updateFactor = weighting * (float) lastCheckDiff * (check.isEnabled ? 1 : 0.25f);
-            long cutoffCheck = check.calculateUpdateFrequency(); //normal minimum update frequency for token 30 seconds, 5 minutes for hidden token
-
-            if (!check.isEthereum() && lastUpdateDiff > DateUtils.DAY_IN_MILLIS)
-            {
-                cutoffCheck = 120*DateUtils.SECOND_IN_MILLIS;
-                updateFactor = 0.5f * updateFactor;
-            }
-
-            if (isFocusToken(check))
-            {
-                updateFactor = 3.0f * (float) lastCheckDiff;
-                cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS; //focus token can be checked every 15 seconds - focus token when erc20 or chain clicked on in wallet
-            }
-            else if (check.isEthereum() && pendingChainMap.containsKey(check.getChain())) //higher priority for checking balance of pending chain
-            {
-                cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS;
-                updateFactor = 4.0f * (float) lastCheckDiff; //chain has a recent transaction
-            }
-            else if (check.isEthereum())
-            {
-                cutoffCheck = 20*DateUtils.SECOND_IN_MILLIS; //update check limit for base chains is 20 seconds
-            }
-            else if (focusToken != null)
-            {
-                updateFactor = 0.1f * (float) lastCheckDiff;
-                cutoffCheck = 60*DateUtils.SECOND_IN_MILLIS; //when looking at token in detail view (ERC20TokenDetail) update other tokens at 1 minute cycle
-            }
+            float updateFactor = getUpdateFactor(check, currentTime);
 
-            if (updateFactor > highestWeighting && (lastCheckDiff > (float)cutoffCheck))
+            if (updateFactor > highestWeighting)
             {
                 highestWeighting = updateFactor;
                 highestToken = check;
@@ -862,6 +933,54 @@ public class TokensService
         }
     }
 
+    /**
+     * Calculates the update priority of a token
+     * @return weighting of the token, or zero if it isn't due for an update
+     */
+    private float getUpdateFactor(TokenCardMeta check, long currentTime)
+    {
+        long lastCheckDiff = currentTime - check.lastUpdate;
+        long lastUpdateDiff = check.lastTxUpdate > 0 ? currentTime - check.lastTxUpdate : 0;
+
+        float weighting = check.calculateBalanceUpdateWeight();
+
+        if ((!check.isEnabled || check.isNFT()) && !isSynced()) return 0; //don't start looking at NFT balances until we sync the chain/ERC20 tokens
+        if (!isSynced() && check.lastUpdate > syncStart) return 0; //don't start updating already updated tokens until all ERC20 are checked
+        if (!appHasFocus && (!check.isEthereum() && !isFocusToken(check))) return 0; //only check chains when wallet out of focus
+
+        //simply multiply the weighting by the last diff.
+        float updateFactor = weighting * (float) lastCheckDiff * (check.isEnabled ? 1 : 0.25f);
+        long cutoffCheck = check.calculateUpdateFrequency(); //normal minimum update frequency for token 30 seconds, 5 minutes for hidden token
+
+        if (!check.isEthereum() && lastUpdateDiff > DateUtils.DAY_IN_MILLIS)
+        {
+            cutoffCheck = 120*DateUtils.SECOND_IN_MILLIS;
+            updateFactor = 0.5f * updateFactor;
+        }
+
+        if (isFocusToken(check))
+        {
+            updateFactor = 3.0f * (float) lastCheckDiff;
+            cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS; //focus token can be checked every 15 seconds - focus token when erc20 or chain clicked on in wallet
+        }
+        else if (check.isEthereum() && pendingChainMap.containsKey(check.getChain())) //higher priority for checking balance of pending chain
+        {
+            cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS;
+            updateFactor = 4.0f * (float) lastCheckDiff; //chain has a recent transaction
+        }
+        else if (check.isEthereum())
+        {
+            cutoffCheck = 20*DateUtils.SECOND_IN_MILLIS; //update check limit for base chains is 20 seconds
+        }
+        else if (focusToken != null)
+        {
+            updateFactor = 0.1f * (float) lastCheckDiff;
+            cutoffCheck = 60*DateUtils.SECOND_IN_MILLIS; //when looking at token in detail view (ERC20TokenDetail) update other tokens at 1 minute cycle
+        }
+
+        return (lastCheckDiff > (float)cutoffCheck) ? updateFactor : 0;
+    }
+
     private Token pendingBaseCheck()
     {
         Long chainId = baseTokenCheck.poll();
@@ -32,14 +32,10 @@ import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.ContractAddress;
 import com.google.gson.Gson;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -47,12 +43,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
+import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import io.realm.Case;
 import io.realm.Realm;
 import io.realm.RealmResults;
 import io.realm.Sort;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import timber.log.Timber;
@@ -77,7 +75,13 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
     private final String POLYGONSCAN_API_KEY;
     private final String AURORASCAN_API_KEY;
     private final KeyProvider keyProvider = KeyProviderFactory.get();
-    private final String JSON_EMPTY_RESULT = "{\"result\":[]}";
+    private static final int TX_CHUNK = 100; //transactions decoded and written at a time
+    private static final int BACKFILL_CONCURRENCY = 4; //chains backfilled at once
+    private static final String NO_TRANSACTIONS_FOUND = "No transactions found";
+    private static final int KEYED_CALLS_PER_SECOND = 5;
+    private static final int KEYLESS_CALLS_PER_SECOND = 2;
+    private static final long RATE_LIMIT_BACKOFF = 2000; //ms to hold off a provider that reported its limit was hit
+    private static final ApiRateBudget rateBudget = new ApiRateBudget();
 
     private final OkHttpClient httpClient;
     private final Gson gson;
@@ -159,7 +163,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
     {
         return Single.fromCallable(() -> {
             long lastBlockNumber = lastBlock + 1;
-            List<Transaction> sortedTx = null;
+            List<Transaction> newTx = new ArrayList<>(); //returned for the token and notification checks
             try (Realm instance = realmManager.getRealmInstance(svs.getCurrentAddress()))
             {
                 long syncToBlock = getTokenBlockRead(instance, networkInfo.chainId, TransferFetchType.ETHEREUM);
@@ -168,132 +172,211 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                     lastBlockNumber = 0;
                 }
 
-                sortedTx = syncDownwards(svs, networkInfo, tokenAddress, lastBlockNumber, 999999999);
+                //each chunk is written as it's read; on first sync the old entries are blanked before the first write
+                boolean[] eraseFirst = { syncToBlock == 0 };
+                long[] blockRange = { Long.MAX_VALUE, 0 }; //lowest and highest block stored
+                int rows = syncDownwards(svs, networkInfo, tokenAddress, lastBlockNumber, 999999999, chunk -> {
+                    if (eraseFirst[0])
+                    {
+                        eraseAllTransactions(instance, networkInfo.chainId);
+                        eraseFirst[0] = false;
+                    }
+                    writeTransactions(instance, chunk);
+                    for (Transaction tx : chunk)
+                    {
+                        long block = Long.parseLong(tx.blockNumber);
+                        blockRange[0] = Math.min(blockRange[0], block);
+                        blockRange[1] = Math.max(blockRange[1], block);
+                    }
+                    newTx.addAll(chunk);
+                });
 
-                if (sortedTx.size() > 0)
+                if (newTx.size() > 0)
                 {
-                    String highestBlockStr = sortedTx.get(sortedTx.size() - 1).blockNumber;
-
-                    storeLatestBlockRead(svs.getCurrentAddress(), networkInfo.chainId, tokenAddress, highestBlockStr);
+                    storeLatestBlockRead(svs.getCurrentAddress(), networkInfo.chainId, tokenAddress, String.valueOf(blockRange[1]));
 
-                    if (syncToBlock == 0 || sortedTx.size() == PAGESIZE * SYNC_PAGECOUNT)
+                    if (syncToBlock == 0 || rows == PAGESIZE * SYNC_PAGECOUNT)
                     {
-                        //blank all entries
-                        eraseAllTransactions(instance, networkInfo.chainId);
-                        writeTokenBlockRead(instance, networkInfo.chainId, Long.parseLong(sortedTx.get(0).blockNumber), TransferFetchType.ETHEREUM);
+                        //a full read leaves a gap below it: keep only the entries just read
+                        if (syncToBlock != 0) eraseTransactionsExcept(instance, networkInfo.chainId, newTx);
+                        writeTokenBlockRead(instance, networkInfo.chainId, blockRange[0], TransferFetchType.ETHEREUM);
                     }
-
-                    //now write transactions
-                    writeTransactions(instance, sortedTx);
                 }
             }
-            catch (JSONException e)
-            {
-                //silent fail
-            }
             catch (Exception e)
             {
                 Timber.e(e);
             }
 
-            return sortedTx != null ? sortedTx.toArray(new Transaction[0]) : new Transaction[0];
+            return sortTransactions(newTx).toArray(new Transaction[0]);
         }).subscribeOn(Schedulers.io());
     }
 
     /**
-     * read PAGESIZE*2 transactions down from startingBlockNumber
+     * read PAGESIZE*2 transactions down from startingBlockNumber, passing them to the handler in chunks as they are read
      *
      * Note that this call is the only place that the 'earliest transaction' block can be written from.
+     *
+     * @return rows read
      */
-    private List<Transaction> syncDownwards(TokensService svs, NetworkInfo networkInfo, String tokenAddress, long lowBlockNumber, long highBlockNumber) throws Exception
+    private int syncDownwards(TokensService svs, NetworkInfo networkInfo, String tokenAddress, long lowBlockNumber, long highBlockNumber,
+                              ExplorerResponseReader.ChunkHandler<Transaction> handler)
     {
         int page = 1;
-        HashMap<String, Transaction> txMap = new HashMap<>();
-        boolean continueReading = true;
+        int totalRows = 0;
 
-        while (continueReading) // only SYNC_PAGECOUNT pages at a time for each check, to avoid congestion
+        while (page <= SYNC_PAGECOUNT) // only SYNC_PAGECOUNT pages at a time for each check, to avoid congestion
         {
-            EtherscanTransaction[] myTxs = readTransactions(networkInfo, svs, tokenAddress, String.valueOf(lowBlockNumber), String.valueOf(highBlockNumber), false, page++);
-            if (myTxs.length == 0) break;
-            populateTransactionMap(txMap, myTxs, networkInfo.chainId); //use all transactions (wallet address null)
-
-            if (page > SYNC_PAGECOUNT) continueReading = false;
+            int rows = readTransactions(networkInfo, svs, tokenAddress, String.valueOf(lowBlockNumber), String.valueOf(highBlockNumber), false, page++,
+                    handler);
+            if (rows <= 0) break;
 
-            if (myTxs.length < PAGESIZE)
-            {
-                continueReading = false;
-            }
+            totalRows += rows;
+            if (rows < PAGESIZE) break;
         }
 
-        return sortTransactions(txMap.values());
+        return totalRows;
     }
 
-    private void populateTransactionMap(HashMap<String, Transaction> txMap, EtherscanTransaction[] myTxs, long chainId)
+    /**
+     * Backfill transaction history for several chains at once, each chain on its own thread.
+     *
+     * Each chain pages down from its newest transaction, or from the oldest stored one if an earlier backfill was
+     * interrupted, until SYNC_PAGECOUNT pages are stored. When the wallet's first transaction is reached its block
+     * is recorded with storeEarliestBlockRead, so the chain isn't backfilled again. Pages are streamed into the
+     * database in chunks as they download.
+     *
+     * @param svs
+     * @param networks
+     * @return chainId and the contract calls stored, as each chain completes
+     */
+    @Override
+    public Observable<Pair<Long, Transaction[]>> backfillTransactions(TokensService svs, List<NetworkInfo> networks)
     {
-        for (EtherscanTransaction etx : myTxs)
-        {
-            Transaction tx = etx.createTransaction(null, chainId);
-            if (tx != null)
-            {
-                txMap.put(tx.hash, tx);
-            }
-        }
+        final String walletAddress = svs.getCurrentAddress();
+        return Observable.fromIterable(networks)
+                .flatMap(network -> Single.fromCallable(() -> backfillChain(svs, walletAddress, network))
+                        .subscribeOn(Schedulers.io())
+                        .onErrorReturn(e -> {
+                            Timber.e(e);
+                            return new Transaction[0];
+                        })
+                        .map(txs -> new Pair<>(network.chainId, txs))
+                        .toObservable(), BACKFILL_CONCURRENCY);
     }
 
-    private EtherscanTransaction[] getEtherscanTransactions(String response) throws JSONException
+    private Transaction[] backfillChain(TokensService svs, String walletAddress, NetworkInfo networkInfo) throws Exception
     {
-        JSONObject stateData;
-        try
+        if (TextUtils.isEmpty(networkInfo.etherscanAPI) || networkInfo.etherscanAPI.contains(COVALENT)
+                || (networkInfo.isCustom && !Utils.isValidUrl(networkInfo.etherscanAPI)))
         {
-            stateData = new JSONObject(response);
+            return new Transaction[0];
         }
-        catch (JSONException e)
+
+        final long chainId = networkInfo.chainId;
+        List<Transaction> contractCalls = new ArrayList<>(); //only these are needed to discover new tokens
+        try (Realm instance = realmManager.getRealmInstance(walletAddress))
         {
-            Timber.w(e);
-            return new EtherscanTransaction[0];
+            if (getFirstTransactionBlock(instance, chainId, walletAddress) > 0)
+            {
+                return new Transaction[0]; //already have the full history
+            }
+
+            boolean firstSync = getTokenBlockRead(instance, chainId, TransferFetchType.ETHEREUM) == 0;
+            long highBlock = 999999999;
+            int pagesRemaining = SYNC_PAGECOUNT;
+
+            if (firstSync)
+            {
+                eraseAllTransactions(instance, chainId);
+            }
+            else
+            {
+                //resume from the checkpoint left by an interrupted backfill
+                long storedCount = instance.where(RealmTransaction.class).equalTo("chainId", chainId).count();
+                pagesRemaining -= (int) (storedCount / PAGESIZE);
+                highBlock = getOldestBlockRead(instance, chainId, 0);
+                if (pagesRemaining <= 0 || highBlock == 0) return new Transaction[0];
+            }
+
+            long[] blockRange = { Long.MAX_VALUE, 0 }; //lowest and highest block stored
+            boolean reachedFirstTx = false;
+            int page = 1;
+
+            while (pagesRemaining-- > 0 && !reachedFirstTx)
+            {
+                //each chunk is written while the rest of the page downloads
+                int rows = readTransactions(networkInfo, svs, walletAddress, "0", String.valueOf(highBlock), false, page++, chunk -> {
+                    writeTransactions(instance, chunk);
+                    for (Transaction tx : chunk)
+                    {
+                        long block = Long.parseLong(tx.blockNumber);
+                        blockRange[0] = Math.min(blockRange[0], block);
+                        blockRange[1] = Math.max(blockRange[1], block);
+                        if (tx.hasData()) contractCalls.add(tx);
+                    }
+                });
+
+                if (rows < 0) break; //read failed; resume next time
+                reachedFirstTx = rows < PAGESIZE;
+
+                if (firstSync && blockRange[1] > 0)
+                {
+                    if (page == 2) storeLatestBlockRead(walletAddress, chainId, walletAddress, String.valueOf(blockRange[1]));
+                    writeTokenBlockRead(instance, chainId, blockRange[0], TransferFetchType.ETHEREUM);
+                }
+            }
+
+            if (reachedFirstTx && blockRange[1] > 0)
+            {
+                storeEarliestBlockRead(instance, chainId, walletAddress, blockRange[0]);
+            }
         }
 
-        JSONArray orders = stateData.getJSONArray("result");
-        return gson.fromJson(orders.toString(), EtherscanTransaction[].class);
+        Timber.tag(TAG).d("Backfilled %s contract calls on %s", contractCalls.size(), networkInfo.getShortName());
+        return contractCalls.toArray(new Transaction[0]);
     }
 
-    private CovalentTransaction[] getCovalentTransactions(String response, String walletAddress) throws JSONException
+    private List<Transaction> toTransactions(List<EtherscanTransaction> etherscanTxs, long chainId)
     {
-        if (response == null || response.length() < 80)
+        List<Transaction> txList = new ArrayList<>(etherscanTxs.size());
+        for (EtherscanTransaction etx : etherscanTxs)
         {
-            return new CovalentTransaction[0];
+            Transaction tx = etx.createTransaction(null, chainId); //use all transactions (wallet address null)
+            if (tx != null)
+            {
+                txList.add(tx);
+            }
         }
-        JSONObject stateData = new JSONObject(response);
-        JSONObject data = stateData.getJSONObject("data");
-        JSONArray orders = data.getJSONArray("items");
-        CovalentTransaction[] ctxs = gson.fromJson(orders.toString(), CovalentTransaction[].class);
-        //reformat list to remove any transactions already seen
+        return txList;
+    }
+
+    /**
+     * Stream the Covalent transactions, dropping any already seen, one chunk at a time
+     */
+    private CovalentTransaction[] getCovalentTransactions(Reader response, String walletAddress) throws Exception
+    {
         List<CovalentTransaction> cvList = new ArrayList<>();
         try (Realm instance = realmManager.getRealmInstance(new Wallet(walletAddress)))
         {
-            for (CovalentTransaction ctx : ctxs)
-            {
-                RealmTransaction realmTx = instance.where(RealmTransaction.class)
-                        .equalTo("hash", ctx.tx_hash)
-                        .findFirst();
-
-                if (realmTx == null)
+            ExplorerResponseReader.read(response, gson, CovalentTransaction.class, TX_CHUNK, chunk -> {
+                for (CovalentTransaction ctx : chunk)
                 {
-                    cvList.add(ctx);
+                    RealmTransaction realmTx = instance.where(RealmTransaction.class)
+                            .equalTo("hash", ctx.tx_hash)
+                            .findFirst();
+
+                    if (realmTx == null)
+                    {
+                        cvList.add(ctx);
+                    }
                 }
-            }
+            }, "data", "items");
         }
 
         return cvList.toArray(new CovalentTransaction[0]);
     }
 
-    private EtherscanEvent[] getEtherscanEvents(String response) throws JSONException
-    {
-        JSONObject stateData = new JSONObject(response);
-        JSONArray orders = stateData.getJSONArray("result");
-        return gson.fromJson(orders.toString(), EtherscanEvent[].class);
-    }
-
     private void writeTransactions(Realm instance, List<Transaction> txList) throws Exception
     {
         if (txList.size() == 0) return;
@@ -325,11 +408,16 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         });
     }
 
-    private EtherscanTransaction[] readTransactions(NetworkInfo networkInfo, TokensService svs, String tokenAddress, String lowBlock, String highBlock, boolean ascending, int page) throws JSONException
+    /**
+     * Stream a page of transactions, passing them to the handler in chunks as they are decoded
+     *
+     * @return rows in the page, or -1 if the read failed
+     */
+    private int readTransactions(NetworkInfo networkInfo, TokensService svs, String tokenAddress, String lowBlock, String highBlock, boolean ascending, int page,
+                                 ExplorerResponseReader.ChunkHandler<Transaction> handler)
     {
-        if (networkInfo == null) return new EtherscanTransaction[0];
+        if (networkInfo == null) return 0;
 
-        String result = null;
         String fullUrl;
 
         String sort = "asc";
@@ -371,7 +459,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
 
             if (networkInfo.isCustom && !Utils.isValidUrl(networkInfo.etherscanAPI))
             {
-                return new EtherscanTransaction[0];
+                return 0;
             }
 
             Request request = new Request.Builder()
@@ -379,25 +467,23 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                 .get()
                 .build();
 
-            try (okhttp3.Response response = httpClient.newCall(request).execute())
+            try (okhttp3.Response response = httpClient.newCall(throttle(networkInfo, request)).execute())
             {
-                if (response.body() == null) return new EtherscanTransaction[0];
-                if (response.code() / 200 == 1)
-                {
-                    result = response.body().string();
-                    if (result.length() >= 80 && !result.contains("No transactions found"))
-                    {
-                        return getEtherscanTransactions(result);
-                    }
-                }
+                if (response.body() == null || response.code() / 200 != 1) return -1;
+                ExplorerResponseReader.Result result = ExplorerResponseReader.read(response.body().charStream(), gson, EtherscanTransaction.class, TX_CHUNK,
+                        chunk -> handler.onChunk(toTransactions(chunk, networkInfo.chainId)), "result");
+                checkRateLimit(networkInfo, result.message);
+                //an error body isn't an empty page; treating it as one would mark the chain as fully read
+                return result.found || NO_TRANSACTIONS_FOUND.equals(result.message) ? result.rows : -1;
             }
             catch (Exception e)
             {
                 Timber.e(e);
+                return -1;
             }
         }
 
-        return new EtherscanTransaction[0];
+        return 0;
     }
 
     /**
@@ -427,8 +513,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                     Timber.d("DIAGNOSE: " + oldestBlockRead + " : " + oldestPossibleBlock);
                     if (oldestBlockRead > 0 && oldestBlockRead != oldestPossibleBlock)
                     {
-                        List<Transaction> syncTx = syncDownwards(svs, network, svs.getCurrentAddress(), 0, oldestBlockRead);
-                        writeTransactions(instance, syncTx);
+                        syncDownwards(svs, network, svs.getCurrentAddress(), 0, oldestBlockRead, chunk -> writeTransactions(instance, chunk));
                     }
 
                     //now re-read last blocks from DB
@@ -471,9 +556,8 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         }).observeOn(Schedulers.io());
     }
 
-    private EtherscanEvent[] fetchEvents(Realm instance, String walletAddress, NetworkInfo networkInfo, TransferFetchType tfType) throws JSONException
+    private EtherscanEvent[] fetchEvents(Realm instance, String walletAddress, NetworkInfo networkInfo, TransferFetchType tfType)
     {
-        EtherscanEvent[] events;
         List<EtherscanEvent> eventList = new ArrayList<>();
         //get oldest record
         long lastBlockFound = getTokenBlockRead(instance, networkInfo.chainId, tfType);
@@ -483,17 +567,20 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
 
             while (true)
             {
-                String fetchTransactions = readNextTxBatch(walletAddress, networkInfo, upperBlock, lowerBlock, tfType.getValue());
-                events = getEtherscanEvents(fetchTransactions);
-
-                if (events.length == 0)
+                //events come newest first, so the last one read is the lowest block
+                long[] lowestBlock = { 0 };
+                int eventCount = readNextTxBatch(walletAddress, networkInfo, upperBlock, lowerBlock, tfType.getValue(), ev -> {
+                    eventList.add(ev);
+                    lowestBlock[0] = Long.parseLong(ev.blockNumber);
+                });
+
+                if (eventCount == 0)
                 {
                     break;
                 }
 
-                upperBlock = Long.parseLong(events[events.length - 1].blockNumber) - 1;
-                eventList.addAll(Arrays.asList(events));
-                if (events.length == TRANSFER_RESULT_MAX && eventList.size() > TRANSFER_RESULT_MAX)
+                upperBlock = lowestBlock[0] - 1;
+                if (eventCount == TRANSFER_RESULT_MAX && eventList.size() > TRANSFER_RESULT_MAX)
                 {
                     //If still above the last read, blank all following reads to avoid 'sync-holes'. The new events read above will be added on the return
                     //TODO: See above - need to sync the lowest block here to the lowest block in the transaction reads
@@ -501,7 +588,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                     blankTransferData(instance, networkInfo.chainId);
                 }
 
-                if (eventList.size() > TRANSFER_RESULT_MAX || events.length < TRANSFER_RESULT_MAX)
+                if (eventList.size() > TRANSFER_RESULT_MAX || eventCount < TRANSFER_RESULT_MAX)
                 {
                     break;
                 }
@@ -634,10 +721,16 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         }
     }
 
-    private String readNextTxBatch(String walletAddress, NetworkInfo networkInfo, long upperBlock, long lowerBlock, String queryType)
+    /**
+     * Stream a page of transfer events, passing each to the handler as it's decoded
+     *
+     * @return events read
+     */
+    private int readNextTxBatch(String walletAddress, NetworkInfo networkInfo, long upperBlock, long lowerBlock, String queryType,
+                                ExplorerResponseReader.ElementHandler<EtherscanEvent> handler)
     {
-        if (TextUtils.isEmpty(networkInfo.etherscanAPI) || networkInfo.etherscanAPI.contains(COVALENT)) return JSON_EMPTY_RESULT; //Covalent transfers are handled elsewhere
-        String result = JSON_EMPTY_RESULT;
+        if (TextUtils.isEmpty(networkInfo.etherscanAPI) || networkInfo.etherscanAPI.contains(COVALENT)) return 0; //Covalent transfers are handled elsewhere
+        int[] eventCount = { 0 };
         if (lowerBlock == 0) lowerBlock = 1;
 
         String fullUrl = networkInfo.etherscanAPI + "module=account&action=" + queryType +
@@ -648,7 +741,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
 
         if (networkInfo.isCustom && !Utils.isValidUrl(networkInfo.etherscanAPI))
         {
-            return JSON_EMPTY_RESULT;
+            return 0;
         }
 
         Request request = new Request.Builder()
@@ -658,15 +751,16 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
             .addHeader("Content-Type", "application/json")
             .build();
 
-        try (okhttp3.Response response = httpClient.newCall(request).execute())
+        try (okhttp3.Response response = httpClient.newCall(throttle(networkInfo, request)).execute())
         {
-            if (response.code() / 200 == 1)
+            if (response.code() / 200 == 1 && response.body() != null)
             {
-                result = response.body().string();
-                if (result.length() < 80 && result.contains("No transactions found"))
-                {
-                    result = JSON_EMPTY_RESULT;
-                }
+                ExplorerResponseReader.Result result = ExplorerResponseReader.read(response.body().charStream(), gson, EtherscanEvent.class,
+                        ev -> {
+                            eventCount[0]++;
+                            handler.onElement(ev);
+                        }, "result");
+                checkRateLimit(networkInfo, result.message);
             }
         }
         catch (Exception e)
@@ -674,7 +768,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
             if (BuildConfig.DEBUG) Timber.e(e);
         }
 
-        return result;
+        return eventCount[0];
     }
 
     private String getNetworkAPIToken(NetworkInfo networkInfo)
@@ -689,13 +783,41 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         }
     }
 
-    private EtherscanTransaction[] readCovalentTransactions(TokensService svs, String accountAddress, NetworkInfo networkInfo, boolean ascending, int page, int pageSize) throws JSONException
+    /**
+     * Calls are budgeted per API key; keyless calls per host
+     */
+    private String getApiProvider(NetworkInfo networkInfo)
+    {
+        if (networkInfo.etherscanAPI.contains(COVALENT)) return keyProvider.getCovalentKey();
+        String apiKey = getNetworkAPIToken(networkInfo);
+        if (!TextUtils.isEmpty(apiKey)) return apiKey;
+        HttpUrl url = HttpUrl.parse(networkInfo.etherscanAPI);
+        return url != null ? url.host() : networkInfo.etherscanAPI;
+    }
+
+    private Request throttle(NetworkInfo networkInfo, Request request) throws InterruptedException
+    {
+        boolean keyed = networkInfo.etherscanAPI.contains(COVALENT) || !TextUtils.isEmpty(getNetworkAPIToken(networkInfo));
+        rateBudget.acquire(getApiProvider(networkInfo), keyed ? KEYED_CALLS_PER_SECOND : KEYLESS_CALLS_PER_SECOND);
+        return request;
+    }
+
+    private void checkRateLimit(NetworkInfo networkInfo, String message)
+    {
+        if (message != null && message.toLowerCase().contains("rate limit"))
+        {
+            Timber.tag(TAG).d("Rate limit reached: %s", networkInfo.getShortName());
+            rateBudget.backOff(getApiProvider(networkInfo), RATE_LIMIT_BACKOFF);
+        }
+    }
+
+    private EtherscanTransaction[] readCovalentTransactions(TokensService svs, String accountAddress, NetworkInfo networkInfo, boolean ascending, int page, int pageSize)
     {
         String covalent = "" + networkInfo.chainId + "/address/" + accountAddress.toLowerCase() + "/transactions_v2/?";
         String args = "block-signed-at-asc=" + (ascending ? "true" : "false") + "&page-number=" + (page - 1) + "&page-size=" +
                 pageSize + "&key=" + keyProvider.getCovalentKey(); //read logs to get all the transfers
         String fullUrl = networkInfo.etherscanAPI.replace(COVALENT, covalent);
-        String result = null;
+        CovalentTransaction[] covalentTransactions;
 
         Request request = new Request.Builder()
                 .url(fullUrl + args)
@@ -703,15 +825,11 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                 .addHeader("Content-Type", "application/json")
                 .build();
 
-        try (okhttp3.Response response = httpClient.newCall(request).execute())
+        try (okhttp3.Response response = httpClient.newCall(throttle(networkInfo, request)).execute())
         {
             if (response.body() == null) return new EtherscanTransaction[0];
 
-            result = response.body().string();
-            if (result.length() < 80 && result.contains("No transactions found"))
-            {
-                return new EtherscanTransaction[0];
-            }
+            covalentTransactions = getCovalentTransactions(response.body().charStream(), svs.getCurrentAddress());
         }
         catch (Exception e)
         {
@@ -719,8 +837,6 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
             return new EtherscanTransaction[0];
         }
 
-        CovalentTransaction[] covalentTransactions = getCovalentTransactions(result, svs.getCurrentAddress());
-
         EtherscanTransaction[] unhandledTxs = processCovalentEvents(covalentTransactions, svs, networkInfo);
 
         return unhandledTxs;
@@ -1186,6 +1302,21 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         });
     }
 
+    private void eraseTransactionsExcept(Realm instance, long chainId, List<Transaction> keep)
+    {
+        String[] hashes = new String[keep.size()];
+        for (int i = 0; i < keep.size(); i++) hashes[i] = keep.get(i).hash;
+
+        instance.executeTransaction(r -> {
+            RealmResults<RealmTransaction> realmTx = r.where(RealmTransaction.class)
+                    .equalTo("chainId", chainId)
+                    .not().in("hash", hashes)
+                    .findAll();
+
+            realmTx.deleteAllFromRealm();
+        });
+    }
+
     private List<Transaction> sortTransactions(Collection<Transaction> txCollection)
     {
         List<Transaction> txList = new ArrayList<>(txCollection);
@@ -1,5 +1,7 @@
 package com.alphawallet.app.service;
 
+import android.util.Pair;
+
 import com.alphawallet.app.entity.NetworkInfo;
 import com.alphawallet.app.entity.Transaction;
 import com.alphawallet.app.entity.TransactionMeta;
@@ -9,6 +11,7 @@ import com.alphawallet.app.entity.transactions.TransferEvent;
 import java.util.List;
 import java.util.Map;
 
+import io.reactivex.Observable;
 import io.reactivex.Single;
 
 public interface TransactionsNetworkClientType
@@ -19,5 +22,7 @@ public interface TransactionsNetworkClientType
 
     Single<Map<String, List<TransferEvent>>> readTransfers(String currentAddress, NetworkInfo networkByChain, TokensService tokensService, TransferFetchType tfType);
 
+    Observable<Pair<Long, Transaction[]>> backfillTransactions(TokensService svs, List<NetworkInfo> networks);
+
     void checkRequiresAuxReset(String walletAddr);
 }
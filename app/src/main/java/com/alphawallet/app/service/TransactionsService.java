@@ -36,7 +36,11 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
@@ -64,8 +68,10 @@ public class TransactionsService
     private final LongSparseArray<Long> chainTransferCheckTimes = new LongSparseArray<>(); //TODO: Use this to coordinate token checks on chains
     private final LongSparseArray<Long> chainTransactionCheckTimes = new LongSparseArray<>();
     private static final LongSparseArray<CurrentBlockTime> currentBlocks = new LongSparseArray<>();
+    private static final Map<Long, FutureTask<BigInteger>> blockFetches = new ConcurrentHashMap<>(); //one block read per chain at a time
     private static final ConcurrentLinkedQueue<String> requiredTransactions = new ConcurrentLinkedQueue<>();
     private final LongSparseArray<TransferFetchType> apiFetchProgress = new LongSparseArray<>();
+    private final Set<Long> backfillChains = ConcurrentHashMap.newKeySet(); //chains whose history is being backfilled
 
     private final static int TRANSACTION_DROPPED = -1;
     private final static int TRANSACTION_SEEN = -2;
@@ -83,6 +89,8 @@ public class TransactionsService
     private Disposable pendingTransactionCheckCycle;
     @Nullable
     private Disposable transactionResolve;
+    @Nullable
+    private Disposable backfillDisposable;
     private boolean fromBackground;
 
     public TransactionsService(TokensService tokensService,
@@ -119,6 +127,7 @@ public class TransactionsService
         fetchTransactionDisposable = null;
         //reset transaction timers
         startTransactionCheckCycle(START_CHECK_DELAY);
+        startBackfill();
 
         readTransferCycle();
 
@@ -129,6 +138,44 @@ public class TransactionsService
         }
     }
 
+    /**
+     * Fill in the transaction history of all selected chains in parallel. The regular check cycle skips each chain
+     * until its backfill is done.
+     */
+    private void startBackfill()
+    {
+        if (backfillDisposable != null && !backfillDisposable.isDisposed()) backfillDisposable.dispose();
+        backfillChains.clear();
+
+        List<NetworkInfo> networks = new ArrayList<>();
+        for (long chainId : tokensService.getNetworkFilters())
+        {
+            NetworkInfo info = ethereumNetworkRepository.getNetworkByChain(chainId);
+            if (info == null || TextUtils.isEmpty(info.etherscanAPI)) continue;
+            networks.add(info);
+            backfillChains.add(chainId);
+        }
+
+        backfillDisposable = transactionsClient.backfillTransactions(tokensService, networks)
+                .delaySubscription(START_CHECK_DELAY, TimeUnit.SECONDS) //allow aux reset to complete
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onChainBackfilled, e -> {
+                    backfillChains.clear();
+                    Timber.e(e);
+                }, backfillChains::clear);
+    }
+
+    private void onChainBackfilled(Pair<Long, Transaction[]> result)
+    {
+        backfillChains.remove(result.first);
+        chainTransactionCheckTimes.put(result.first, System.currentTimeMillis());
+        if (result.second.length > 0)
+        {
+            Timber.tag(TAG).d("Backfilled %s : %s transactions", result.first, result.second.length);
+            checkTokens(result.second);
+        }
+    }
+
     private void startTransactionCheckCycle(long checkCycleTime)
     {
         if (transactionCheckCycle == null || transactionCheckCycle.isDisposed())
@@ -365,7 +412,7 @@ public class TransactionsService
         for (long chainId : chains)
         {
             NetworkInfo thisInfo = ethereumNetworkRepository.getNetworkByChain(chainId);
-            if (TextUtils.isEmpty(thisInfo.etherscanAPI))
+            if (TextUtils.isEmpty(thisInfo.etherscanAPI) || backfillChains.contains(chainId))
             {
                 continue;
             }
@@ -402,7 +449,7 @@ public class TransactionsService
             String blockValStr = ethBlock.getBlock().getNumberRaw();
             if (!TextUtils.isEmpty(blockValStr) && blockValStr.length() > 2)
                 return Numeric.toBigInt(blockValStr);
-            else return currentBlocks.get(chainId, new CurrentBlockTime(BigInteger.ZERO)).blockNumber;
+            else return readCurrentBlock(chainId).blockNumber;
         });
     }
 
@@ -525,12 +572,15 @@ public class TransactionsService
         if (pendingTransactionCheckCycle != null && !pendingTransactionCheckCycle.isDisposed()) { pendingTransactionCheckCycle.dispose(); }
         if (tokenTransferCheckCycle != null && !tokenTransferCheckCycle.isDisposed()) { tokenTransferCheckCycle.dispose(); }
         if (eventFetch != null && !eventFetch.isDisposed()) { eventFetch.dispose(); }
+        if (backfillDisposable != null && !backfillDisposable.isDisposed()) { backfillDisposable.dispose(); }
 
         fetchTransactionDisposable = null;
         transactionCheckCycle = null;
         pendingTransactionCheckCycle = null;
         tokenTransferCheckCycle = null;
         eventFetch = null;
+        backfillDisposable = null;
+        backfillChains.clear();
         tokensService.checkingChain(0);
         chainTransferCheckTimes.clear();
         chainTransactionCheckTimes.clear();
@@ -651,14 +701,59 @@ public class TransactionsService
 
     public static BigInteger getCurrentBlock(long chainId)
     {
-        CurrentBlockTime currentBlock = currentBlocks.get(chainId, new CurrentBlockTime(BigInteger.ZERO));
-        if (currentBlock.blockReadRequiresUpdate())
+        CurrentBlockTime currentBlock = readCurrentBlock(chainId);
+        if (!currentBlock.blockReadRequiresUpdate()) return currentBlock.blockNumber;
+
+        FutureTask<BigInteger> fetch = new FutureTask<>(() -> {
+            BigInteger blockNumber = fetchCurrentBlock(chainId).blockingGet();
+            synchronized (currentBlocks)
+            {
+                currentBlocks.put(chainId, new CurrentBlockTime(blockNumber));
+            }
+            return blockNumber;
+        });
+
+        FutureTask<BigInteger> running = blockFetches.putIfAbsent(chainId, fetch);
+        if (running == null)
+        {
+            running = fetch;
+            try
+            {
+                fetch.run();
+            }
+            finally
+            {
+                blockFetches.remove(chainId, fetch);
+            }
+        }
+        else if (currentBlock.blockNumber.signum() > 0)
         {
-            currentBlock = new CurrentBlockTime(fetchCurrentBlock(chainId).blockingGet());
-            currentBlocks.put(chainId, currentBlock);
+            return currentBlock.blockNumber; //another thread is reading the block; the last one will do until it's back
         }
 
-        return currentBlock.blockNumber;
+        try
+        {
+            return running.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return currentBlock.blockNumber;
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    //read from many threads: every cached eth_call resolves its block here
+    private static CurrentBlockTime readCurrentBlock(long chainId)
+    {
+        synchronized (currentBlocks)
+        {
+            return currentBlocks.get(chainId, new CurrentBlockTime(BigInteger.ZERO));
+        }
     }
 
     private void checkPendingTransactions()
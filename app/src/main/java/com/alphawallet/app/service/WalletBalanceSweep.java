@@ -0,0 +1,310 @@
+package com.alphawallet.app.service;
+
+import static org.web3j.protocol.core.methods.request.Transaction.createEthCallTransaction;
+
+import android.text.TextUtils;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.Wallet;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+import com.alphawallet.app.repository.EthereumNetworkBase;
+import com.alphawallet.app.repository.EthereumNetworkRepositoryType;
+import com.alphawallet.app.repository.Multicall3;
+import com.alphawallet.app.repository.TokenRepository;
+import com.alphawallet.app.repository.TokenRepositoryType;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.utils.Numeric;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * Refreshes the balances of a set of wallets without running a TokensService for each one.
+ *
+ * Work is done chain by chain rather than wallet by wallet. First the native balance of every wallet on each chain is
+ * read in one batch, then the ERC20 balances for the wallets x tokens matrix in batches of BALANCE_BATCH_LIMIT. On chains
+ * with Multicall3 a batch is one aggregate3 call; elsewhere the batch is sent as concurrent requests, which the node
+ * client coalesces into a JSON-RPC batch (see RpcBatcher).
+ *
+ * Balances are written to each wallet's Realm once per pass. The callback gets syncComplete(wallet, 2) when the chain
+ * balances are stored and syncComplete(wallet, 1) when the token balances are stored, the same countdown a TokensService
+ * sync gives.
+ */
+public class WalletBalanceSweep
+{
+    public interface SweepCallback
+    {
+        void syncComplete(String walletAddress, int syncCount);
+    }
+
+    private static final int BALANCE_BATCH_LIMIT = 100; //balance reads per Multicall aggregate or node batch
+    private static final int CHAIN_CONCURRENCY = 4;
+
+    private final TokenRepositoryType tokenRepository;
+    private final EthereumNetworkRepositoryType ethereumNetworkRepository;
+    private final TickerService tickerService;
+
+    private static class Holding
+    {
+        final String wallet;
+        final Token token;
+        BigDecimal balance;
+
+        Holding(String wallet, Token token)
+        {
+            this.wallet = wallet;
+            this.token = token;
+        }
+    }
+
+    public WalletBalanceSweep(TokenRepositoryType tokenRepository, EthereumNetworkRepositoryType ethereumNetworkRepository,
+                              TickerService tickerService)
+    {
+        this.tokenRepository = tokenRepository;
+        this.ethereumNetworkRepository = ethereumNetworkRepository;
+        this.tickerService = tickerService;
+    }
+
+    /**
+     * @param wallets lower case wallet addresses
+     * @param chains chains to sweep
+     * @param callback receives progress per wallet
+     */
+    public Completable sweep(List<String> wallets, List<Long> chains, SweepCallback callback)
+    {
+        Map<String, List<Holding>> chainBalances = new ConcurrentHashMap<>();
+        Map<String, List<Holding>> tokenBalances = new ConcurrentHashMap<>();
+
+        Completable nativePass = Observable.fromIterable(chains)
+                .flatMap(chainId -> Observable.fromCallable(() -> collect(chainBalances, sweepChainBalances(chainId, wallets)))
+                        .subscribeOn(Schedulers.io()), CHAIN_CONCURRENCY)
+                .ignoreElements()
+                .andThen(store(wallets, chainBalances, callback, 2));
+
+        Completable tokenPass = Single.fromCallable(() -> fetchERC20Holdings(wallets, chains))
+                .flatMapObservable(holdings -> Observable.fromIterable(holdings.entrySet()))
+                .flatMap(entry -> Observable.fromCallable(() -> collect(tokenBalances, sweepTokenBalances(entry.getKey(), entry.getValue())))
+                        .subscribeOn(Schedulers.io()), CHAIN_CONCURRENCY)
+                .ignoreElements()
+                .andThen(store(wallets, tokenBalances, callback, 1));
+
+        return nativePass.andThen(tokenPass);
+    }
+
+    private List<Holding> sweepChainBalances(long chainId, List<String> wallets)
+    {
+        List<Holding> holdings = new ArrayList<>();
+        for (String wallet : wallets)
+        {
+            Token baseToken = tokenRepository.fetchToken(chainId, wallet, wallet);
+            if (baseToken == null)
+            {
+                baseToken = ethereumNetworkRepository.getBlankOverrideToken(ethereumNetworkRepository.getNetworkByChain(chainId));
+            }
+            baseToken.setTokenWallet(wallet);
+            holdings.add(new Holding(wallet, baseToken));
+        }
+
+        for (int i = 0; i < holdings.size(); i += BALANCE_BATCH_LIMIT)
+        {
+            readBalances(chainId, holdings.subList(i, Math.min(i + BALANCE_BATCH_LIMIT, holdings.size())));
+        }
+
+        return holdings;
+    }
+
+    private List<Holding> sweepTokenBalances(long chainId, List<Holding> holdings)
+    {
+        for (int i = 0; i < holdings.size(); i += BALANCE_BATCH_LIMIT)
+        {
+            readBalances(chainId, holdings.subList(i, Math.min(i + BALANCE_BATCH_LIMIT, holdings.size())));
+        }
+
+        return holdings;
+    }
+
+    /**
+     * ERC20 tokens held in each wallet's database, grouped by chain. Tickers for the tokens are refreshed here too, once
+     * per chain for all the wallets, since the fiat totals need them.
+     */
+    private Map<Long, List<Holding>> fetchERC20Holdings(List<String> wallets, List<Long> chains)
+    {
+        Map<Long, List<Holding>> holdings = new HashMap<>();
+        Map<Long, Map<String, TokenCardMeta>> chainTokens = new HashMap<>();
+        for (String wallet : wallets)
+        {
+            for (TokenCardMeta tcm : tokenRepository.fetchTokenMetasForUpdate(new Wallet(wallet), chains))
+            {
+                if (tcm.type != ContractType.ERC20) continue;
+                Token token = tokenRepository.fetchToken(tcm.getChain(), wallet, tcm.getAddress());
+                if (token == null) continue;
+                token.setTokenWallet(wallet);
+                holdings.computeIfAbsent(tcm.getChain(), k -> new ArrayList<>()).add(new Holding(wallet, token));
+                if (tcm.isEnabled) chainTokens.computeIfAbsent(tcm.getChain(), k -> new HashMap<>()).put(tcm.getAddress().toLowerCase(), tcm);
+            }
+        }
+
+        for (Map.Entry<Long, Map<String, TokenCardMeta>> entry : chainTokens.entrySet())
+        {
+            try
+            {
+                tickerService.syncERC20Tickers(entry.getKey(), new ArrayList<>(entry.getValue().values())).blockingGet();
+            }
+            catch (Exception e)
+            {
+                Timber.w(e);
+            }
+        }
+
+        return holdings;
+    }
+
+    /**
+     * Read the balances of one batch of holdings on a chain; a holding is left with a null balance if its read failed
+     */
+    private void readBalances(long chainId, List<Holding> batch)
+    {
+        Web3j web3j = getWeb3j(chainId);
+        String multicallAddress = EthereumNetworkBase.getMulticallAddress(chainId);
+        if (!TextUtils.isEmpty(multicallAddress) && readMulticall(web3j, multicallAddress, batch)) return;
+
+        //No Multicall, or the aggregate failed: send the reads together and let the node client batch them
+        List<CompletableFuture<String>> reads = new ArrayList<>(batch.size());
+        for (Holding h : batch)
+        {
+            if (h.token.isEthereum())
+            {
+                reads.add(web3j.ethGetBalance(h.wallet, DefaultBlockParameterName.LATEST).sendAsync()
+                        .thenApply(r -> r.hasError() ? null : Numeric.toHexStringWithPrefix(r.getBalance())));
+            }
+            else
+            {
+                reads.add(web3j.ethCall(createEthCallTransaction(h.wallet, h.token.getAddress(), FunctionEncoder.encode(balanceOf(h.wallet))),
+                        DefaultBlockParameterName.LATEST).sendAsync()
+                        .thenApply(r -> r.hasError() ? null : r.getValue()));
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++)
+        {
+            try
+            {
+                batch.get(i).balance = decodeBalance(reads.get(i).get());
+            }
+            catch (Exception e)
+            {
+                Timber.w(e);
+            }
+        }
+    }
+
+    protected Web3j getWeb3j(long chainId)
+    {
+        return TokenRepository.getWeb3jService(chainId);
+    }
+
+    private boolean readMulticall(Web3j web3j, String multicallAddress, List<Holding> batch)
+    {
+        List<Multicall3.Call> calls = new ArrayList<>(batch.size());
+        for (Holding h : batch)
+        {
+            calls.add(h.token.isEthereum() ? new Multicall3.Call(multicallAddress, Multicall3.getEthBalance(h.wallet))
+                    : new Multicall3.Call(h.token.getAddress(), balanceOf(h.wallet)));
+        }
+
+        List<Multicall3.Result> results = null;
+        try
+        {
+            results = Multicall3.aggregate(web3j, multicallAddress, batch.get(0).wallet, calls);
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+        }
+
+        if (results == null) return false;
+
+        for (int i = 0; i < batch.size(); i++)
+        {
+            Multicall3.Result result = results.get(i);
+            batch.get(i).balance = result.success ? decodeBalance(result.returnData) : null;
+        }
+
+        return true;
+    }
+
+    private static BigDecimal decodeBalance(String value)
+    {
+        //'0x' means no contract at the address; leave the balance for the wallet's own update cycle to resolve
+        if (value == null || Numeric.cleanHexPrefix(value).isEmpty()) return null;
+        String hex = Numeric.cleanHexPrefix(value);
+        return new BigDecimal(Numeric.toBigInt(hex.length() > 64 ? hex.substring(0, 64) : hex));
+    }
+
+    private static Function balanceOf(String owner)
+    {
+        return new Function("balanceOf",
+                Collections.singletonList(new Address(owner)),
+                Collections.singletonList(new TypeReference<Uint256>() {}));
+    }
+
+    private static boolean collect(Map<String, List<Holding>> byWallet, List<Holding> holdings)
+    {
+        for (Holding h : holdings)
+        {
+            if (h.balance == null) continue;
+            byWallet.computeIfAbsent(h.wallet, k -> Collections.synchronizedList(new ArrayList<>())).add(h);
+        }
+
+        return true;
+    }
+
+    /**
+     * Write each wallet's balances once the pass has collected them; a wallet whose write fails is reported as synced
+     * so the sweep carries on to the next
+     */
+    private Completable store(List<String> wallets, Map<String, List<Holding>> byWallet, SweepCallback callback, int syncCount)
+    {
+        return Observable.fromIterable(wallets)
+                .concatMapCompletable(wallet -> storeWallet(wallet, byWallet.get(wallet))
+                        .doOnError(Timber::w)
+                        .onErrorComplete()
+                        .doOnComplete(() -> {
+                            if (callback != null) callback.syncComplete(wallet, syncCount);
+                        }));
+    }
+
+    private Completable storeWallet(String wallet, List<Holding> holdings)
+    {
+        if (holdings == null || holdings.isEmpty()) return Completable.complete();
+
+        Token[] tokens = new Token[holdings.size()];
+        BigDecimal[] balances = new BigDecimal[holdings.size()];
+        for (int i = 0; i < holdings.size(); i++)
+        {
+            tokens[i] = holdings.get(i).token;
+            balances[i] = holdings.get(i).balance;
+        }
+        return tokenRepository.storeTokenBalances(new Wallet(wallet), tokens, balances).ignoreElement();
+    }
+}
@@ -7,6 +7,7 @@ package com.alphawallet.app.ui.widget.adapter;
 import android.annotation.SuppressLint;
 import android.os.Bundle;
 import android.os.Handler;
+import android.text.TextUtils;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
@@ -23,6 +24,7 @@ import com.alphawallet.app.entity.TransactionMeta;
 import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.interact.ActivityDataInteract;
 import com.alphawallet.app.interact.FetchTransactionsInteract;
+import com.alphawallet.app.repository.TokenRepository;
 import com.alphawallet.app.service.AssetDefinitionService;
 import com.alphawallet.app.service.TokensService;
 import com.alphawallet.app.ui.widget.entity.DateSortedItem;
@@ -38,11 +40,20 @@ import com.alphawallet.app.ui.widget.holder.EventHolder;
 import com.alphawallet.app.ui.widget.holder.TransactionDateHolder;
 import com.alphawallet.app.ui.widget.holder.TransactionHolder;
 import com.alphawallet.app.ui.widget.holder.TransferHolder;
+import com.alphawallet.app.util.Utils;
+import com.alphawallet.app.util.ens.AWEnsResolver;
+import com.alphawallet.app.util.ens.NameResolutionCache;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 import timber.log.Timber;
 
 public class ActivityAdapter extends RecyclerView.Adapter<BinderViewHolder<?>> implements AdapterCallback
@@ -85,6 +96,8 @@ public class ActivityAdapter extends RecyclerView.Adapter<BinderViewHolder<?>> i
         }
     });
 
+    private static final long NAME_LOOKUP_DELAY = 300; //collect the counterparties of all rows bound in a layout pass
+
     private Wallet wallet;
     private final TokensService tokensService;
     private final FetchTransactionsInteract fetchTransactionsInteract;
@@ -95,6 +108,10 @@ public class ActivityAdapter extends RecyclerView.Adapter<BinderViewHolder<?>> i
     private int itemLimit = 0;
     private int lastItemPos = 0;
     private boolean pendingReset = false;
+    private AWEnsResolver ensResolver;
+    private final Set<String> requestedNames = new HashSet<>();
+    private final List<String> pendingNames = new ArrayList<>();
+    private Disposable nameLookup;
 
     public ActivityAdapter(TokensService service, FetchTransactionsInteract fetchTransactionsInteract,
                            AssetDefinitionService svs, ActivityDataInteract dataInteract) {
@@ -139,6 +156,10 @@ public class ActivityAdapter extends RecyclerView.Adapter<BinderViewHolder<?>> i
         Bundle addition = new Bundle();
         addition.putString(TransactionHolder.DEFAULT_ADDRESS_ADDITIONAL, wallet.address);
         holder.bind(items.get(position).value, addition);
+        if (holder instanceof TransactionHolder)
+        {
+            queueNameLookup(((TransactionHolder) holder).getCounterparty());
+        }
         if (itemLimit > 0)
         {
             holder.setFromTokenView();
@@ -184,6 +205,45 @@ public class ActivityAdapter extends RecyclerView.Adapter<BinderViewHolder<?>> i
         }
     };
 
+    private void queueNameLookup(String address)
+    {
+        //names are only looked up when a node for the ENS chain is configured
+        if (!AWEnsResolver.hasEnsChain() || !Utils.isAddressValid(address) || !requestedNames.add(address.toLowerCase())
+                || NameResolutionCache.getInstance().getCached(NameResolutionCache.Kind.REVERSE, AWEnsResolver.ENS_CHAIN_ID, address) != null)
+        {
+            return;
+        }
+
+        pendingNames.add(address);
+        if (pendingNames.size() == 1)
+        {
+            handler.postDelayed(resolveNames, NAME_LOOKUP_DELAY);
+        }
+    }
+
+    private final Runnable resolveNames = () -> {
+        if (ensResolver == null) ensResolver = new AWEnsResolver(TokenRepository.getWeb3jService(AWEnsResolver.ENS_CHAIN_ID), null);
+        List<String> addresses = new ArrayList<>(pendingNames);
+        pendingNames.clear();
+        nameLookup = ensResolver.reverseResolveEns(addresses)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onNamesResolved, Timber::w);
+    };
+
+    private void onNamesResolved(Map<String, String> names)
+    {
+        //names are read from the resolution cache when the rows are bound
+        for (String name : names.values())
+        {
+            if (!TextUtils.isEmpty(name))
+            {
+                notifyItemRangeChanged(0, getItemCount());
+                return;
+            }
+        }
+    }
+
     @Override
     public int getItemCount() {
         return items.size();
@@ -408,6 +468,9 @@ public class ActivityAdapter extends RecyclerView.Adapter<BinderViewHolder<?>> i
 
     public void onDestroy(RecyclerView recyclerView)
     {
+        handler.removeCallbacks(resolveNames);
+        if (nameLookup != null && !nameLookup.isDisposed()) nameLookup.dispose();
+
         //ensure all holders have their realm listeners cleaned up
         for (int childCount = recyclerView.getChildCount(), i = 0; i < childCount; ++i)
         {
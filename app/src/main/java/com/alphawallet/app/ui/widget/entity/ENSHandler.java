@@ -19,6 +19,7 @@ import com.alphawallet.app.R;
 import com.alphawallet.app.repository.TokenRepository;
 import com.alphawallet.app.ui.widget.adapter.AutoCompleteAddressAdapter;
 import com.alphawallet.app.util.ens.AWEnsResolver;
+import com.alphawallet.app.util.ens.NameResolutionCache;
 import com.alphawallet.app.util.Utils;
 import com.alphawallet.app.widget.InputAddress;
 import com.google.gson.Gson;
@@ -274,7 +275,8 @@ public class ENSHandler implements Runnable
             HashMap<String, String> ensMap = getENSHistoryFromPrefs(ctx);
             String ensName = ensMap.get(ethAddress.toLowerCase());
             if (ensName == null) ensName = ensMap.get(checkSumAddr);
-            return ensName != null ? ensName : Utils.formatAddress(ethAddress);
+            if (ensName == null) ensName = NameResolutionCache.getInstance().getCached(NameResolutionCache.Kind.REVERSE, AWEnsResolver.ENS_CHAIN_ID, ethAddress);
+            return !TextUtils.isEmpty(ensName) ? ensName : Utils.formatAddress(ethAddress);
         }
         else
         {
@@ -9,7 +9,6 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.util.AttributeSet;
-import android.util.Pair;
 import android.util.TypedValue;
 import android.view.View;
 
@@ -17,6 +16,7 @@ import androidx.annotation.Nullable;
 
 import com.alphawallet.app.R;
 import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.service.PriceHistoryStore;
 import com.alphawallet.app.service.TickerService;
 import com.alphawallet.app.util.Utils;
 import com.google.android.material.color.MaterialColors;
@@ -24,12 +24,12 @@ import com.google.android.material.color.MaterialColors;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
-import io.reactivex.Single;
+import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
@@ -40,6 +40,10 @@ public class HistoryChart extends View
 {
 
     private static final float TEXT_MARGIN = 16.0f;
+    private static final int DEFAULT_CHART_POINTS = 500; //used if the view hasn't been measured yet
+    private static final int[] BACKFILL_DAYS = { 365, 90, 1 };
+
+    private static PriceHistoryStore historyStore;
 
     static OkHttpClient httpClient = new OkHttpClient.Builder()
             .connectTimeout(5, TimeUnit.SECONDS)
@@ -71,10 +75,11 @@ public class HistoryChart extends View
 
     }
 
-    // store tokens mapping and chart data
+    // chart data for each range of the current token
     static class Cache
     {
         Range range;
+        String key;
         Map<Range, Datasource> datasourceMap = new HashMap<>();
 
         Datasource getCurrentDatasource(Range range)
@@ -89,78 +94,59 @@ public class HistoryChart extends View
 
     static class Datasource
     {
-        ArrayList<Pair<Long, Float>> getEntries()
-        {
-            return entries;
-        }
+        final long[] times;
+        final float[] values;
 
         // precalculated
         float minValue = 0.0f;
         float maxValue = 0.0f;
 
-        ArrayList<Pair<Long, Float>> entries = new ArrayList<>();
-
-        static Single<Datasource> fetchHistory(Range range, String tokenId)
+        Datasource(PriceHistoryStore.Series series)
         {
-            return Single.fromCallable(() ->
+            times = series.times;
+            values = series.values;
+            if (values.length == 0) return;
+            minValue = Float.MAX_VALUE;
+            for (float value : values)
             {
-                ArrayList<Pair<Long, Float>> entries = new ArrayList<>();
-                try
+                if (minValue > value)
                 {
-                    Request request = new Request.Builder()
-                            .url("https://api.coingecko.com/api/v3/coins/" + tokenId + "/market_chart?days=" + range.value + "&vs_currency=" + TickerService.getCurrencySymbolTxt())
-                            .get()
-                            .build();
-                    okhttp3.Response response = httpClient.newCall(request)
-                            .execute();
-                    if (response.code() / 200 == 1)
-                    {
-                        JSONArray prices = new JSONObject(response.body().string()).getJSONArray("prices");
-                        float minValue = Float.MAX_VALUE;
-                        float maxValue = 0;
-                        for (int i = 0; i < prices.length(); i++)
-                        {
-                            JSONArray entry = prices.getJSONArray(i);
-                            long timestamp = entry.getLong(0);
-                            float value = (float) entry.getDouble(1);
-                            entries.add(Pair.create(timestamp, value));
-                            if (minValue > value)
-                            {
-                                minValue = value;
-                            }
-                            if (maxValue < value)
-                            {
-                                maxValue = value;
-                            }
-                        }
-                        Datasource ds = new Datasource();
-                        ds.entries = entries;
-                        ds.minValue = minValue;
-                        ds.maxValue = maxValue;
-                        return ds;
-                    }
+                    minValue = value;
                 }
-                catch (Exception e)
+                if (maxValue < value)
                 {
-                    Timber.e(e);
+                    maxValue = value;
                 }
-                return null;
-            });
+            }
+        }
+
+        /**
+         * Cut the range from the stored history and decimate it to the chart width. Call off the UI thread.
+         */
+        static Datasource fromHistory(PriceHistoryStore.Series history, Range range, int width)
+        {
+            long from = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(range.value);
+            return new Datasource(PriceHistoryStore.decimate(PriceHistoryStore.slice(history, from), width));
+        }
+
+        int size()
+        {
+            return times.length;
         }
 
         long minTime()
         {
-            return entries.get(0).first;
+            return times[0];
         }
 
         long maxTime()
         {
-            return entries.get(entries.size() - 1).first;
+            return times[times.length - 1];
         }
 
         boolean isGreen()
         {
-            return (entries.get(0).second - entries.get(entries.size() - 1).second) < 0;
+            return (values[0] - values[values.length - 1]) < 0;
         }
 
         float minValue()
@@ -174,6 +160,77 @@ public class HistoryChart extends View
         }
     }
 
+    /**
+     * Bring the stored history up to date: the first time a full year, laid over with 90 days of hourly and one day of
+     * five minute prices; after that only the days since the last stored point.
+     */
+    static void refreshHistory(PriceHistoryStore store, String key, String tokenId)
+    {
+        long now = System.currentTimeMillis();
+        if (!store.startRefresh(key, now)) return;
+
+        try
+        {
+            int days = store.getDaysToFetch(key, now);
+            if (days == 0)
+            {
+                //stored only once every fetch has succeeded: a partial backfill would leave the series non-empty,
+                //and the finer grained fetches would never be made
+                PriceHistoryStore.Series[] backfill = new PriceHistoryStore.Series[BACKFILL_DAYS.length];
+                for (int i = 0; i < BACKFILL_DAYS.length; i++)
+                {
+                    backfill[i] = fetchPrices(tokenId, BACKFILL_DAYS[i]);
+                    if (backfill[i] == null) return;
+                }
+
+                for (PriceHistoryStore.Series prices : backfill)
+                {
+                    store.add(key, prices.times, prices.values, true, now);
+                }
+            }
+            else
+            {
+                PriceHistoryStore.Series prices = fetchPrices(tokenId, days);
+                if (prices != null) store.add(key, prices.times, prices.values, false, now);
+            }
+        }
+        finally
+        {
+            store.finishRefresh(key);
+        }
+    }
+
+    private static PriceHistoryStore.Series fetchPrices(String tokenId, int days)
+    {
+        Request request = new Request.Builder()
+                .url("https://api.coingecko.com/api/v3/coins/" + tokenId + "/market_chart?days=" + days + "&vs_currency=" + TickerService.getCurrencySymbolTxt())
+                .get()
+                .build();
+
+        try (okhttp3.Response response = httpClient.newCall(request).execute())
+        {
+            if (response.code() / 200 == 1 && response.body() != null)
+            {
+                JSONArray prices = new JSONObject(response.body().string()).getJSONArray("prices");
+                long[] times = new long[prices.length()];
+                float[] values = new float[prices.length()];
+                for (int i = 0; i < prices.length(); i++)
+                {
+                    JSONArray entry = prices.getJSONArray(i);
+                    times[i] = entry.getLong(0);
+                    values[i] = (float) entry.getDouble(1);
+                }
+                return new PriceHistoryStore.Series(times, values);
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+        }
+
+        return null;
+    }
+
     Cache cache = new Cache();
     Paint paint = new Paint();
     Paint noDataTextPaint = new Paint();
@@ -220,7 +277,7 @@ public class HistoryChart extends View
         super.onDraw(canvas);
 
         Datasource datasource = cache.getCurrentDatasource(cache.range);
-        if (datasource == null || datasource.entries.size() <= 1)
+        if (datasource == null || datasource.size() <= 1)
         {
             // draw no chart data available message
             int xPos = (getWidth() / 2);
@@ -252,12 +309,10 @@ public class HistoryChart extends View
         greyPaint.setStyle(Paint.Style.STROKE);
         canvas.drawPath(greyLines, greyPaint);
 
-        for (int i = 0; i < datasource.entries.size(); i++)
+        for (int i = 0; i < datasource.size(); i++)
         {
-            Pair<Long, Float> entry = datasource.entries.get(i);
-
-            float x = (entry.first - datasource.minTime()) * xScale;
-            float y = height - (entry.second - datasource.minValue()) * yScale;
+            float x = (datasource.times[i] - datasource.minTime()) * xScale;
+            float y = height - (datasource.values[i] - datasource.minValue()) * yScale;
 
             if (i == 0)
             {
@@ -280,6 +335,26 @@ public class HistoryChart extends View
 
     public void fetchHistory(Token token, final Range range)
     {
+        if (!TickerService.validateCoinGeckoAPI(token))
+        {
+            return;
+        } //wouldn't have tickers
+
+        String coingeckoTokenId = token.isEthereum() ? chainPairs.get(token.tokenInfo.chainId)
+                : coinGeckoChainIdToAPIName.get(token.tokenInfo.chainId) + "/contract/" + token.getAddress().toLowerCase();
+
+        if (coingeckoTokenId == null)
+        {
+            return;
+        }
+
+        final String key = coingeckoTokenId + "-" + TickerService.getCurrencySymbolTxt();
+        if (!key.equals(cache.key))
+        {
+            cache.key = key;
+            cache.datasourceMap.clear();
+        }
+
         // use cache
         cache.range = range;
         if (cache.getCurrentDatasource(range) != null)
@@ -288,26 +363,46 @@ public class HistoryChart extends View
             return;
         }
 
-        if (!TickerService.validateCoinGeckoAPI(token))
-        {
-            return;
-        } //wouldn't have tickers
-
-        String coingeckoTokenId = token.isEthereum() ? chainPairs.get(token.tokenInfo.chainId)
-                : coinGeckoChainIdToAPIName.get(token.tokenInfo.chainId) + "/contract/" + token.getAddress().toLowerCase();
+        final PriceHistoryStore store = getHistoryStore(getContext());
+        final int width = getWidth() > 0 ? getWidth() : DEFAULT_CHART_POINTS;
+
+        // draw the stored history straight away, then again if a refresh brings in new prices
+        Observable.fromCallable(() -> Datasource.fromHistory(store.get(key), range, width))
+                .concatWith(Observable.fromCallable(() -> {
+                    PriceHistoryStore.Series before = store.get(key);
+                    refreshHistory(store, key, coingeckoTokenId);
+                    return store.get(key) != before;
+                }).filter(updated -> updated)
+                        .map(updated -> Datasource.fromHistory(store.get(key), range, width)))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(datasource -> onEntries(key, range, datasource), this::onError).isDisposed();
+    }
 
-        if (coingeckoTokenId != null)
+    private static synchronized PriceHistoryStore getHistoryStore(Context context)
+    {
+        if (historyStore == null)
         {
-            Datasource.fetchHistory(range, coingeckoTokenId)
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe(datasource -> onEntries(range, datasource), this::onError).isDisposed();
+            historyStore = new PriceHistoryStore(new File(context.getApplicationContext().getCacheDir(), "price_history"));
         }
+        return historyStore;
     }
 
-    private void onEntries(Range range, Datasource datasource)
+    private void onEntries(String key, Range range, Datasource datasource)
     {
-        // invalidate
+        if (!key.equals(cache.key)) return; //token changed meanwhile
+        if (datasource.size() <= 1)
+        {
+            // nothing stored yet and the refresh failed or was throttled; not cached so the next selection tries again
+            invalidate();
+            return;
+        }
+
+        // a refresh replaces the stored history, so other ranges are rebuilt on next selection
+        if (cache.getCurrentDatasource(range) != null)
+        {
+            cache.datasourceMap.clear();
+        }
         cache.datasourceMap.put(range, datasource);
         invalidate();
     }
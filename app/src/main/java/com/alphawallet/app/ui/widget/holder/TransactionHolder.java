@@ -48,6 +48,7 @@ public class TransactionHolder extends BinderViewHolder<TransactionMeta> impleme
 
     private Transaction transaction;
     private String defaultAddress;
+    private String counterparty;
 
     public TransactionHolder(ViewGroup parent, TokensService service, FetchTransactionsInteract interact, AssetDefinitionService svs)
     {
@@ -69,6 +70,7 @@ public class TransactionHolder extends BinderViewHolder<TransactionMeta> impleme
     {
         defaultAddress = addition.getString(DEFAULT_ADDRESS_ADDITIONAL);
         supplemental.setText("");
+        counterparty = null;
 
         //fetch data from database
         transaction = transactionsInteract.fetchCached(defaultAddress, data.hash);
@@ -115,6 +117,15 @@ public class TransactionHolder extends BinderViewHolder<TransactionMeta> impleme
     {
         String detailStr = token.getTransactionDetail(getContext(), transaction, tokensService);
         address.setText(detailStr);
+        counterparty = token.getTransactionDestination(transaction);
+    }
+
+    /**
+     * @return address shown against the transaction, or null before the transaction is loaded
+     */
+    public String getCounterparty()
+    {
+        return counterparty;
     }
 
     private Token getOperationToken()
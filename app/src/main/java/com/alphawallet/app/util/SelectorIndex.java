@@ -0,0 +1,204 @@
+package com.alphawallet.app.util;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compact, memory-mapped index of 4-byte function selector -> text signature.
+ *
+ * File layout (big endian):
+ *   header:  magic (int), version (int), source stamp (long), entry count (int)
+ *   entries: count x [selector (int), string offset (int)], sorted by selector
+ *   strings: [length (unsigned short), UTF-8 bytes] for each signature
+ *
+ * Lookups are a binary search over the entry table; only the matched signature is decoded. The source stamp
+ * records which shipped signature list the file was built from so it can be rebuilt when that list changes.
+ */
+public class SelectorIndex
+{
+    private static final int MAGIC = 0x34425349; //"4BSI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int ENTRY_SIZE = 8;
+    private static final int MAX_SIGNATURE_BYTES = 0xFFFF;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final long sourceStamp;
+    private final int stringBase;
+
+    private SelectorIndex(ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+        {
+            throw new IOException("Not a selector index");
+        }
+        this.sourceStamp = buffer.getLong(8);
+        this.count = buffer.getInt(16);
+        this.stringBase = HEADER_SIZE + count * ENTRY_SIZE;
+        if (count < 0 || stringBase > buffer.capacity())
+        {
+            throw new IOException("Truncated selector index");
+        }
+    }
+
+    public static SelectorIndex open(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+        {
+            //mapping stays valid after the channel is closed
+            return new SelectorIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public long getSourceStamp()
+    {
+        return sourceStamp;
+    }
+
+    /**
+     * @return text signature for the selector, or null if it isn't in the index
+     */
+    public String lookup(int selector)
+    {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_SIZE + mid * ENTRY_SIZE;
+            int value = buffer.getInt(entry);
+            if (value < selector) low = mid + 1;
+            else if (value > selector) high = mid - 1;
+            else return readString(stringBase + buffer.getInt(entry + 4));
+        }
+
+        return null;
+    }
+
+    public boolean contains(int selector)
+    {
+        return lookup(selector) != null;
+    }
+
+    private String readString(int offset)
+    {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate(); //independent position, so concurrent lookups are safe
+        view.position(offset + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return all entries, for rebuilding the index with additions
+     */
+    public SortedMap<Integer, String> entries()
+    {
+        SortedMap<Integer, String> entries = new TreeMap<>();
+        for (int i = 0; i < count; i++)
+        {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            entries.put(buffer.getInt(entry), readString(stringBase + buffer.getInt(entry + 4)));
+        }
+        return entries;
+    }
+
+    /**
+     * Write a new index. The file is written alongside and renamed into place, so an open mapping of the old file is unaffected.
+     */
+    public static void write(File file, SortedMap<Integer, String> entries, long sourceStamp) throws IOException
+    {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceStamp);
+            out.writeInt(entries.size());
+
+            byte[][] strings = new byte[entries.size()][];
+            int i = 0;
+            int offset = 0;
+            for (Map.Entry<Integer, String> entry : entries.entrySet())
+            {
+                byte[] bytes = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > MAX_SIGNATURE_BYTES) bytes = new byte[0];
+                strings[i++] = bytes;
+                out.writeInt(entry.getKey());
+                out.writeInt(offset);
+                offset += 2 + bytes.length;
+            }
+
+            for (byte[] bytes : strings)
+            {
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        if (!tmp.renameTo(file))
+        {
+            tmp.delete();
+            throw new IOException("Unable to replace " + file.getName());
+        }
+    }
+
+    /**
+     * Incremental update: writes a new index holding the current entries plus the additions. Existing entries are kept.
+     * @return true if the index file was rewritten
+     */
+    public static boolean merge(File file, SelectorIndex current, Map<Integer, String> additions) throws IOException
+    {
+        SortedMap<Integer, String> entries = current != null ? current.entries() : new TreeMap<>();
+        int before = entries.size();
+        for (Map.Entry<Integer, String> entry : additions.entrySet())
+        {
+            if (!entries.containsKey(entry.getKey())) entries.put(entry.getKey(), entry.getValue());
+        }
+
+        if (entries.size() == before) return false;
+        write(file, entries, current != null ? current.getSourceStamp() : 0);
+        return true;
+    }
+
+    public static int selectorOf(String textSignature)
+    {
+        byte[] hash = Hash.sha3(textSignature.getBytes(StandardCharsets.UTF_8));
+        return ((hash[0] & 0xFF) << 24) | ((hash[1] & 0xFF) << 16) | ((hash[2] & 0xFF) << 8) | (hash[3] & 0xFF);
+    }
+
+    /**
+     * @param payload hex calldata or selector, with or without 0x prefix
+     */
+    public static int parseSelector(String payload)
+    {
+        String hex = Numeric.cleanHexPrefix(payload);
+        return (int) Long.parseLong(hex.substring(0, 8), 16);
+    }
+
+    public static String toHex(int selector)
+    {
+        return String.format("0x%08x", selector);
+    }
+}
@@ -7,6 +7,7 @@ import androidx.preference.PreferenceManager;
 
 import com.alphawallet.app.C;
 import com.alphawallet.app.entity.UnableToResolveENS;
+import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.util.Utils;
 import com.alphawallet.app.web3j.ens.EnsResolutionException;
 import org.web3j.utils.Numeric;
@@ -14,10 +15,22 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import org.json.JSONObject;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Utf8String;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.EthChainId;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
@@ -36,10 +49,19 @@ public class AWEnsResolver
 {
     private static final String OPENSEA_IMAGE_PREVIEW = "image_preview_url";
     private static final String OPENSEA_IMAGE_ORIGINAL = "image_original_url"; //in case of SVG; Opensea breaks SVG compression
+    //ENS, and the ReverseRecords helper, are deployed on Ethereum mainnet
+    public static final long ENS_CHAIN_ID = 1;
+    //ENS ReverseRecords helper: reverse resolves a list of addresses, returning only names which resolve back to the address
+    private static final String ENS_REVERSE_RECORDS = "0x3671aE578E63FdF66ad4F3E12CC0c0d71Ac7510C";
+    private static final int REVERSE_RECORDS_BATCH = 100;
+    private static final OkHttpClient client = setupClient(); //shared by all resolvers
     private final Context context;
-    private final OkHttpClient client;
     private HashMap<String, Resolvable> resolvables;
     private final EnsResolver ensResolver;
+    private final Web3j web3j;
+    private final long chainId;
+    private volatile Long nodeChainId; //chain of the node names are read from; null until checked
+    private final NameResolutionCache nameCache = NameResolutionCache.getInstance();
 
     public AWEnsResolver(Web3j web3j, Context context)
     {
@@ -49,8 +71,11 @@ public class AWEnsResolver
     public AWEnsResolver(Web3j web3j, Context context, long chainId)
     {
         this.ensResolver = new EnsResolver(web3j);
+        this.web3j = web3j;
+        this.ensResolver.setHttpClient(client);
+        this.chainId = chainId;
         this.context = context;
-        this.client = setupClient();
+        if (context != null) nameCache.attach(context.getCacheDir());
 
         resolvables = new HashMap<>()
         {
@@ -84,16 +109,7 @@ public class AWEnsResolver
 
             try
             {
-                ensName = ensResolver.reverseResolve(address); //no known ENS for this address, resolve from reverse resolver
-                if (!TextUtils.isEmpty(ensName))
-                {
-                    //check ENS name integrity - it must point to the wallet address
-                    String resolveAddress = resolve(ensName);
-                    if (!resolveAddress.equalsIgnoreCase(address))
-                    {
-                        ensName = "";
-                    }
-                }
+                ensName = nameCache.get(NameResolutionCache.Kind.REVERSE, getNodeChainId(), address, () -> reverseResolveVerified(address));
             }
             catch (UnableToResolveENS resolve)
             {
@@ -112,6 +128,128 @@ public class AWEnsResolver
         }).onErrorReturnItem("");
     }
 
+    /**
+     * @return true if a node for the ENS chain is configured, so batch reverse lookups can be made
+     */
+    public static boolean hasEnsChain()
+    {
+        return EthereumNetworkBase.getNetwork(ENS_CHAIN_ID) != null;
+    }
+
+    /**
+     * Reverse resolve a set of addresses, eg all the counterparties on a page of activity. Uncached addresses are
+     * looked up together with the ReverseRecords contract, one eth_call per REVERSE_RECORDS_BATCH addresses. Nothing is
+     * looked up unless the resolver's node is on the ENS chain; names are cached under ENS_CHAIN_ID.
+     *
+     * @return lowercase address to ENS name, or empty string if the address has no verified name
+     */
+    public Single<Map<String, String>> reverseResolveEns(Collection<String> addresses)
+    {
+        return Single.fromCallable(() ->
+        {
+            if (!isOnEnsChain()) return Collections.<String, String>emptyMap();
+
+            List<String> valid = new ArrayList<>();
+            for (String address : addresses)
+            {
+                if (Utils.isAddressValid(address)) valid.add(address);
+            }
+
+            //addresses in a batch which couldn't be read are resolved on their own
+            return nameCache.getAll(NameResolutionCache.Kind.REVERSE, ENS_CHAIN_ID, valid, REVERSE_RECORDS_BATCH, this::reverseRecords,
+                    address -> reverseResolveEns(address).blockingGet());
+        }).onErrorReturnItem(Collections.emptyMap());
+    }
+
+    /**
+     * @return verified names in address order, or null if the batch couldn't be read
+     */
+    private List<String> reverseRecords(List<String> addresses)
+    {
+        if (!isOnEnsChain()) return null;
+        try
+        {
+            List<Utf8String> result = ensResolver.getContractData(ENS_REVERSE_RECORDS, getNames(addresses), new ArrayList<Utf8String>());
+            if (result == null || result.size() != addresses.size()) return null;
+
+            List<String> names = new ArrayList<>();
+            for (Utf8String name : result)
+            {
+                names.add(name.getValue());
+            }
+            return names;
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+            return null;
+        }
+    }
+
+    private boolean isOnEnsChain()
+    {
+        try
+        {
+            return getNodeChainId() == ENS_CHAIN_ID;
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+            return false; //check again next time
+        }
+    }
+
+    private long getNodeChainId() throws Exception
+    {
+        if (nodeChainId == null)
+        {
+            EthChainId result = web3j.ethChainId().send();
+            if (result.hasError()) throw new IOException(result.getError().getMessage());
+            nodeChainId = result.getChainId().longValue();
+        }
+
+        return nodeChainId;
+    }
+
+    static Function getNames(List<String> addresses)
+    {
+        List<Address> addressList = new ArrayList<>();
+        for (String address : addresses)
+        {
+            addressList.add(new Address(address));
+        }
+
+        return new Function("getNames",
+                Collections.singletonList(new DynamicArray<>(Address.class, addressList)),
+                Collections.singletonList(new TypeReference<DynamicArray<Utf8String>>() {}));
+    }
+
+    private String reverseResolveVerified(String address) throws Exception
+    {
+        String ensName;
+        try
+        {
+            ensName = ensResolver.reverseResolve(address); //no known ENS for this address, resolve from reverse resolver
+        }
+        catch (RuntimeException e)
+        {
+            if (e.getCause() != null) throw e; //request failed; try again next time
+            return ""; //no name set for this address
+        }
+
+        if (!TextUtils.isEmpty(ensName))
+        {
+            //check ENS name integrity - it must point to the wallet address
+            String resolveAddress = resolve(ensName);
+            if (!resolveAddress.equalsIgnoreCase(address))
+            {
+                ensName = "";
+            }
+        }
+
+        return ensName;
+    }
+
     public Single<String> getENSUrl(String ensName)
     {
         return Single.fromCallable(() ->
@@ -314,11 +452,10 @@ public class AWEnsResolver
         }
 
         Resolvable resolvable = resolvables.get(suffixOf(ensName));
-        if (resolvable == null)
-        {
-            resolvable = ensResolver;
-        }
-        return resolvable.resolve(ensName);
+        final Resolvable resolver = resolvable != null ? resolvable : ensResolver;
+        //the other resolvers pick an address by chain
+        String cacheName = resolvable != null ? ensName + "@" + chainId : ensName;
+        return nameCache.get(NameResolutionCache.Kind.FORWARD, cacheName, () -> resolver.resolve(ensName));
     }
 
     private String suffixOf(String ensName)
@@ -328,7 +465,15 @@ public class AWEnsResolver
 
     public String resolveAvatar(String ensName)
     {
-        return new AvatarResolver(ensResolver).resolve(ensName);
+        try
+        {
+            return nameCache.get(NameResolutionCache.Kind.AVATAR, ensName, () -> new AvatarResolver(ensResolver).resolve(ensName));
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+            return "";
+        }
     }
 
     public String resolveAvatarFromAddress(String address)
@@ -337,8 +482,8 @@ public class AWEnsResolver
         {
             try
             {
-                String ensName = ensResolver.reverseResolve(address);
-                return resolveAvatar(ensName);
+                String ensName = nameCache.get(NameResolutionCache.Kind.REVERSE, getNodeChainId(), address, () -> reverseResolveVerified(address));
+                if (!TextUtils.isEmpty(ensName)) return resolveAvatar(ensName);
             }
             catch (Exception e)
             {
@@ -349,7 +494,7 @@ public class AWEnsResolver
         return "";
     }
 
-    private OkHttpClient setupClient()
+    private static OkHttpClient setupClient()
     {
         return new OkHttpClient.Builder()
                 .connectTimeout(7, TimeUnit.SECONDS)
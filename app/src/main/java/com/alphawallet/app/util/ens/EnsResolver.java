@@ -59,8 +59,6 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
@@ -81,7 +79,6 @@ public class EnsResolver implements Resolvable
 
     // Permit number offchain calls  for a single contract call.
     public static final int LOOKUP_LIMIT = 4;
-    private static final long ENS_CACHE_TIME_VALIDITY = 10 * (1000*60); //10 minutes
 
     public static final String REVERSE_NAME_SUFFIX = ".addr.reverse";
 
@@ -119,25 +116,8 @@ public class EnsResolver implements Resolvable
         return new ContractAddress(chainId, getResolverAddress(ensName));
     }
 
-    private static class CachedENSRead
-    {
-        public final String cachedResult;
-        public final long cachedResultTime;
-
-        public CachedENSRead(String result)
-        {
-            cachedResult = result;
-            cachedResultTime = System.currentTimeMillis();
-        }
-
-        public boolean isValid()
-        {
-            return System.currentTimeMillis() < (cachedResultTime + ENS_CACHE_TIME_VALIDITY); //10 minutes cache validity
-        }
-    }
-
     //Need to cache results for Resolve
-    private static final Map<String, CachedENSRead> cachedNameReads = new ConcurrentHashMap<>();
+    private static final NameResolutionCache nameCache = NameResolutionCache.getInstance();
 
     private String cacheKey(String ensName, String addrFunction)
     {
@@ -149,10 +129,9 @@ public class EnsResolver implements Resolvable
         String dnsEncoded = NameHash.dnsEncode(ensName);
         String addrFunction = encodeResolverAddr(nameHash);
 
-        CachedENSRead lookupData = cachedNameReads.get(cacheKey(ensName, addrFunction));
-        String lookupDataHex = lookupData != null ? lookupData.cachedResult : null;
+        String lookupDataHex = nameCache.getCached(NameResolutionCache.Kind.FORWARD, cacheKey(ensName, addrFunction));
 
-        if (lookupData == null || !lookupData.isValid())
+        if (lookupDataHex == null)
         {
             EthCall result =
                     resolve(
@@ -162,7 +141,7 @@ public class EnsResolver implements Resolvable
             lookupDataHex = result.isReverted() ? Utils.removeDoubleQuotes(result.getError().getData()) : result.getValue();// .toString();
             if (!TextUtils.isEmpty(lookupDataHex) && !lookupDataHex.equals("0x"))
             {
-                cachedNameReads.put(cacheKey(ensName, addrFunction), new CachedENSRead(lookupDataHex));
+                nameCache.put(NameResolutionCache.Kind.FORWARD, cacheKey(ensName, addrFunction), lookupDataHex);
             }
         }
 
@@ -483,10 +462,9 @@ public class EnsResolver implements Resolvable
     {
         //use caching
         String nodeData = Numeric.toHexString(node);
-        CachedENSRead resolverData = cachedNameReads.get(cacheKey(nodeData, address));
-        String resolverAddr = resolverData != null ? resolverData.cachedResult : null;
+        String resolverAddr = nameCache.getCached(NameResolutionCache.Kind.FORWARD, cacheKey(nodeData, address));
 
-        if (resolverData == null || !resolverData.isValid())
+        if (resolverAddr == null)
         {
             final org.web3j.abi.datatypes.Function function = new org.web3j.abi.datatypes.Function(FUNC_addr,
                     Arrays.<Type>asList(new org.web3j.abi.datatypes.generated.Bytes32(node)),
@@ -497,7 +475,7 @@ public class EnsResolver implements Resolvable
             resolverAddr = getContractData(address, function, "");
             if (!TextUtils.isEmpty(resolverAddr) && resolverAddr.length() > 2)
             {
-                cachedNameReads.put(cacheKey(nodeData, address), new CachedENSRead(resolverAddr));
+                nameCache.put(NameResolutionCache.Kind.FORWARD, cacheKey(nodeData, address), resolverAddr);
             }
         }
 
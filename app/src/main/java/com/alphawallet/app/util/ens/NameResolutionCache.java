@@ -0,0 +1,378 @@
+package com.alphawallet.app.util.ens;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * Cache for name resolution results shared by all resolvers: ENS, Unstoppable Domains and .bit.
+ *
+ * Entries expire per kind of lookup, and a lookup that found nothing is kept for a shorter time so an unnamed
+ * address or unregistered name isn't looked up again on every screen. The cache holds at most MAX_ENTRIES,
+ * dropping the least recently used, and reverse names and avatars are written to disk so they survive a restart.
+ * Forward results decide where funds are sent, so they're kept briefly and only in memory. Concurrent lookups of
+ * the same key share one request. A lookup that throws isn't cached.
+ *
+ * Reverse names are kept per chain: the chainId overloads qualify the key with the chain the name was read from.
+ */
+public class NameResolutionCache
+{
+    public enum Kind
+    {
+        FORWARD(TimeUnit.MINUTES.toMillis(10), false),
+        REVERSE(TimeUnit.HOURS.toMillis(12), true),
+        AVATAR(TimeUnit.HOURS.toMillis(24), true);
+
+        final long ttl;
+        final boolean persist;
+
+        Kind(long ttl, boolean persist)
+        {
+            this.ttl = ttl;
+            this.persist = persist;
+        }
+    }
+
+    public interface Lookup
+    {
+        String lookup() throws Exception;
+    }
+
+    public interface BatchLookup
+    {
+        /**
+         * @return results in the order of the names, or null if the batch couldn't be looked up
+         */
+        List<String> lookup(List<String> names) throws Exception;
+    }
+
+    public interface NameLookup
+    {
+        String lookup(String name) throws Exception;
+    }
+
+    private static final long NEGATIVE_TTL = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_ENTRIES = 2000;
+    private static final long SAVE_DELAY_SECONDS = 5;
+    private static final String CACHE_FILE = "name_resolution_cache.json";
+
+    private static final NameResolutionCache instance = new NameResolutionCache(System::currentTimeMillis, MAX_ENTRIES);
+
+    static class Entry
+    {
+        String key;
+        String value;
+        long expires;
+
+        Entry(String key, String value, long expires)
+        {
+            this.key = key;
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+    private final Map<String, FutureTask<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+    private File storeFile;
+
+    public static NameResolutionCache getInstance()
+    {
+        return instance;
+    }
+
+    NameResolutionCache(LongSupplier clock, int maxEntries)
+    {
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Keep the cache in this directory. Loads any entries saved there; only the first directory given is used.
+     */
+    public synchronized void attach(File dir)
+    {
+        if (storeFile != null || dir == null) return;
+        storeFile = new File(dir, CACHE_FILE);
+        load();
+    }
+
+    /**
+     * @return cached result if still valid, otherwise the result of the lookup. An empty result is cached as negative.
+     */
+    public String get(Kind kind, String name, Lookup lookup) throws Exception
+    {
+        final String key = key(kind, name);
+        String cached = getCached(key);
+        if (cached != null) return cached;
+
+        FutureTask<String> task = new FutureTask<>(() -> {
+            String result = lookup.lookup();
+            if (result == null) result = "";
+            put(key, result, result.isEmpty() ? NEGATIVE_TTL : kind.ttl);
+            return result;
+        });
+
+        FutureTask<String> running = inFlight.putIfAbsent(key, task);
+        if (running == null)
+        {
+            running = task;
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                inFlight.remove(key, task);
+            }
+        }
+
+        try
+        {
+            return running.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    public String get(Kind kind, long chainId, String name, Lookup lookup) throws Exception
+    {
+        return get(kind, onChain(name, chainId), lookup);
+    }
+
+    /**
+     * Look up several names together. Cached names are answered from the cache; the rest go to the batch lookup
+     * batchSize at a time and the results are cached. If a batch can't be looked up, its names are passed one at a time
+     * to the single lookup, which does its own caching.
+     *
+     * @param chainId chain the names are looked up on
+     * @return lower case name to result; names whose lookup failed are left out
+     */
+    public Map<String, String> getAll(Kind kind, long chainId, Collection<String> names, int batchSize, BatchLookup batch, NameLookup single)
+    {
+        Map<String, String> results = new HashMap<>();
+        Set<String> uncached = new LinkedHashSet<>();
+        for (String name : names)
+        {
+            String key = name.toLowerCase(Locale.ROOT);
+            String cached = getCached(kind, chainId, key);
+            if (cached != null) results.put(key, cached);
+            else uncached.add(key);
+        }
+
+        List<String> lookups = new ArrayList<>(uncached);
+        for (int i = 0; i < lookups.size(); i += batchSize)
+        {
+            List<String> chunk = lookups.subList(i, Math.min(i + batchSize, lookups.size()));
+            List<String> batchResults = null;
+            try
+            {
+                batchResults = batch.lookup(chunk);
+            }
+            catch (Exception e)
+            {
+                Timber.w(e);
+            }
+
+            for (int j = 0; j < chunk.size(); j++)
+            {
+                String name = chunk.get(j);
+                if (batchResults != null && batchResults.size() == chunk.size())
+                {
+                    String result = batchResults.get(j) != null ? batchResults.get(j) : "";
+                    put(kind, chainId, name, result);
+                    results.put(name, result);
+                    continue;
+                }
+
+                try
+                {
+                    results.put(name, single.lookup(name));
+                }
+                catch (Exception e)
+                {
+                    Timber.w(e);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * For lookups whose result shouldn't be cached as negative when empty
+     */
+    public String getCached(Kind kind, String name)
+    {
+        return getCached(key(kind, name));
+    }
+
+    public String getCached(Kind kind, long chainId, String name)
+    {
+        return getCached(kind, onChain(name, chainId));
+    }
+
+    /**
+     * Store a result found outside get(), eg from a batched lookup. An empty value is stored as negative.
+     */
+    public void put(Kind kind, String name, String value)
+    {
+        put(key(kind, name), value, value.isEmpty() ? NEGATIVE_TTL : kind.ttl);
+    }
+
+    public void put(Kind kind, long chainId, String name, String value)
+    {
+        put(kind, onChain(name, chainId), value);
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        scheduleSave();
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    private static String key(Kind kind, String name)
+    {
+        return kind.name() + ":" + name.toLowerCase(Locale.ROOT);
+    }
+
+    private static String onChain(String name, long chainId)
+    {
+        return name + "@" + chainId;
+    }
+
+    private static boolean isPersisted(String key)
+    {
+        for (Kind kind : Kind.values())
+        {
+            if (key.startsWith(kind.name() + ":")) return kind.persist;
+        }
+        return false;
+    }
+
+    private synchronized String getCached(String key)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.expires <= clock.getAsLong())
+        {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private synchronized void put(String key, String value, long ttl)
+    {
+        entries.put(key, new Entry(key, value, clock.getAsLong() + ttl));
+        scheduleSave();
+    }
+
+    private void scheduleSave()
+    {
+        if (storeFile == null || !savePending.compareAndSet(false, true)) return;
+        Completable.timer(SAVE_DELAY_SECONDS, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(() -> {
+                    savePending.set(false);
+                    save();
+                }, Timber::w)
+                .isDisposed();
+    }
+
+    private void save()
+    {
+        List<Entry> snapshot;
+        File target;
+        synchronized (this)
+        {
+            target = storeFile;
+            long now = clock.getAsLong();
+            snapshot = new ArrayList<>();
+            for (Entry entry : entries.values()) //least recently used first, so the order survives a reload
+            {
+                if (entry.expires > now && isPersisted(entry.key)) snapshot.add(entry);
+            }
+        }
+
+        File temp = new File(target.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))
+        {
+            new Gson().toJson(snapshot, writer);
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(target)) temp.delete();
+    }
+
+    private void load()
+    {
+        if (!storeFile.exists()) return;
+        try (Reader reader = new InputStreamReader(new FileInputStream(storeFile), StandardCharsets.UTF_8))
+        {
+            List<Entry> saved = new Gson().fromJson(reader, new TypeToken<List<Entry>>() {}.getType());
+            if (saved == null) return;
+            long now = clock.getAsLong();
+            for (Entry entry : saved)
+            {
+                //entries looked up before the load are newer
+                if (entry.key != null && entry.expires > now && isPersisted(entry.key) && !entries.containsKey(entry.key))
+                {
+                    entries.put(entry.key, entry);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+        }
+    }
+}
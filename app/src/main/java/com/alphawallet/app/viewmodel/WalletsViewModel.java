@@ -17,7 +17,6 @@ import com.alphawallet.app.entity.CryptoFunctions;
 import com.alphawallet.app.entity.ErrorEnvelope;
 import com.alphawallet.app.entity.NetworkInfo;
 import com.alphawallet.app.entity.Operation;
-import com.alphawallet.app.entity.ServiceSyncCallback;
 import com.alphawallet.app.entity.SyncCallback;
 import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.entity.WalletType;
@@ -40,6 +39,7 @@ import com.alphawallet.app.service.AssetDefinitionService;
 import com.alphawallet.app.service.KeyService;
 import com.alphawallet.app.service.TickerService;
 import com.alphawallet.app.service.TokensService;
+import com.alphawallet.app.service.WalletBalanceSweep;
 import com.alphawallet.app.util.ens.AWEnsResolver;
 import com.alphawallet.hardware.SignatureFromKey;
 
@@ -49,10 +49,11 @@ import org.web3j.utils.Numeric;
 
 import java.math.BigInteger;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -68,7 +69,7 @@ import io.reactivex.schedulers.Schedulers;
 import timber.log.Timber;
 
 @HiltViewModel
-public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallback
+public class WalletsViewModel extends BaseViewModel implements WalletBalanceSweep.SweepCallback
 {
     private static final int BALANCE_CHECK_INTERVAL_SECONDS = 30;
     private final SetDefaultWalletInteract setDefaultWalletInteract;
@@ -98,9 +99,7 @@ public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallba
     private final MutableLiveData<String> getPublicKey = new MutableLiveData<>();
     private NetworkInfo currentNetwork;
     private final Map<String, Wallet> walletBalances = new HashMap<>();
-    private final Map<String, TokensService> walletServices = new ConcurrentHashMap<>();
-    private final Map<String, Wallet> walletUpdate = new ConcurrentHashMap<>();
-    private final Map<String, Disposable> currentWalletUpdates = new ConcurrentHashMap<>();
+    private final WalletBalanceSweep balanceSweep;
     private SyncCallback syncCallback;
 
     public static final String TEST_STRING = "EncodedUUID to determine Public Key" + UUID.randomUUID().toString();
@@ -117,6 +116,9 @@ public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallba
     @Nullable
     private Disposable ensWrappingCheck;
 
+    @Nullable
+    private Disposable sweepDisposable;
+
     @Inject
     WalletsViewModel(
         AlphaWalletNotificationService alphaWalletNotificationService,
@@ -150,6 +152,7 @@ public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallba
         this.assetService = assetService;
         this.preferenceRepository = preferenceRepository;
         this.tokensService = new TokensService(ethereumNetworkRepository, tokenRepository, tickerService, null);
+        this.balanceSweep = new WalletBalanceSweep(tokenRepository, ethereumNetworkRepository, tickerService);
 
         ensResolver = new AWEnsResolver(TokenRepository.getWeb3jService(MAINNET_ID), context);
         syncCallback = null;
@@ -276,36 +279,33 @@ public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallba
         disposable = fetchWalletsInteract.fetch().subscribe(this::startBalanceUpdateTimer);
     }
 
-    private Disposable startWalletSyncProcess(Wallet w)
-    {
-        walletUpdate.remove(w.address);
-        return startWalletSync(w)
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(this::sendUnsyncedValue, e -> {});
-    }
-
     private void startFullWalletSync(Wallet[] items)
     {
-        walletUpdate.clear();
+        List<String> sweepWallets = new ArrayList<>();
         for (Wallet w : items)
         {
             if (w.type != WalletType.WATCH)
             {
-                walletUpdate.put(w.address, w);
+                sweepWallets.add(w.address.toLowerCase());
                 syncCallback.syncStarted(w.address, null);
             }
         }
 
-        int counter = 0;
+        //all wallets are swept together, chain by chain
+        if (sweepDisposable != null && !sweepDisposable.isDisposed()) sweepDisposable.dispose();
+        sweepDisposable = balanceSweep.sweep(sweepWallets, getSweepChains(), this)
+                .subscribeOn(Schedulers.io())
+                .subscribe(() -> Timber.d("Wallet sweep complete"), Timber::e);
+    }
 
-        //set all wallets as syncing
-        for (Wallet w : items)
+    private List<Long> getSweepChains()
+    {
+        List<Long> chains = new ArrayList<>();
+        for (NetworkInfo info : ethereumNetworkRepository.getAvailableNetworkList())
         {
-            if (w.type == WalletType.WATCH) continue;
-            if (counter++ == 4) break;
-            currentWalletUpdates.put(w.address, startWalletSyncProcess(w));
+            if (info.hasRealValue()) chains.add(info.chainId);
         }
+        return chains;
     }
 
     private void syncFromDBOnly(Wallet wallet, boolean complete)
@@ -326,78 +326,27 @@ public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallba
                 }).isDisposed();
     }
 
-    private void sendUnsyncedValue(Wallet wallet)
-    {
-        TokensService service = walletServices.get(wallet.address.toLowerCase());
-        if (service != null)
-        {
-            service.getFiatValuePair()
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe(value ->
-                            syncCallback.syncStarted(service.getCurrentAddress().toLowerCase(), value)).isDisposed();
-        }
-    }
-
-    private Single<Wallet> startWalletSync(Wallet wallet)
-    {
-        return Single.fromCallable(() -> {
-            TokensService svs = new TokensService(ethereumNetworkRepository, tokenRepository, tickerService, null);
-            svs.setCurrentAddress(wallet.address.toLowerCase());
-            svs.startUpdateCycle();
-            svs.setCompletionCallback(this, 2);
-            walletServices.put(wallet.address.toLowerCase(), svs);
-            return wallet;
-        });
-    }
-
     @Override
-    public void syncComplete(final TokensService service, int syncCount)
+    public void syncComplete(String walletAddress, int syncCount)
     {
-        if (syncCount == 2)
-        {
-            service.setCompletionCallback(this, 1);
-        }
-        else
-        {
-            service.stopUpdateCycle();
-            walletServices.remove(service.getCurrentAddress().toLowerCase());
-            currentWalletUpdates.remove(service.getCurrentAddress().toLowerCase());
-            updateNextWallet();
-        }
-
         if (syncCallback == null) return;
 
         //get value:
-        service.getFiatValuePair()
+        tokenRepository.getTotalValue(walletAddress, EthereumNetworkBase.getAllMainNetworks())
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(value -> {
                     if (syncCount == 1)
                     {
-                        syncCallback.syncCompleted(service.getCurrentAddress().toLowerCase(), value);
+                        syncCallback.syncCompleted(walletAddress, value);
                     }
                     else
                     {
-                        syncCallback.syncUpdate(service.getCurrentAddress().toLowerCase(), value);
+                        syncCallback.syncUpdate(walletAddress, value);
                     }
                 }).isDisposed();
     }
 
-    private void updateNextWallet()
-    {
-        String nextWalletToCheck = walletUpdate.keySet().iterator().hasNext() ? walletUpdate.keySet().iterator().next() : null;
-
-        if (nextWalletToCheck != null)
-        {
-            Wallet w = walletUpdate.get(nextWalletToCheck);
-            if (w != null)
-            {
-                currentWalletUpdates.put(nextWalletToCheck, startWalletSyncProcess(w));
-            }
-        }
-    }
-
     public void swipeRefreshWallets()
     {
         //check for updates
@@ -500,6 +449,7 @@ public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallba
         if (walletBalanceUpdate != null && !walletBalanceUpdate.isDisposed()) walletBalanceUpdate.dispose();
         if (ensCheck != null && !ensCheck.isDisposed()) ensCheck.dispose();
         if (ensWrappingCheck != null && !ensWrappingCheck.isDisposed()) ensWrappingCheck.dispose();
+        if (sweepDisposable != null && !sweepDisposable.isDisposed()) sweepDisposable.dispose();
     }
 
     private void onCreateWalletError(Throwable throwable)
@@ -556,18 +506,7 @@ public class WalletsViewModel extends BaseViewModel implements ServiceSyncCallba
 
     public void onDestroy()
     {
-        for (TokensService svs : walletServices.values())
-        {
-            svs.stopUpdateCycle();
-        }
-
-        for (Disposable d : currentWalletUpdates.values())
-        {
-            if (!d.isDisposed()) d.dispose();
-        }
-
-        walletServices.clear();
-        currentWalletUpdates.clear();
+        if (sweepDisposable != null && !sweepDisposable.isDisposed()) sweepDisposable.dispose();
     }
 
     public void storeHDWallet(String address, KeyService.AuthenticationLevel authLevel)
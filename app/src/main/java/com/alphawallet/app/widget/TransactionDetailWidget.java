@@ -71,7 +71,7 @@ public class TransactionDetailWidget extends LinearLayout
             textFunctionName.setText(displayText);
         }
 
-        SignatureLookupService svc = new SignatureLookupService();
+        SignatureLookupService svc = new SignatureLookupService(getContext());
         disposable = svc.getFunctionName(w3tx.payload)
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribeOn(Schedulers.io())
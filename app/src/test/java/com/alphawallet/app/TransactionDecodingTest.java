@@ -17,6 +17,12 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by weiwu on 7/3/18.
@@ -100,6 +106,40 @@ public class TransactionDecodingTest
         assertThat(stringBuilder.toString(), equalTo(getBaseline()));
     }
 
+    /**
+     * One decoder shared by several threads gives the same results as decoding each input on its own
+     */
+    @Test
+    public void testSharedDecoderIsThreadSafe() throws Exception
+    {
+        TransactionDecoder decoder = new TransactionDecoder();
+        List<String> expected = new ArrayList<>();
+        for (String testInput : inputTestList)
+        {
+            expected.add(new TransactionDecoder().decodeInput(testInput).buildFunctionCallText());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+        {
+            results.add(executor.submit(() -> {
+                List<String> decoded = new ArrayList<>();
+                for (String testInput : inputTestList)
+                {
+                    decoded.add(decoder.decodeInput(testInput).buildFunctionCallText());
+                }
+                return decoded;
+            }));
+        }
+
+        for (Future<List<String>> result : results)
+        {
+            assertEquals(expected, result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
+
     @NonNull
     private String getBaseline() throws IOException
     {
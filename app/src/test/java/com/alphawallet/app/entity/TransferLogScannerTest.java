@@ -0,0 +1,110 @@
+package com.alphawallet.app.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TransferLogScannerTest
+{
+    private static final String WALLET = "0x000000000000000000000000000000000000beef";
+    private static final String WALLET_TOPIC = "0x000000000000000000000000000000000000000000000000000000000000beef";
+    private static final String OTHER_TOPIC = "0x0000000000000000000000000000000000000000000000000000000000001234";
+    private static final String TOKEN_ID = "0x0000000000000000000000000000000000000000000000000000000000000007";
+    private static final String NFT = "0x00000000000000000000000000000000000000aa";
+    private static final String MULTI = "0x00000000000000000000000000000000000000bb";
+    private static final String TRANSFER = EventEncoder.encode(TransferLogScanner.TRANSFER);
+    private static final String TRANSFER_SINGLE = EventEncoder.encode(TransferLogScanner.TRANSFER_SINGLE);
+
+    private static EthLog.LogResult<?> log(String address, long block, long index, String txHash, String... topics)
+    {
+        return new EthLog.LogObject(false, "0x" + Long.toHexString(index), "0x0", txHash, null,
+                "0x" + Long.toHexString(block), address, "0x", null, Arrays.asList(topics));
+    }
+
+    private static EthLog response(EthLog.LogResult<?>... logs)
+    {
+        EthLog ethLog = new EthLog();
+        ethLog.setResult(new ArrayList<>(Arrays.asList(logs)));
+        return ethLog;
+    }
+
+    @Test
+    public void filtersMatchReceivesOnly()
+    {
+        List<EthFilter> filters = TransferLogScanner.buildFilters(WALLET, DefaultBlockParameterName.EARLIEST, DefaultBlockParameterName.LATEST);
+        assertEquals(2, filters.size());
+        for (EthFilter filter : filters)
+        {
+            assertNull(filter.getAddress()); //all contracts
+        }
+
+        assertEquals(TRANSFER, filters.get(0).getTopics().get(0).getValue());
+        assertEquals(WALLET_TOPIC, filters.get(0).getTopics().get(2).getValue());
+        assertEquals(WALLET_TOPIC, filters.get(1).getTopics().get(3).getValue());
+    }
+
+    @Test
+    public void groupsReceivesByContractAndEvent()
+    {
+        EthLog received721 = response(
+                log(NFT, 10, 0, "0xa", TRANSFER, OTHER_TOPIC, WALLET_TOPIC, TOKEN_ID),
+                log(NFT, 20, 1, "0xb", TRANSFER, WALLET_TOPIC, OTHER_TOPIC, TOKEN_ID)); //sent, ignored
+        EthLog received1155 = response(
+                log(MULTI, 11, 2, "0xd", TRANSFER_SINGLE, OTHER_TOPIC, OTHER_TOPIC, WALLET_TOPIC),
+                log(MULTI, 12, 3, "0xc", TRANSFER_SINGLE, WALLET_TOPIC, WALLET_TOPIC, OTHER_TOPIC)); //sent, ignored
+
+        List<TransferLogScanner.ContractLogs> grouped = TransferLogScanner.groupLogs(WALLET, Arrays.asList(received721, received1155));
+        assertEquals(2, grouped.size());
+
+        TransferLogScanner.ContractLogs nft = grouped.get(0);
+        assertEquals(NFT, nft.address);
+        assertSame(TransferLogScanner.TRANSFER, nft.event);
+        assertEquals(1, nft.received.size());
+        assertTrue(nft.isNonFungible());
+
+        TransferLogScanner.ContractLogs multi = grouped.get(1);
+        assertSame(TransferLogScanner.TRANSFER_SINGLE, multi.event);
+        assertEquals(1, multi.received.size());
+        assertTrue(multi.isNonFungible());
+    }
+
+    @Test
+    public void duplicateLogsAreCountedOnce()
+    {
+        EthLog.LogResult<?> self = log(NFT, 5, 0, "0xa", TRANSFER, WALLET_TOPIC, WALLET_TOPIC, TOKEN_ID);
+        List<TransferLogScanner.ContractLogs> grouped = TransferLogScanner.groupLogs(WALLET, Arrays.asList(response(self), response(self)));
+
+        assertEquals(1, grouped.size());
+        assertEquals(1, grouped.get(0).received.size());
+    }
+
+    @Test
+    public void logsAreInChainOrderAndErc20IsFungible()
+    {
+        EthLog first = response(log(NFT, 30, 0, "0xc", TRANSFER, OTHER_TOPIC, WALLET_TOPIC));
+        EthLog second = response(log(NFT, 9, 4, "0xa", TRANSFER, OTHER_TOPIC, WALLET_TOPIC), log(NFT, 9, 1, "0xb", TRANSFER, OTHER_TOPIC, WALLET_TOPIC));
+
+        TransferLogScanner.ContractLogs erc20 = TransferLogScanner.groupLogs(WALLET, Arrays.asList(first, second)).get(0);
+        List<String> order = new ArrayList<>();
+        for (EthLog.LogResult<?> result : erc20.received)
+        {
+            order.add(((Log) result.get()).getTransactionHash());
+        }
+
+        assertEquals(Arrays.asList("0xb", "0xa", "0xc"), order);
+        assertFalse(erc20.isNonFungible());
+    }
+}
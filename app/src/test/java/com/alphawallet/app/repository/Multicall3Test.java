@@ -0,0 +1,65 @@
+package com.alphawallet.app.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.DynamicBytes;
+import org.web3j.abi.datatypes.DynamicStruct;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.utils.Numeric;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class Multicall3Test
+{
+    private static final String TOKEN = "0x0000000000000000000000000000000000000001";
+    private static final String WALLET = "0x00000000000000000000000000000000000000aa";
+
+    @Test
+    public void encodeAggregate3_matchesWeb3jStructEncoding()
+    {
+        String balanceCall = FunctionEncoder.encode(Multicall3.getEthBalance(WALLET));
+        List<Multicall3.Call> calls = Arrays.asList(
+                new Multicall3.Call(EthereumNetworkBase.MULTICALL3_ADDRESS, balanceCall),
+                new Multicall3.Call(TOKEN, "0x1234"));
+
+        DynamicStruct call1 = new DynamicStruct(new Address(EthereumNetworkBase.MULTICALL3_ADDRESS), new Bool(true),
+                new DynamicBytes(Numeric.hexStringToByteArray(balanceCall)));
+        DynamicStruct call2 = new DynamicStruct(new Address(TOKEN), new Bool(true), new DynamicBytes(new byte[]{0x12, 0x34}));
+        Function reference = new Function("aggregate3",
+                Collections.singletonList(new DynamicArray<>(DynamicStruct.class, call1, call2)), Collections.emptyList());
+
+        assertEquals(FunctionEncoder.encode(reference), Multicall3.encodeAggregate3(calls));
+    }
+
+    @Test
+    public void decodeAggregate3_isolatesFailedCalls()
+    {
+        DynamicStruct result1 = new DynamicStruct(new Bool(true), new DynamicBytes(new byte[]{1, 2, 3}));
+        DynamicStruct result2 = new DynamicStruct(new Bool(false), new DynamicBytes(new byte[0]));
+        String encoded = FunctionEncoder.encode(new Function("x",
+                Collections.singletonList(new DynamicArray<>(DynamicStruct.class, result1, result2)), Collections.emptyList()));
+
+        List<Multicall3.Result> results = Multicall3.decodeAggregate3("0x" + encoded.substring(10)); //strip selector
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).success);
+        assertEquals("0x010203", results.get(0).returnData);
+        assertFalse(results.get(1).success);
+        assertEquals("0x", results.get(1).returnData);
+    }
+
+    @Test
+    public void decodeAggregate3_emptyResponse()
+    {
+        assertTrue(Multicall3.decodeAggregate3("0x").isEmpty());
+    }
+}
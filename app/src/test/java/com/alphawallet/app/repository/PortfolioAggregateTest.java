@@ -0,0 +1,87 @@
+package com.alphawallet.app.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import com.alphawallet.app.entity.tokendata.TokenGroup;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class PortfolioAggregateTest
+{
+    private static final String ETH_MAINNET = "eth-1";
+    private static final String USDC = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48-1";
+    private static final String MATIC = "eth-137";
+
+    private static void assertValue(String expected, BigDecimal actual)
+    {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual));
+    }
+
+    @Test
+    public void balanceAndPriceChangesApplyDeltas()
+    {
+        PortfolioAggregate portfolio = new PortfolioAggregate();
+        portfolio.setHolding(ETH_MAINNET, 1, TokenGroup.ASSET, new BigDecimal("2"), true);
+        assertValue("0", portfolio.getTotal().value); //no price yet
+
+        portfolio.setPrice(ETH_MAINNET, "1000", "10");
+        portfolio.setHolding(USDC, 1, TokenGroup.ASSET, new BigDecimal("500"), true);
+        portfolio.setPrice(USDC, "1", "0");
+        portfolio.setHolding(MATIC, 137, TokenGroup.ASSET, new BigDecimal("100"), true);
+        portfolio.setPrice(MATIC, "0.5", "-50");
+
+        assertValue("2550", portfolio.getTotal().value);
+        //eth was 10% lower 24h ago by this formula: 2000 - 200; matic 50 + 25
+        assertValue("2375", portfolio.getTotal().historical);
+
+        portfolio.setHolding(ETH_MAINNET, 1, TokenGroup.ASSET, new BigDecimal("1.5"), true);
+        portfolio.setPrice(USDC, "0.99", "0");
+        assertValue("1995", portfolio.getChainTotal(1).value);
+        assertValue("2045", portfolio.getTotal().value);
+    }
+
+    @Test
+    public void excludedAndRemovedHoldingsDontCount()
+    {
+        PortfolioAggregate portfolio = new PortfolioAggregate();
+        portfolio.setPrice(ETH_MAINNET, "1000", "0");
+        portfolio.setPrice(USDC, "1", "0");
+        portfolio.setHolding(ETH_MAINNET, 1, TokenGroup.ASSET, BigDecimal.ONE, true);
+        portfolio.setHolding(USDC, 1, TokenGroup.DEFI, new BigDecimal("10"), true);
+        assertValue("10", portfolio.getGroupTotal(TokenGroup.DEFI).value);
+
+        //hidden by the user
+        portfolio.setHolding(USDC, 1, TokenGroup.DEFI, new BigDecimal("10"), false);
+        assertValue("1000", portfolio.getTotal().value);
+        assertValue("0", portfolio.getGroupTotal(TokenGroup.DEFI).value);
+
+        portfolio.setPrice(ETH_MAINNET, "", "5"); //unreadable price
+        assertValue("0", portfolio.getTotal().value);
+
+        portfolio.setPrice(ETH_MAINNET, "1000", "0");
+        portfolio.removeHolding(ETH_MAINNET);
+        assertValue("0", portfolio.getTotal().value);
+        assertValue("0", portfolio.getChainTotal(1).value);
+    }
+
+    @Test
+    public void totalsFilterByChain()
+    {
+        PortfolioAggregate portfolio = new PortfolioAggregate();
+        portfolio.setPrice(ETH_MAINNET, "1000", "0");
+        portfolio.setPrice(MATIC, "1", "0");
+        portfolio.setHolding(ETH_MAINNET, 1, TokenGroup.ASSET, BigDecimal.ONE, true);
+        portfolio.setHolding(MATIC, 137, TokenGroup.ASSET, BigDecimal.TEN, true);
+
+        assertValue("10", portfolio.getTotal(Collections.singletonList(137L)).value);
+        assertValue("1010", portfolio.getTotal(Arrays.asList(1L, 137L)).value);
+        assertValue("1010", portfolio.getTotal(Collections.emptyList()).value);
+
+        portfolio.clearPrices();
+        assertValue("0", portfolio.getTotal().value);
+    }
+}
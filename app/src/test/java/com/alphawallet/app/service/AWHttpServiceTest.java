@@ -0,0 +1,158 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+public class AWHttpServiceTest
+{
+    private static final String BLOCK_NUMBER = "{\"jsonrpc\":\"2.0\",\"method\":\"eth_blockNumber\",\"params\":[],\"id\":1}";
+    private static final String SEND_RAW = "{\"jsonrpc\":\"2.0\",\"method\":\"eth_sendRawTransaction\",\"params\":[\"0xf86c\"],\"id\":2}";
+
+    private interface Node
+    {
+        Response answer(okhttp3.Request request) throws IOException;
+    }
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(chain -> {
+                String host = chain.request().url().host();
+                received.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet();
+                return nodes.get(host).answer(chain.request());
+            })
+            .build();
+
+    private static Response reply(okhttp3.Request request, int code, String result)
+    {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .body(ResponseBody.create("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"" + result + "\"}", AWHttpService.JSON_MEDIA_TYPE))
+                .build();
+    }
+
+    private static Node after(long delayMs, int code, String result)
+    {
+        return request -> {
+            try
+            {
+                Thread.sleep(delayMs);
+            }
+            catch (InterruptedException e)
+            {
+                //
+            }
+            return reply(request, code, result);
+        };
+    }
+
+    private AWHttpService service(String... hosts)
+    {
+        List<String> urls = Arrays.asList(hosts);
+        for (int i = 0; i < urls.size(); i++) urls.set(i, "https://" + urls.get(i) + "/");
+        return new AWHttpService(urls, client, false);
+    }
+
+    private static String read(InputStream is) throws IOException
+    {
+        Buffer buffer = new Buffer();
+        buffer.readFrom(is);
+        return buffer.readUtf8();
+    }
+
+    private static void prime(String host, long latencyMs)
+    {
+        for (int i = 0; i < 20; i++) RpcNodeHealth.get("https://" + host + "/").recordSuccess(latencyMs);
+    }
+
+    @Test
+    public void failsOverWhenBestNodeErrors() throws IOException
+    {
+        prime("a.failover.test", 50);
+        nodes.put("a.failover.test", after(0, 500, "a"));
+        nodes.put("b.failover.test", after(0, 200, "b"));
+
+        String response = read(service("a.failover.test", "b.failover.test").performIO(BLOCK_NUMBER));
+        assertTrue(response.contains("\"b\""));
+        assertEquals(1, received.get("a.failover.test").get());
+    }
+
+    @Test
+    public void hedgesWhenBestNodeIsSlow() throws IOException
+    {
+        prime("a.hedge.test", 50); //hedge delay at the 250ms floor
+        nodes.put("a.hedge.test", after(3000, 200, "a"));
+        nodes.put("b.hedge.test", after(0, 200, "b"));
+
+        long start = System.currentTimeMillis();
+        String response = read(service("a.hedge.test", "b.hedge.test").performIO(BLOCK_NUMBER));
+        assertTrue(response.contains("\"b\""));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    public void transactionsAreSentToOneNodeOnly() throws IOException
+    {
+        prime("a.send.test", 50);
+        nodes.put("a.send.test", after(600, 200, "0xhash"));
+        nodes.put("b.send.test", after(0, 200, "0xother"));
+
+        //slower than the hedge delay, but not duplicated
+        String response = read(service("a.send.test", "b.send.test").performIO(SEND_RAW));
+        assertTrue(response.contains("0xhash"));
+        assertFalse(received.containsKey("b.send.test"));
+
+        //an error after the node received it isn't retried elsewhere
+        nodes.put("a.send.test", after(0, 502, ""));
+        try
+        {
+            service("a.send.test", "b.send.test").performIO(SEND_RAW);
+            fail();
+        }
+        catch (IOException e)
+        {
+            //expected
+        }
+        assertFalse(received.containsKey("b.send.test"));
+
+        //but a node that couldn't be reached never saw it
+        prime("a.unreachable.test", 50);
+        nodes.put("a.unreachable.test", request -> { throw new ConnectException("refused"); });
+        nodes.put("b.unreachable.test", after(0, 200, "0xhash"));
+        response = read(service("a.unreachable.test", "b.unreachable.test").performIO(SEND_RAW));
+        assertTrue(response.contains("0xhash"));
+    }
+
+    @Test
+    public void detectsNonIdempotentRequests()
+    {
+        assertTrue(AWHttpService.isIdempotent(BLOCK_NUMBER));
+        assertFalse(AWHttpService.isIdempotent(SEND_RAW));
+        assertFalse(AWHttpService.isIdempotent("[" + BLOCK_NUMBER + "," + SEND_RAW + "]"));
+        assertFalse(AWHttpService.isIdempotent("{\"method\":\"personal_sign\"}"));
+        assertFalse(AWHttpService.isIdempotent("not json"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ApiRateBudgetTest
+{
+    private final AtomicLong now = new AtomicLong(10000);
+
+    @Test
+    public void spacesCallsPerProvider()
+    {
+        ApiRateBudget budget = new ApiRateBudget(now::get);
+        assertEquals(0, budget.reserve("etherscanKey", 5));
+        assertEquals(200, budget.reserve("etherscanKey", 5));
+        assertEquals(400, budget.reserve("etherscanKey", 5));
+
+        //a different key or host has its own budget
+        assertEquals(0, budget.reserve("explorer.example.org", 2));
+        assertEquals(500, budget.reserve("explorer.example.org", 2));
+
+        //unused budget isn't saved up
+        now.addAndGet(5000);
+        assertEquals(0, budget.reserve("etherscanKey", 5));
+        assertEquals(200, budget.reserve("etherscanKey", 5));
+    }
+
+    @Test
+    public void backOffDelaysProvider()
+    {
+        ApiRateBudget budget = new ApiRateBudget(now::get);
+        budget.reserve("etherscanKey", 5);
+        budget.backOff("etherscanKey", 2000);
+
+        assertEquals(2000, budget.reserve("etherscanKey", 5));
+        assertEquals(0, budget.reserve("otherKey", 5));
+    }
+}
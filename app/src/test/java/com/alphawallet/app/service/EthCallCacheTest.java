@@ -0,0 +1,116 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EthCallCacheTest
+{
+    private static final String WALLET = "0x000000000000000000000000000000000000BEEF";
+    private static final String TOKEN = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+    private static final String BALANCE_OF = "0x70a08231000000000000000000000000000000000000000000000000000000000000beef";
+
+    private final AtomicLong block = new AtomicLong(100);
+    private final AtomicInteger sent = new AtomicInteger();
+
+    private final Transaction balanceCall = Transaction.createEthCallTransaction(WALLET, TOKEN, BALANCE_OF);
+
+    private EthCallCache.Call returning(String value)
+    {
+        return () -> {
+            sent.incrementAndGet();
+            EthCall response = new EthCall();
+            response.setResult(value);
+            return response;
+        };
+    }
+
+    @Test
+    public void resultsLastUntilNextBlock() throws IOException
+    {
+        EthCallCache cache = new EthCallCache(chainId -> BigInteger.valueOf(block.get()));
+        assertEquals("0x01", cache.get(1, balanceCall, returning("0x01")).getValue());
+        assertEquals("0x01", cache.get(1, balanceCall, returning("0x02")).getValue());
+        assertEquals("0x03", cache.get(137, balanceCall, returning("0x03")).getValue()); //other chain
+        assertEquals(2, sent.get());
+        assertEquals(1, cache.getHits());
+
+        block.incrementAndGet();
+        assertEquals("0x02", cache.get(1, balanceCall, returning("0x02")).getValue());
+        assertEquals(3, sent.get());
+        assertEquals(0.25, cache.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void errorsAndUnknownBlocksAreNotCached() throws IOException
+    {
+        EthCallCache cache = new EthCallCache(chainId -> BigInteger.valueOf(block.get()));
+        EthCallCache.Call reverted = () -> {
+            sent.incrementAndGet();
+            EthCall response = new EthCall();
+            response.setError(new Response.Error(3, "execution reverted"));
+            return response;
+        };
+
+        cache.get(1, balanceCall, reverted);
+        cache.get(1, balanceCall, reverted);
+        assertEquals(2, sent.get());
+
+        EthCallCache noBlock = new EthCallCache(chainId -> BigInteger.ZERO);
+        noBlock.get(1, balanceCall, returning("0x01"));
+        noBlock.get(1, balanceCall, returning("0x01"));
+        assertEquals(4, sent.get());
+    }
+
+    @Test
+    public void concurrentCallsShareOneRequest() throws Exception
+    {
+        EthCallCache cache = new EthCallCache(chainId -> BigInteger.valueOf(block.get()));
+        CountDownLatch release = new CountDownLatch(1);
+        EthCall response = new EthCall();
+        response.setResult("0x01");
+        EthCallCache.Call slow = () -> {
+            sent.incrementAndGet();
+            try
+            {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                throw new IOException(e);
+            }
+            return response;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<?>[] results = new Future<?>[4];
+        for (int i = 0; i < results.length; i++)
+        {
+            results[i] = executor.submit(() -> cache.get(1, balanceCall, slow));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<?> result : results)
+        {
+            assertSame(response, result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, sent.get());
+        assertEquals(3, cache.getCoalesced());
+    }
+}
@@ -0,0 +1,104 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExplorerResponseReaderTest
+{
+    static class Row
+    {
+        String hash;
+        String blockNumber;
+    }
+
+    private final Gson gson = new Gson();
+
+    private static String rows(int count)
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0) sb.append(",");
+            sb.append("{\"blockNumber\":\"").append(100 - i).append("\",\"hash\":\"0x").append(i).append("\",\"input\":\"0x\"}");
+        }
+        return sb.append("]").toString();
+    }
+
+    @Test
+    public void readsEtherscanResultInChunks() throws Exception
+    {
+        String response = "{\"status\":\"1\",\"message\":\"OK\",\"result\":" + rows(7) + "}";
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<Row> all = new ArrayList<>();
+
+        ExplorerResponseReader.Result result = ExplorerResponseReader.read(new StringReader(response), gson, Row.class, 3, chunk -> {
+            chunkSizes.add(chunk.size());
+            all.addAll(chunk);
+        }, "result");
+
+        assertTrue(result.found);
+        assertEquals(7, result.rows);
+        assertEquals("OK", result.message);
+        assertEquals("[3, 3, 1]", chunkSizes.toString());
+        assertEquals("0x6", all.get(6).hash);
+        assertEquals("94", all.get(6).blockNumber);
+    }
+
+    @Test
+    public void handsOnEachElementAsItIsRead() throws Exception
+    {
+        String response = "{\"status\":\"1\",\"message\":\"OK\",\"result\":" + rows(3) + "}";
+        List<String> blocks = new ArrayList<>();
+
+        ExplorerResponseReader.Result result = ExplorerResponseReader.read(new StringReader(response), gson, Row.class,
+                row -> blocks.add(row.blockNumber), "result");
+
+        assertEquals(3, result.rows);
+        assertEquals("[100, 99, 98]", blocks.toString());
+    }
+
+    @Test
+    public void readsNestedCovalentItems() throws Exception
+    {
+        String response = "{\"data\":{\"address\":\"0xabc\",\"updated_at\":\"now\",\"items\":" + rows(2) + ",\"pagination\":{}},\"error\":false}";
+        List<Row> all = new ArrayList<>();
+
+        ExplorerResponseReader.Result result = ExplorerResponseReader.read(new StringReader(response), gson, Row.class, 100, all::addAll, "data", "items");
+
+        assertEquals(2, result.rows);
+        assertEquals("0x1", all.get(1).hash);
+    }
+
+    @Test
+    public void reportsMessageWhenNoArray() throws Exception
+    {
+        List<Row> all = new ArrayList<>();
+        ExplorerResponseReader.Result result = ExplorerResponseReader.read(new StringReader(
+                "{\"status\":\"0\",\"message\":\"NOTOK\",\"result\":\"Max rate limit reached\"}"), gson, Row.class, 100, all::addAll, "result");
+        assertFalse(result.found);
+        assertEquals(0, result.rows);
+        assertEquals("Max rate limit reached", result.message);
+
+        result = ExplorerResponseReader.read(new StringReader(
+                "{\"status\":\"0\",\"message\":\"No transactions found\",\"result\":[]}"), gson, Row.class, 100, all::addAll, "result");
+        assertTrue(result.found);
+        assertEquals(0, result.rows);
+        assertEquals("No transactions found", result.message);
+
+        result = ExplorerResponseReader.read(new StringReader("<html>Bad gateway</html>"), gson, Row.class, 100, all::addAll, "result");
+        assertFalse(result.found);
+        assertEquals(0, result.rows);
+        assertNull(result.message);
+        assertEquals(0, all.size());
+    }
+}
@@ -0,0 +1,74 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class IPFSCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void store(IPFSCache cache, String key, String content) throws IOException
+    {
+        File temp = cache.newTempFile();
+        try (FileOutputStream out = new FileOutputStream(temp))
+        {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        cache.commit(key, temp);
+    }
+
+    @Test
+    public void storesByContentKey() throws IOException
+    {
+        IPFSCache cache = new IPFSCache(folder.getRoot(), 1024);
+        assertNull(cache.get("QmA/1.json"));
+
+        store(cache, "QmA/1.json", "{\"name\":\"one\"}");
+        store(cache, "QmA/1.json", "{\"name\":\"other gateway\"}"); //first stored copy is kept
+
+        assertEquals("{\"name\":\"one\"}", IPFSCache.read(cache.get("QmA/1.json")));
+        assertNull(cache.get("QmA/2.json"));
+        assertEquals(1, folder.getRoot().listFiles().length); //temp file from the second copy is gone
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException
+    {
+        IPFSCache cache = new IPFSCache(folder.getRoot(), 25);
+        store(cache, "QmA", "0123456789");
+        store(cache, "QmB", "0123456789");
+        cache.get("QmA").setLastModified(System.currentTimeMillis() + 10000); //used after QmB
+
+        store(cache, "QmC", "0123456789");
+
+        assertNotNull(cache.get("QmA"));
+        assertNull(cache.get("QmB"));
+        assertNotNull(cache.get("QmC"));
+        assertEquals(20, cache.size());
+    }
+
+    @Test
+    public void dropsInterruptedDownloads() throws IOException
+    {
+        IPFSCache cache = new IPFSCache(folder.getRoot(), 1024);
+        File partial = cache.newTempFile();
+        store(cache, "QmA", "content");
+
+        //a new cache over the same directory, as on the next app start
+        IPFSCache restarted = new IPFSCache(folder.getRoot(), 1024);
+        assertEquals(7, restarted.size());
+        assertFalse(partial.exists());
+    }
+}
@@ -0,0 +1,96 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.alphawallet.app.ui.widget.entity.PriceAlert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PriceAlertEngineTest
+{
+    private static final String USDC = "0xA0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+
+    private static PriceAlert alert(String currency, String address, long chainId, String value, boolean above)
+    {
+        PriceAlert alert = new PriceAlert(currency, "token", address, chainId);
+        alert.setValue(value);
+        alert.setAbove(above);
+        return alert;
+    }
+
+    @Test
+    public void firesOnlyCrossedAlertsOnce()
+    {
+        PriceAlertEngine engine = new PriceAlertEngine();
+        PriceAlert ethAbove2000 = alert("USD", "0xwallet", 1, "2000", true);
+        PriceAlert ethAbove3000 = alert("USD", "0xwallet", 1, "3000", true);
+        PriceAlert ethBelow1500 = alert("USD", "0xwallet", 1, "1500", false);
+        PriceAlert usdcBelow1 = alert("USD", USDC, 1, "0.99", false);
+        engine.setAlerts(Arrays.asList(ethAbove2000, ethAbove3000, ethBelow1500, usdcBelow1),
+                Arrays.asList("eth", "eth", "eth", USDC));
+        engine.setRate("USD", 1.0);
+
+        assertEquals(0, engine.evaluate(1, "eth", 1800).size());
+        assertEquals(0, engine.evaluate(137, "eth", 2500).size()); //other chain
+
+        List<PriceAlert> fired = engine.evaluate(1, "eth", 2500);
+        assertEquals(1, fired.size());
+        assertTrue(fired.contains(ethAbove2000));
+        assertFalse(ethAbove2000.isEnabled());
+        assertEquals(0, engine.evaluate(1, "eth", 2500).size());
+
+        fired = engine.evaluate(1, USDC.toLowerCase(), 0.95);
+        assertEquals(Arrays.asList(usdcBelow1), fired);
+
+        fired = engine.evaluate(1, "eth", 1000);
+        assertEquals(Arrays.asList(ethBelow1500), fired);
+        assertTrue(ethAbove3000.isEnabled());
+    }
+
+    @Test
+    public void alertsAreKeptWhileNoOneIsListening()
+    {
+        PriceAlertEngine engine = new PriceAlertEngine();
+        PriceAlert ethAbove2000 = alert("USD", "0xwallet", 1, "2000", true);
+        engine.setAlerts(Arrays.asList(ethAbove2000), Arrays.asList("eth"));
+        engine.setRate("USD", 1.0);
+
+        engine.onPriceUpdate(1, "eth", "2500");
+        assertTrue(ethAbove2000.isEnabled());
+
+        List<PriceAlert> fired = new ArrayList<>();
+        engine.setListener(fired::addAll);
+        engine.onPriceUpdate(1, "eth", "2500");
+        assertEquals(Arrays.asList(ethAbove2000), fired);
+        assertFalse(ethAbove2000.isEnabled());
+    }
+
+    @Test
+    public void convertsOncePerAlertCurrency()
+    {
+        PriceAlertEngine engine = new PriceAlertEngine();
+        List<PriceAlert> alerts = new ArrayList<>();
+        List<String> addresses = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++)
+        {
+            alerts.add(alert(i % 2 == 0 ? "EUR" : "USD", "0xwallet", 1, Integer.toString(i), true));
+            addresses.add("eth");
+        }
+        engine.setAlerts(alerts, addresses);
+        assertEquals(2, engine.getCurrencies().size());
+
+        //no EUR rate yet: only the USD alerts can be checked
+        engine.setRate("USD", 1.0);
+        assertEquals(50, engine.evaluate(1, "eth", 100.5).size());
+
+        engine.setRate("EUR", 0.5);
+        engine.setRate("EUR", 0.0); //failed conversion keeps the last rate
+        assertEquals(25, engine.evaluate(1, "eth", 100.5).size()); //50.25 EUR
+    }
+}
@@ -0,0 +1,87 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.TimeUnit;
+
+public class PriceHistoryStoreTest
+{
+    private static final long NOW = 1_700_000_000_000L;
+    private static final String KEY = "ethereum-USD";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PriceHistoryStore.Series prices(long from, long step, int count)
+    {
+        long[] t = new long[count];
+        float[] v = new float[count];
+        for (int i = 0; i < count; i++)
+        {
+            t[i] = from + i * step;
+            v[i] = 1000 + i;
+        }
+        return new PriceHistoryStore.Series(t, v);
+    }
+
+    @Test
+    public void backfillThinsOlderPointsAndPersists()
+    {
+        PriceHistoryStore store = new PriceHistoryStore(folder.getRoot());
+        long fiveMinutes = TimeUnit.MINUTES.toMillis(5);
+        long start = NOW - TimeUnit.DAYS.toMillis(3);
+        PriceHistoryStore.Series fetched = prices(start, fiveMinutes, (int) (TimeUnit.DAYS.toMillis(3) / fiveMinutes) + 1);
+        PriceHistoryStore.Series stored = store.add(KEY, fetched.times, fetched.values, true, NOW);
+
+        //the last day keeps every point, the two days before it one point per hour
+        assertEquals(289 + 48, stored.size());
+        assertEquals(NOW, stored.lastTime());
+
+        PriceHistoryStore reopened = new PriceHistoryStore(folder.getRoot());
+        PriceHistoryStore.Series loaded = reopened.get(KEY);
+        assertEquals(stored.size(), loaded.size());
+        assertEquals(stored.values[100], loaded.values[100], 0);
+        assertEquals(1, reopened.getDaysToFetch(KEY, NOW + 1000));
+    }
+
+    @Test
+    public void refreshAppendsOnlyNewerPoints()
+    {
+        PriceHistoryStore store = new PriceHistoryStore(folder.getRoot());
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        PriceHistoryStore.Series first = prices(NOW - 60 * minute, minute, 61);
+        store.add(KEY, first.times, first.values, true, NOW);
+
+        PriceHistoryStore.Series overlap = prices(NOW - 30 * minute, minute, 40);
+        PriceHistoryStore.Series stored = store.add(KEY, overlap.times, overlap.values, false, NOW + 10 * minute);
+        assertEquals(70, stored.size()); //61 stored + 9 newer
+        assertEquals(1030, stored.values[30], 0); //stored points the fetch overlaps are untouched
+
+        assertSame(stored, store.add(KEY, overlap.times, overlap.values, false, NOW + 10 * minute));
+        assertEquals(0, store.getDaysToFetch("unknown", NOW));
+    }
+
+    @Test
+    public void decimateKeepsEndsAndPeaks()
+    {
+        PriceHistoryStore.Series s = prices(0, 1000, 1000);
+        s.values[500] = 5000; //spike
+        PriceHistoryStore.Series d = PriceHistoryStore.decimate(s, 100);
+
+        assertEquals(100, d.size());
+        assertEquals(0, d.times[0]);
+        assertEquals(999000, d.times[99]);
+        boolean hasSpike = false;
+        for (float v : d.values) hasSpike |= v == 5000;
+        assertTrue(hasSpike);
+
+        PriceHistoryStore.Series week = PriceHistoryStore.slice(s, 990000);
+        assertEquals(10, week.size());
+    }
+}
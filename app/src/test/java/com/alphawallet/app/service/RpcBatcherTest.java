@@ -0,0 +1,124 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class RpcBatcherTest
+{
+    private final List<String> payloads = Collections.synchronizedList(new ArrayList<>());
+
+    //Echo node: result is the request id as a string
+    private String echoNode(String payload)
+    {
+        payloads.add(payload);
+        JsonElement element = JsonParser.parseString(payload);
+        if (element.isJsonArray())
+        {
+            JsonArray responses = new JsonArray();
+            for (JsonElement req : element.getAsJsonArray())
+            {
+                responses.add(response(req.getAsJsonObject()));
+            }
+            return responses.toString();
+        }
+        return response(element.getAsJsonObject()).toString();
+    }
+
+    private static JsonObject response(JsonObject request)
+    {
+        JsonObject rsp = new JsonObject();
+        rsp.addProperty("jsonrpc", "2.0");
+        rsp.add("id", request.get("id"));
+        rsp.addProperty("result", "r" + request.get("id").getAsString());
+        return rsp;
+    }
+
+    private static String request(int id)
+    {
+        return "{\"jsonrpc\":\"2.0\",\"method\":\"eth_blockNumber\",\"params\":[],\"id\":" + id + "}";
+    }
+
+    @Test
+    public void concurrentCallsAreCoalescedAndDemultiplexed() throws Exception
+    {
+        RpcBatcher batcher = new RpcBatcher(this::echoNode, 8, 50);
+        int callCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < callCount; i++)
+        {
+            final int id = i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return batcher.call(request(id));
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < callCount; i++)
+        {
+            JsonObject rsp = JsonParser.parseString(results.get(i).get(5, TimeUnit.SECONDS)).getAsJsonObject();
+            assertEquals("r" + i, rsp.get("result").getAsString());
+        }
+        executor.shutdown();
+
+        assertTrue("Expected requests to be batched, got " + payloads.size() + " posts", payloads.size() < callCount);
+    }
+
+    @Test
+    public void singleCallIsSentUnwrapped() throws Exception
+    {
+        RpcBatcher batcher = new RpcBatcher(this::echoNode, 8, 1);
+        String rsp = batcher.call(request(7));
+
+        assertEquals(1, payloads.size());
+        assertTrue(JsonParser.parseString(payloads.get(0)).isJsonObject());
+        assertEquals("r7", JsonParser.parseString(rsp).getAsJsonObject().get("result").getAsString());
+    }
+
+    @Test
+    public void nodeWithoutBatchSupportFallsBackToSingleRequests() throws Exception
+    {
+        RpcBatcher batcher = new RpcBatcher(payload -> {
+            payloads.add(payload);
+            JsonElement element = JsonParser.parseString(payload);
+            if (element.isJsonArray())
+            {
+                return "{\"jsonrpc\":\"2.0\",\"id\":null,\"error\":{\"code\":-32600,\"message\":\"batch not supported\"}}";
+            }
+            return response(element.getAsJsonObject()).toString();
+        }, 2, 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> first = executor.submit(() -> batcher.call(request(1)));
+        Future<String> second = executor.submit(() -> batcher.call(request(2)));
+
+        assertEquals("r1", JsonParser.parseString(first.get(5, TimeUnit.SECONDS)).getAsJsonObject().get("result").getAsString());
+        assertEquals("r2", JsonParser.parseString(second.get(5, TimeUnit.SECONDS)).getAsJsonObject().get("result").getAsString());
+        executor.shutdown();
+
+        //after the failed batch, calls go direct
+        payloads.clear();
+        batcher.call(request(3));
+        assertEquals(1, payloads.size());
+        assertTrue(JsonParser.parseString(payloads.get(0)).isJsonObject());
+    }
+}
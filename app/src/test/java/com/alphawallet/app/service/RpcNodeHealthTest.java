@@ -0,0 +1,52 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import okhttp3.Headers;
+
+public class RpcNodeHealthTest
+{
+    @Test
+    public void fastReliableNodeScoresBest()
+    {
+        RpcNodeHealth fast = RpcNodeHealth.get("https://fast.health.test/");
+        RpcNodeHealth slow = RpcNodeHealth.get("https://slow.health.test/");
+        RpcNodeHealth flaky = RpcNodeHealth.get("https://flaky.health.test/");
+        for (int i = 0; i < 20; i++)
+        {
+            fast.recordSuccess(100);
+            slow.recordSuccess(600);
+            flaky.recordSuccess(100);
+            if (i % 2 == 0) flaky.recordError();
+        }
+
+        assertTrue(fast.score() < slow.score());
+        assertTrue(fast.score() < flaky.score());
+        assertEquals(250, fast.hedgeDelayMs()); //steady latency: hedge at the floor
+
+        RpcNodeHealth unknown = RpcNodeHealth.get("https://unknown.health.test/");
+        assertTrue(fast.score() < unknown.score()); //proven nodes are preferred over untried ones
+        assertEquals(2000, unknown.hedgeDelayMs());
+    }
+
+    @Test
+    public void rateLimitHeadersBackOff()
+    {
+        RpcNodeHealth node = RpcNodeHealth.get("https://limited.health.test/");
+        node.processHeaders(Headers.of("x-ratelimit-remaining", "5"));
+        assertFalse(node.isRateLimited());
+
+        node.processHeaders(Headers.of("x-ratelimit-remaining", "0", "x-ratelimit-reset", "2"));
+        assertTrue(node.isRateLimited());
+
+        RpcNodeHealth retry = RpcNodeHealth.get("https://retry.health.test/");
+        retry.processHeaders(Headers.of("Retry-After", "0.001"));
+        assertTrue(retry.isRateLimited() || retry.score() > 1000); //1ms back-off may already be over; the error still counts
+        retry.processHeaders(Headers.of());
+        assertFalse(RpcNodeHealth.get("https://clean.health.test/").isRateLimited());
+    }
+}
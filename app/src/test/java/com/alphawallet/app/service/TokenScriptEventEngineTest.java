@@ -0,0 +1,122 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.alphawallet.token.entity.ContractInfo;
+import com.alphawallet.token.entity.EventDefinition;
+
+import org.junit.Test;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.request.Filter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class TokenScriptEventEngineTest
+{
+    private static final String CONTRACT_A = "0x000000000000000000000000000000000000000a";
+    private static final String CONTRACT_B = "0x000000000000000000000000000000000000000b";
+    private static final String TRANSFER = "0xddf252ad1be2c89b69c2b068fc378daa952ba7f163c4a11628f55a4df523b3ef";
+    private static final String APPROVAL = "0x8c5be1e5ebec7d5bd14f71427d1e84f3dd0314c0f7b2291e5b200ac8c7c3b925";
+    private static final String TOKEN_1 = "0x0000000000000000000000000000000000000000000000000000000000000001";
+    private static final String TOKEN_2 = "0x0000000000000000000000000000000000000000000000000000000000000002";
+    private static final String OWNER = "0x000000000000000000000000000000000000000000000000000000000000beef";
+
+    private static EventDefinition event(String address, String activity)
+    {
+        EventDefinition ev = new EventDefinition();
+        ev.contract = new ContractInfo("ERC721");
+        ev.contract.addresses.put(1L, new ArrayList<>(Collections.singletonList(address)));
+        ev.activityName = activity;
+        return ev;
+    }
+
+    private static EthFilter filter(String address, String... topics)
+    {
+        EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(BigInteger.ZERO), DefaultBlockParameter.valueOf(BigInteger.ZERO), address);
+        for (String topic : topics)
+        {
+            if (topic != null && topic.contains("|")) filter.addOptionalTopics(topic.split("\\|"));
+            else filter.addSingleTopic(topic);
+        }
+        return filter;
+    }
+
+    private static EthLog.LogResult<Log> log(String address, long block, String... topics)
+    {
+        Log log = new Log();
+        log.setAddress(address);
+        log.setBlockNumber("0x" + Long.toHexString(block));
+        log.setTopics(Arrays.asList(topics));
+        return new EthLog.LogObject(log.isRemoved(), log.getLogIndexRaw(), log.getTransactionIndexRaw(), log.getTransactionHash(),
+                log.getBlockHash(), log.getBlockNumberRaw(), log.getAddress(), log.getData(), log.getType(), log.getTopics());
+    }
+
+    @Test
+    public void combinesAddressesAndTopicsPerChain()
+    {
+        List<TokenScriptEventEngine.EventQuery> queries = Arrays.asList(
+                new TokenScriptEventEngine.EventQuery(event(CONTRACT_A, "a"), filter(CONTRACT_A, TRANSFER, null, null, TOKEN_1 + "|" + TOKEN_2)),
+                new TokenScriptEventEngine.EventQuery(event(CONTRACT_B, "b"), filter(CONTRACT_B, APPROVAL, OWNER)));
+
+        EthFilter combined = TokenScriptEventEngine.combineFilters(queries, DefaultBlockParameter.valueOf(BigInteger.ONE), DefaultBlockParameter.valueOf(BigInteger.TEN));
+
+        assertEquals(Arrays.asList(CONTRACT_A, CONTRACT_B), combined.getAddress());
+        List<Filter.FilterTopic> topics = combined.getTopics();
+        //topic0 is either signature; topic1 is unconstrained by the first event; topic2 and topic3 are unconstrained by the second
+        assertEquals(1, topics.size());
+        assertEquals(2, ((List<?>) topics.get(0).getValue()).size());
+    }
+
+    @Test
+    public void routesLogsBackToTheirEvents()
+    {
+        TokenScriptEventEngine.EventQuery transfers = new TokenScriptEventEngine.EventQuery(event(CONTRACT_A, "a"), filter(CONTRACT_A, TRANSFER, null, null, TOKEN_1));
+        TokenScriptEventEngine.EventQuery approvals = new TokenScriptEventEngine.EventQuery(event(CONTRACT_A, "b"), filter(CONTRACT_A, APPROVAL, OWNER));
+        TokenScriptEventEngine.EventQuery otherContract = new TokenScriptEventEngine.EventQuery(event(CONTRACT_B, "c"), filter(CONTRACT_B, TRANSFER));
+
+        List<EthLog.LogResult> logs = Arrays.asList(
+                log(CONTRACT_A, 5, TRANSFER, OWNER, OWNER, TOKEN_1),
+                log(CONTRACT_A, 6, TRANSFER, OWNER, OWNER, TOKEN_2),  //matched by the merged filter only
+                log(CONTRACT_A.toUpperCase().replace("0X", "0x"), 7, APPROVAL, OWNER, OWNER),
+                log(CONTRACT_B, 8, TRANSFER, OWNER, OWNER, TOKEN_2),
+                log(CONTRACT_B, 9, APPROVAL, OWNER, OWNER));
+
+        Map<TokenScriptEventEngine.EventQuery, List<EthLog.LogResult>> routed =
+                TokenScriptEventEngine.routeLogs(Arrays.asList(transfers, approvals, otherContract), logs);
+
+        assertEquals(1, routed.get(transfers).size());
+        assertEquals(BigInteger.valueOf(5), ((Log) routed.get(transfers).get(0).get()).getBlockNumber());
+        assertEquals(1, routed.get(approvals).size());
+        assertEquals(1, routed.get(otherContract).size());
+    }
+
+    @Test
+    public void newEventsPullTheRangeBack()
+    {
+        TokenScriptEventEngine.EventQuery scanned = new TokenScriptEventEngine.EventQuery(event(CONTRACT_A, "a"), filter(CONTRACT_A, TRANSFER));
+        TokenScriptEventEngine.EventQuery added = new TokenScriptEventEngine.EventQuery(event(CONTRACT_B, "b"), filter(CONTRACT_B, TRANSFER));
+        added.ev.readBlock = BigInteger.valueOf(50);
+
+        TokenScriptEventEngine.ChainMark mark = new TokenScriptEventEngine.ChainMark(BigInteger.valueOf(100),
+                Collections.singleton(scanned.ev.getEventKey()));
+
+        assertEquals(BigInteger.valueOf(101), TokenScriptEventEngine.startBlock(mark, Collections.singletonList(scanned)));
+        assertEquals(BigInteger.valueOf(50), TokenScriptEventEngine.startBlock(mark, Arrays.asList(scanned, added)));
+
+        //logs the scanned event has already seen aren't delivered again
+        Map<TokenScriptEventEngine.EventQuery, List<EthLog.LogResult>> routed = TokenScriptEventEngine.routeLogs(
+                Arrays.asList(scanned, added), Arrays.asList(log(CONTRACT_A, 60, TRANSFER), log(CONTRACT_B, 60, TRANSFER)));
+        assertNull(routed.get(scanned));
+        assertTrue(routed.containsKey(added));
+    }
+}
@@ -0,0 +1,161 @@
+package com.alphawallet.app.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.Wallet;
+import com.alphawallet.app.entity.tokendata.TokenGroup;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+import com.alphawallet.app.entity.tokens.TokenInfo;
+import com.alphawallet.app.repository.EthereumNetworkRepositoryType;
+import com.alphawallet.app.repository.TokenRepositoryType;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3j;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Single;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+public class WalletBalanceSweepTest
+{
+    private static final long CHAIN = 7001; //no Multicall3, so reads go through the node client
+    private static final String WALLET1 = "0x0000000000000000000000000000000000000001";
+    private static final String WALLET2 = "0x0000000000000000000000000000000000000002";
+    private static final String ERC20 = "0x00000000000000000000000000000000000000aa";
+    private static final String TOKEN_BALANCE = "0x0000000000000000000000000000000000000000000000000000000000000002";
+
+    //fake node: every wallet holds 16 wei of the chain token and 2 of the ERC20
+    private final List<String> methods = Collections.synchronizedList(new ArrayList<>());
+
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(chain -> {
+                Buffer body = new Buffer();
+                chain.request().body().writeTo(body);
+                JsonElement request = JsonParser.parseString(body.readUtf8());
+                String reply;
+                if (request.isJsonArray())
+                {
+                    StringBuilder sb = new StringBuilder("[");
+                    for (JsonElement call : request.getAsJsonArray())
+                    {
+                        if (sb.length() > 1) sb.append(',');
+                        sb.append(answer(call.getAsJsonObject()));
+                    }
+                    reply = sb.append(']').toString();
+                }
+                else
+                {
+                    reply = answer(request.getAsJsonObject());
+                }
+
+                return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("")
+                        .body(ResponseBody.create(reply, MediaType.get("application/json")))
+                        .build();
+            })
+            .build();
+
+    private String answer(JsonObject call)
+    {
+        String method = call.get("method").getAsString();
+        methods.add(method);
+        String result = method.equals("eth_getBalance") ? "0x10" : TOKEN_BALANCE;
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + call.get("id") + ",\"result\":\"" + result + "\"}";
+    }
+
+    private final List<String> stored = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> progress = Collections.synchronizedList(new ArrayList<>());
+    private volatile String failingWallet; //wallet whose database write fails
+    private TokenRepositoryType tokenRepository;
+    private WalletBalanceSweep sweep;
+
+    @Before
+    public void setUp()
+    {
+        tokenRepository = mock(TokenRepositoryType.class);
+        when(tokenRepository.fetchToken(anyLong(), anyString(), anyString())).thenAnswer(inv -> {
+            String wallet = inv.getArgument(1);
+            String address = inv.getArgument(2);
+            return address.equals(wallet) ? token(wallet, ContractType.ETHEREUM) : token(ERC20, ContractType.ERC20);
+        });
+        when(tokenRepository.fetchTokenMetasForUpdate(any(), any())).thenReturn(new TokenCardMeta[] {
+                new TokenCardMeta(CHAIN, ERC20, "2", 0, 0, ContractType.ERC20, TokenGroup.ASSET) }); //not enabled, so no ticker refresh
+        when(tokenRepository.storeTokenBalances(any(), any(), any())).thenAnswer(inv -> {
+            Wallet wallet = inv.getArgument(0);
+            Token[] tokens = inv.getArgument(1);
+            BigDecimal[] balances = inv.getArgument(2);
+            if (wallet.address.equals(failingWallet)) return Single.error(new IOException("database closed"));
+            stored.add(wallet.address + " " + tokens[0].getAddress() + "=" + balances[0]);
+            return Single.just(new boolean[] { true });
+        });
+
+        sweep = new WalletBalanceSweep(tokenRepository, mock(EthereumNetworkRepositoryType.class), null)
+        {
+            private final Web3j web3j = Web3j.build(new AWHttpService(Collections.singletonList("https://node.test/"), client, false));
+
+            @Override
+            protected Web3j getWeb3j(long chainId)
+            {
+                return web3j;
+            }
+        };
+    }
+
+    private static Token token(String address, ContractType type)
+    {
+        return new Token(new TokenInfo(address, "", "", 18, true, CHAIN), BigDecimal.ZERO, 0, "", type);
+    }
+
+    @Test
+    public void chainBalancesAreStoredBeforeTokenBalances()
+    {
+        sweep.sweep(Arrays.asList(WALLET1, WALLET2), Collections.singletonList(CHAIN),
+                (wallet, syncCount) -> progress.add(wallet + " " + syncCount)).blockingAwait();
+
+        assertEquals(2, Collections.frequency(methods, "eth_getBalance"));
+        assertEquals(2, Collections.frequency(methods, "eth_call"));
+        assertEquals(Arrays.asList(
+                WALLET1 + " " + WALLET1 + "=16",
+                WALLET2 + " " + WALLET2 + "=16",
+                WALLET1 + " " + ERC20 + "=2",
+                WALLET2 + " " + ERC20 + "=2"), stored);
+        assertEquals(Arrays.asList(WALLET1 + " 2", WALLET2 + " 2", WALLET1 + " 1", WALLET2 + " 1"), progress);
+    }
+
+    @Test
+    public void failedWriteDoesNotStopTheSweep()
+    {
+        failingWallet = WALLET1;
+
+        sweep.sweep(Arrays.asList(WALLET1, WALLET2), Collections.singletonList(CHAIN),
+                (wallet, syncCount) -> progress.add(wallet + " " + syncCount)).blockingAwait();
+
+        assertEquals(Arrays.asList(WALLET2 + " " + WALLET2 + "=16", WALLET2 + " " + ERC20 + "=2"), stored);
+        assertEquals(Arrays.asList(WALLET1 + " 2", WALLET2 + " 2", WALLET1 + " 1", WALLET2 + " 1"), progress);
+    }
+}
@@ -0,0 +1,215 @@
+package com.alphawallet.app.tokenscript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.entity.tokenscript.TokenscriptFunction;
+import com.alphawallet.app.service.AWHttpService;
+import com.alphawallet.token.entity.Attribute;
+import com.alphawallet.token.entity.AttributeInterface;
+import com.alphawallet.token.entity.ContractAddress;
+import com.alphawallet.token.entity.ParseResult;
+import com.alphawallet.token.entity.TransactionResult;
+import com.alphawallet.token.tools.TokenDefinition;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+import org.web3j.protocol.Web3j;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+public class TokenscriptPrefetchTest implements ParseResult
+{
+    private static final String WALLET = "0x000000000000000000000000000000000000beef";
+    private static final String RESULT = "0x0000000000000000000000000000000000000000000000000000000000000001";
+
+    private static String tokenScript(long chainId)
+    {
+        return "<ts:token xmlns:ethereum=\"urn:ethereum:constantinople\" xmlns:ts=\"http://tokenscript.org/2020/06/tokenscript\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" custodian=\"false\" xsi:schemaLocation=\"http://tokenscript.org/2020/06/tokenscript http://tokenscript.org/2020/06/tokenscript.xsd\">\n" +
+                "  <ts:contract interface=\"erc721\" name=\"Ticket\">\n" +
+                "    <ts:address network=\"" + chainId + "\">0x00000000000000000000000000000000000000aa</ts:address>\n" +
+                "  </ts:contract>\n" +
+                "  <ts:origins>\n" +
+                "    <ts:ethereum contract=\"Ticket\"></ts:ethereum>\n" +
+                "  </ts:origins>\n" +
+                "  <ts:attribute name=\"open\">\n" +
+                "    <ts:type><ts:syntax>1.3.6.1.4.1.1466.115.121.1.7</ts:syntax></ts:type>\n" +
+                "    <ts:origins>\n" +
+                "      <ethereum:call as=\"bool\" contract=\"Ticket\" function=\"isOpen\"></ethereum:call>\n" +
+                "    </ts:origins>\n" +
+                "  </ts:attribute>\n" +
+                "  <ts:attribute name=\"expired\">\n" +
+                "    <ts:type><ts:syntax>1.3.6.1.4.1.1466.115.121.1.7</ts:syntax></ts:type>\n" +
+                "    <ts:origins>\n" +
+                "      <ethereum:call as=\"bool\" contract=\"Ticket\" function=\"isExpired\">\n" +
+                "        <ts:data>\n" +
+                "          <ts:uint256 ref=\"tokenId\"></ts:uint256>\n" +
+                "        </ts:data>\n" +
+                "      </ethereum:call>\n" +
+                "    </ts:origins>\n" +
+                "  </ts:attribute>\n" +
+                "</ts:token>\n";
+    }
+
+    //fake node: answers every eth_call, records what was sent
+    private final List<JsonObject> calls = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean rejectBatches;
+
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(chain -> {
+                Buffer body = new Buffer();
+                chain.request().body().writeTo(body);
+                JsonElement request = JsonParser.parseString(body.readUtf8());
+                String reply;
+                if (request.isJsonArray())
+                {
+                    if (rejectBatches)
+                    {
+                        reply = "{\"jsonrpc\":\"2.0\",\"id\":null,\"error\":{\"code\":-32600,\"message\":\"batch not supported\"}}";
+                    }
+                    else
+                    {
+                        StringBuilder sb = new StringBuilder("[");
+                        for (JsonElement call : request.getAsJsonArray())
+                        {
+                            if (sb.length() > 1) sb.append(',');
+                            sb.append(answer(call.getAsJsonObject()));
+                        }
+                        reply = sb.append(']').toString();
+                    }
+                }
+                else
+                {
+                    reply = answer(request.getAsJsonObject());
+                }
+
+                return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("")
+                        .body(ResponseBody.create(reply, MediaType.get("application/json")))
+                        .build();
+            })
+            .build();
+
+    private String answer(JsonObject call)
+    {
+        calls.add(call);
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + call.get("id") + ",\"result\":\"" + RESULT + "\"}";
+    }
+
+    private static class Store implements AttributeInterface
+    {
+        final Map<String, TransactionResult> stored = new ConcurrentHashMap<>();
+
+        @Override
+        public TransactionResult getFunctionResult(ContractAddress contract, Attribute attr, BigInteger tokenId)
+        {
+            return new TransactionResult(contract.chainId, contract.address, tokenId, attr);
+        }
+
+        @Override
+        public TransactionResult storeAuxData(String walletAddress, TransactionResult tResult)
+        {
+            stored.put(tResult.attrId + "-" + tResult.tokenId, tResult);
+            return tResult;
+        }
+
+        @Override
+        public boolean resolveOptimisedAttr(ContractAddress contract, Attribute attr, TransactionResult transactionResult)
+        {
+            return false;
+        }
+
+        @Override
+        public String getWalletAddr()
+        {
+            return WALLET;
+        }
+    }
+
+    private Store prefetch(long chainId, int batchLimit) throws Exception
+    {
+        TokenDefinition td = new TokenDefinition(new ByteArrayInputStream(tokenScript(chainId).getBytes(StandardCharsets.UTF_8)),
+                new Locale("en"), this);
+        AWHttpService node = new AWHttpService(Collections.singletonList("https://node" + chainId + ".test/"), client, false);
+        node.setBatchLimit(batchLimit);
+        Web3j web3j = Web3j.build(node);
+
+        TokenscriptFunction function = new TokenscriptFunction()
+        {
+            @Override
+            protected Web3j getWeb3j(long id)
+            {
+                return web3j;
+            }
+        };
+
+        Token token = new Token();
+        token.setTokenWallet(WALLET);
+        Store store = new Store();
+        function.prefetchAttrResults(token, new ArrayList<>(td.attributes.values()),
+                Arrays.asList(BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3)), td, store);
+        return store;
+    }
+
+    @Test
+    public void tokenIdAgnosticAttributeIsCalledOnce() throws Exception
+    {
+        Store store = prefetch(7001, 10);
+
+        //'open' once for tokenId zero, 'expired' for each tokenId
+        assertEquals(4, calls.size());
+        assertEquals(4, store.stored.size());
+        assertTrue(store.stored.containsKey("open-0"));
+        assertTrue(store.stored.containsKey("expired-3"));
+
+        for (JsonObject call : calls)
+        {
+            assertEquals("eth_call", call.get("method").getAsString());
+            //made as the wallet, as fetchAttrResult would, not through a Multicall contract
+            JsonObject tx = call.getAsJsonArray("params").get(0).getAsJsonObject();
+            assertEquals(WALLET, tx.get("from").getAsString());
+            assertEquals("0x00000000000000000000000000000000000000aa", tx.get("to").getAsString());
+        }
+    }
+
+    @Test
+    public void callsAreResolvedWhenTheNodeRejectsBatches() throws Exception
+    {
+        rejectBatches = true;
+        Store store = prefetch(7002, 10);
+
+        assertEquals(4, store.stored.size());
+        for (TransactionResult result : store.stored.values())
+        {
+            assertEquals("TRUE", result.result);
+        }
+        assertEquals(4, calls.size()); //each sent singly after the batch was refused
+    }
+
+    @Override
+    public void parseMessage(ParseResultId parseResult)
+    {
+    }
+}
@@ -0,0 +1,79 @@
+package com.alphawallet.app.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class SelectorIndexTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SortedMap<Integer, String> signatures(String... textSignatures)
+    {
+        SortedMap<Integer, String> entries = new TreeMap<>();
+        for (String signature : textSignatures)
+        {
+            entries.put(SelectorIndex.selectorOf(signature), signature);
+        }
+        return entries;
+    }
+
+    @Test
+    public void selectorMatchesKnownValues()
+    {
+        assertEquals(0xa9059cbb, SelectorIndex.selectorOf("transfer(address,uint256)"));
+        assertEquals(0xa9059cbb, SelectorIndex.parseSelector("0xa9059cbb000000000000000000000000fe6d4bc2de2d0b0e6fe47f08a28ed52f9d052a02"));
+        assertEquals("0x095ea7b3", SelectorIndex.toHex(SelectorIndex.selectorOf("approve(address,uint256)")));
+    }
+
+    @Test
+    public void writeAndLookup() throws Exception
+    {
+        File file = folder.newFile("index.bin");
+        SelectorIndex.write(file, signatures("transfer(address,uint256)", "approve(address,uint256)",
+                "safeTransferFrom(address,address,uint256)", "deposit()"), 1234L);
+
+        SelectorIndex index = SelectorIndex.open(file);
+        assertEquals(4, index.size());
+        assertEquals(1234L, index.getSourceStamp());
+        assertEquals("transfer(address,uint256)", index.lookup(0xa9059cbb));
+        assertEquals("deposit()", index.lookup(SelectorIndex.selectorOf("deposit()")));
+        assertNull(index.lookup(SelectorIndex.selectorOf("withdraw(uint256)")));
+    }
+
+    @Test
+    public void mergeAddsOnlyNewEntries() throws Exception
+    {
+        File file = folder.newFile("index.bin");
+        SelectorIndex.write(file, signatures("transfer(address,uint256)"), 7L);
+        SelectorIndex index = SelectorIndex.open(file);
+
+        assertFalse(SelectorIndex.merge(file, index, signatures("transfer(address,uint256)")));
+        assertTrue(SelectorIndex.merge(file, index, signatures("withdraw(uint256)")));
+
+        SelectorIndex merged = SelectorIndex.open(file);
+        assertEquals(2, merged.size());
+        assertEquals(7L, merged.getSourceStamp());
+        assertEquals("withdraw(uint256)", merged.lookup(SelectorIndex.selectorOf("withdraw(uint256)")));
+        assertEquals("transfer(address,uint256)", merged.lookup(0xa9059cbb));
+    }
+
+    @Test
+    public void emptyIndex() throws Exception
+    {
+        File file = folder.newFile("index.bin");
+        SelectorIndex.write(file, new TreeMap<>(Collections.emptyMap()), 0);
+        assertNull(SelectorIndex.open(file).lookup(0xa9059cbb));
+    }
+}
@@ -0,0 +1,206 @@
+package com.alphawallet.app.util.ens;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NameResolutionCacheTest
+{
+    private static final String ADDRESS = "0x000000000000000000000000000000000000BEEF";
+    private static final long CHAIN = 1;
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private NameResolutionCache.Lookup returning(String result)
+    {
+        return () -> {
+            lookups.incrementAndGet();
+            return result;
+        };
+    }
+
+    @Test
+    public void negativeResultsExpireBeforePositive() throws Exception
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        assertEquals("vitalik.eth", cache.get(NameResolutionCache.Kind.REVERSE, CHAIN, ADDRESS, returning("vitalik.eth")));
+        assertEquals("", cache.get(NameResolutionCache.Kind.REVERSE, CHAIN, "0x01", returning(null)));
+
+        //names and addresses are case insensitive
+        assertEquals("vitalik.eth", cache.get(NameResolutionCache.Kind.REVERSE, CHAIN, ADDRESS.toLowerCase(), returning("other")));
+        assertEquals(2, lookups.get());
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(1));
+        cache.get(NameResolutionCache.Kind.REVERSE, CHAIN, ADDRESS, returning("vitalik.eth"));
+        cache.get(NameResolutionCache.Kind.REVERSE, CHAIN, "0x01", returning(""));
+        assertEquals(3, lookups.get()); //only the negative entry was looked up again
+    }
+
+    @Test
+    public void reverseNamesAreKeptPerChain() throws Exception
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        cache.get(NameResolutionCache.Kind.REVERSE, CHAIN, ADDRESS, returning("vitalik.eth"));
+
+        assertNull(cache.getCached(NameResolutionCache.Kind.REVERSE, 51, ADDRESS));
+        assertEquals("", cache.get(NameResolutionCache.Kind.REVERSE, 51, ADDRESS, returning(null)));
+        assertEquals("vitalik.eth", cache.getCached(NameResolutionCache.Kind.REVERSE, CHAIN, ADDRESS));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void forwardResultsExpireQuickly() throws Exception
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        cache.get(NameResolutionCache.Kind.FORWARD, "vitalik.eth", returning(ADDRESS));
+        now.addAndGet(TimeUnit.MINUTES.toMillis(10));
+        cache.get(NameResolutionCache.Kind.FORWARD, "vitalik.eth", returning(ADDRESS));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void forwardResultsAreNotRestored() throws Exception
+    {
+        File dir = Files.createTempDirectory("names").toFile();
+        long expires = now.get() + TimeUnit.HOURS.toMillis(1);
+        try (Writer writer = new FileWriter(new File(dir, "name_resolution_cache.json")))
+        {
+            writer.write("[{\"key\":\"FORWARD:vitalik.eth\",\"value\":\"" + ADDRESS + "\",\"expires\":" + expires + "},"
+                    + "{\"key\":\"REVERSE:" + ADDRESS.toLowerCase() + "@1\",\"value\":\"vitalik.eth\",\"expires\":" + expires + "}]");
+        }
+
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        cache.attach(dir);
+        assertNull(cache.getCached(NameResolutionCache.Kind.FORWARD, "vitalik.eth"));
+        assertEquals("vitalik.eth", cache.getCached(NameResolutionCache.Kind.REVERSE, CHAIN, ADDRESS));
+    }
+
+    @Test
+    public void failedLookupsAreNotCached() throws Exception
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        try
+        {
+            cache.get(NameResolutionCache.Kind.FORWARD, "vitalik.eth", () -> { throw new IOException("timeout"); });
+            fail();
+        }
+        catch (IOException e)
+        {
+            //expected
+        }
+
+        assertNull(cache.getCached(NameResolutionCache.Kind.FORWARD, "vitalik.eth"));
+        assertEquals(ADDRESS, cache.get(NameResolutionCache.Kind.FORWARD, "vitalik.eth", returning(ADDRESS)));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 2);
+        cache.put(NameResolutionCache.Kind.AVATAR, "a.eth", "https://a");
+        cache.put(NameResolutionCache.Kind.AVATAR, "b.eth", "https://b");
+        cache.getCached(NameResolutionCache.Kind.AVATAR, "a.eth");
+        cache.put(NameResolutionCache.Kind.AVATAR, "c.eth", "https://c");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.getCached(NameResolutionCache.Kind.AVATAR, "b.eth"));
+        assertEquals("https://a", cache.getCached(NameResolutionCache.Kind.AVATAR, "a.eth"));
+    }
+
+    @Test
+    public void concurrentLookupsShareOneRequest() throws Exception
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        NameResolutionCache.Lookup slow = () -> {
+            lookups.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "vitalik.eth";
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<?>[] results = new Future<?>[4];
+        for (int i = 0; i < results.length; i++)
+        {
+            results[i] = executor.submit(() -> cache.get(NameResolutionCache.Kind.REVERSE, CHAIN, ADDRESS, slow));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<?> result : results)
+        {
+            assertEquals("vitalik.eth", result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void batchesUncachedNames()
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        cache.put(NameResolutionCache.Kind.REVERSE, CHAIN, "0x01", "one.eth");
+        List<List<String>> batches = new ArrayList<>();
+
+        Map<String, String> names = cache.getAll(NameResolutionCache.Kind.REVERSE, CHAIN, Arrays.asList("0x01", "0x02", "0x03", "0x04"), 2,
+                batch -> {
+                    batches.add(new ArrayList<>(batch));
+                    List<String> result = new ArrayList<>();
+                    for (String address : batch) result.add(address.equals("0x03") ? "three.eth" : "");
+                    return result;
+                },
+                address -> { fail(); return null; });
+
+        assertEquals("[[0x02, 0x03], [0x04]]", batches.toString());
+        assertEquals("one.eth", names.get("0x01"));
+        assertEquals("three.eth", names.get("0x03"));
+        assertEquals("", names.get("0x04"));
+        assertEquals("three.eth", cache.getCached(NameResolutionCache.Kind.REVERSE, CHAIN, "0x03"));
+        assertEquals("", cache.getCached(NameResolutionCache.Kind.REVERSE, CHAIN, "0x02")); //no name, cached as negative
+    }
+
+    @Test
+    public void fallsBackToSingleLookupsWhenBatchFails()
+    {
+        NameResolutionCache cache = new NameResolutionCache(now::get, 100);
+        List<String> singles = new ArrayList<>();
+        NameResolutionCache.NameLookup single = address -> {
+            singles.add(address);
+            if (address.equals("0x03")) throw new IOException("timeout");
+            return address + ".eth";
+        };
+
+        //eg no helper contract on the network
+        Map<String, String> names = cache.getAll(NameResolutionCache.Kind.REVERSE, CHAIN, Arrays.asList("0x01", "0x02"), 10, batch -> null, single);
+        assertEquals("0x01.eth", names.get("0x01"));
+        assertEquals("0x02.eth", names.get("0x02"));
+
+        //or the batch call failed
+        names = cache.getAll(NameResolutionCache.Kind.REVERSE, CHAIN, Arrays.asList("0x03", "0x04"), 10,
+                batch -> { throw new IOException("reverted"); }, single);
+        assertEquals("[0x01, 0x02, 0x03, 0x04]", singles.toString());
+        assertNull(names.get("0x03")); //failed lookups are left out
+        assertEquals("0x04.eth", names.get("0x04"));
+        assertNull(cache.getCached(NameResolutionCache.Kind.REVERSE, CHAIN, "0x04")); //single lookups do their own caching
+    }
+}
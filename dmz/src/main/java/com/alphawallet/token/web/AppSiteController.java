@@ -19,6 +19,8 @@ import com.alphawallet.token.tools.TokenDefinition;
 import com.alphawallet.token.web.Ethereum.TokenscriptFunction;
 import com.alphawallet.token.web.Ethereum.TransactionHandler;
 import com.alphawallet.token.web.Service.CryptoFunctions;
+import com.alphawallet.token.web.Service.LinkRenderCache;
+import com.alphawallet.token.web.Service.TokenDefinitionCache;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
@@ -47,24 +49,60 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.servlet.http.HttpServletRequest;
 
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
 @Controller
 @SpringBootApplication
 @RequestMapping("/")
 public class AppSiteController implements AttributeInterface
 {
     private static CryptoFunctions cryptoFunctions = new CryptoFunctions();
+    private static final ParseMagicLink parser = new ParseMagicLink(cryptoFunctions, null); //stateless after construction, safe to share
+    private static final TokenDefinitionCache definitionCache = new TokenDefinitionCache();
+    private static final int CHAIN_READ_THREADS = 64;
+    private static final int CHAIN_READ_QUEUE = 1024;
+    private static final int RENDER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int RENDER_QUEUE = 256;
+    private static final long REQUEST_DEADLINE_MS = 8000;
+    //reads the queue can't take are refused, and the page is rendered with the read's fallback
+    private static final ExecutorService chainReads = new ThreadPoolExecutor(CHAIN_READ_THREADS, CHAIN_READ_THREADS,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(CHAIN_READ_QUEUE), new ThreadPoolExecutor.AbortPolicy());
+    private static final Scheduler chainReadScheduler = Schedulers.from(chainReads);
+    //pages are rendered here rather than on the read threads or the deadline timer; when full, the completing thread renders
+    private static final ExecutorService pageRenders = new ThreadPoolExecutor(RENDER_THREADS, RENDER_THREADS,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(RENDER_QUEUE), new ThreadPoolExecutor.CallerRunsPolicy());
+    private static final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor();
+    private static final int LINK_CACHE_SIZE = 4096;
+    private static final long LINK_STATIC_TTL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long LINK_AVAILABILITY_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final LinkRenderCache linkCache = new LinkRenderCache(LINK_CACHE_SIZE, LINK_STATIC_TTL_MS, LINK_AVAILABILITY_TTL_MS);
     private static Map<Long, Map<String, File>> addresses;
     private static Map<Long, Map<String, Map<BigInteger, CachedResult>>> transactionResults = new ConcurrentHashMap<>();  //optimisation results
     private static final String appleAssociationConfig = "{\n" +
@@ -118,7 +156,7 @@ public class AppSiteController implements AttributeInterface
     }
 
     @GetMapping(value = "/{UniversalLink}")
-    public @ResponseBody String handleUniversalLink(
+    public @ResponseBody CompletableFuture<String> handleUniversalLink(
             @PathVariable("UniversalLink") String universalLink,
             Model model,
             HttpServletRequest request
@@ -127,55 +165,130 @@ public class AppSiteController implements AttributeInterface
     {
         if (universalLink.equals("wc"))
         {
-            return "If you are using AlphaWallet with WalletConnect and facing issues please take the following steps:<br/><br/>\nTry using WalletConnect V2 (or latest version)<br/>\nTry launching the application from within AlphaWallet app's Browser tab.<br/>";
+            return CompletableFuture.completedFuture("If you are using AlphaWallet with WalletConnect and facing issues please take the following steps:<br/><br/>\nTry using WalletConnect V2 (or latest version)<br/>\nTry launching the application from within AlphaWallet app's Browser tab.<br/>");
         }
         String domain = request.getServerName();
-        ParseMagicLink parser = new ParseMagicLink(cryptoFunctions, null);
         MagicLinkData data;
         model.addAttribute("base64", universalLink);
 
+        long chainId = MagicLinkInfo.getNetworkIdFromDomain(domain);
+        String cacheKey = chainId + "/" + universalLink;
+        LinkRenderCache.RenderedLink cached = linkCache.get(cacheKey);
+        if (cached != null)
+        {
+            model.addAttribute("domain", MagicLinkInfo.getMagicLinkDomainFromNetworkId(chainId));
+            return renderCachedLink(cached, universalLink);
+        }
+
         try
         {
             data = parser.parseUniversalLink(universalLink);
-            data.chainId = MagicLinkInfo.getNetworkIdFromDomain(domain);
+            data.chainId = chainId;
             model.addAttribute("domain", MagicLinkInfo.getMagicLinkDomainFromNetworkId(data.chainId));
         }
         catch (SalesOrderMalformed e)
         {
-            return "error: " + e;
+            return CompletableFuture.completedFuture("error: " + e);
         }
         parser.getOwnerKey(data);
-        return handleTokenLink(data, universalLink);
+        return handleTokenLink(data, universalLink, cacheKey);
     }
 
-    private String handleTokenLink(MagicLinkData data, String universalLink
+    /**
+     * Static part of the page comes from the cache; only token availability is re-checked, and only once its short TTL has passed
+     */
+    private CompletableFuture<String> renderCachedLink(LinkRenderCache.RenderedLink cached, String universalLink)
+            throws IOException, SAXException, NoHandlerFoundException
+    {
+        MagicLinkData data = cached.getData();
+        TokenDefinition definition = getTokenDefinition(data.chainId, data.contractAddress);
+        //the check is shared by concurrent requests for the link, so it isn't cancelled with any one of them
+        CompletableFuture<String> available = linkCache.getAvailability(cached, () ->
+                new PendingReads().read(() -> checkAvailability(new TransactionHandler(data.chainId), data, definition), "unavailable"));
+
+        return joinWithDeadline(null, available)
+                .thenApply(v -> formWebPage(cached.tokenName, cached.symbol, data, universalLink,
+                        checkExpiry(data, available.getNow("unavailable")), cached.style, cached.tokenView));
+    }
+
+    /**
+     * All chain reads for the link are started at once on the chainReads pool; the page is rendered when they have
+     * all completed, or at the request deadline with whatever has arrived by then; reads still running at the
+     * deadline are cancelled. The servlet thread is released as soon as the reads are started.
+     */
+    private CompletableFuture<String> handleTokenLink(MagicLinkData data, String universalLink, String cacheKey
     ) throws IOException, SAXException, NoHandlerFoundException
     {
         TokenDefinition definition = getTokenDefinition(data.chainId, data.contractAddress);
+        TransactionHandler txHandler = new TransactionHandler(data.chainId);
+        PendingReads reads = new PendingReads();
+
+        CompletableFuture<String> tokenName = reads.read(() -> txHandler.getNameOnly(data.contractAddress), "");
+        CompletableFuture<String> symbol = reads.read(() -> txHandler.getSymbolOnly(data.contractAddress), "");
 
         if (definition == null)
         {
-            return renderTokenWithoutTokenScript(data, universalLink);
+            CompletableFuture<String> available = reads.read(() -> checkAvailability(txHandler, data, null), "unavailable");
+            return joinWithDeadline(reads, tokenName, symbol, available)
+                    .thenApply(v -> {
+                        LinkRenderCache.RenderedLink link = new LinkRenderCache.RenderedLink(data, tokenName.getNow(""), symbol.getNow(""), "", "");
+                        //don't cache a page which was rendered with missing reads
+                        if (tokenName.isDone() && symbol.isDone()) linkCache.put(cacheKey, link, doneOrNull(available));
+                        return formWebPage(link.tokenName, link.symbol, data, universalLink,
+                                checkExpiry(data, available.getNow("unavailable")), link.style, link.tokenView);
+                    });
         }
-        String available = "available";
+
+        //the ownership check fills in the token ids, so attributes are resolved after it
+        CompletableFuture<String> available = reads.read(() -> checkAvailability(txHandler, data, definition), "unavailable");
+        CompletableFuture<List<TokenScriptResult.Attribute>> attributes = available
+                .thenCompose(a -> resolveAttributes(data, definition, reads))
+                .exceptionally(e -> new ArrayList<>());
+
+        return joinWithDeadline(reads, tokenName, symbol, available, attributes)
+                .thenApply(v -> {
+                    String name = tokenName.getNow("");
+                    String sym = symbol.getNow("");
+                    LinkRenderCache.RenderedLink link = new LinkRenderCache.RenderedLink(data, name, sym,
+                            definition.getCardData("style"), buildTokenView(data, definition, name, sym, attributes.getNow(new ArrayList<>())));
+                    if (tokenName.isDone() && symbol.isDone() && attributes.isDone()) linkCache.put(cacheKey, link, doneOrNull(available));
+                    return formWebPage(link.tokenName, link.symbol, data, universalLink,
+                            checkExpiry(data, available.getNow("unavailable")), link.style, link.tokenView);
+                });
+    }
+
+    private String checkAvailability(TransactionHandler txHandler, MagicLinkData data, TokenDefinition definition)
+    {
         try
         {
-            if(data.contractType == normal)
+            if (data.contractType == normal && definition != null)
             {
-                checkTokensOwnedByMagicLinkCreator(data, definition);
+                checkTokensOwnedByMagicLinkCreator(txHandler, data, definition);
+            }
+            else if (data.contractType == normal)
+            {
+                checkTokensOwnedByMagicLinkCreator(txHandler, data);
             }
             else
             {
-                checkTokensClaimableSpawnable(data);
+                checkTokensClaimableSpawnable(txHandler, data);
             }
+            return "available";
         }
         catch (Exception e)
         {
             //if the tokens are not available, an exception will be thrown and therefore the tokens are not available
-            available = "unavailable";
+            return "unavailable";
         }
+    }
+
+    private String checkExpiry(MagicLinkData data, String available)
+    {
+        return Calendar.getInstance().getTime().after(new Date(data.expiry*1000)) ? "expired" : available;
+    }
 
-        //get attributes
+    private CompletableFuture<List<TokenScriptResult.Attribute>> resolveAttributes(MagicLinkData data, TokenDefinition definition, PendingReads reads)
+    {
         BigInteger firstTokenId = BigInteger.ZERO;
 
         if (data.tokenIds != null && data.tokenIds.size() > 0)
@@ -184,11 +297,18 @@ public class AppSiteController implements AttributeInterface
         }
         System.out.println(firstTokenId.toString(16));
         ContractAddress cAddr = new ContractAddress(data.chainId, data.contractAddress);
-        StringBuilder tokenData = new StringBuilder();
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
 
-        String tokenName = txHandler.getNameOnly(data.contractAddress);
-        String symbol = txHandler.getSymbolOnly(data.contractAddress);
+        CompletableFuture<List<TokenScriptResult.Attribute>> result = new CompletableFuture<>();
+        reads.add(tokenscriptFunction.resolveAttributes(ZERO_ADDRESS, firstTokenId, this, cAddr, definition, chainReadScheduler)
+                .toList()
+                .subscribe(result::complete, result::completeExceptionally));
+        return result;
+    }
+
+    private String buildTokenView(MagicLinkData data, TokenDefinition definition, String tokenName, String symbol,
+                                  List<TokenScriptResult.Attribute> attributes)
+    {
+        StringBuilder tokenData = new StringBuilder();
 
         try
         {
@@ -201,55 +321,85 @@ public class AppSiteController implements AttributeInterface
             e.printStackTrace();
         }
 
-        tokenscriptFunction.resolveAttributes(ZERO_ADDRESS, firstTokenId, this, cAddr, definition)
-                .forEach(attr -> TokenScriptResult.addPair(tokenData, attr.id, attr.text))
-                .isDisposed();
-
-        if (Calendar.getInstance().getTime().after(new Date(data.expiry*1000)))
-        {
-            available = "expired";
-        }
+        attributes.forEach(attr -> TokenScriptResult.addPair(tokenData, attr.id, attr.text));
 
         String view = definition.getCardData("view");
-        String style = definition.getCardData("style");
 
         String scriptData = loadFile("templates/token_inject.js.tokenscript");
-        String tokenView = String.format(scriptData, tokenData.toString(), view);
-
-        return formWebPage(txHandler, data, universalLink, available, style, tokenView);
+        return String.format(scriptData, tokenData.toString(), view);
     }
 
-    private String renderTokenWithoutTokenScript(MagicLinkData data, String universalLink)
+    /**
+     * Chain reads started for one request, so those still running at the deadline can be cancelled. A cancelled read's
+     * future is left incomplete, and the page is rendered with its fallback.
+     */
+    private static class PendingReads
     {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
-        String available = "available";
+        private final List<Future<?>> tasks = Collections.synchronizedList(new ArrayList<>());
+        private final CompositeDisposable subscriptions = new CompositeDisposable();
 
-        if (Calendar.getInstance().getTime().after(new Date(data.expiry*1000)))
+        <T> CompletableFuture<T> read(Supplier<T> read, T fallback)
         {
-            available = "expired";
-        }
-        try
-        {
-            if(data.contractType == normal)
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try
             {
-                checkTokensOwnedByMagicLinkCreator(data);
+                tasks.add(chainReads.submit(() -> {
+                    try
+                    {
+                        result.complete(read.get());
+                    }
+                    catch (Exception e)
+                    {
+                        result.complete(fallback);
+                    }
+                }));
             }
-            else
+            catch (RejectedExecutionException e)
             {
-                checkTokensClaimableSpawnable(data);
+                result.complete(fallback); //overloaded: render without this read rather than queue behind the others
             }
+            return result;
         }
-        catch (Exception e)
+
+        void add(Disposable subscription)
+        {
+            subscriptions.add(subscription);
+        }
+
+        void cancel()
         {
-            //if exception is thrown, we assume it is not available due to balance call failing to match
-            available = "unavailable";
+            synchronized (tasks)
+            {
+                for (Future<?> task : tasks) task.cancel(true);
+            }
+            subscriptions.dispose();
         }
+    }
+
+    /**
+     * Completes on the render pool when all the reads have completed, or at the request deadline, whichever comes
+     * first. At the deadline the request's unfinished reads, if given, are cancelled.
+     */
+    private static CompletableFuture<Void> joinWithDeadline(PendingReads pending, CompletableFuture<?>... reads)
+    {
+        CompletableFuture<Void> all = CompletableFuture.allOf(reads);
+        CompletableFuture<Void> deadline = new CompletableFuture<>();
+        ScheduledFuture<?> timer = deadlineTimer.schedule(() -> {
+            if (deadline.complete(null) && pending != null) pending.cancel();
+        }, REQUEST_DEADLINE_MS, TimeUnit.MILLISECONDS);
+        all.whenComplete((v, e) -> timer.cancel(false));
+        return CompletableFuture.anyOf(all, deadline).handleAsync((v, e) -> null, pageRenders);
+    }
 
-        return formWebPage(txHandler, data, universalLink, available, "", "");
+    //an availability check cut off by the deadline isn't kept, so the next request checks again
+    private static CompletableFuture<String> doneOrNull(CompletableFuture<String> available)
+    {
+        return available.isDone() ? available : null;
     }
 
     private String formWebPage(
-            TransactionHandler txHandler,
+            String tokenName,
+            String symbol,
             MagicLinkData data,
             String universalLink,
             String available,
@@ -257,8 +407,6 @@ public class AppSiteController implements AttributeInterface
             String tokenView
     )
     {
-        String tokenName = txHandler.getName(data.contractAddress);
-        String symbol = txHandler.getSymbolOnly(data.contractAddress);
         String nameWithSymbol = tokenName + "(" + symbol + ")";
 
         String price = getEthString(data.price) + " " + MagicLinkInfo.getNetworkNameById(data.chainId);
@@ -309,17 +457,14 @@ public class AppSiteController implements AttributeInterface
                 /* this is impossible to happen, because at least 1 xml should present or main() bails out */
                 throw new NoHandlerFoundException("GET", "/" + contractAddress, new HttpHeaders());
             }
-            try(FileInputStream in = new FileInputStream(xml)) {
-                // TODO: give more detail in the error
-                // TODO: reflect on this: should the page bail out for contracts with completely no matching XML?
-                definition = new TokenDefinition(in, new Locale("en"), null);
-            }
+            // TODO: give more detail in the error
+            // TODO: reflect on this: should the page bail out for contracts with completely no matching XML?
+            definition = definitionCache.get(xml);
         }
         return definition;
     }
 
-    private void checkTokensClaimableSpawnable(MagicLinkData data) throws Exception {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
+    private void checkTokensClaimableSpawnable(TransactionHandler txHandler, MagicLinkData data) throws Exception {
         //TODO replace with real admin(s) addresses in production
         if(data.ownerAddress.equalsIgnoreCase("0xEdd6D7ba0FF9f4bC501a12529cb736CA76A4fe7e") ||
                 data.ownerAddress.equalsIgnoreCase("0x453aABe984b62eE28382c99A6d20447f7776b1fa"))
@@ -348,9 +493,8 @@ public class AppSiteController implements AttributeInterface
      * @param data
      * @throws Exception
      */
-    private void checkTokensOwnedByMagicLinkCreator(MagicLinkData data, TokenDefinition definition) throws Exception
+    private void checkTokensOwnedByMagicLinkCreator(TransactionHandler txHandler, MagicLinkData data, TokenDefinition definition) throws Exception
     {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
         List<BigInteger> balanceArray = txHandler.getBalanceArray(data.ownerAddress, data.contractAddress);
         data.tokenIds = new ArrayList<>();
 
@@ -370,9 +514,8 @@ public class AppSiteController implements AttributeInterface
     }
 
     //For if there is no TokenScript
-    private void checkTokensOwnedByMagicLinkCreator(MagicLinkData data) throws Exception
+    private void checkTokensOwnedByMagicLinkCreator(TransactionHandler txHandler, MagicLinkData data) throws Exception
     {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
         List<BigInteger> balanceArray = txHandler.getBalanceArray(data.ownerAddress, data.contractAddress);
         data.tokenIds = new ArrayList<>();
 
@@ -493,14 +636,13 @@ public class AppSiteController implements AttributeInterface
         String addressFunctionKey = contract.address + "-" + attr.name;
         TransactionResult tr = new TransactionResult(contract.chainId, contract.address, tokenId, attr);
         //existing entry in map?
-        if (transactionResults.containsKey(contract.chainId))
+        Map<String, Map<BigInteger, CachedResult>> chainResults = transactionResults.get(contract.chainId);
+        Map<BigInteger, CachedResult> contractResult = chainResults != null ? chainResults.get(addressFunctionKey) : null;
+        CachedResult cached = contractResult != null ? contractResult.get(tokenId) : null;
+        if (cached != null)
         {
-            Map<BigInteger, CachedResult> contractResult = transactionResults.get(contract.chainId).get(addressFunctionKey);
-            if (contractResult != null && contractResult.containsKey(tokenId))
-            {
-                tr.resultTime = contractResult.get(tokenId).resultTime;
-                tr.result = contractResult.get(tokenId).result;
-            }
+            tr.resultTime = cached.resultTime;
+            tr.result = cached.result;
         }
 
         return tr;
@@ -510,11 +652,10 @@ public class AppSiteController implements AttributeInterface
     public TransactionResult storeAuxData(String wAddress, TransactionResult tResult)
     {
         String addressFunctionKey = tResult.contractAddress + "-" + tResult.attrId;
-        if (!transactionResults.containsKey(tResult.contractChainId)) transactionResults.put(tResult.contractChainId, new HashMap<>());
-        if (!transactionResults.get(tResult.contractChainId).containsKey(addressFunctionKey)) transactionResults.get(tResult.contractChainId).put(addressFunctionKey, new HashMap<>());
-        Map<BigInteger, CachedResult> tokenResultMap = transactionResults.get(tResult.contractChainId).get(addressFunctionKey);
-        tokenResultMap.put(tResult.tokenId, new CachedResult(tResult.resultTime, tResult.result));
-        transactionResults.get(tResult.contractChainId).put(addressFunctionKey, tokenResultMap);
+        //attribute reads store their results concurrently
+        transactionResults.computeIfAbsent(tResult.contractChainId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(addressFunctionKey, k -> new ConcurrentHashMap<>())
+                .put(tResult.tokenId, new CachedResult(tResult.resultTime, tResult.result));
 
         return tResult;
     }
@@ -13,7 +13,6 @@ import com.alphawallet.token.entity.TokenscriptContext;
 import com.alphawallet.token.entity.TokenscriptElement;
 import com.alphawallet.token.entity.TransactionResult;
 import com.alphawallet.token.tools.TokenDefinition;
-import com.alphawallet.token.web.Service.EthRPCNodes;
 
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.FunctionReturnDecoder;
@@ -124,7 +123,6 @@ import org.web3j.abi.datatypes.generated.Uint96;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthCall;
-import org.web3j.protocol.http.HttpService;
 import org.web3j.utils.Bytes;
 import org.web3j.utils.Numeric;
 
@@ -136,10 +134,9 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
-import okhttp3.OkHttpClient;
+import io.reactivex.Scheduler;
 
 /**
  * Created by James on 13/06/2019.
@@ -719,17 +716,8 @@ public abstract class TokenscriptFunction
 
             // 1: create transaction call
             org.web3j.abi.datatypes.Function transaction = generateTransactionFunction(walletAddress, tokenId, definition, attr.function, attrIf);
-            // 2: create web3 connection
-            OkHttpClient okClient = new OkHttpClient.Builder()
-                    .connectTimeout(5, TimeUnit.SECONDS)
-                    .readTimeout(5, TimeUnit.SECONDS)
-                    .writeTimeout(5, TimeUnit.SECONDS)
-                    .retryOnConnectionFailure(false)
-                    .build();
-
-            HttpService nodeService = new HttpService(EthRPCNodes.getNodeURLByNetworkId(contractAddress.chainId), okClient, false);
-
-            Web3j web3j = Web3j.build(nodeService);
+            // 2: get the shared web3 connection for the chain
+            Web3j web3j = Web3jProvider.get(contractAddress.chainId);
 
             //now push the transaction
             String result;
@@ -940,6 +928,19 @@ public abstract class TokenscriptFunction
                 .flatMap(attr -> fetchAttrResult(walletAddress, attr, tokenId, td, attrIf));
     }
 
+    /**
+     * As above, but each attribute is fetched on the given scheduler so the chain reads run in parallel
+     */
+    public Observable<TokenScriptResult.Attribute> resolveAttributes(String walletAddress, BigInteger tokenId, AttributeInterface attrIf, ContractAddress cAddr, TokenDefinition td, Scheduler scheduler)
+    {
+        td.context = new TokenscriptContext();
+        td.context.cAddr = cAddr;
+        td.context.attrInterface = attrIf;
+
+        return Observable.fromIterable(new ArrayList<>(td.attributes.values()))
+                .flatMap(attr -> fetchAttrResult(walletAddress, attr, tokenId, td, attrIf).subscribeOn(scheduler));
+    }
+
     private Observable<TokenScriptResult.Attribute> staticAttribute(Attribute attr, BigInteger tokenId)
     {
         return Observable.fromCallable(() -> {
@@ -0,0 +1,33 @@
+package com.alphawallet.token.web.Ethereum;
+
+import com.alphawallet.token.web.Service.EthRPCNodes;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * One Web3j per chain for the whole server, all sharing a single OkHttp client (and so its connection pool).
+ * Web3j and OkHttpClient are thread safe; request handlers should fetch the client from here rather than building their own.
+ */
+public class Web3jProvider
+{
+    private static final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(20, TimeUnit.SECONDS)
+            .readTimeout(20, TimeUnit.SECONDS)
+            .writeTimeout(20, TimeUnit.SECONDS)
+            .build();
+
+    private static final Map<Long, Web3j> clients = new ConcurrentHashMap<>();
+
+    public static Web3j get(long chainId)
+    {
+        return clients.computeIfAbsent(chainId, id ->
+                Web3j.build(new HttpService(EthRPCNodes.getNodeURLByNetworkId(id), httpClient, false)));
+    }
+}
@@ -1,14 +1,14 @@
 package com.alphawallet.token.web.Service;
 
-import com.alphawallet.token.entity.SalesOrderMalformed;
+import com.alphawallet.token.entity.MagicLinkOrder;
+import com.alphawallet.token.entity.MagicLinkResult;
 import org.web3j.utils.Numeric;
 import com.alphawallet.token.tools.ParseMagicLink;
 import org.web3j.crypto.ECKeyPair;
-import org.web3j.crypto.Sign;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
-import static com.alphawallet.token.web.Service.SpawnableLinkGenerator.bytesFromSignature;
+import java.util.concurrent.ForkJoinPool;
 
 public class EdconLinkGenerator {
 
@@ -40,32 +40,35 @@ public class EdconLinkGenerator {
     private static long expiry = (System.currentTimeMillis() + 5000000000L) / 1000L;;
 
 
-    public static void main(String[] args) throws SalesOrderMalformed {
+    public static void main(String[] args) {
         int rounds = 50;
+        List<MagicLinkOrder> orders = new ArrayList<>();
         while(rounds > 0) {
-            new com.alphawallet.token.web.Service.EdconLinkGenerator(date, VIENNA, BLOCKCHAIN_HALL, 1);
+            orders.add(new com.alphawallet.token.web.Service.EdconLinkGenerator().createOrder(date, VIENNA, BLOCKCHAIN_HALL, 1));
             rounds--;
         }
+        createSpawnableLinks(orders);
     }
 
-    private EdconLinkGenerator(
+    private MagicLinkOrder createOrder(
             String date,
             long city,
             long venue,
             int quantity
-    ) throws SalesOrderMalformed {
+    ) {
         // Set values here
         List<BigInteger> tokens = setTokenIds(date, city, venue, A, quantity);
-        createSpawnableLink(tokens);
+        return MagicLinkOrder.spawnable(tokens, contractAddress, BigInteger.ZERO, expiry, chainId);
     }
 
-    private void createSpawnableLink(List<BigInteger> tokens) throws SalesOrderMalformed {
-        byte[] message = parseMagicLink.getSpawnableBytes(tokens, contractAddress, BigInteger.ZERO, expiry);
-        byte[] signature = signMagicLink(message);
-        byte[] linkData = ParseMagicLink.generateSpawnableLeadingLinkBytes(tokens, contractAddress, BigInteger.ZERO, expiry);
-        String link = parseMagicLink.completeUniversalLink(chainId, linkData, signature);
-        System.out.println(link);
-        System.out.println();
+    private static void createSpawnableLinks(List<MagicLinkOrder> orders) {
+        //sign all the links in parallel
+        List<MagicLinkResult> results = parseMagicLink.signUniversalLinks(orders, ECKeyPair.create(privateKey), ForkJoinPool.commonPool());
+        for (MagicLinkResult result : results)
+        {
+            System.out.println(result.isValid() ? result.link : "Link " + result.index + " failed: " + result.error);
+            System.out.println();
+        }
     }
 
     private List<BigInteger> setTokenIds(String date, long city, long venue, long category, int quantity)
@@ -90,10 +93,4 @@ public class EdconLinkGenerator {
         return tokens;
     }
 
-    private byte[] signMagicLink(byte[] signData) {
-        ECKeyPair ecKeyPair  = ECKeyPair.create(privateKey);
-        Sign.SignatureData signatureData = Sign.signMessage(signData, ecKeyPair);
-        return bytesFromSignature(signatureData);
-    }
-
 }
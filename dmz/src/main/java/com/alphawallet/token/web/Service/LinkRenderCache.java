@@ -0,0 +1,178 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.entity.MagicLinkData;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of rendered universal links, keyed by chain and link payload.
+ *
+ * The static part of a link page (parsed link, token name and symbol, TokenScript view) is kept for a long TTL.
+ * Token availability is the only part which changes with chain state, so it has its own short TTL. Concurrent
+ * requests for the same link share one availability check, and a check which fails is dropped so the next request
+ * makes a new one. Least recently used links are evicted beyond maxEntries. Hits and misses are counted.
+ *
+ * The availability check fills in the link's token ids, so each request is given its own copy of the link data.
+ */
+public class LinkRenderCache
+{
+    private final int maxEntries;
+    private final long staticTtlMs;
+    private final long availabilityTtlMs;
+
+    private final LinkedHashMap<String, RenderedLink> links;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static class RenderedLink
+    {
+        private final MagicLinkData data;
+        public final String tokenName;
+        public final String symbol;
+        public final String style;
+        public final String tokenView;
+        private final long createdAt;
+
+        //guarded by this
+        private CompletableFuture<String> availability;
+        private long availabilityTime;
+
+        public RenderedLink(MagicLinkData data, String tokenName, String symbol, String style, String tokenView)
+        {
+            this.data = copy(data);
+            this.tokenName = tokenName;
+            this.symbol = symbol;
+            this.style = style;
+            this.tokenView = tokenView;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        public MagicLinkData getData()
+        {
+            return copy(data);
+        }
+
+        private static MagicLinkData copy(MagicLinkData data)
+        {
+            MagicLinkData copy = new MagicLinkData();
+            copy.expiry = data.expiry;
+            copy.prefix = data.prefix;
+            copy.nonce = data.nonce;
+            copy.price = data.price;
+            copy.priceWei = data.priceWei;
+            copy.tokenIds = data.tokenIds != null ? new ArrayList<>(data.tokenIds) : null;
+            copy.indices = data.indices;
+            copy.amount = data.amount;
+            copy.ticketStart = data.ticketStart;
+            copy.ticketCount = data.ticketCount;
+            copy.contractAddress = data.contractAddress;
+            copy.signature = data.signature;
+            copy.message = data.message;
+            copy.ownerAddress = data.ownerAddress;
+            copy.contractName = data.contractName;
+            copy.contractType = data.contractType;
+            copy.chainId = data.chainId;
+            copy.balanceInfo = data.balanceInfo != null ? new ArrayList<>(data.balanceInfo) : null;
+            return copy;
+        }
+    }
+
+    public LinkRenderCache(int maxEntries, long staticTtlMs, long availabilityTtlMs)
+    {
+        this.maxEntries = maxEntries;
+        this.staticTtlMs = staticTtlMs;
+        this.availabilityTtlMs = availabilityTtlMs;
+        this.links = new LinkedHashMap<String, RenderedLink>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RenderedLink> eldest)
+            {
+                return size() > LinkRenderCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the cached link, or null if it isn't cached or its static part has expired
+     */
+    public RenderedLink get(String key)
+    {
+        RenderedLink link;
+        synchronized (links)
+        {
+            link = links.get(key);
+            if (link != null && System.currentTimeMillis() - link.createdAt > staticTtlMs)
+            {
+                links.remove(key);
+                link = null;
+            }
+        }
+
+        if (link != null) hits.incrementAndGet();
+        else misses.incrementAndGet();
+        return link;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @param availability the availability check made while rendering the link, or null if it didn't finish in time
+     */
+    public void put(String key, RenderedLink link, CompletableFuture<String> availability)
+    {
+        setAvailability(link, availability);
+
+        synchronized (links)
+        {
+            links.put(key, link);
+        }
+    }
+
+    /**
+     * Availability of the link's tokens; re-checked through refresh once the short TTL has passed
+     */
+    public CompletableFuture<String> getAvailability(RenderedLink link, Supplier<CompletableFuture<String>> refresh)
+    {
+        synchronized (link)
+        {
+            CompletableFuture<String> availability = link.availability;
+            if (availability == null || System.currentTimeMillis() - link.availabilityTime > availabilityTtlMs)
+            {
+                availability = refresh.get();
+                setAvailability(link, availability);
+            }
+            return availability;
+        }
+    }
+
+    private static void setAvailability(RenderedLink link, CompletableFuture<String> availability)
+    {
+        synchronized (link)
+        {
+            link.availability = availability;
+            link.availabilityTime = System.currentTimeMillis();
+        }
+
+        if (availability == null) return;
+        availability.whenComplete((result, error) -> {
+            if (error == null) return;
+            synchronized (link)
+            {
+                if (link.availability == availability) link.availability = null; //failed; check again on the next request
+            }
+        });
+    }
+}
@@ -7,7 +7,6 @@ import org.web3j.crypto.ECKeyPair;
 import org.web3j.crypto.Sign;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 class SpawnableLinkGenerator {
@@ -119,26 +118,7 @@ class SpawnableLinkGenerator {
     private byte[] signMagicLink(byte[] signData) {
         ECKeyPair ecKeyPair  = ECKeyPair.create(privateKey);
         Sign.SignatureData signatureData = Sign.signMessage(signData, ecKeyPair);
-        return bytesFromSignature(signatureData);
-    }
-
-    //TODO this function should be in the libs module not here or in the app
-    static byte[] bytesFromSignature(Sign.SignatureData signature)
-    {
-        byte[] sigBytes = new byte[65];
-        Arrays.fill(sigBytes, (byte) 0);
-        try
-        {
-            System.arraycopy(signature.getR(), 0, sigBytes, 0, 32);
-            System.arraycopy(signature.getS(), 0, sigBytes, 32, 32);
-            System.arraycopy(signature.getV(), 0, sigBytes, 64, 1);
-        }
-        catch (IndexOutOfBoundsException e)
-        {
-            e.printStackTrace();
-        }
-
-        return sigBytes;
+        return ParseMagicLink.bytesFromSignature(signatureData);
     }
 
 }
@@ -0,0 +1,51 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.tools.TokenDefinition;
+
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed TokenDefinitions keyed by TSML file path. An entry is re-parsed only when the file's modification time changes,
+ * so a link request normally costs a map lookup rather than an XML parse.
+ */
+public class TokenDefinitionCache
+{
+    private final Map<String, CachedDefinition> definitions = new ConcurrentHashMap<>();
+
+    private static class CachedDefinition
+    {
+        final long lastModified;
+        final TokenDefinition definition;
+
+        CachedDefinition(long lastModified, TokenDefinition definition)
+        {
+            this.lastModified = lastModified;
+            this.definition = definition;
+        }
+    }
+
+    public TokenDefinition get(File xml) throws IOException, SAXException
+    {
+        String key = xml.getAbsolutePath();
+        long lastModified = xml.lastModified();
+        CachedDefinition cached = definitions.get(key);
+        if (cached != null && cached.lastModified == lastModified)
+        {
+            return cached.definition;
+        }
+
+        try (FileInputStream in = new FileInputStream(xml))
+        {
+            TokenDefinition definition = new TokenDefinition(in, new Locale("en"), null);
+            definitions.put(key, new CachedDefinition(lastModified, definition));
+            return definition;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.entity.MagicLinkData;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class LinkRenderCacheTest
+{
+    private final LinkRenderCache cache = new LinkRenderCache(16, 60000, 60000);
+
+    private static LinkRenderCache.RenderedLink link()
+    {
+        return new LinkRenderCache.RenderedLink(new MagicLinkData(), "Ticket", "TKT", "", "");
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted()
+    {
+        assertNull(cache.get("1-link"));
+        cache.put("1-link", link(), CompletableFuture.completedFuture("available"));
+        cache.get("1-link");
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void failedAvailabilityIsCheckedAgain()
+    {
+        LinkRenderCache.RenderedLink link = link();
+        cache.put("1-link", link, null);
+        AtomicInteger checks = new AtomicInteger();
+
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("node unavailable"));
+        assertSame(failed, cache.getAvailability(link, () -> {
+            checks.incrementAndGet();
+            return failed;
+        }));
+
+        CompletableFuture<String> available = CompletableFuture.completedFuture("available");
+        assertSame(available, cache.getAvailability(link, () -> {
+            checks.incrementAndGet();
+            return available;
+        }));
+        assertSame(available, cache.getAvailability(link, () -> {
+            checks.incrementAndGet();
+            return null;
+        }));
+
+        assertEquals(2, checks.get());
+    }
+}
@@ -0,0 +1,174 @@
+package com.alphawallet.token.tools;
+
+import com.alphawallet.token.entity.CryptoFunctionsInterface;
+import com.alphawallet.token.entity.MagicLinkData;
+import com.alphawallet.token.entity.MagicLinkOrder;
+import com.alphawallet.token.entity.MagicLinkResult;
+import com.alphawallet.token.entity.ProviderTypedData;
+import com.alphawallet.token.entity.SalesOrderMalformed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+
+import java.math.BigInteger;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Magic link throughput. Each invocation handles LINKS links, so the reported ops/s is links/sec.
+ *
+ * Run with: ./gradlew :lib:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MagicLinkBatchBenchmark
+{
+    private static final int LINKS = 1000;
+    private static final String contractAddress = "0x0f43923667843bccafd12a5c001a7838fa5fc8ab";
+    private static final long chainId = 100;
+    private static final long expiry = 1900000000L;
+
+    private final ParseMagicLink parser = new ParseMagicLink(new BenchmarkCrypto(), null);
+    private final ECKeyPair keyPair = ECKeyPair.create(BigInteger.TEN);
+    private ForkJoinPool pool;
+    private List<MagicLinkOrder> orders;
+    private List<String> links;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        orders = new ArrayList<>();
+        for (int i = 0; i < LINKS; i++)
+        {
+            orders.add(MagicLinkOrder.spawnable(Collections.singletonList(BigInteger.valueOf(i)), contractAddress, BigInteger.ZERO, expiry, chainId));
+        }
+
+        links = new ArrayList<>();
+        for (MagicLinkResult result : parser.signUniversalLinks(orders, keyPair, pool))
+        {
+            links.add(result.link);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public List<MagicLinkResult> verifyBatch()
+    {
+        return parser.verifyUniversalLinks(links, pool);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public List<MagicLinkResult> signBatch()
+    {
+        return parser.signUniversalLinks(orders, keyPair, pool);
+    }
+
+    /**
+     * Baseline: one link at a time, as the link generators and the link server did before
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public List<String> verifySequential() throws SalesOrderMalformed
+    {
+        List<String> owners = new ArrayList<>(LINKS);
+        for (String link : links)
+        {
+            MagicLinkData data = parser.parseUniversalLink(link);
+            owners.add(parser.getOwnerKey(data));
+        }
+        return owners;
+    }
+
+    private static class BenchmarkCrypto implements CryptoFunctionsInterface
+    {
+        @Override
+        public byte[] Base64Decode(String message)
+        {
+            return Base64.getUrlDecoder().decode(message);
+        }
+
+        @Override
+        public byte[] Base64Encode(byte[] data)
+        {
+            return Base64.getUrlEncoder().encode(data);
+        }
+
+        @Override
+        public BigInteger signedMessageToKey(byte[] data, byte[] signature) throws SignatureException
+        {
+            byte[] r = new byte[32];
+            byte[] s = new byte[32];
+            System.arraycopy(signature, 0, r, 0, 32);
+            System.arraycopy(signature, 32, s, 0, 32);
+            return Sign.signedMessageToKey(data, new Sign.SignatureData(signature[64], r, s));
+        }
+
+        @Override
+        public String getAddressFromKey(BigInteger recoveredKey)
+        {
+            return Keys.getAddress(recoveredKey);
+        }
+
+        @Override
+        public byte[] keccak256(byte[] message)
+        {
+            return Hash.sha3(message);
+        }
+
+        @Override
+        public CharSequence formatTypedMessage(ProviderTypedData[] rawData)
+        {
+            return null;
+        }
+
+        @Override
+        public CharSequence formatEIP721Message(String messageData)
+        {
+            return null;
+        }
+
+        @Override
+        public byte[] getStructuredData(String messageData)
+        {
+            return null;
+        }
+
+        @Override
+        public long getChainId(String messageData)
+        {
+            return 0;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.web3j.crypto.Keys;
 
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -21,7 +22,7 @@ import java.util.Map;
  * Created by JB on 19/01/2023.
  */
 
-public class AttestationDefinition
+public class AttestationDefinition implements Serializable
 {
     //public TSOrigins origin; //single value for validation
     public FunctionDefinition function = null;
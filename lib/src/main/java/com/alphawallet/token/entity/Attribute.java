@@ -12,6 +12,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.text.ParseException;
@@ -26,7 +27,7 @@ import java.util.Map;
  * Stormbird in Sydney
  */
 
-public class Attribute {
+public class Attribute implements Serializable{
     private static final int ADDRESS_SIZE = 160;
     private static final int ADDRESS_LENGTH_IN_HEX = ADDRESS_SIZE >> 2;
     private static final int ADDRESS_LENGTH_IN_BYTES = ADDRESS_SIZE >> 3;
@@ -1,5 +1,6 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -9,7 +10,7 @@ import java.util.regex.Pattern;
 /**
  * Created by JB on 21/03/2020.
  */
-public class EventDefinition
+public class EventDefinition implements Serializable
 {
     public ContractInfo contract;
     public String attributeName; //TransactionResult: method
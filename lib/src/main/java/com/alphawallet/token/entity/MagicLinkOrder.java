@@ -0,0 +1,44 @@
+package com.alphawallet.token.entity;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static com.alphawallet.token.tools.ParseMagicLink.normal;
+import static com.alphawallet.token.tools.ParseMagicLink.spawnable;
+
+/**
+ * One order to be signed into a magic link by ParseMagicLink.signUniversalLinks
+ */
+public class MagicLinkOrder
+{
+    public byte contractType;
+    public int[] indices;            //normal links: token indices held by the signer
+    public List<BigInteger> tokenIds; //spawnable links: token ids to be minted
+    public String contractAddress;
+    public BigInteger priceWei;
+    public long expiry;
+    public long chainId;
+
+    public static MagicLinkOrder normal(int[] indices, String contractAddress, BigInteger priceWei, long expiry, long chainId)
+    {
+        MagicLinkOrder order = new MagicLinkOrder(normal, contractAddress, priceWei, expiry, chainId);
+        order.indices = indices;
+        return order;
+    }
+
+    public static MagicLinkOrder spawnable(List<BigInteger> tokenIds, String contractAddress, BigInteger priceWei, long expiry, long chainId)
+    {
+        MagicLinkOrder order = new MagicLinkOrder(spawnable, contractAddress, priceWei, expiry, chainId);
+        order.tokenIds = tokenIds;
+        return order;
+    }
+
+    private MagicLinkOrder(byte contractType, String contractAddress, BigInteger priceWei, long expiry, long chainId)
+    {
+        this.contractType = contractType;
+        this.contractAddress = contractAddress;
+        this.priceWei = priceWei;
+        this.expiry = expiry;
+        this.chainId = chainId;
+    }
+}
@@ -0,0 +1,29 @@
+package com.alphawallet.token.entity;
+
+/**
+ * Per-link outcome of a ParseMagicLink batch call. Results are returned in the same order as the input.
+ *
+ * verifyUniversalLinks: data holds the parsed order and ownerAddress the recovered signer.
+ * signUniversalLinks: link holds the generated magic link and ownerAddress the signing address.
+ *
+ * If the link couldn't be parsed, recovered or signed, error describes why and the other fields may be null.
+ */
+public class MagicLinkResult
+{
+    public final int index;
+    public String link;
+    public MagicLinkData data;
+    public String ownerAddress;
+    public String error;
+
+    public MagicLinkResult(int index, String link)
+    {
+        this.index = index;
+        this.link = link;
+    }
+
+    public boolean isValid()
+    {
+        return error == null;
+    }
+}
@@ -4,13 +4,14 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Created by JB on 20/03/2020 for namedType in ASN.X included in TokenScript. It's used for events & attestations.
  */
-public class NamedType
+public class NamedType implements Serializable
 {
     public final String name;
     public List<SequenceElement> sequence = new ArrayList<>();
@@ -122,7 +123,7 @@ public class NamedType
         return topicIndex;
     }
 
-    public class SequenceElement
+    public class SequenceElement implements Serializable
     {
         public String name;
         public String type;
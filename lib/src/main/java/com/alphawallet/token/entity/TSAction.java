@@ -1,12 +1,13 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
 import java.util.Map;
 
 /**
  * Created by James on 2/04/2019.
  * Stormbird in Singapore
  */
-public class TSAction
+public class TSAction implements Serializable
 {
     public int order;
     public String exclude;
@@ -1,9 +1,11 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
+
 /**
  * Created by JB on 27/07/2020.
  */
-public class TSActivityView
+public class TSActivityView implements Serializable
 {
     private final TSOrigins eventOrigins;
     //views
@@ -1,5 +1,6 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -9,7 +10,7 @@ import static com.alphawallet.token.entity.TSSelection.decodeParam;
 /**
  * Created by JB on 21/05/2020.
  */
-public class TSFilterNode
+public class TSFilterNode implements Serializable
 {
     public TSFilterNode parent = null;
     public TSFilterNode first = null;
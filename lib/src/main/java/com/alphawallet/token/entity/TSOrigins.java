@@ -1,11 +1,13 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
+
 import org.xml.sax.SAXException;
 
 /**
  * Created by JB on 27/07/2020.
  */
-public class TSOrigins
+public class TSOrigins implements Serializable
 {
     private TSOriginType type;
     private String originName;
@@ -0,0 +1,72 @@
+package com.alphawallet.token.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Compiled form of a parsed TokenDefinition: the attributes, actions, origins and views,
+ * stored so a warm load can skip the XML parse.
+ *
+ * File layout:
+ *   magic (int), format version (int), source key (UTF), serialised TokenDefinition
+ *
+ * The source key identifies what the definition was built from (eg script hash and locale). A compiled
+ * file is only returned if its key matches, so a changed script or locale falls back to a fresh parse.
+ * Bump FORMAT_VERSION when any class reachable from TokenDefinition changes its fields.
+ */
+public class CompiledTokenDefinition
+{
+    private static final int MAGIC = 0x54534344; //"TSCD"
+    private static final int FORMAT_VERSION = 1;
+
+    public static void write(File file, String sourceKey, TokenDefinition td) throws IOException
+    {
+        File tmp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp"); //concurrent writers of one key don't share a temp file
+        try (DataOutputStream header = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+        {
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeUTF(sourceKey);
+            ObjectOutputStream out = new ObjectOutputStream(header);
+            out.writeObject(td);
+            out.flush();
+        }
+
+        if (!tmp.renameTo(file))
+        {
+            tmp.delete();
+            throw new IOException("Unable to replace " + file.getName());
+        }
+    }
+
+    /**
+     * @return the compiled definition, or null if there isn't one for this source key
+     * @throws IOException if the file is corrupt or was written by an incompatible build; delete it and re-parse
+     */
+    public static TokenDefinition read(File file, String sourceKey) throws IOException
+    {
+        if (!file.exists()) return null;
+
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (header.readInt() != MAGIC || header.readInt() != FORMAT_VERSION || !header.readUTF().equals(sourceKey))
+            {
+                return null;
+            }
+
+            return (TokenDefinition) new ObjectInputStream(header).readObject();
+        }
+        catch (ClassNotFoundException | ClassCastException e)
+        {
+            throw new IOException("Incompatible compiled definition", e);
+        }
+    }
+}
@@ -6,14 +6,21 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.alphawallet.token.entity.*;
 
 import static com.alphawallet.token.entity.MagicLinkInfo.mainnetMagicLinkDomain;
 
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
 import org.web3j.utils.Numeric;
 
 /**
@@ -33,6 +40,8 @@ public class ParseMagicLink
     public static final byte currencyLink = 0x04;
 
     private static final String CURRENCY_LINK_PREFIX = "XDAIDROP";
+    private static final int BATCH_SPLIT_SIZE = 32; //links handled by one fork-join leaf, sharing one scratch buffer
+    private static final int SCRATCH_SIZE = 256;
     private CryptoFunctionsInterface cryptoInterface;
 
     private Map<Long, ChainSpec> extraChains;
@@ -94,6 +103,11 @@ public class ParseMagicLink
      */
 
     public MagicLinkData parseUniversalLink(String link) throws SalesOrderMalformed
+    {
+        return parseUniversalLink(link, new ByteArrayOutputStream(SCRATCH_SIZE));
+    }
+
+    private MagicLinkData parseUniversalLink(String link, ByteArrayOutputStream scratch) throws SalesOrderMalformed
     {
         long chainId = MagicLinkInfo.identifyChainId(link);
         String magicLinkUrlPrefix = MagicLinkInfo.getMagicLinkDomainFromNetworkId(chainId);
@@ -113,7 +127,7 @@ public class ParseMagicLink
         {
             offset += magicLinkUrlPrefix.length() + 1;
             String linkData = link.substring(offset);
-            return getMagicLinkDataFromURL(linkData, chainId);
+            return getMagicLinkDataFromURL(linkData, chainId, scratch);
         }
         else
         {
@@ -145,7 +159,7 @@ public class ParseMagicLink
         return chainId;
     }
 
-    private MagicLinkData getDataFromLinks(MagicLinkData data, EthereumReadBuffer ds) throws IOException
+    private MagicLinkData getDataFromLinks(MagicLinkData data, EthereumReadBuffer ds, ByteArrayOutputStream scratch) throws IOException
     {
         long szabo = ds.toUnsignedLong(ds.readInt());
         data.expiry = ds.toUnsignedLong(ds.readInt());
@@ -167,14 +181,14 @@ public class ParseMagicLink
         ds.readSignature(data.signature);
         ds.close();
         //now we have to build the message that the contract is expecting the signature for
-        data.message = getTradeBytes(data);
+        data.message = getTradeBytes(data, scratch);
         BigInteger microEth = Convert.fromWei(new BigDecimal(data.priceWei), Convert.Unit.SZABO).abs().toBigInteger();
         data.price = microEth.doubleValue() / 1000000.0;
         return data;
     }
 
     //Note: currency links handle the unit in szabo directly, no need to parse to wei or vice versa
-    private MagicLinkData parseCurrencyLinks(MagicLinkData data, EthereumReadBuffer ds) throws IOException
+    private MagicLinkData parseCurrencyLinks(MagicLinkData data, EthereumReadBuffer ds, ByteArrayOutputStream scratch) throws IOException
     {
         data.prefix = ds.readBytes(8);
         data.nonce = ds.readBI(4);
@@ -186,11 +200,11 @@ public class ParseMagicLink
         ds.readSignature(data.signature);
         ds.close();
         //now we have to build the message that the contract is expecting the signature for
-        data.message = getTradeBytes(data);
+        data.message = getTradeBytes(data, scratch);
         return data;
     }
 
-    private MagicLinkData getMagicLinkDataFromURL(String linkData, long chainId) throws SalesOrderMalformed
+    private MagicLinkData getMagicLinkDataFromURL(String linkData, long chainId, ByteArrayOutputStream scratch) throws SalesOrderMalformed
     {
         MagicLinkData data = new MagicLinkData();
         data.chainId = chainId;
@@ -210,11 +224,11 @@ public class ParseMagicLink
                 case normal:
                 case spawnable:
                 case customizable:
-                    return getDataFromLinks(data, ds);
+                    return getDataFromLinks(data, ds, scratch);
                 case currencyLink:
-                    return parseCurrencyLinks(data, ds);
+                    return parseCurrencyLinks(data, ds, scratch);
                 default:
-                    return getDataFromLinks(data, ds);
+                    return getDataFromLinks(data, ds, scratch);
             }
         } catch (Exception e) {
             data.chainId = 0;
@@ -240,29 +254,34 @@ public class ParseMagicLink
         return data.ownerAddress;
     }
 
-    private byte[] getTradeBytes(MagicLinkData data)
+    private byte[] getTradeBytes(MagicLinkData data, ByteArrayOutputStream scratch)
     {
         switch (data.contractType)
         {
             case unassigned:
             case normal:
             case customizable:
-                return getTradeBytes(data.indices, data.contractAddress, data.priceWei, data.expiry);
+                return getTradeBytes(scratch, data.indices, data.contractAddress, data.priceWei, data.expiry);
             case spawnable:
-                return getSpawnableBytes(data.tokenIds, data.contractAddress, data.priceWei, data.expiry);
+                return getSpawnableBytes(scratch, data.tokenIds, data.contractAddress, data.priceWei, data.expiry);
             case currencyLink:
-                return getCurrencyBytes(data.contractAddress, data.amount, data.expiry, data.nonce.longValue());//data.formCurrencyDropLinkMessage();
+                return getCurrencyBytes(scratch, data.contractAddress, data.amount, data.expiry, data.nonce.longValue());//data.formCurrencyDropLinkMessage();
             default:
-                return getTradeBytes(data.indices, data.contractAddress, data.priceWei, data.expiry);
+                return getTradeBytes(scratch, data.indices, data.contractAddress, data.priceWei, data.expiry);
         }
     }
 
     public byte[] getSpawnableBytes(List<BigInteger> tokenIds, String contractAddress, BigInteger priceWei, long expiry)
+    {
+        return getSpawnableBytes(new ByteArrayOutputStream(SCRATCH_SIZE), tokenIds, contractAddress, priceWei, expiry);
+    }
+
+    private static byte[] getSpawnableBytes(ByteArrayOutputStream buffer, List<BigInteger> tokenIds, String contractAddress, BigInteger priceWei, long expiry)
     {
         try {
             //form the transaction we need to push to buy
             //trade bytes
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            buffer.reset();
             DataOutputStream ds = new DataOutputStream(buffer);
 
             UnsignedLong expiryUL = UnsignedLong.create(expiry);
@@ -288,11 +307,16 @@ public class ParseMagicLink
     }
 
     public byte[] getTradeBytes(int[] ticketSendIndexList, String contractAddress, BigInteger priceWei, long expiry)
+    {
+        return getTradeBytes(new ByteArrayOutputStream(SCRATCH_SIZE), ticketSendIndexList, contractAddress, priceWei, expiry);
+    }
+
+    private static byte[] getTradeBytes(ByteArrayOutputStream buffer, int[] ticketSendIndexList, String contractAddress, BigInteger priceWei, long expiry)
     {
         try {
             //form the transaction we need to push to buy
             //trade bytes
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            buffer.reset();
             DataOutputStream ds = new DataOutputStream(buffer);
 
             UnsignedLong expiryUL = UnsignedLong.create(expiry);
@@ -335,6 +359,7 @@ public class ParseMagicLink
      */
 
     private static byte[] generateLeadingLinkBytes(
+            ByteArrayOutputStream buffer,
             byte type,
             int[] ticketSendIndexList,
             List<BigInteger> tokenIds,
@@ -345,7 +370,7 @@ public class ParseMagicLink
     {
         try
         {
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            buffer.reset();
             EthereumWriteBuffer wb = new EthereumWriteBuffer(buffer);
 
             wb.writeByte(type);
@@ -379,10 +404,15 @@ public class ParseMagicLink
     }
 
     public byte[] getCurrencyBytes(String contractAddress, BigInteger szaboAmount, long expiry, long nonce)
+    {
+        return getCurrencyBytes(new ByteArrayOutputStream(SCRATCH_SIZE), contractAddress, szaboAmount, expiry, nonce);
+    }
+
+    private static byte[] getCurrencyBytes(ByteArrayOutputStream buffer, String contractAddress, BigInteger szaboAmount, long expiry, long nonce)
     {
         try
         {
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            buffer.reset();
             EthereumWriteBuffer wb = new EthereumWriteBuffer(buffer);
 
             wb.write(CURRENCY_LINK_PREFIX.getBytes());
@@ -423,12 +453,12 @@ public class ParseMagicLink
 
     public static byte[] generateLeadingLinkBytes(int[] ticketSendIndexList, String contractAddress, BigInteger priceWei, long expiry) throws SalesOrderMalformed
     {
-        return generateLeadingLinkBytes(normal, ticketSendIndexList, null, contractAddress, priceWei, expiry);
+        return generateLeadingLinkBytes(new ByteArrayOutputStream(SCRATCH_SIZE), normal, ticketSendIndexList, null, contractAddress, priceWei, expiry);
     }
 
     public static byte[] generateSpawnableLeadingLinkBytes(List<BigInteger> tokenIds, String contractAddress, BigInteger priceWei, long expiry) throws SalesOrderMalformed
     {
-        return generateLeadingLinkBytes(spawnable, null, tokenIds, contractAddress, priceWei, expiry);
+        return generateLeadingLinkBytes(new ByteArrayOutputStream(SCRATCH_SIZE), spawnable, null, tokenIds, contractAddress, priceWei, expiry);
     }
 
     public String generateUniversalLink(int[] thisTickets, String contractAddr, BigInteger price, long expiry, byte[] signature, long chainId) throws SalesOrderMalformed
@@ -459,4 +489,137 @@ public class ParseMagicLink
         //this trade can be claimed by anyone who pushes the transaction through and has the sig
         return sb.toString();
     }
+
+    /**
+     * Bulk verification: parse each link and recover the address that signed it.
+     *
+     * Links are split across the fork-join pool; each leaf task reuses one scratch buffer for the messages it rebuilds.
+     * A bad link doesn't fail the batch, its result carries the error instead.
+     *
+     * @param links magic links, any chain this parser recognises
+     * @param pool pool to run on, eg ForkJoinPool.commonPool()
+     * @return one result per link, in input order
+     */
+    public List<MagicLinkResult> verifyUniversalLinks(List<String> links, ForkJoinPool pool)
+    {
+        MagicLinkResult[] results = new MagicLinkResult[links.size()];
+        pool.invoke(new BatchTask(0, results.length, (index, scratch) -> {
+            MagicLinkResult result = new MagicLinkResult(index, links.get(index));
+            try
+            {
+                result.data = parseUniversalLink(result.link, scratch);
+                BigInteger recoveredKey = cryptoInterface.signedMessageToKey(result.data.message, result.data.signature);
+                result.data.ownerAddress = "0x" + cryptoInterface.getAddressFromKey(recoveredKey);
+                result.ownerAddress = result.data.ownerAddress;
+            }
+            catch (Exception e)
+            {
+                result.error = errorText(e);
+            }
+            results[index] = result;
+        }));
+
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Bulk generation: sign each order with the key and form its magic link. Normal and spawnable orders are supported.
+     *
+     * @param orders orders to sign
+     * @param keyPair signing key; must own the tokens (normal links) or be allowed to mint them (spawnable links)
+     * @param pool pool to run on, eg ForkJoinPool.commonPool()
+     * @return one result per order, in input order
+     */
+    public List<MagicLinkResult> signUniversalLinks(List<MagicLinkOrder> orders, ECKeyPair keyPair, ForkJoinPool pool)
+    {
+        String signer = Numeric.prependHexPrefix(Keys.getAddress(keyPair));
+        MagicLinkResult[] results = new MagicLinkResult[orders.size()];
+        pool.invoke(new BatchTask(0, results.length, (index, scratch) -> {
+            MagicLinkOrder order = orders.get(index);
+            MagicLinkResult result = new MagicLinkResult(index, null);
+            try
+            {
+                byte[] message = order.contractType == spawnable
+                        ? getSpawnableBytes(scratch, order.tokenIds, order.contractAddress, order.priceWei, order.expiry)
+                        : getTradeBytes(scratch, order.indices, order.contractAddress, order.priceWei, order.expiry);
+                if (message == null) throw new SalesOrderMalformed("Unable to form order message");
+                byte[] signature = bytesFromSignature(Sign.signMessage(message, keyPair));
+                byte[] leading = generateLeadingLinkBytes(scratch, order.contractType == spawnable ? spawnable : normal,
+                        order.indices, order.tokenIds, order.contractAddress, order.priceWei, order.expiry);
+                if (leading == null) throw new SalesOrderMalformed("Unable to form link");
+                result.link = completeUniversalLink(order.chainId, leading, signature);
+                result.ownerAddress = signer;
+            }
+            catch (Exception e)
+            {
+                result.error = errorText(e);
+            }
+            results[index] = result;
+        }));
+
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    public static byte[] bytesFromSignature(Sign.SignatureData signature)
+    {
+        byte[] sigBytes = new byte[65];
+        Arrays.fill(sigBytes, (byte) 0);
+        try
+        {
+            System.arraycopy(signature.getR(), 0, sigBytes, 0, 32);
+            System.arraycopy(signature.getS(), 0, sigBytes, 32, 32);
+            System.arraycopy(signature.getV(), 0, sigBytes, 64, 1);
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            e.printStackTrace();
+        }
+
+        return sigBytes;
+    }
+
+    private static String errorText(Exception e)
+    {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private interface BatchItem
+    {
+        void process(int index, ByteArrayOutputStream scratch);
+    }
+
+    /**
+     * Splits an index range until it's small enough to run on one worker
+     */
+    private static class BatchTask extends RecursiveAction
+    {
+        private final int start;
+        private final int end;
+        private final BatchItem item;
+
+        BatchTask(int start, int end, BatchItem item)
+        {
+            this.start = start;
+            this.end = end;
+            this.item = item;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= BATCH_SPLIT_SIZE)
+            {
+                ByteArrayOutputStream scratch = new ByteArrayOutputStream(SCRATCH_SIZE);
+                for (int i = start; i < end; i++)
+                {
+                    item.process(i, scratch);
+                }
+            }
+            else
+            {
+                int mid = (start + end) >>> 1;
+                invokeAll(new BatchTask(start, mid, item), new BatchTask(mid, end, item));
+            }
+        }
+    }
 }
@@ -43,6 +43,7 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.text.DateFormat;
@@ -59,7 +60,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
-public class TokenDefinition
+public class TokenDefinition implements Serializable
 {
     public final Map<String, Attribute> attributes = new HashMap<>();
     protected Locale locale;
@@ -72,10 +73,10 @@ public class TokenDefinition
     private final TSTokenViewHolder tokenViews = new TSTokenViewHolder();
     private final Map<String, TSSelection> selections = new HashMap<>();
     private final Map<String, TSActivityView> activityCards = new HashMap<>();
-    private final Map<String, Element> viewContent = new HashMap<>();
+    private final transient Map<String, Element> viewContent = new HashMap<>(); //DOM, only needed while parsing
 
     public String nameSpace;
-    public TokenscriptContext context;
+    public transient TokenscriptContext context;
     public String holdingToken = null;
     private int actionCount;
 
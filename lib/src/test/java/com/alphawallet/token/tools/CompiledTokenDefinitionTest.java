@@ -0,0 +1,70 @@
+package com.alphawallet.token.tools;
+
+import com.alphawallet.token.entity.ParseResult;
+import com.alphawallet.token.entity.TSAction;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CompiledTokenDefinitionTest implements ParseResult
+{
+    private final File entryTokenTestFile = new File("src/test/ts/entrytoken.canonicalized.xml");
+
+    @Test
+    public void CompiledDefinitionMatchesParse() throws Exception
+    {
+        TokenDefinition parsed = new TokenDefinition(new FileInputStream(entryTokenTestFile), new Locale("en"), this);
+        File compiled = File.createTempFile("entrytoken", ".tsc");
+        compiled.deleteOnExit();
+
+        CompiledTokenDefinition.write(compiled, "hash-en", parsed);
+        TokenDefinition loaded = CompiledTokenDefinition.read(compiled, "hash-en");
+
+        assertNotNull(loaded);
+        assertEquals(parsed.holdingToken, loaded.holdingToken);
+        assertEquals(parsed.attributes.keySet(), loaded.attributes.keySet());
+        assertEquals(parsed.contracts.keySet(), loaded.contracts.keySet());
+        assertEquals(parsed.getTokenNameList(), loaded.getTokenNameList());
+        assertEquals(parsed.getViews(), loaded.getViews());
+        assertEquals(parsed.actions.keySet(), loaded.actions.keySet());
+        for (String name : parsed.actions.keySet())
+        {
+            TSAction action = parsed.actions.get(name);
+            assertEquals(action.view.getTokenView(), loaded.actions.get(name).view.getTokenView());
+        }
+
+        //shared references survive, eg each attribute's origin contract is still the holding contract
+        for (String name : loaded.attributes.keySet())
+        {
+            if (parsed.attributes.get(name).originContract == parsed.contracts.get(parsed.holdingToken))
+            {
+                assertEquals(loaded.contracts.get(loaded.holdingToken), loaded.attributes.get(name).originContract);
+            }
+        }
+    }
+
+    @Test
+    public void StaleSourceKeyIsIgnored() throws Exception
+    {
+        TokenDefinition parsed = new TokenDefinition(new FileInputStream(entryTokenTestFile), new Locale("en"), this);
+        File compiled = File.createTempFile("entrytoken", ".tsc");
+        compiled.deleteOnExit();
+
+        CompiledTokenDefinition.write(compiled, "hash-en", parsed);
+        assertNull(CompiledTokenDefinition.read(compiled, "hash-fr"));
+        assertNull(CompiledTokenDefinition.read(new File(compiled.getPath() + ".missing"), "hash-en"));
+    }
+
+    @Override
+    public void parseMessage(ParseResultId parseResult)
+    {
+        //NOP
+    }
+}
@@ -0,0 +1,163 @@
+package com.alphawallet.token.tools;
+
+import com.alphawallet.token.entity.CryptoFunctionsInterface;
+import com.alphawallet.token.entity.MagicLinkData;
+import com.alphawallet.token.entity.MagicLinkOrder;
+import com.alphawallet.token.entity.MagicLinkResult;
+import com.alphawallet.token.entity.ProviderTypedData;
+import com.alphawallet.token.entity.SalesOrderMalformed;
+
+import org.junit.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class MagicLinkBatchTest
+{
+    private static final String contractAddress = "0x0f43923667843bccafd12a5c001a7838fa5fc8ab";
+    private static final long chainId = 1;
+    private static final long expiry = 1900000000L;
+
+    private final ParseMagicLink parser = new ParseMagicLink(new TestCrypto(), null);
+    private final ECKeyPair keyPair = ECKeyPair.create(BigInteger.TEN);
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @Test
+    public void signedBatchVerifiesInOrder() throws SalesOrderMalformed
+    {
+        List<MagicLinkOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            if (i % 2 == 0)
+            {
+                orders.add(MagicLinkOrder.normal(new int[] { i, i + 200 }, contractAddress, BigInteger.valueOf(i * 1000000000000L), expiry, chainId));
+            }
+            else
+            {
+                orders.add(MagicLinkOrder.spawnable(Collections.singletonList(BigInteger.valueOf(i)), contractAddress, BigInteger.ZERO, expiry, chainId));
+            }
+        }
+
+        List<MagicLinkResult> signed = parser.signUniversalLinks(orders, keyPair, pool);
+        String signer = Numeric.prependHexPrefix(Keys.getAddress(keyPair));
+        List<String> links = new ArrayList<>();
+        for (MagicLinkResult result : signed)
+        {
+            assertTrue(result.error, result.isValid());
+            assertEquals(signer, result.ownerAddress);
+            links.add(result.link);
+        }
+
+        List<MagicLinkResult> verified = parser.verifyUniversalLinks(links, pool);
+        assertEquals(orders.size(), verified.size());
+        for (int i = 0; i < verified.size(); i++)
+        {
+            MagicLinkResult result = verified.get(i);
+            assertEquals(i, result.index);
+            assertTrue(result.error, result.isValid());
+            assertEquals(signer, result.ownerAddress);
+            assertEquals(orders.get(i).contractType, result.data.contractType);
+            assertEquals(expiry, result.data.expiry);
+        }
+
+        //batch result matches the single link path
+        MagicLinkData single = parser.parseUniversalLink(links.get(0));
+        assertEquals(signer, parser.getOwnerKey(single));
+        assertArrayEquals(single.message, verified.get(0).data.message);
+        assertEquals(2, verified.get(0).data.ticketCount);
+    }
+
+    @Test
+    public void badLinkReportsErrorWithoutFailingBatch()
+    {
+        List<MagicLinkOrder> orders = Collections.singletonList(
+                MagicLinkOrder.normal(new int[] { 1 }, contractAddress, BigInteger.ZERO, expiry, chainId));
+        String good = parser.signUniversalLinks(orders, keyPair, pool).get(0).link;
+
+        List<String> links = new ArrayList<>();
+        links.add("https://example.com/not-a-link");
+        links.add(good);
+
+        List<MagicLinkResult> verified = parser.verifyUniversalLinks(links, pool);
+        assertFalse(verified.get(0).isValid());
+        assertNotNull(verified.get(0).error);
+        assertTrue(verified.get(1).isValid());
+    }
+
+    private static class TestCrypto implements CryptoFunctionsInterface
+    {
+        @Override
+        public byte[] Base64Decode(String message)
+        {
+            return Base64.getUrlDecoder().decode(message);
+        }
+
+        @Override
+        public byte[] Base64Encode(byte[] data)
+        {
+            return Base64.getUrlEncoder().encode(data);
+        }
+
+        @Override
+        public BigInteger signedMessageToKey(byte[] data, byte[] signature) throws SignatureException
+        {
+            byte[] r = new byte[32];
+            byte[] s = new byte[32];
+            System.arraycopy(signature, 0, r, 0, 32);
+            System.arraycopy(signature, 32, s, 0, 32);
+            return Sign.signedMessageToKey(data, new Sign.SignatureData(signature[64], r, s));
+        }
+
+        @Override
+        public String getAddressFromKey(BigInteger recoveredKey)
+        {
+            return Keys.getAddress(recoveredKey);
+        }
+
+        @Override
+        public byte[] keccak256(byte[] message)
+        {
+            return Hash.sha3(message);
+        }
+
+        @Override
+        public CharSequence formatTypedMessage(ProviderTypedData[] rawData)
+        {
+            return null;
+        }
+
+        @Override
+        public CharSequence formatEIP721Message(String messageData)
+        {
+            return null;
+        }
+
+        @Override
+        public byte[] getStructuredData(String messageData)
+        {
+            return null;
+        }
+
+        @Override
+        public long getChainId(String messageData)
+        {
+            return 0;
+        }
+    }
+}